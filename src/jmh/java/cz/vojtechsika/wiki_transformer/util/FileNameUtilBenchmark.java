@@ -0,0 +1,70 @@
+package cz.vojtechsika.wiki_transformer.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.Normalizer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the {@link FileNameUtil} methods called for every page and image.
+ * The regex based sanitizer, which the single-pass one replaced, is measured as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileNameUtilBenchmark {
+
+    /**
+     * Page titles: plain ASCII, Czech with diacritics and a long title full of symbols
+     */
+    @Param({"Installation_Guide", "Článek: Moje fotky & videa (verze 2)",
+            "Release notes / 2024 — přehled změn, oprav & známých chyb (včetně FAQ) [interní]"})
+    public String title;
+
+    /**
+     * URL of a wiki page
+     */
+    private final String wikiUrl = "https://www.redmine.org/projects/redmine/wiki/RedmineInstall";
+
+    /**
+     * URL of an image attachment
+     */
+    private final String imageUrl = "https://www.redmine.org/attachments/download/12345/screenshot-2024-01-15.png";
+
+
+    @Benchmark
+    public String sanitizeFileName() {
+        return FileNameUtil.sanitizeFileName(title);
+    }
+
+    @Benchmark
+    public String sanitizeFileNameRegexBaseline() {
+        String normalizedFileName = Normalizer.normalize(title.trim(), Normalizer.Form.NFD);
+        return normalizedFileName.replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
+                .replaceAll("[^a-zA-Z0-9-_\\.]", "_")
+                .replaceAll("_+", "_")
+                .replaceAll("^_+|_+$", "");
+    }
+
+    @Benchmark
+    public String createUniqueSuffix() {
+        return FileNameUtil.createUniqueSuffix(wikiUrl);
+    }
+
+    @Benchmark
+    public String getNameWithExtension() {
+        return FileNameUtil.getNameWithExtension(imageUrl);
+    }
+}
@@ -4,23 +4,40 @@ import cz.vojtechsika.wiki_transformer.cli.WikiTransformerCommand;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import picocli.CommandLine;
 
+import java.util.Arrays;
+
 @SpringBootApplication
 public class WikiTransformerApplication {
 
 
+	// "serve" keeps the JVM running as a daemon with the HTTP job API instead of running a single command
+	private static final String SERVE_COMMAND = "serve";
+
+
 	public static void main(String[] args) {
+		if (args.length > 0 && SERVE_COMMAND.equals(args[0])) {
+			String[] serveArgs = Arrays.copyOfRange(args, 1, args.length + 2);
+			serveArgs[serveArgs.length - 2] = "--spring.main.web-application-type=servlet";
+			serveArgs[serveArgs.length - 1] = "--wiki-transformer.cli.enabled=false";
+			SpringApplication.run(WikiTransformerApplication.class, serveArgs);
+			return;
+		}
 		SpringApplication.run(WikiTransformerApplication.class, args);
 	}
 
 
+	// The runner exits the JVM, it can be turned off (e.g. in the Spring context test) by wiki-transformer.cli.enabled=false
 	@Bean
+	@ConditionalOnProperty(name = "wiki-transformer.cli.enabled", havingValue = "true", matchIfMissing = true)
 	public CommandLineRunner commandLineRunner(WikiTransformerCommand wikiTransformerCommand) {
 
 		return args -> {
 			CommandLine commandLine = new CommandLine(wikiTransformerCommand);
+			commandLine.setCaseInsensitiveEnumValuesAllowed(true);
 			int exitCode = commandLine.execute(args);
 			System.exit(exitCode);
 
@@ -1,13 +1,22 @@
 package cz.vojtechsika.wiki_transformer.cli;
 
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationOptions;
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationSummary;
+import cz.vojtechsika.wiki_transformer.dto.ConversionEngine;
+import cz.vojtechsika.wiki_transformer.dto.OutputFormat;
 import cz.vojtechsika.wiki_transformer.dto.RedmineWikiResponseDTO;
 import cz.vojtechsika.wiki_transformer.dto.WikiConversionContext;
 import cz.vojtechsika.wiki_transformer.exception.ExceptionHandler;
 import cz.vojtechsika.wiki_transformer.exception.RedmineFetchException;
-import cz.vojtechsika.wiki_transformer.service.PandocService;
+import cz.vojtechsika.wiki_transformer.metrics.FlightRecording;
+import cz.vojtechsika.wiki_transformer.metrics.MetricsReportWriter;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import cz.vojtechsika.wiki_transformer.service.PandocServiceResolver;
 import cz.vojtechsika.wiki_transformer.service.PathValidationService;
 import cz.vojtechsika.wiki_transformer.service.RedmineService;
+import cz.vojtechsika.wiki_transformer.service.batch.BatchMigrationService;
 import cz.vojtechsika.wiki_transformer.service.image.ImageService;
+import cz.vojtechsika.wiki_transformer.service.output.OutputSink;
 import cz.vojtechsika.wiki_transformer.util.FileNameUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -17,10 +26,15 @@ import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 
 /**
  * CLI command for transforming a Redmine Wiki page written in Textile format to MediaWiki format.
  * This class fetches content from a Redmine Wiki page and converts it using Pandoc.
+ * With {@code --project} and {@code --wiki-root} the whole wiki of a project is migrated in one run.
  */
 @Component
 @CommandLine.Command(name="wiki-transformer", description = "Transforms Textile file to MediaWiki")
@@ -42,15 +56,30 @@ public class WikiTransformerCommand implements Runnable {
     private final RedmineService redmineService;
 
     /**
-     * Instance of {@link PandocService}
+     * Resolver of the conversion engine selected by {@code --engine}
      */
-    private final  PandocService pandocService;
+    private final PandocServiceResolver pandocServiceResolver;
 
     /**
      *  Instance of {@link ExceptionHandler}
      */
     private final  ExceptionHandler exceptionHandler;
 
+    /**
+     * Service migrating the whole wiki of a project
+     */
+    private final BatchMigrationService batchMigrationService;
+
+    /**
+     * Destination of the converted files
+     */
+    private final OutputSink outputSink;
+
+    /**
+     * Writer of the performance report of the run
+     */
+    private final MetricsReportWriter metricsReportWriter;
+
     /**
      * Path object representing the storage location
      */
@@ -59,9 +88,59 @@ public class WikiTransformerCommand implements Runnable {
     /**
      * The URL of the Redmine Wiki page to be transformed.
      */
-    @CommandLine.Option(names = "--url", description = "URL of the Redmine Wiki page", required = true)
+    @CommandLine.Option(names = "--url", description = "URL of the Redmine Wiki page")
     private String wikiUrl;
 
+    /**
+     * Identifier of the Redmine project whose whole wiki will be migrated.
+     */
+    @CommandLine.Option(names = "--project", description = "Identifier of the Redmine project to migrate the whole wiki")
+    private String projectId;
+
+    /**
+     * Base URL of the Redmine server, used together with {@code --project}.
+     */
+    @CommandLine.Option(names = "--wiki-root", description = "Base URL of the Redmine server (e.g. https://www.redmine.org)")
+    private String wikiRoot;
+
+    /**
+     * Maximum number of wiki pages processed at the same time in batch mode.
+     */
+    @CommandLine.Option(names = "--concurrency", description = "Number of pages fetched, scanned for images and downloaded in parallel in batch mode (default: ${DEFAULT-VALUE})", defaultValue = "8")
+    private int concurrency;
+
+    /**
+     * Engine used for the Textile to MediaWiki conversion.
+     */
+    @CommandLine.Option(names = "--engine", description = "Conversion engine: native or pandoc (default: ${DEFAULT-VALUE})", defaultValue = "pandoc")
+    private ConversionEngine engine;
+
+    /**
+     * Whether only pages changed since the previous batch run are migrated.
+     */
+    @CommandLine.Option(names = "--incremental", description = "In batch mode migrate only new and changed pages and remove deleted ones")
+    private boolean incremental;
+
+    /**
+     * Format of the converted pages in batch mode.
+     */
+    @CommandLine.Option(names = "--format", description = "In batch mode write files, a single MediaWiki XML dump or a single archive: files, mediawiki-xml, zip or tar-gz (default: ${DEFAULT-VALUE})",
+            defaultValue = "files", converter = OutputFormatConverter.class)
+    private OutputFormat format;
+
+    /**
+     * Whether the MediaWiki XML dump is gzip-compressed.
+     */
+    @CommandLine.Option(names = "--gzip", description = "Compress the MediaWiki XML dump with gzip")
+    private boolean gzip;
+
+    /**
+     * File of the Java Flight Recorder recording of the run, empty for the default file, null when not recorded.
+     */
+    @CommandLine.Option(names = "--jfr", arity = "0..1", fallbackValue = "", paramLabel = "<file>",
+            description = "Record the run with Java Flight Recorder into the file (default: wiki-transformer-<time>.jfr in the output directory)")
+    private String jfrFile;
+
     /**
      *  CLI option for specifying the output directory where the converted MediaWiki file will be saved.
      */
@@ -73,22 +152,31 @@ public class WikiTransformerCommand implements Runnable {
      * Constructor that initializes the required services.
      *
      * @param theRedmineService        the service responsible for fetching Redmine Wiki page data
-     * @param thePandocService         the service responsible for converting content from Textile to MediaWiki format
+     * @param thePandocServiceResolver the resolver of the service converting content from Textile to MediaWiki format
      * @param theExceptionHandler      the centralized exception handler used to manage CLI errors and terminate gracefully
      * @param theImageService          the service for downloading referenced images
      * @param thePathValidationService the service for validating output path
+     * @param theBatchMigrationService the service migrating the whole wiki of a project
+     * @param theOutputSink            the destination of the converted files
+     * @param theMetricsReportWriter   the writer of the performance report of the run
      */
     @Autowired
     public WikiTransformerCommand(RedmineService theRedmineService,
-                                  PandocService thePandocService,
+                                  PandocServiceResolver thePandocServiceResolver,
                                   ExceptionHandler theExceptionHandler,
                                   ImageService theImageService,
-                                  PathValidationService thePathValidationService) {
+                                  PathValidationService thePathValidationService,
+                                  BatchMigrationService theBatchMigrationService,
+                                  OutputSink theOutputSink,
+                                  MetricsReportWriter theMetricsReportWriter) {
         this.redmineService = theRedmineService;
-        this.pandocService = thePandocService;
+        this.pandocServiceResolver = thePandocServiceResolver;
         this.exceptionHandler = theExceptionHandler;
         this.imageService = theImageService;
         this.pathValidationService = thePathValidationService;
+        this.batchMigrationService = theBatchMigrationService;
+        this.outputSink = theOutputSink;
+        this.metricsReportWriter = theMetricsReportWriter;
     }
 
     /**
@@ -99,17 +187,90 @@ public class WikiTransformerCommand implements Runnable {
      *   <li>Convert the wiki content to MediaWiki format using Pandoc.</li>
      *   <li>Download all referenced images into the output folder.</li>
      * </ol>
+     * In batch mode the last three steps are done by {@link BatchMigrationService} for every page of the wiki.
+     * The performance report of the stages is written at the end of the run, with {@code --jfr}
+     * the run is recorded by Java Flight Recorder.
      */
     @Override
     public void run() {
+        Instant startedAt = Instant.now();
+        validateOptions();
+
         initializePath(outputDirectory);
         initializeOutputDirectory(filePath);
 
-        WikiConversionContext context = getRedmineWikiPageContext();
+        FlightRecording recording = startFlightRecording(startedAt);
+        try {
+            if (projectId != null) {
+                migrateProject(startedAt);
+            } else {
+                WikiConversionContext context = getRedmineWikiPageContext();
+
+                // The conversion and the written files are attributed to the page in the metrics
+                try (MigrationMetrics.PageBinding page = MigrationMetrics.bindPage(context.getWikiUrl())) {
+                    convertWikiPage(context);
+
+                    downloadImages(context);
+                }
+            }
+
+            writeMetricsReport(startedAt);
+        } finally {
+            stopFlightRecording(recording);
+        }
+    }
 
-        convertWikiPage(context);
+    /**
+     * Starts the Java Flight Recorder recording requested by {@code --jfr}.
+     *
+     * @param startedAt the start of the run, naming the default recording file
+     * @return the running recording, or null when the run is not recorded
+     */
+    private FlightRecording startFlightRecording(Instant startedAt) {
+        if (jfrFile == null) {
+            return null;
+        }
+        Path file = jfrFile.isBlank()
+                ? filePath.resolve("wiki-transformer-" + DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+                        .format(LocalDateTime.ofInstant(startedAt, ZoneOffset.UTC)) + ".jfr")
+                : Path.of(jfrFile);
+        try {
+            FlightRecording recording = FlightRecording.start(file);
+            System.out.println("Flight recording started: " + recording.getFile());
+            return recording;
+        } catch (IOException | RuntimeException e) {
+            exceptionHandler.exitWithError("Failed to start the flight recording", e);
+            return null;
+        }
+    }
 
-        downloadImages(context);
+    /**
+     * Stops the Java Flight Recorder recording and writes it to its file.
+     *
+     * @param recording the running recording, or null when the run is not recorded
+     */
+    private void stopFlightRecording(FlightRecording recording) {
+        if (recording != null) {
+            recording.close();
+            System.out.println("Flight recording : " + recording.getFile());
+        }
+    }
+
+    /**
+     * Writes the performance report of the run, a failure is only reported because the migration is complete.
+     * The report of a {@code zip} / {@code tar-gz} run is already in its archive unless a report directory is configured.
+     *
+     * @param startedAt the start of the run
+     */
+    private void writeMetricsReport(Instant startedAt) {
+        if (format.isArchive() && projectId != null && metricsReportWriter.isWrittenToArchive()) {
+            return;
+        }
+        try {
+            metricsReportWriter.write(filePath, startedAt);
+        } catch (IOException e) {
+            System.out.println("Failed to write the metrics report: " + e.getMessage());
+        }
     }
 
     /**
@@ -134,6 +295,7 @@ public class WikiTransformerCommand implements Runnable {
         context.setWikiUrl(wikiUrl);
         context.setFilePath(filePath);
         context.setOutputDir(outputDirectory);
+        context.setAttachments(response.getWikiPage().getAttachments());
 
         return context;
     }
@@ -156,8 +318,81 @@ public class WikiTransformerCommand implements Runnable {
      * @return a unique and safe title string
      */
     private String createUniqueTitle(String theTitle) {
-        String sanitizeTitle = FileNameUtil.sanitizeFileName(theTitle);
-        return sanitizeTitle + "_" + FileNameUtil.createUniqueSuffix(wikiUrl);
+        return FileNameUtil.createUniqueFileName(theTitle, wikiUrl);
+    }
+
+
+    /**
+     * Validates that exactly one mode is selected: a single page ({@code --url})
+     * or a whole project wiki ({@code --project} together with {@code --wiki-root}).
+     */
+    private void validateOptions() {
+        if (wikiUrl == null && projectId == null) {
+            exceptionHandler.exitWithError("Either --url or --project with --wiki-root must be specified");
+        }
+        if (wikiUrl != null && projectId != null) {
+            exceptionHandler.exitWithError("Options --url and --project can not be used together");
+        }
+        if (projectId != null && wikiRoot == null) {
+            exceptionHandler.exitWithError("Option --wiki-root is required together with --project");
+        }
+        if (incremental && projectId == null) {
+            exceptionHandler.exitWithError("Option --incremental can only be used together with --project");
+        }
+        if (format != OutputFormat.FILES && projectId == null) {
+            exceptionHandler.exitWithError("Option --format=" + format + " can only be used together with --project");
+        }
+        if (format.isArchive() && incremental) {
+            exceptionHandler.exitWithError("Option --format=" + format + " can not be used together with --incremental");
+        }
+        if (gzip && format != OutputFormat.MEDIAWIKI_XML) {
+            exceptionHandler.exitWithError("Option --gzip can only be used together with --format=mediawiki-xml");
+        }
+        if (concurrency < 1) {
+            exceptionHandler.exitWithError("Option --concurrency must be at least 1");
+        }
+    }
+
+
+    /**
+     * Migrates every page of the project wiki and prints the summary of the run.
+     *
+     * @param startedAt the start of the run, naming the performance report added to an archive
+     */
+    private void migrateProject(Instant startedAt) {
+        BatchMigrationOptions options = new BatchMigrationOptions(wikiRoot, projectId, filePath, outputDirectory, concurrency, engine, incremental,
+                format, gzip, startedAt);
+        try {
+            BatchMigrationSummary summary = batchMigrationService.migrateProject(options);
+            printSummary(summary);
+        } catch (RedmineFetchException e) {
+            exceptionHandler.exitWithError("Failed to retrieve redmine wiki index", e);
+        } catch (IOException e) {
+            exceptionHandler.exitWithError("Failed to read or write the manifest of migrated pages", e);
+        }
+    }
+
+
+    /**
+     * Prints the number of converted and failed pages, the throughput and the final concurrency limit of the batch run.
+     *
+     * @param summary the summary of the batch run
+     */
+    private void printSummary(BatchMigrationSummary summary) {
+        System.out.println("\nBatch migration finished");
+        System.out.println("Pages in index : " + summary.getTotalPages());
+        System.out.println("Converted      : " + summary.getConvertedPages());
+        System.out.println("Unchanged      : " + summary.getUnchangedPages());
+        System.out.println("Deleted        : " + summary.getDeletedPages());
+        System.out.println("Failed         : " + summary.getFailedPages().size());
+        System.out.printf("Elapsed        : %.1f s (%.2f pages/sec)%n",
+                summary.getElapsed().toMillis() / 1000.0, summary.getPagesPerSecond());
+        if (summary.getConcurrencyLimit() > 0) {
+            System.out.println("Concurrency    : " + summary.getConcurrencyLimit() + " requests (peak " + summary.getPeakConcurrencyLimit() + ")");
+        }
+
+        summary.getFailedPages().forEach((title, message) ->
+                System.out.println("  Failed page: " + title + " - " + message));
     }
 
 
@@ -214,14 +449,15 @@ public class WikiTransformerCommand implements Runnable {
     }
 
     /**
-     * Runs the conversion logic using {@link PandocService} to transform the wiki content.
+     * Runs the conversion logic using the selected engine to transform the wiki content.
      *
      * @param contentWikiPage the raw Textile content of the Redmine Wiki page
      * @param uniqueTitle     the sanitized and timestamped output file name
      */
     private void runPandocService(String contentWikiPage, String uniqueTitle) {
         try {
-            pandocService.convertTextileToMediaWiki(contentWikiPage, uniqueTitle, filePath, outputDirectory);
+            pandocServiceResolver.resolve(engine).convertTextileToMediaWiki(contentWikiPage, uniqueTitle, filePath, outputDirectory);
+            outputSink.flush(filePath);
         } catch (IOException e) {
             exceptionHandler.exitWithError("Failed during run Pandoc", e);
         }
@@ -229,6 +465,7 @@ public class WikiTransformerCommand implements Runnable {
 
     /**
      * Builds a complete Redmine API URL by appending the .json suffix to the provided base URL.
+     * The attachments are requested as well, they are used to find the images of the page.
      *
      * @param wikiUrl the original wiki page URL
      * @return the modified URL pointing to the JSON version of the page
@@ -238,7 +475,7 @@ public class WikiTransformerCommand implements Runnable {
             exceptionHandler.exitWithError("WikiUrl can not be null");
         }
         System.out.println("Fetching Redmine Wiki page from url: " + wikiUrl + ".json" + "\n");
-        return wikiUrl + ".json";
+        return wikiUrl + ".json?include=attachments";
     }
 
 
@@ -255,7 +492,15 @@ public class WikiTransformerCommand implements Runnable {
         }
     }
 
-}
-
 
+    /**
+     * Reads {@code --format} values like {@code mediawiki-xml}, which are not names of the enum constants.
+     */
+    static class OutputFormatConverter implements CommandLine.ITypeConverter<OutputFormat> {
 
+        @Override
+        public OutputFormat convert(String value) {
+            return OutputFormat.fromValue(value);
+        }
+    }
+}
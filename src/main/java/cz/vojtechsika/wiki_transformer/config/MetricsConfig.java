@@ -0,0 +1,28 @@
+package cz.vojtechsika.wiki_transformer.config;
+
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the Micrometer registry holding the metrics of the migration stages.
+ * <p>
+ * The application has no actuator, the registry is only read by the
+ * {@link cz.vojtechsika.wiki_transformer.metrics.MetricsReportWriter} at the end of a run, which writes it
+ * in the Prometheus text format next to a JSON summary.
+ * </p>
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Creates the registry of the stage metrics.
+     *
+     * @return the Prometheus registry
+     */
+    @Bean(destroyMethod = "close")
+    public PrometheusMeterRegistry prometheusMeterRegistry() {
+        return new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    }
+}
@@ -1,25 +1,93 @@
 package cz.vojtechsika.wiki_transformer.config;
 
+import cz.vojtechsika.wiki_transformer.http.CompressionInterceptor;
+import cz.vojtechsika.wiki_transformer.http.ConditionalRequestInterceptor;
+import cz.vojtechsika.wiki_transformer.http.HttpValidatorCache;
+import cz.vojtechsika.wiki_transformer.http.PerHostLimitInterceptor;
+import cz.vojtechsika.wiki_transformer.http.TrafficGovernor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
 /**
  * Configuration class for setting up a {@link RestClient} bean.
  * Provides a centralized way to configure and manage the REST client used for HTTP communication.
+ * <p>
+ * All fetch paths (page JSON, page HTML and images) share one JDK {@link HttpClient}, which keeps
+ * connections alive in its pool and multiplexes requests over HTTP/2 when the server supports it,
+ * so a batch run reuses its TLS connections. The transport is configured by the {@code http.client.*} properties.
+ * </p>
+ * <p>
+ * Every request passes the {@link TrafficGovernor}, which limits the request and download rate
+ * and retries transient failures.
+ * </p>
  */
 @Configuration
 public class RestClientConfig {
 
 
+    /**
+     * Creates the JDK HTTP client shared by all requests to Redmine.
+     *
+     * @param theHttp2           whether HTTP/2 is preferred, HTTP/1.1 is used when the server does not support it
+     * @param theConnectTimeout  timeout of opening a connection
+     * @return the HTTP client
+     */
+    @Bean
+    public HttpClient httpClient(@Value("${http.client.http2:true}") boolean theHttp2,
+                                 @Value("${http.client.connect-timeout:10s}") Duration theConnectTimeout) {
+        return HttpClient.newBuilder()
+                .version(theHttp2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(theConnectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+
     /**
      * Creates and configures a {@link RestClient} bean.
      * This client is used for making HTTP requests in the application.
+     * Unless {@code http.cache.enabled} is false, repeated GET requests are sent as conditional requests
+     * and answered from the {@link HttpValidatorCache} when the server reports no change.
      *
+     * @param theHttpClient       the shared JDK HTTP client
+     * @param theValidatorCache   the on-disk cache of responses and their validators
+     * @param theTrafficGovernor  the rate limiter and retry policy of all requests
+     * @param theCacheEnabled     whether conditional requests and the response cache are used
+     * @param theReadTimeout      timeout of waiting for the response
+     * @param theCompression      whether compressed responses are requested and decoded
+     * @param theMaxPerHost       maximum number of requests in flight to a single host
      * @return a new instance of {@link RestClient}.
      */
     @Bean
-    public RestClient configureRestClient() {
-        return RestClient.create();
+    public RestClient configureRestClient(HttpClient theHttpClient,
+                                          HttpValidatorCache theValidatorCache,
+                                          TrafficGovernor theTrafficGovernor,
+                                          @Value("${http.cache.enabled:true}") boolean theCacheEnabled,
+                                          @Value("${http.client.read-timeout:60s}") Duration theReadTimeout,
+                                          @Value("${http.client.compression:true}") boolean theCompression,
+                                          @Value("${http.client.max-connections-per-host:8}") int theMaxPerHost) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(theHttpClient);
+        requestFactory.setReadTimeout(theReadTimeout);
+
+        // The first interceptor is the outermost one, the cache therefore always sees decoded bodies
+        RestClient.Builder builder = RestClient.builder().requestFactory(requestFactory);
+        if (theCacheEnabled) {
+            builder.requestInterceptor(new ConditionalRequestInterceptor(theValidatorCache));
+        }
+        builder.requestInterceptor(new PerHostLimitInterceptor(theMaxPerHost));
+        if (theCompression) {
+            builder.requestInterceptor(new CompressionInterceptor());
+        }
+        // The governor is the innermost interceptor, every retry therefore sends a fresh request
+        builder.requestInterceptor(theTrafficGovernor);
+        return builder.build();
     }
 }
@@ -0,0 +1,45 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Represents the Data Transfer Object (DTO) for an attachment of a wiki page.
+ * This class is a nested JSON object within the {@link WikiPageDTO}, returned when the page
+ * is requested with {@code ?include=attachments}.
+ */
+
+@Getter
+@Setter
+public class AttachmentDTO {
+
+    /**
+     * Attachment id
+     */
+    private int id;
+
+    /**
+     * File name of the attachment as referenced from the Textile
+     */
+    private String filename;
+
+    /**
+     * Size of the attachment in bytes
+     */
+    private long filesize;
+
+    /**
+     * MIME type of the attachment
+     */
+    @JsonProperty("content_type")
+    private String contentType;
+
+    /**
+     * Absolute download URL of the attachment
+     */
+    @JsonProperty("content_url")
+    private String contentUrl;
+
+
+}
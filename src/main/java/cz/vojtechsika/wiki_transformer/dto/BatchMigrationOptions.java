@@ -0,0 +1,82 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Options of a whole-wiki batch migration.
+ * <ul>
+ *   <li><b>wikiRoot</b> – base URL of the Redmine server (e.g. {@code https://www.redmine.org}).</li>
+ *   <li><b>projectId</b> – identifier of the Redmine project whose wiki will be migrated.</li>
+ *   <li><b>filePath</b> – base directory path where output files will be written.</li>
+ *   <li><b>outputDir</b> – string representation of the output directory path.</li>
+ *   <li><b>concurrency</b> – number of pages processed at the same time by each network stage of the pipeline.</li>
+ *   <li><b>engine</b> – engine used for the Textile to MediaWiki conversion.</li>
+ *   <li><b>incremental</b> – whether only new and changed pages are migrated.</li>
+ *   <li><b>format</b> – whether the pages are written as separate files or into a MediaWiki XML dump.</li>
+ *   <li><b>gzip</b> – whether the MediaWiki XML dump is gzip-compressed.</li>
+ *   <li><b>startedAt</b> – start of a CLI run whose performance report is added to its archive, or null.</li>
+ * </ul>
+ */
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchMigrationOptions {
+
+    /**
+     * Base URL of the Redmine server.
+     */
+    private String wikiRoot;
+
+    /**
+     * Identifier of the Redmine project.
+     */
+    private String projectId;
+
+    /**
+     * Base directory path where all output files (converted text and images)
+     */
+    private Path filePath;
+
+    /**
+     * String form of the output directory
+     */
+    private String outputDir;
+
+    /**
+     * Number of pages processed concurrently by each network stage.
+     */
+    private int concurrency;
+
+    /**
+     * Engine used for the conversion.
+     */
+    private ConversionEngine engine;
+
+    /**
+     * Whether unchanged pages are skipped and deleted pages removed, based on the manifest of the previous run.
+     */
+    private boolean incremental;
+
+    /**
+     * Format of the converted pages.
+     */
+    private OutputFormat format = OutputFormat.FILES;
+
+    /**
+     * Whether the MediaWiki XML dump is gzip-compressed.
+     */
+    private boolean gzip;
+
+    /**
+     * Start of the CLI run naming the performance report added to an archive, null when no report is added.
+     */
+    private Instant startedAt;
+}
@@ -0,0 +1,171 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result of a whole-wiki batch migration.
+ * <p>
+ * Collects the number of converted pages and the failures of individual pages,
+ * so a single broken page does not abort the whole run. The instance is filled
+ * concurrently by the batch workers, therefore all counters are thread-safe.
+ * </p>
+ */
+@Getter
+public class BatchMigrationSummary {
+
+    /**
+     * Number of pages listed in the wiki index.
+     */
+    private final int totalPages;
+
+    /**
+     * Number of successfully converted pages.
+     */
+    private final AtomicInteger convertedPages = new AtomicInteger();
+
+    /**
+     * Failed pages, title mapped to the error message.
+     */
+    private final Map<String, String> failedPages = new ConcurrentSkipListMap<>();
+
+    /**
+     * Number of pages skipped by an incremental run because they did not change.
+     */
+    private final AtomicInteger unchangedPages = new AtomicInteger();
+
+    /**
+     * Number of pages removed from the output because they were deleted from the wiki.
+     */
+    private final AtomicInteger deletedPages = new AtomicInteger();
+
+    /**
+     * Adaptive limit of the Redmine requests in flight at the end of the run, zero when the limit is disabled.
+     */
+    private int concurrencyLimit;
+
+    /**
+     * Highest adaptive limit reached during the run, zero when the limit is disabled.
+     */
+    private int peakConcurrencyLimit;
+
+    /**
+     * Wall-clock duration of the whole run, set once the run is finished.
+     */
+    private Duration elapsed = Duration.ZERO;
+
+
+    /**
+     * Creates a summary for a run over the given number of pages.
+     *
+     * @param totalPages number of pages listed in the wiki index
+     */
+    public BatchMigrationSummary(int totalPages) {
+        this.totalPages = totalPages;
+    }
+
+    /**
+     * Records a successfully converted page.
+     */
+    public void pageConverted() {
+        convertedPages.incrementAndGet();
+    }
+
+    /**
+     * Records a page skipped because it did not change since the previous run.
+     */
+    public void pageUnchanged() {
+        unchangedPages.incrementAndGet();
+    }
+
+    /**
+     * Records a page removed from the output because it was deleted from the wiki.
+     */
+    public void pageDeleted() {
+        deletedPages.incrementAndGet();
+    }
+
+    /**
+     * Records a page which could not be converted.
+     *
+     * @param title the title of the failed page
+     * @param e     the cause of the failure
+     */
+    public void pageFailed(String title, Exception e) {
+        failedPages.put(title, e.getMessage() + (e.getCause() != null ? " (" + e.getCause().getMessage() + ")" : ""));
+    }
+
+    /**
+     * Records the adaptive limit of the Redmine requests in flight.
+     *
+     * @param current the limit at the end of the run
+     * @param peak    the highest limit reached during the run
+     */
+    public void recordConcurrencyLimit(int current, int peak) {
+        this.concurrencyLimit = current;
+        this.peakConcurrencyLimit = peak;
+    }
+
+    /**
+     * Marks the run as finished.
+     *
+     * @param elapsed wall-clock duration of the run
+     */
+    public void finish(Duration elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Returns the number of successfully converted pages.
+     *
+     * @return converted page count
+     */
+    public int getConvertedPages() {
+        return convertedPages.get();
+    }
+
+    /**
+     * Returns the number of pages skipped because they did not change.
+     *
+     * @return unchanged page count
+     */
+    public int getUnchangedPages() {
+        return unchangedPages.get();
+    }
+
+    /**
+     * Returns the number of pages removed because they were deleted from the wiki.
+     *
+     * @return deleted page count
+     */
+    public int getDeletedPages() {
+        return deletedPages.get();
+    }
+
+    /**
+     * Returns failed pages as an unmodifiable view.
+     *
+     * @return failed page titles mapped to the error message
+     */
+    public Map<String, String> getFailedPages() {
+        return Collections.unmodifiableMap(failedPages);
+    }
+
+    /**
+     * Computes the throughput of the run.
+     *
+     * @return processed pages (converted and failed) per second
+     */
+    public double getPagesPerSecond() {
+        double seconds = elapsed.toMillis() / 1000.0;
+        if (seconds <= 0) {
+            return 0;
+        }
+        return (getConvertedPages() + failedPages.size()) / seconds;
+    }
+}
@@ -0,0 +1,29 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.util.Locale;
+
+/**
+ * Engine used to convert Textile to MediaWiki.
+ * <ul>
+ *   <li><b>PANDOC</b> – external Pandoc, either a process per page or the pandoc server pool ({@code pandoc.backend}).</li>
+ *   <li><b>NATIVE</b> – built-in Java Textile parser, no external binary is needed.</li>
+ * </ul>
+ */
+public enum ConversionEngine {
+    PANDOC,
+    NATIVE;
+
+    /**
+     * Reads the engine from JSON in any case, like {@code --engine native} on the command line.
+     *
+     * @param value the name of the engine
+     * @return the engine
+     * @throws IllegalArgumentException if there is no engine of that name
+     */
+    @JsonCreator
+    public static ConversionEngine fromValue(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
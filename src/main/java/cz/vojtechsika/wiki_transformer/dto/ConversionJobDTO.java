@@ -0,0 +1,120 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * DTO class representing the state and the result of a conversion job of the {@code serve} mode.
+ * <p>
+ * The job is updated by the worker running it and read by the HTTP threads, therefore all fields are volatile.
+ * </p>
+ */
+
+@Getter
+@Setter
+public class ConversionJobDTO {
+
+    /**
+     * Identifier of the job.
+     */
+    private final long id;
+
+    /**
+     * The submitted job.
+     */
+    private final ConversionJobRequestDTO request;
+
+    /**
+     * Current state of the job.
+     */
+    private volatile ConversionJobStatus status = ConversionJobStatus.QUEUED;
+
+    /**
+     * Time the job was accepted.
+     */
+    @JsonProperty("submitted_at")
+    private volatile Instant submittedAt = Instant.now();
+
+    /**
+     * Time the job was started, null while it is queued.
+     */
+    @JsonProperty("started_at")
+    private volatile Instant startedAt;
+
+    /**
+     * Time the job finished, null while it is queued or running.
+     */
+    @JsonProperty("finished_at")
+    private volatile Instant finishedAt;
+
+    /**
+     * Absolute output directory of the job.
+     */
+    @JsonProperty("output_dir")
+    private volatile String outputDir;
+
+    /**
+     * Number of pages of the job.
+     */
+    @JsonProperty("total_pages")
+    private volatile int totalPages;
+
+    /**
+     * Number of converted pages.
+     */
+    @JsonProperty("converted_pages")
+    private volatile int convertedPages;
+
+    /**
+     * Number of pages skipped by an incremental job because they did not change.
+     */
+    @JsonProperty("unchanged_pages")
+    private volatile int unchangedPages;
+
+    /**
+     * Number of pages removed by an incremental job because they were deleted from the wiki.
+     */
+    @JsonProperty("deleted_pages")
+    private volatile int deletedPages;
+
+    /**
+     * Failed pages, title or URL mapped to the error message.
+     */
+    @JsonProperty("failed_pages")
+    private volatile Map<String, String> failedPages = new TreeMap<>();
+
+    /**
+     * Error which prevented the whole job, null when the job could run.
+     */
+    private volatile String error;
+
+
+    /**
+     * Creates a queued job.
+     *
+     * @param id      identifier of the job
+     * @param request the submitted job
+     */
+    public ConversionJobDTO(long id, ConversionJobRequestDTO request) {
+        this.id = id;
+        this.request = request;
+    }
+
+    /**
+     * Copies the result of the finished run into the job.
+     *
+     * @param summary the summary of the run
+     */
+    public void applySummary(BatchMigrationSummary summary) {
+        this.totalPages = summary.getTotalPages();
+        this.convertedPages = summary.getConvertedPages();
+        this.unchangedPages = summary.getUnchangedPages();
+        this.deletedPages = summary.getDeletedPages();
+        this.failedPages = new TreeMap<>(summary.getFailedPages());
+    }
+}
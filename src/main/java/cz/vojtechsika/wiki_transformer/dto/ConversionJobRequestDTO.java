@@ -0,0 +1,77 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO class representing a conversion job submitted to the {@code serve} mode.
+ * <p>
+ * Exactly one kind of job has to be given: a single page ({@code url}), a list of pages ({@code urls})
+ * or a whole project wiki ({@code project} together with {@code wiki_root}).
+ * </p>
+ */
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConversionJobRequestDTO {
+
+    /**
+     * URL of a single Redmine wiki page.
+     */
+    private String url;
+
+    /**
+     * URLs of several Redmine wiki pages.
+     */
+    private List<String> urls = new ArrayList<>();
+
+    /**
+     * Identifier of the Redmine project whose whole wiki is migrated.
+     */
+    private String project;
+
+    /**
+     * Base URL of the Redmine server, used together with {@code project}.
+     */
+    @JsonProperty("wiki_root")
+    private String wikiRoot;
+
+    /**
+     * Output directory of the job, the {@code file.storage.path} directory when missing.
+     */
+    @JsonProperty("output_dir")
+    private String outputDir;
+
+    /**
+     * Engine used for the conversion.
+     */
+    private ConversionEngine engine = ConversionEngine.PANDOC;
+
+    /**
+     * Maximum number of pages of the job processed concurrently.
+     */
+    private int concurrency = 8;
+
+    /**
+     * Whether a project job migrates only new and changed pages.
+     */
+    private boolean incremental;
+
+    /**
+     * Format of the converted pages, separate files, a single MediaWiki XML dump or a single archive.
+     */
+    private OutputFormat format = OutputFormat.FILES;
+
+    /**
+     * Whether the MediaWiki XML dump is gzip-compressed.
+     */
+    private boolean gzip;
+}
@@ -0,0 +1,27 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+/**
+ * State of a conversion job submitted to the {@code serve} mode.
+ */
+public enum ConversionJobStatus {
+
+    /**
+     * The job waits in the queue.
+     */
+    QUEUED,
+
+    /**
+     * The job is being converted.
+     */
+    RUNNING,
+
+    /**
+     * The job finished, failures of individual pages are listed in the job.
+     */
+    COMPLETED,
+
+    /**
+     * The job could not be run at all (e.g. the wiki index or the output directory is not available).
+     */
+    FAILED
+}
@@ -0,0 +1,14 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+/**
+ * Way the images of a wiki page are found.
+ * <ul>
+ *   <li><b>ATTACHMENTS</b> – image references in the Textile are resolved against the page attachments
+ *       returned by the JSON request, no additional request is needed.</li>
+ *   <li><b>HTML</b> – the rendered HTML page is fetched and its {@code <img>} tags are collected.</li>
+ * </ul>
+ */
+public enum ImageDiscoveryMode {
+    ATTACHMENTS,
+    HTML
+}
@@ -0,0 +1,72 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+/**
+ * Format of the converted pages.
+ * <ul>
+ *   <li><b>FILES</b> – one {@code .mediawiki} file per page.</li>
+ *   <li><b>MEDIAWIKI_XML</b> – all pages of the run in a single MediaWiki XML dump for {@code importDump.php}
+ *       or {@code Special:Import}.</li>
+ *   <li><b>ZIP</b>, <b>TAR_GZ</b> – the files and images of the run streamed into a single archive
+ *       with the manifest of the run.</li>
+ * </ul>
+ */
+public enum OutputFormat {
+    FILES("files"),
+    MEDIAWIKI_XML("mediawiki-xml"),
+    ZIP("zip"),
+    TAR_GZ("tar-gz");
+
+    /**
+     * Name of the format on the command line and in JSON
+     */
+    private final String value;
+
+
+    /**
+     * Creates the format.
+     *
+     * @param theValue name of the format on the command line and in JSON
+     */
+    OutputFormat(String theValue) {
+        this.value = theValue;
+    }
+
+
+    /**
+     * Reads the format in any case, with a hyphen, an underscore or a dot ({@code mediawiki-xml}, {@code MEDIAWIKI_XML},
+     * {@code tar.gz}).
+     *
+     * @param value the name of the format
+     * @return the format
+     * @throws IllegalArgumentException if there is no format of that name
+     */
+    @JsonCreator
+    public static OutputFormat fromValue(String value) {
+        return valueOf(value.trim().replace('-', '_').replace('.', '_').toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns whether the files of the run are packed into a single archive.
+     *
+     * @return true for {@link #ZIP} and {@link #TAR_GZ}
+     */
+    public boolean isArchive() {
+        return this == ZIP || this == TAR_GZ;
+    }
+
+    /**
+     * Returns the name of the format on the command line and in JSON.
+     *
+     * @return the name, e.g. {@code mediawiki-xml}
+     */
+    @JsonValue
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -0,0 +1,32 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO class representing the JSON response of a {@code pandoc server} conversion request.
+ */
+
+@Getter
+@Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PandocServerResponseDTO {
+
+    /**
+     * Converted document.
+     */
+    private String output;
+
+    /**
+     * Whether the output is base64 encoded (binary output formats only).
+     */
+    private boolean base64;
+
+    /**
+     * Error message, present only when the conversion failed.
+     */
+    private String error;
+
+
+}
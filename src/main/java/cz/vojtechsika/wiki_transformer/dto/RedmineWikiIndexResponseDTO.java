@@ -0,0 +1,30 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO class representing a wrapper for the JSON response from the Redmine Wiki index API
+ * ({@code /projects/<id>/wiki/index.json}).
+ * <p>
+ * Each entry of the index carries only the page metadata (title, version, timestamps),
+ * the page content itself is not part of the index response.
+ * </p>
+ */
+
+@Getter
+@Setter
+public class RedmineWikiIndexResponseDTO {
+
+    /**
+     * All wiki pages of the project listed by the Redmine index.
+     */
+    @JsonProperty("wiki_pages")
+    private List<WikiPageDTO> wikiPages = new ArrayList<>();
+
+
+}
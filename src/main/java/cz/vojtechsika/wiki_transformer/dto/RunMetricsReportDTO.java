@@ -0,0 +1,50 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DTO class representing the performance report written at the end of a run.
+ * <p>
+ * Holds the latency, throughput and errors of every migration stage, so runs can be compared
+ * with each other and against latency objectives.
+ * </p>
+ */
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class RunMetricsReportDTO {
+
+    /**
+     * Start of the run in UTC.
+     */
+    @JsonProperty("started_at")
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'")
+    private LocalDateTime startedAt;
+
+    /**
+     * End of the run in UTC.
+     */
+    @JsonProperty("finished_at")
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'")
+    private LocalDateTime finishedAt;
+
+    /**
+     * Wall-clock time of the run in seconds.
+     */
+    @JsonProperty("elapsed_seconds")
+    private double elapsedSeconds;
+
+    /**
+     * Metrics of the stages by the stage name, stages without any operation are left out.
+     */
+    private Map<String, StageMetricsDTO> stages = new LinkedHashMap<>();
+}
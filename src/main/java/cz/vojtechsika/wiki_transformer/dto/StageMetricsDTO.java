@@ -0,0 +1,76 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DTO class representing the metrics of one migration stage in the {@link RunMetricsReportDTO}.
+ */
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class StageMetricsDTO {
+
+    /**
+     * Number of operations of the stage.
+     */
+    private long count;
+
+    /**
+     * Number of failed operations of the stage.
+     */
+    private long errors;
+
+    /**
+     * Total time spent in the stage in milliseconds, summed over all threads.
+     */
+    @JsonProperty("total_ms")
+    private double totalMillis;
+
+    /**
+     * Mean latency of an operation in milliseconds.
+     */
+    @JsonProperty("mean_ms")
+    private double meanMillis;
+
+    /**
+     * Median latency of an operation in milliseconds.
+     */
+    @JsonProperty("p50_ms")
+    private double p50Millis;
+
+    /**
+     * 95th percentile of the latency of an operation in milliseconds.
+     */
+    @JsonProperty("p95_ms")
+    private double p95Millis;
+
+    /**
+     * 99th percentile of the latency of an operation in milliseconds.
+     */
+    @JsonProperty("p99_ms")
+    private double p99Millis;
+
+    /**
+     * Maximum latency of an operation in milliseconds.
+     */
+    @JsonProperty("max_ms")
+    private double maxMillis;
+
+    /**
+     * Total bytes moved by the stage.
+     */
+    private long bytes;
+
+    /**
+     * Number of failed operations by the simple name of the exception.
+     */
+    @JsonProperty("errors_by_exception")
+    private Map<String, Long> errorsByException = new LinkedHashMap<>();
+}
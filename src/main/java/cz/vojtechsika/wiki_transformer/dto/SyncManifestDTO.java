@@ -0,0 +1,28 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * DTO class representing the manifest of a batch migration, stored as JSON in the output directory.
+ * <p>
+ * Maps the title of every migrated page to its version and its output files. An incremental run
+ * compares the manifest with the wiki index and converts only new and changed pages. The map is
+ * filled concurrently by the batch workers and kept sorted by title.
+ * </p>
+ */
+
+@Getter
+@Setter
+public class SyncManifestDTO {
+
+    /**
+     * Migrated pages by their title.
+     */
+    @JsonDeserialize(as = ConcurrentSkipListMap.class)
+    private Map<String, SyncManifestEntryDTO> pages = new ConcurrentSkipListMap<>();
+}
@@ -0,0 +1,63 @@
+package cz.vojtechsika.wiki_transformer.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO class representing a single migrated page in the {@link SyncManifestDTO}.
+ * <p>
+ * Holds the version of the page which was converted and everything that was written for it,
+ * so an unchanged page can be skipped and a deleted page can be removed from the output.
+ * </p>
+ */
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SyncManifestEntryDTO {
+
+    /**
+     * Version of the converted wiki page.
+     */
+    private int version;
+
+    /**
+     * Last update of the converted wiki page.
+     */
+    @JsonProperty("updated_on")
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'")
+    private LocalDateTime updatedOn;
+
+    /**
+     * Name of the converted MediaWiki file, relative to the output directory.
+     */
+    @JsonProperty("output_file")
+    private String outputFile;
+
+    /**
+     * Name of the image directory of the page, relative to the output directory.
+     */
+    @JsonProperty("image_directory")
+    private String imageDirectory;
+
+    /**
+     * File names of the images saved for the page.
+     */
+    private List<String> images = new ArrayList<>();
+
+    /**
+     * Name of the MediaWiki XML dump the page was written to, relative to the output directory,
+     * null when the page was written as a file.
+     */
+    @JsonProperty("dump_file")
+    private String dumpFile;
+}
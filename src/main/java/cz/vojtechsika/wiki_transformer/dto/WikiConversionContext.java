@@ -6,6 +6,8 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Context object carrying all necessary data for converting a Redmine wiki page.
@@ -15,6 +17,7 @@ import java.nio.file.Path;
  *   <li><b>filePath</b> – base directory path where output files will be written.</li>
  *   <li><b>wikiUrl</b> – original URL of the Redmine wiki page.</li>
  *   <li><b>outputDir</b> – string representation of the output directory path.</li>
+ *   <li><b>attachments</b> – attachments of the wiki page used to resolve image references.</li>
  * </ul>
  */
 
@@ -48,4 +51,9 @@ public class WikiConversionContext {
      * String form of the output directory
      */
     private String outputDir;
+
+    /**
+     * Attachments of the wiki page.
+     */
+    private List<AttachmentDTO> attachments = new ArrayList<>();
 }
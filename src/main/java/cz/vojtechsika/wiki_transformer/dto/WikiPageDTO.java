@@ -6,6 +6,8 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * DTO class representing the main structure to which JSON response data from Redmine Wiki is bound.
@@ -55,4 +57,10 @@ public class WikiPageDTO {
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'")
     private LocalDateTime updatedOn;
 
+    /**
+     * Attachments of the wiki page, only present when requested with {@code ?include=attachments}.
+     */
+    @JsonProperty("attachments")
+    private List<AttachmentDTO> attachments = new ArrayList<>();
+
 }
@@ -0,0 +1,345 @@
+package cz.vojtechsika.wiki_transformer.http;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limit of the Redmine requests in flight which adapts to the observed latency (additive increase,
+ * multiplicative decrease).
+ * <p>
+ * Page fetches and image downloads take a {@link Permit} before they send the request. The latencies
+ * of the finished requests are collected in windows of at least {@code limit} samples. When the p95 latency
+ * of a window stays within {@code http.adaptive-concurrency.latency-tolerance} times the lowest observed p95
+ * and the limit was actually used, the limit grows by one. When the p95 latency or the error rate
+ * ({@code http.adaptive-concurrency.max-error-rate}) rises, the limit is cut by a quarter.
+ * The limit always stays between {@code min-limit} and {@code max-limit}.
+ * </p>
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Minimum number of samples evaluated at once
+     */
+    private static final int MIN_WINDOW = 10;
+
+    /**
+     * Factor the limit is multiplied by when the server gets slower or fails
+     */
+    private static final double DECREASE_FACTOR = 0.75;
+
+    /**
+     * Weight of a higher p95 latency in the baseline, which lets the baseline follow a permanently slower server
+     */
+    private static final double BASELINE_DRIFT = 0.05;
+
+    /**
+     * Latency increase in nanoseconds which is always treated as noise, fast responses vary by more than the tolerance
+     */
+    private static final long LATENCY_SLACK_NANOS = 5_000_000;
+
+    /**
+     * Whether the limit is applied at all
+     */
+    private final boolean enabled;
+
+    /**
+     * Lowest allowed limit
+     */
+    private final int minLimit;
+
+    /**
+     * Highest allowed limit
+     */
+    private final int maxLimit;
+
+    /**
+     * Ratio of the window p95 latency to the baseline which is still considered flat
+     */
+    private final double latencyTolerance;
+
+    /**
+     * Highest error rate of a window which does not lower the limit
+     */
+    private final double maxErrorRate;
+
+    /**
+     * Guards the state below, a lock instead of monitors keeps waiting virtual threads unpinned
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when a permit is released or the limit grows
+     */
+    private final Condition permitAvailable = lock.newCondition();
+
+    /**
+     * Current limit
+     */
+    private int limit;
+
+    /**
+     * Highest limit reached so far
+     */
+    private int peakLimit;
+
+    /**
+     * Number of requests in flight
+     */
+    private int inFlight;
+
+    /**
+     * Highest number of requests in flight during the current window
+     */
+    private int windowMaxInFlight;
+
+    /**
+     * Latencies of the current window in nanoseconds
+     */
+    private long[] samples = new long[MIN_WINDOW];
+
+    /**
+     * Number of samples in the current window
+     */
+    private int sampleCount;
+
+    /**
+     * Number of failed requests in the current window
+     */
+    private int errorCount;
+
+    /**
+     * Lowest p95 latency observed so far in nanoseconds, zero before the first window
+     */
+    private long baselineNanos;
+
+
+    /**
+     * Creates the limiter from the {@code http.adaptive-concurrency.*} properties.
+     *
+     * @param theEnabled          whether the limit is applied at all
+     * @param theInitialLimit     limit at the start of the run
+     * @param theMinLimit         lowest allowed limit
+     * @param theMaxLimit         highest allowed limit
+     * @param theLatencyTolerance ratio of the p95 latency to the baseline which is still considered flat
+     * @param theMaxErrorRate     highest error rate of a window which does not lower the limit
+     */
+    @Autowired
+    public AdaptiveConcurrencyLimiter(@Value("${http.adaptive-concurrency.enabled:true}") boolean theEnabled,
+                                      @Value("${http.adaptive-concurrency.initial-limit:4}") int theInitialLimit,
+                                      @Value("${http.adaptive-concurrency.min-limit:1}") int theMinLimit,
+                                      @Value("${http.adaptive-concurrency.max-limit:32}") int theMaxLimit,
+                                      @Value("${http.adaptive-concurrency.latency-tolerance:2.0}") double theLatencyTolerance,
+                                      @Value("${http.adaptive-concurrency.max-error-rate:0.1}") double theMaxErrorRate) {
+        this.enabled = theEnabled;
+        this.minLimit = Math.max(1, theMinLimit);
+        this.maxLimit = Math.max(this.minLimit, theMaxLimit);
+        this.limit = Math.clamp(theInitialLimit, this.minLimit, this.maxLimit);
+        this.peakLimit = this.limit;
+        this.latencyTolerance = theLatencyTolerance;
+        this.maxErrorRate = theMaxErrorRate;
+    }
+
+
+    /**
+     * Creates a limiter which never blocks, used where no limit is configured.
+     *
+     * @return a disabled limiter
+     */
+    public static AdaptiveConcurrencyLimiter disabled() {
+        return new AdaptiveConcurrencyLimiter(false, Integer.MAX_VALUE, 1, Integer.MAX_VALUE, 2.0, 0.1);
+    }
+
+    /**
+     * Waits until a request may be sent.
+     *
+     * @return the permit, which has to be closed when the request is finished
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public Permit acquire() throws InterruptedIOException {
+        if (!enabled) {
+            return new Permit();
+        }
+        lock.lock();
+        try {
+            while (inFlight >= limit) {
+                permitAvailable.await();
+            }
+            inFlight++;
+            windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+            return new Permit();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free Redmine connection");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return number of requests which may be in flight
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the highest limit reached so far.
+     *
+     * @return the peak limit
+     */
+    public int getPeakLimit() {
+        lock.lock();
+        try {
+            return peakLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the limit is applied.
+     *
+     * @return true when the limiter is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Private helper methods
+
+    /**
+     * Records a finished request and adjusts the limit when the window is complete.
+     *
+     * @param latencyNanos latency of the request
+     * @param failed       whether the request failed
+     */
+    private void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (failed) {
+                errorCount++;
+            }
+            if (sampleCount == samples.length) {
+                samples = Arrays.copyOf(samples, samples.length * 2);
+            }
+            samples[sampleCount++] = latencyNanos;
+            if (sampleCount >= Math.max(MIN_WINDOW, limit)) {
+                adjustLimit();
+            }
+            permitAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compares the window with the baseline, changes the limit and starts a new window. Called under the lock.
+     */
+    private void adjustLimit() {
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        long p95 = sorted[Math.max(0, (int) Math.ceil(sorted.length * 0.95) - 1)];
+        double errorRate = (double) errorCount / sampleCount;
+
+        if (baselineNanos == 0 || p95 < baselineNanos) {
+            baselineNanos = p95;
+        }
+
+        if (errorRate > maxErrorRate || p95 > Math.max(baselineNanos * latencyTolerance, baselineNanos + LATENCY_SLACK_NANOS)) {
+            limit = Math.max(minLimit, (int) (limit * DECREASE_FACTOR));
+        } else if (windowMaxInFlight >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+            peakLimit = Math.max(peakLimit, limit);
+        }
+        baselineNanos += (long) (Math.max(0, p95 - baselineNanos) * BASELINE_DRIFT);
+
+        sampleCount = 0;
+        errorCount = 0;
+        windowMaxInFlight = inFlight;
+    }
+
+
+    /**
+     * Permission to send one request. The latency is measured from the creation of the permit until the response
+     * arrived, or until the permit is closed when {@link #responseReceived()} was not called.
+     */
+    public class Permit implements AutoCloseable {
+
+        /**
+         * Time the permit was granted in nanoseconds
+         */
+        private final long start = System.nanoTime();
+
+        /**
+         * Latency of the request, or a negative value while the response did not arrive
+         */
+        private long latencyNanos = -1;
+
+        /**
+         * Whether the request failed in a way that indicates an overloaded server
+         */
+        private boolean failed;
+
+        /**
+         * Whether the permit was already returned
+         */
+        private boolean closed;
+
+
+        /**
+         * Creates the permit, only the limiter grants permits.
+         */
+        private Permit() {
+        }
+
+        /**
+         * Marks the arrival of the response headers, so the transfer of a large body does not count as latency.
+         */
+        public void responseReceived() {
+            if (latencyNanos < 0) {
+                latencyNanos = System.nanoTime() - start;
+            }
+        }
+
+        /**
+         * Marks the request as failed. Only server errors, {@code 429 Too Many Requests}, timeouts and connection
+         * errors count, other client errors say nothing about the load of the server.
+         *
+         * @param cause the failure of the request
+         */
+        public void failed(Exception cause) {
+            if (!(cause instanceof HttpClientErrorException) || cause instanceof HttpClientErrorException.TooManyRequests) {
+                failed = true;
+            }
+        }
+
+        /**
+         * Returns the permit and records the outcome of the request.
+         */
+        @Override
+        public void close() {
+            if (closed || !enabled) {
+                return;
+            }
+            closed = true;
+            responseReceived();
+            release(latencyNanos, failed);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package cz.vojtechsika.wiki_transformer.http;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Interceptor asking the server for a compressed response and decoding it.
+ * <p>
+ * The JDK {@code HttpClient} does not decompress responses itself. The interceptor sends
+ * {@code Accept-Encoding: gzip, deflate} and wraps a compressed body in a decoding stream, so the callers
+ * (and the response cache) always see the plain body. The {@code Content-Encoding} and {@code Content-Length}
+ * headers of a decoded response are removed, because they describe the compressed body.
+ * </p>
+ */
+public class CompressionInterceptor implements ClientHttpRequestInterceptor {
+
+    /**
+     * Adds {@code Accept-Encoding} to the request and decodes a compressed response.
+     *
+     * @param request   the request
+     * @param body      the body of the request
+     * @param execution the rest of the interceptor chain
+     * @return the response with a decoded body
+     * @throws IOException if the request fails
+     */
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (!request.getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+            request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        }
+
+        ClientHttpResponse response = execution.execute(request, body);
+        String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (encoding == null) {
+            return response;
+        }
+        encoding = encoding.trim().toLowerCase();
+        if (!encoding.equals("gzip") && !encoding.equals("x-gzip") && !encoding.equals("deflate")) {
+            return response;
+        }
+        return new DecodedResponse(response, encoding);
+    }
+
+
+    /**
+     * Response whose body is decoded while it is read.
+     */
+    private static class DecodedResponse implements ClientHttpResponse {
+
+        /**
+         * The compressed response of the server
+         */
+        private final ClientHttpResponse response;
+
+        /**
+         * The content encoding of the response
+         */
+        private final String encoding;
+
+        /**
+         * The headers without the headers of the compressed body
+         */
+        private final HttpHeaders headers;
+
+        /**
+         * The decoding body, or null
+         */
+        private InputStream body;
+
+
+        /**
+         * Wraps the compressed response.
+         *
+         * @param theResponse the compressed response of the server
+         * @param theEncoding the content encoding of the response
+         */
+        private DecodedResponse(ClientHttpResponse theResponse, String theEncoding) {
+            this.response = theResponse;
+            this.encoding = theEncoding;
+            this.headers = new HttpHeaders();
+            this.headers.putAll(theResponse.getHeaders());
+            this.headers.remove(HttpHeaders.CONTENT_ENCODING);
+            this.headers.remove(HttpHeaders.CONTENT_LENGTH);
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream compressed = response.getBody();
+                body = encoding.equals("deflate") ? new InflaterInputStream(compressed) : new GZIPInputStream(compressed);
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package cz.vojtechsika.wiki_transformer.http;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Optional;
+
+/**
+ * Interceptor of the {@code RestClient} turning repeated GET requests into conditional requests.
+ * <p>
+ * When a response of the URL is cached in the {@link HttpValidatorCache}, the request is sent with
+ * {@code If-None-Match} and {@code If-Modified-Since}. A {@code 304 Not Modified} answer is replaced by
+ * the cached response, so the callers always see a {@code 200} with the full body. A successful response
+ * with a validator is written to the cache while the caller reads it, the body is never buffered in memory.
+ * </p>
+ */
+public class ConditionalRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    /**
+     * Maximum number of unread bytes which are still read on close to complete a cache entry
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    /**
+     * The cache of responses and their validators
+     */
+    private final HttpValidatorCache cache;
+
+
+    /**
+     * Creates the interceptor storing the responses in the given cache.
+     *
+     * @param theCache the cache of responses and their validators
+     */
+    public ConditionalRequestInterceptor(HttpValidatorCache theCache) {
+        this.cache = theCache;
+    }
+
+
+    /**
+     * Sends the request as a conditional request when the URL is cached and serves or refreshes the cached response.
+     *
+     * @param request   the request
+     * @param body      the body of the request
+     * @param execution the rest of the interceptor chain
+     * @return the response of the server, or the cached response when the server answered {@code 304}
+     * @throws IOException if the request fails
+     */
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (request.getMethod() != HttpMethod.GET) {
+            return execution.execute(request, body);
+        }
+
+        String url = request.getURI().toString();
+        Optional<HttpValidatorCache.Entry> cached = cache.get(url);
+        HttpHeaders headers = request.getHeaders();
+        cached.ifPresent(entry -> {
+            if (entry.etag() != null && !headers.containsKey(HttpHeaders.IF_NONE_MATCH)) {
+                headers.set(HttpHeaders.IF_NONE_MATCH, entry.etag());
+            }
+            if (entry.lastModified() != null && !headers.containsKey(HttpHeaders.IF_MODIFIED_SINCE)) {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified());
+            }
+        });
+
+        ClientHttpResponse response = execution.execute(request, body);
+
+        if (response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value() && cached.isPresent()) {
+            response.close();
+            cache.touch(cached.get());
+            return new CachedResponse(cached.get());
+        }
+        if (response.getStatusCode().value() == HttpStatus.OK.value() && isCacheable(response.getHeaders())) {
+            return new CachingResponse(response, cache.begin(url, response.getHeaders()));
+        }
+        return response;
+    }
+
+    // Private helper methods
+
+    /**
+     * Returns whether the response carries a validator and does not forbid storing.
+     *
+     * @param headers the headers of the response
+     * @return true when the response should be cached
+     */
+    private static boolean isCacheable(HttpHeaders headers) {
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl != null && cacheControl.contains("no-store")) {
+            return false;
+        }
+        return headers.getETag() != null || headers.getFirst(HttpHeaders.LAST_MODIFIED) != null;
+    }
+
+
+    /**
+     * Response served from the cache after the server answered {@code 304 Not Modified}.
+     */
+    private static class CachedResponse implements ClientHttpResponse {
+
+        /**
+         * The cached entry
+         */
+        private final HttpValidatorCache.Entry entry;
+
+        /**
+         * The opened body, or null
+         */
+        private InputStream body;
+
+
+        /**
+         * Creates the response of the cached entry.
+         *
+         * @param theEntry the cached entry
+         */
+        private CachedResponse(HttpValidatorCache.Entry theEntry) {
+            this.entry = theEntry;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatus.OK;
+        }
+
+        @Override
+        public String getStatusText() {
+            return HttpStatus.OK.getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentLength(entry.size());
+            if (entry.contentType() != null) {
+                headers.set(HttpHeaders.CONTENT_TYPE, entry.contentType());
+            }
+            if (entry.etag() != null) {
+                headers.setETag(entry.etag());
+            }
+            if (entry.lastModified() != null) {
+                headers.set(HttpHeaders.LAST_MODIFIED, entry.lastModified());
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = Files.newInputStream(entry.body());
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (body != null) {
+                    body.close();
+                }
+            } catch (IOException e) {
+                // Nothing to release
+            }
+        }
+    }
+
+
+    /**
+     * Response of the server whose body is copied into a new cache entry while it is read.
+     * The entry is committed when the body was read completely and discarded otherwise.
+     */
+    private static class CachingResponse implements ClientHttpResponse {
+
+        /**
+         * The response of the server
+         */
+        private final ClientHttpResponse response;
+
+        /**
+         * The writer of the new cache entry
+         */
+        private final HttpValidatorCache.Writer writer;
+
+        /**
+         * The body copying the data to the cache, or null
+         */
+        private TeeInputStream body;
+
+
+        /**
+         * Wraps the response of the server.
+         *
+         * @param theResponse the response of the server
+         * @param theWriter   the writer of the new cache entry
+         */
+        private CachingResponse(ClientHttpResponse theResponse, HttpValidatorCache.Writer theWriter) {
+            this.response = theResponse;
+            this.writer = theWriter;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new TeeInputStream(response.getBody(), writer);
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (body != null) {
+                    body.close();
+                } else {
+                    writer.discard();
+                }
+            } catch (IOException e) {
+                writer.discard();
+            }
+            response.close();
+        }
+    }
+
+
+    /**
+     * Stream passing the body to the caller and writing it to the cache entry at the same time.
+     */
+    private static class TeeInputStream extends FilterInputStream {
+
+        /**
+         * The writer of the new cache entry
+         */
+        private final HttpValidatorCache.Writer writer;
+
+        /**
+         * Whether the entry was committed or discarded
+         */
+        private boolean finished;
+
+
+        /**
+         * Wraps the body of the server response.
+         *
+         * @param theInput  the body of the server response
+         * @param theWriter the writer of the new cache entry
+         */
+        private TeeInputStream(InputStream theInput, HttpValidatorCache.Writer theWriter) {
+            super(theInput);
+            this.writer = theWriter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read;
+            try {
+                read = in.read(buffer, offset, length);
+            } catch (IOException e) {
+                finish(false);
+                throw e;
+            }
+            if (read < 0) {
+                finish(true);
+            } else if (!finished) {
+                try {
+                    writer.write(buffer, offset, read);
+                } catch (IOException e) {
+                    // A failing cache must not fail the request
+                    finish(false);
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped data would be missing in the cache entry
+            finish(false);
+            return in.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Reads a small unread remainder of the body (for example behind a JSON document) to complete
+         * the entry, a larger remainder means the caller aborted the download and the entry is discarded.
+         *
+         * @throws IOException if the body cannot be closed
+         */
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                byte[] buffer = new byte[8192];
+                int drained = 0;
+                try {
+                    while (!finished && drained <= MAX_DRAIN_BYTES) {
+                        int read = read(buffer, 0, buffer.length);
+                        if (read > 0) {
+                            drained += read;
+                        }
+                    }
+                } catch (IOException e) {
+                    // The entry is discarded below
+                }
+                finish(false);
+            }
+            super.close();
+        }
+
+        /**
+         * Commits or discards the cache entry, only the first call has an effect.
+         *
+         * @param complete true when the whole body was read
+         */
+        private void finish(boolean complete) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (complete) {
+                try {
+                    writer.commit();
+                } catch (IOException e) {
+                    writer.discard();
+                }
+            } else {
+                writer.discard();
+            }
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package cz.vojtechsika.wiki_transformer.http;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Persistent on-disk cache of HTTP responses together with their validators ({@code ETag}, {@code Last-Modified}).
+ * <p>
+ * Every cached URL is stored as two files named by the SHA-256 of the URL: {@code <key>.meta} with the validators
+ * and {@code <key>.body} with the response body. Both are written to temporary files first and moved into place,
+ * so a crashed run never leaves a truncated entry behind. When the total size of the bodies exceeds
+ * {@code http.cache.max-size}, the least recently used entries are deleted.
+ * </p>
+ */
+@Component
+public class HttpValidatorCache {
+
+    /**
+     * Fraction of the maximum size the cache is trimmed to by an eviction
+     */
+    private static final double EVICTION_TARGET = 0.9;
+
+    /**
+     * Directory of the cache files
+     */
+    private final Path directory;
+
+    /**
+     * Maximum total size of the cached bodies in bytes
+     */
+    private final long maxSizeBytes;
+
+    /**
+     * Sizes of the cached bodies by their key
+     */
+    private final Map<String, Long> sizesByKey = new ConcurrentHashMap<>();
+
+    /**
+     * Total size of the cached bodies in bytes
+     */
+    private final AtomicLong totalSize = new AtomicLong();
+
+    /**
+     * Whether the cache directory was already scanned
+     */
+    private volatile boolean loaded;
+
+
+    /**
+     * Creates the cache from the {@code http.cache.*} properties.
+     *
+     * @param theDirectory directory of the cache files
+     * @param theMaxSize   maximum total size of the cached bodies
+     */
+    public HttpValidatorCache(@Value("${http.cache.directory:${user.home}/.cache/wiki-transformer/http}") Path theDirectory,
+                              @Value("${http.cache.max-size:1GB}") DataSize theMaxSize) {
+        this.directory = theDirectory;
+        this.maxSizeBytes = theMaxSize.toBytes();
+    }
+
+
+    /**
+     * Returns the cached entry of the URL, when its body is complete.
+     *
+     * @param url the requested URL
+     * @return the entry, or empty when the URL is not cached
+     * @throws IOException if the cache directory cannot be read
+     */
+    public Optional<Entry> get(String url) throws IOException {
+        load();
+        String key = keyOf(url);
+        Path metaFile = directory.resolve(key + ".meta");
+        Path bodyFile = directory.resolve(key + ".body");
+        if (!sizesByKey.containsKey(key) || !Files.exists(metaFile)) {
+            return Optional.empty();
+        }
+
+        Properties meta = new Properties();
+        try (InputStream input = Files.newInputStream(metaFile)) {
+            meta.load(input);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+
+        // Entries of another URL with the same key or with a body of a different size are ignored
+        long size = Long.parseLong(meta.getProperty("size", "-1"));
+        if (!url.equals(meta.getProperty("url")) || !Files.exists(bodyFile) || Files.size(bodyFile) != size) {
+            return Optional.empty();
+        }
+        return Optional.of(new Entry(meta.getProperty("etag"), meta.getProperty("last-modified"),
+                meta.getProperty("content-type"), size, bodyFile));
+    }
+
+    /**
+     * Marks the entry as recently used, so it is evicted last.
+     *
+     * @param entry the entry which was served from the cache
+     */
+    public void touch(Entry entry) {
+        try {
+            Files.setLastModifiedTime(entry.body(), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Only the eviction order is affected
+        }
+    }
+
+    /**
+     * Starts writing a new entry of the URL, the entry replaces the cached one once it is committed.
+     *
+     * @param url     the requested URL
+     * @param headers the headers of the response containing the validators
+     * @return the writer of the entry body
+     * @throws IOException if the temporary files cannot be created
+     */
+    public Writer begin(String url, HttpHeaders headers) throws IOException {
+        load();
+        Files.createDirectories(directory);
+        return new Writer(url, headers, directory.resolve(keyOf(url) + "." + UUID.randomUUID() + ".tmp"));
+    }
+
+    // Private helper methods
+
+    /**
+     * Scans the cache directory once to find the sizes of the cached bodies.
+     *
+     * @throws IOException if the directory cannot be listed
+     */
+    private synchronized void load() throws IOException {
+        if (loaded) {
+            return;
+        }
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".tmp")) {
+                        // Left behind by an interrupted run
+                        Files.deleteIfExists(file);
+                    } else if (name.endsWith(".body")) {
+                        long size = Files.size(file);
+                        sizesByKey.put(name.substring(0, name.length() - ".body".length()), size);
+                        totalSize.addAndGet(size);
+                    }
+                }
+            }
+        }
+        loaded = true;
+    }
+
+    /**
+     * Stores a completely written entry and evicts old entries when the cache is too large.
+     *
+     * @param key      the key of the entry
+     * @param meta     the validators of the entry
+     * @param tempBody the temporary file with the complete body
+     * @param size     the size of the body
+     * @throws IOException if the entry cannot be moved into place
+     */
+    private void store(String key, Properties meta, Path tempBody, long size) throws IOException {
+        Path tempMeta = directory.resolve(key + "." + UUID.randomUUID() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(tempMeta)) {
+            meta.store(output, null);
+        }
+        move(tempBody, directory.resolve(key + ".body"));
+        move(tempMeta, directory.resolve(key + ".meta"));
+
+        Long previous = sizesByKey.put(key, size);
+        totalSize.addAndGet(size - (previous != null ? previous : 0));
+        if (totalSize.get() > maxSizeBytes) {
+            evict(key);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is below the eviction target.
+     *
+     * @param storedKey the key of the entry which was just stored, it is never evicted
+     */
+    private synchronized void evict(String storedKey) {
+        long target = (long) (maxSizeBytes * EVICTION_TARGET);
+        if (totalSize.get() <= target) {
+            return;
+        }
+
+        List<Path> bodies = new ArrayList<>();
+        for (String key : sizesByKey.keySet()) {
+            if (key.equals(storedKey)) {
+                continue;
+            }
+            bodies.add(directory.resolve(key + ".body"));
+        }
+        bodies.sort(Comparator.comparing(HttpValidatorCache::lastModified));
+
+        for (Path body : bodies) {
+            if (totalSize.get() <= target) {
+                break;
+            }
+            String name = body.getFileName().toString();
+            String key = name.substring(0, name.length() - ".body".length());
+            try {
+                Files.deleteIfExists(directory.resolve(key + ".meta"));
+                Files.deleteIfExists(body);
+            } catch (IOException e) {
+                continue;
+            }
+            Long size = sizesByKey.remove(key);
+            if (size != null) {
+                totalSize.addAndGet(-size);
+            }
+        }
+    }
+
+    /**
+     * Returns the last modification time of the file, files which cannot be read are treated as the oldest.
+     *
+     * @param file the file
+     * @return the last modification time
+     */
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Moves the file into place, atomically when the file system supports it.
+     *
+     * @param source the temporary file
+     * @param target the final file
+     * @throws IOException if the file cannot be moved
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Returns the cache key of the URL, the hex encoded SHA-256 of the URL.
+     *
+     * @param url the URL
+     * @return the key
+     */
+    private static String keyOf(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+
+    /**
+     * A cached response.
+     *
+     * @param etag         the entity tag of the response, or null
+     * @param lastModified the {@code Last-Modified} header of the response, or null
+     * @param contentType  the content type of the response, or null
+     * @param size         the size of the body in bytes
+     * @param body         the file with the body
+     */
+    public record Entry(String etag, String lastModified, String contentType, long size, Path body) {
+    }
+
+
+    /**
+     * Writer of a new cache entry, the body is written while the response is consumed.
+     * The entry is stored by {@link #commit()}, an entry which is not committed is discarded on {@link #discard()}.
+     */
+    public class Writer {
+
+        /**
+         * The validators of the entry
+         */
+        private final Properties meta = new Properties();
+
+        /**
+         * The key of the entry
+         */
+        private final String key;
+
+        /**
+         * The temporary body file
+         */
+        private final Path tempBody;
+
+        /**
+         * The stream writing the temporary body file
+         */
+        private final OutputStream output;
+
+        /**
+         * Number of written bytes
+         */
+        private long size;
+
+
+        /**
+         * Creates the writer and its temporary body file.
+         *
+         * @param url      the requested URL
+         * @param headers  the headers of the response
+         * @param tempBody the temporary body file
+         * @throws IOException if the temporary file cannot be created
+         */
+        private Writer(String url, HttpHeaders headers, Path tempBody) throws IOException {
+            this.key = keyOf(url);
+            this.tempBody = tempBody;
+            this.output = Files.newOutputStream(tempBody);
+            meta.setProperty("url", url);
+            putIfPresent("etag", headers.getETag());
+            putIfPresent("last-modified", headers.getFirst(HttpHeaders.LAST_MODIFIED));
+            putIfPresent("content-type", headers.getFirst(HttpHeaders.CONTENT_TYPE));
+        }
+
+        /**
+         * Appends a part of the body.
+         *
+         * @param buffer the data
+         * @param offset start of the data in the buffer
+         * @param length number of bytes
+         * @throws IOException if the data cannot be written
+         */
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            output.write(buffer, offset, length);
+            size += length;
+        }
+
+        /**
+         * Stores the entry, the whole body has to be written.
+         *
+         * @throws IOException if the entry cannot be stored
+         */
+        public void commit() throws IOException {
+            output.close();
+            meta.setProperty("size", String.valueOf(size));
+            store(key, meta, tempBody, size);
+        }
+
+        /**
+         * Drops the entry.
+         */
+        public void discard() {
+            try {
+                output.close();
+                Files.deleteIfExists(tempBody);
+            } catch (IOException e) {
+                // The temporary file is removed on the next start
+            }
+        }
+
+        /**
+         * Sets the property when the value is present.
+         *
+         * @param name  the property name
+         * @param value the value, or null
+         */
+        private void putIfPresent(String name, String value) {
+            if (value != null) {
+                meta.setProperty(name, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package cz.vojtechsika.wiki_transformer.http;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Interceptor limiting the number of requests in flight to a single host.
+ * <p>
+ * A permit of the host is taken before the request is sent and returned when the response is closed,
+ * so a streamed download holds its permit until the body is read. This bounds the number of connections
+ * (or HTTP/2 streams) opened to one server by all fetch paths together.
+ * </p>
+ */
+public class PerHostLimitInterceptor implements ClientHttpRequestInterceptor {
+
+    /**
+     * Maximum number of requests in flight to a single host
+     */
+    private final int maxPerHost;
+
+    /**
+     * Permits by host
+     */
+    private final Map<String, Semaphore> permitsByHost = new ConcurrentHashMap<>();
+
+
+    /**
+     * Creates the interceptor.
+     *
+     * @param theMaxPerHost maximum number of requests in flight to a single host
+     */
+    public PerHostLimitInterceptor(int theMaxPerHost) {
+        this.maxPerHost = theMaxPerHost;
+    }
+
+
+    /**
+     * Waits for a permit of the host, sends the request and releases the permit once the response is closed.
+     *
+     * @param request   the request
+     * @param body      the body of the request
+     * @param execution the rest of the interceptor chain
+     * @return the response releasing the permit on close
+     * @throws IOException if the request fails or the waiting thread is interrupted
+     */
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        String host = request.getURI().getHost() != null ? request.getURI().getHost() : "";
+        Semaphore permits = permitsByHost.computeIfAbsent(host, key -> new Semaphore(maxPerHost));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection to " + host, e);
+        }
+
+        try {
+            return new PermitResponse(execution.execute(request, body), permits);
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Response returning the permit of its host when it is closed.
+     */
+    private static class PermitResponse implements ClientHttpResponse {
+
+        /**
+         * The response of the server
+         */
+        private final ClientHttpResponse response;
+
+        /**
+         * The permits of the host
+         */
+        private final Semaphore permits;
+
+        /**
+         * Whether the permit was already returned
+         */
+        private final AtomicBoolean released = new AtomicBoolean();
+
+
+        /**
+         * Wraps the response of the server.
+         *
+         * @param theResponse the response of the server
+         * @param thePermits  the permits of the host
+         */
+        private PermitResponse(ClientHttpResponse theResponse, Semaphore thePermits) {
+            this.response = theResponse;
+            this.permits = thePermits;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
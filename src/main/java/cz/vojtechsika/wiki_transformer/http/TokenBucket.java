@@ -0,0 +1,97 @@
+package cz.vojtechsika.wiki_transformer.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Token bucket limiting the rate of an operation.
+ * <p>
+ * The bucket is refilled continuously with {@code rate} tokens per second up to its capacity, which allows
+ * short bursts. Taking tokens which are not available blocks the calling thread until they are refilled.
+ * A bucket with a rate of zero or less does not limit anything.
+ * </p>
+ */
+public class TokenBucket {
+
+    /**
+     * Tokens added per second
+     */
+    private final double rate;
+
+    /**
+     * Maximum number of stored tokens
+     */
+    private final double capacity;
+
+    /**
+     * Currently stored tokens, negative when tokens were borrowed by waiting threads
+     */
+    private double tokens;
+
+    /**
+     * Time of the last refill in nanoseconds
+     */
+    private long lastRefill;
+
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param theRate     tokens added per second, zero or less for no limit
+     * @param theCapacity maximum number of stored tokens (the burst size)
+     */
+    public TokenBucket(double theRate, double theCapacity) {
+        this.rate = theRate;
+        this.capacity = Math.max(1, theCapacity);
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+
+    /**
+     * Returns whether the bucket limits anything.
+     *
+     * @return true when the rate is positive
+     */
+    public boolean isLimited() {
+        return rate > 0;
+    }
+
+    /**
+     * Takes the given number of tokens, waiting until they are available.
+     * Requests are served in order, a large request borrows tokens and delays the following ones.
+     *
+     * @param count number of tokens to take
+     * @throws IOException if the thread is interrupted while waiting
+     */
+    public void acquire(long count) throws IOException {
+        if (!isLimited() || count <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            tokens -= count;
+            waitNanos = tokens < 0 ? (long) (-tokens / rate * 1_000_000_000L) : 0;
+        }
+        if (waitNanos > 0) {
+            try {
+                Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+            }
+        }
+    }
+
+    // Private helper methods
+
+    /**
+     * Adds the tokens accumulated since the last refill.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) / 1_000_000_000.0 * rate);
+        lastRefill = now;
+    }
+}
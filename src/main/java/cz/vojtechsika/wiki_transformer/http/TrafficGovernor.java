@@ -0,0 +1,287 @@
+package cz.vojtechsika.wiki_transformer.http;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Governor of all outbound requests to Redmine, shared by every fetch path of the {@code RestClient}.
+ * <p>
+ * The number of requests is limited by a token bucket ({@code http.rate.requests-per-second}) and the
+ * downloaded bytes by a second bucket ({@code http.rate.bytes-per-second}), which is drained while the
+ * response body is read. GET requests failing with a connection error, {@code 429} or a {@code 5xx}
+ * status are retried up to {@code http.retry.max-attempts} times with exponential backoff and full jitter.
+ * A {@code Retry-After} header of the server replaces the computed backoff; a request asked to wait longer
+ * than {@code http.retry.max-backoff} is not retried and the response is returned as it is.
+ * </p>
+ */
+@Component
+public class TrafficGovernor implements ClientHttpRequestInterceptor {
+
+    /**
+     * Size of the chunks in which a large read takes tokens of the byte bucket
+     */
+    private static final int BYTE_CHUNK = 64 * 1024;
+
+    /**
+     * Limit of the request rate
+     */
+    private final TokenBucket requestBucket;
+
+    /**
+     * Limit of the download rate
+     */
+    private final TokenBucket byteBucket;
+
+    /**
+     * Maximum number of attempts of a single request
+     */
+    private final int maxAttempts;
+
+    /**
+     * Backoff before the first retry
+     */
+    private final Duration initialBackoff;
+
+    /**
+     * Maximum backoff between two attempts
+     */
+    private final Duration maxBackoff;
+
+
+    /**
+     * Creates the governor from the {@code http.rate.*} and {@code http.retry.*} properties.
+     *
+     * @param theRequestsPerSecond maximum request rate, zero for no limit
+     * @param theBytesPerSecond    maximum download rate, zero for no limit
+     * @param theMaxAttempts       maximum number of attempts of a single request
+     * @param theInitialBackoff    backoff before the first retry
+     * @param theMaxBackoff        maximum backoff between two attempts
+     */
+    public TrafficGovernor(@Value("${http.rate.requests-per-second:20}") double theRequestsPerSecond,
+                           @Value("${http.rate.bytes-per-second:0}") DataSize theBytesPerSecond,
+                           @Value("${http.retry.max-attempts:4}") int theMaxAttempts,
+                           @Value("${http.retry.initial-backoff:500ms}") Duration theInitialBackoff,
+                           @Value("${http.retry.max-backoff:30s}") Duration theMaxBackoff) {
+        this.requestBucket = new TokenBucket(theRequestsPerSecond, Math.max(1, theRequestsPerSecond));
+        long bytesPerSecond = theBytesPerSecond.toBytes();
+        this.byteBucket = new TokenBucket(bytesPerSecond, Math.max(BYTE_CHUNK, bytesPerSecond));
+        this.maxAttempts = Math.max(1, theMaxAttempts);
+        this.initialBackoff = theInitialBackoff;
+        this.maxBackoff = theMaxBackoff;
+    }
+
+
+    /**
+     * Sends the request within the rate limit and retries it on transient failures.
+     *
+     * @param request   the request
+     * @param body      the body of the request
+     * @param execution the rest of the interceptor chain
+     * @return the first response which is not retried, or a transient failure whose {@code Retry-After}
+     *         exceeds the maximum backoff
+     * @throws IOException if the last attempt fails with a connection error or the thread is interrupted
+     */
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        boolean retryable = request.getMethod() == HttpMethod.GET || request.getMethod() == HttpMethod.HEAD;
+
+        for (int attempt = 1; ; attempt++) {
+            boolean lastAttempt = !retryable || attempt >= maxAttempts;
+            requestBucket.acquire(1);
+
+            ClientHttpResponse response;
+            try {
+                response = execution.execute(request, body);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                if (lastAttempt) {
+                    throw e;
+                }
+                Duration delay = backoff(attempt);
+                System.out.println("Request to " + request.getURI() + " failed (" + e.getMessage() + "), retrying in " + delay.toMillis() + " ms");
+                sleep(delay);
+                continue;
+            }
+
+            HttpStatusCode status = response.getStatusCode();
+            if (lastAttempt || !isTransient(status)) {
+                return byteBucket.isLimited() ? new ThrottledResponse(response, byteBucket) : response;
+            }
+
+            Duration delay = retryAfter(response.getHeaders());
+            if (delay == null) {
+                delay = backoff(attempt);
+            } else if (delay.compareTo(maxBackoff) > 0) {
+                // Retrying early would only be refused again, the caller gets the response instead of a blocked worker
+                System.out.println("Request to " + request.getURI() + " answered HTTP " + status.value() + " with Retry-After of "
+                        + delay.toSeconds() + " s, longer than the maximum backoff, not retrying");
+                return byteBucket.isLimited() ? new ThrottledResponse(response, byteBucket) : response;
+            }
+            response.close();
+            System.out.println("Request to " + request.getURI() + " answered HTTP " + status.value() + ", retrying in " + delay.toMillis() + " ms");
+            sleep(delay);
+        }
+    }
+
+    // Private helper methods
+
+    /**
+     * Returns whether the status is worth another attempt.
+     *
+     * @param status the status of the response
+     * @return true for {@code 429 Too Many Requests} and server errors
+     */
+    private static boolean isTransient(HttpStatusCode status) {
+        return status.value() == 429 || status.is5xxServerError();
+    }
+
+    /**
+     * Computes the exponential backoff with full jitter: a random delay up to {@code initial * 2^(attempt - 1)},
+     * capped by the maximum backoff.
+     *
+     * @param attempt the number of the failed attempt, starting with 1
+     * @return the delay before the next attempt
+     */
+    private Duration backoff(int attempt) {
+        long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    /**
+     * Reads the {@code Retry-After} header, given either in seconds or as an HTTP date.
+     *
+     * @param headers the headers of the response
+     * @return the requested delay, or null when the header is missing or invalid
+     */
+    private static Duration retryAfter(HttpHeaders headers) {
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                Duration delay = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException ex) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Waits before the next attempt.
+     *
+     * @param delay the delay
+     * @throws IOException if the thread is interrupted
+     */
+    private static void sleep(Duration delay) throws IOException {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a retry");
+        }
+    }
+
+
+    /**
+     * Response whose body takes tokens of the byte bucket for every read.
+     */
+    private static class ThrottledResponse implements ClientHttpResponse {
+
+        /**
+         * The response of the server
+         */
+        private final ClientHttpResponse response;
+
+        /**
+         * The limit of the download rate
+         */
+        private final TokenBucket byteBucket;
+
+        /**
+         * The throttled body, or null
+         */
+        private InputStream body;
+
+
+        /**
+         * Wraps the response of the server.
+         *
+         * @param theResponse   the response of the server
+         * @param theByteBucket the limit of the download rate
+         */
+        private ThrottledResponse(ClientHttpResponse theResponse, TokenBucket theByteBucket) {
+            this.response = theResponse;
+            this.byteBucket = theByteBucket;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(response.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        int read = super.read();
+                        if (read >= 0) {
+                            byteBucket.acquire(1);
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        // Small reads keep the waits short and the rate smooth
+                        int read = super.read(buffer, offset, Math.min(length, BYTE_CHUNK));
+                        if (read > 0) {
+                            byteBucket.acquire(read);
+                        }
+                        return read;
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+}
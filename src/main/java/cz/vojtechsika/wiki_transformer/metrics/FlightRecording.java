@@ -0,0 +1,108 @@
+package cz.vojtechsika.wiki_transformer.metrics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * Java Flight Recorder recording of a run, started by the {@code --jfr} option.
+ * <p>
+ * The recording uses the {@code profile} settings of the JDK and enables the {@link MigrationStageEvent}
+ * and {@link PandocRunEvent}, so the CPU samples, allocations and I/O of the recording can be attributed to the
+ * pages, images and files of the run in JDK Mission Control or with {@code jfr print}. The recording is written
+ * to its file when it is closed, or when the JVM exits before, e.g. after a fatal error of the run.
+ * </p>
+ */
+public class FlightRecording implements AutoCloseable {
+
+    /**
+     * Name of the JDK settings used by the recording
+     */
+    private static final String SETTINGS = "profile";
+
+    /**
+     * The running recording
+     */
+    private final Recording recording;
+
+    /**
+     * The file the recording is written to
+     */
+    private final Path file;
+
+
+    /**
+     * Creates the wrapper of a started recording.
+     *
+     * @param theRecording the running recording
+     * @param theFile      the file the recording is written to
+     */
+    private FlightRecording(Recording theRecording, Path theFile) {
+        this.recording = theRecording;
+        this.file = theFile;
+    }
+
+
+    /**
+     * Starts recording the run into the file.
+     *
+     * @param file the {@code .jfr} file, replaced when it already exists
+     * @return the running recording, which has to be closed at the end of the run
+     * @throws IOException if the settings cannot be read or the file cannot be created
+     */
+    public static FlightRecording start(Path file) throws IOException {
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(SETTINGS);
+        } catch (ParseException e) {
+            throw new IOException("Could not read the Flight Recorder settings " + SETTINGS, e);
+        }
+
+        Path absoluteFile = file.toAbsolutePath();
+        Path parent = absoluteFile.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Recording recording = new Recording(configuration);
+        try {
+            recording.setName("wiki-transformer");
+            recording.enable(MigrationStageEvent.class);
+            recording.enable(PandocRunEvent.class);
+            recording.setDestination(absoluteFile);
+            recording.setDumpOnExit(true);
+            recording.start();
+        } catch (IOException | RuntimeException e) {
+            recording.close();
+            throw e;
+        }
+        return new FlightRecording(recording, absoluteFile);
+    }
+
+    /**
+     * Returns the file the recording is written to.
+     *
+     * @return the absolute {@code .jfr} file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Stops the recording and writes it to its file.
+     */
+    @Override
+    public void close() {
+        try {
+            recording.stop();
+        } catch (IllegalStateException e) {
+            // Already stopped, the recording was written by then
+        } finally {
+            recording.close();
+        }
+    }
+}
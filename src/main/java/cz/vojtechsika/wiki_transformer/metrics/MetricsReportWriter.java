@@ -0,0 +1,282 @@
+package cz.vojtechsika.wiki_transformer.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import cz.vojtechsika.wiki_transformer.dto.RunMetricsReportDTO;
+import cz.vojtechsika.wiki_transformer.dto.StageMetricsDTO;
+import cz.vojtechsika.wiki_transformer.service.output.OutputSink;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the performance report of a run: a JSON summary of every {@link MigrationStage} and the raw
+ * meters in the Prometheus text format, e.g. for a textfile collector or for comparing runs.
+ * <p>
+ * Both files are named by the start of the run ({@code wiki-transformer-metrics-<time>.json} and {@code .prom}),
+ * so the reports of earlier runs are kept. They are written to {@code metrics.report.directory},
+ * or to the output directory of the run when no directory is configured. A {@code zip} / {@code tar-gz} run
+ * leaves only its archive on the disk, so without a configured directory its report is added to the archive.
+ * </p>
+ */
+@Component
+public class MetricsReportWriter {
+
+    /**
+     * Prefix of the report file names
+     */
+    private static final String REPORT_PREFIX = "wiki-transformer-metrics-";
+
+    /**
+     * Format of the run start in the report file names
+     */
+    private static final DateTimeFormatter RUN_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    /**
+     * The metrics of the run
+     */
+    private final MigrationMetrics metrics;
+
+    /**
+     * Mapper writing the JSON report
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Whether the report is written
+     */
+    private final boolean enabled;
+
+    /**
+     * Directory of the reports, empty for the output directory of the run
+     */
+    private final String reportDirectory;
+
+
+    /**
+     * Creates the writer from the {@code metrics.report.*} properties.
+     *
+     * @param theMetrics         the metrics of the run
+     * @param theObjectMapper    mapper writing the JSON report
+     * @param theEnabled         whether the report is written
+     * @param theReportDirectory directory of the reports, empty for the output directory of the run
+     */
+    @Autowired
+    public MetricsReportWriter(MigrationMetrics theMetrics, ObjectMapper theObjectMapper,
+                               @Value("${metrics.report.enabled:true}") boolean theEnabled,
+                               @Value("${metrics.report.directory:}") String theReportDirectory) {
+        this.metrics = theMetrics;
+        this.objectMapper = theObjectMapper;
+        this.enabled = theEnabled;
+        this.reportDirectory = theReportDirectory;
+    }
+
+
+    /**
+     * Writes the report of the run and prints the latency of every stage.
+     *
+     * @param outputDirectory the output directory of the run
+     * @param startedAt       the start of the run
+     * @return the JSON report, or null when the report is disabled
+     * @throws IOException if the report cannot be written
+     */
+    public Path write(Path outputDirectory, Instant startedAt) throws IOException {
+        if (!enabled) {
+            return null;
+        }
+        RunMetricsReportDTO report = createReport(startedAt, Instant.now());
+
+        Path directory = reportDirectory.isBlank() ? outputDirectory : Path.of(reportDirectory);
+        Files.createDirectories(directory);
+        String name = createReportName(startedAt);
+        Path jsonFile = directory.resolve(name + ".json");
+        writeAtomically(jsonFile, toJson(report));
+        byte[] prometheusText = toPrometheusText();
+        if (prometheusText != null) {
+            writeAtomically(directory.resolve(name + ".prom"), prometheusText);
+        }
+
+        printStages(report);
+        System.out.println("Metrics report : " + jsonFile.toAbsolutePath());
+        return jsonFile;
+    }
+
+    /**
+     * Returns whether the report of an archive run belongs into its archive, i.e. the report is enabled
+     * and no report directory is configured.
+     *
+     * @return true if the report is added to the archive of the run
+     */
+    public boolean isWrittenToArchive() {
+        return enabled && reportDirectory.isBlank();
+    }
+
+    /**
+     * Adds the report of the run to its archive and prints the latency of every stage.
+     * The report is taken before the archive is completed.
+     *
+     * @param archive         the archive of the run
+     * @param outputDirectory the output directory of the run, the root of the archive entries
+     * @param startedAt       the start of the run
+     * @throws IOException if the report cannot be written into the archive
+     */
+    public void write(OutputSink archive, Path outputDirectory, Instant startedAt) throws IOException {
+        RunMetricsReportDTO report = createReport(startedAt, Instant.now());
+
+        String name = createReportName(startedAt);
+        archive.write(outputDirectory.resolve(name + ".json"), toJson(report));
+        byte[] prometheusText = toPrometheusText();
+        if (prometheusText != null) {
+            archive.write(outputDirectory.resolve(name + ".prom"), prometheusText);
+        }
+
+        printStages(report);
+        System.out.println("Metrics report : " + name + ".json in the archive");
+    }
+
+    /**
+     * Builds the report from the meters of the stages.
+     *
+     * @param startedAt  the start of the run
+     * @param finishedAt the end of the run
+     * @return the report
+     */
+    public RunMetricsReportDTO createReport(Instant startedAt, Instant finishedAt) {
+        RunMetricsReportDTO report = new RunMetricsReportDTO();
+        report.setStartedAt(LocalDateTime.ofInstant(startedAt, ZoneOffset.UTC));
+        report.setFinishedAt(LocalDateTime.ofInstant(finishedAt, ZoneOffset.UTC));
+        report.setElapsedSeconds(Duration.between(startedAt, finishedAt).toMillis() / 1000.0);
+
+        MeterRegistry registry = metrics.getRegistry();
+        for (MigrationStage stage : MigrationStage.values()) {
+            Timer timer = registry.find(MigrationMetrics.DURATION).tag("stage", stage.getTag()).timer();
+            if (timer == null || timer.count() == 0) {
+                continue;
+            }
+            report.getStages().put(stage.getTag(), createStage(registry, stage, timer));
+        }
+        return report;
+    }
+
+    // Private helper methods
+
+    /**
+     * Creates the report file name without the extension from the start of the run.
+     *
+     * @param startedAt the start of the run
+     * @return the file name, e.g. {@code wiki-transformer-metrics-20250101-100000}
+     */
+    private static String createReportName(Instant startedAt) {
+        return REPORT_PREFIX + RUN_TIME_FORMAT.format(LocalDateTime.ofInstant(startedAt, ZoneOffset.UTC));
+    }
+
+    /**
+     * Serializes the report to indented JSON.
+     *
+     * @param report the report
+     * @return the JSON report
+     * @throws IOException if the report cannot be serialized
+     */
+    private byte[] toJson(RunMetricsReportDTO report) throws IOException {
+        return objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValueAsBytes(report);
+    }
+
+    /**
+     * Renders the meters in the Prometheus text format.
+     *
+     * @return the Prometheus text, or null when the registry is not a Prometheus registry
+     */
+    private byte[] toPrometheusText() {
+        if (metrics.getRegistry() instanceof PrometheusMeterRegistry prometheus) {
+            return prometheus.scrape().getBytes(StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    /**
+     * Builds the metrics of one stage.
+     *
+     * @param registry the registry of the meters
+     * @param stage    the stage
+     * @param timer    the latency timer of the stage
+     * @return the metrics of the stage
+     */
+    private static StageMetricsDTO createStage(MeterRegistry registry, MigrationStage stage, Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        StageMetricsDTO stageMetrics = new StageMetricsDTO();
+        stageMetrics.setCount(snapshot.count());
+        stageMetrics.setTotalMillis(snapshot.total(TimeUnit.MILLISECONDS));
+        stageMetrics.setMeanMillis(snapshot.mean(TimeUnit.MILLISECONDS));
+        stageMetrics.setMaxMillis(snapshot.max(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            double millis = percentile.value(TimeUnit.MILLISECONDS);
+            if (percentile.percentile() == 0.5) {
+                stageMetrics.setP50Millis(millis);
+            } else if (percentile.percentile() == 0.95) {
+                stageMetrics.setP95Millis(millis);
+            } else if (percentile.percentile() == 0.99) {
+                stageMetrics.setP99Millis(millis);
+            }
+        }
+
+        DistributionSummary payload = registry.find(MigrationMetrics.PAYLOAD).tag("stage", stage.getTag()).summary();
+        if (payload != null) {
+            stageMetrics.setBytes((long) payload.totalAmount());
+        }
+        for (Counter counter : registry.find(MigrationMetrics.ERRORS).tag("stage", stage.getTag()).counters()) {
+            long errors = (long) counter.count();
+            stageMetrics.setErrors(stageMetrics.getErrors() + errors);
+            stageMetrics.getErrorsByException().put(counter.getId().getTag("exception"), errors);
+        }
+        return stageMetrics;
+    }
+
+    /**
+     * Prints one line with the count, latency percentiles and errors of every stage.
+     *
+     * @param report the report
+     */
+    private static void printStages(RunMetricsReportDTO report) {
+        report.getStages().forEach((name, stage) -> System.out.printf(
+                "Stage %-16s: %6d ops, p50 %8.1f ms, p95 %8.1f ms, p99 %8.1f ms, %10d bytes, %d errors%n",
+                name, stage.getCount(), stage.getP50Millis(), stage.getP95Millis(), stage.getP99Millis(),
+                stage.getBytes(), stage.getErrors()));
+    }
+
+    /**
+     * Writes the file to a temporary file and moves it into place.
+     *
+     * @param file    the final file
+     * @param content the content of the file
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeAtomically(Path file, byte[] content) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tempFile, content);
+        try {
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package cz.vojtechsika.wiki_transformer.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers and counters of the {@link MigrationStage}s of a run.
+ * <p>
+ * Every measured operation of a stage records its latency in the {@value #DURATION} timer (tagged by the stage,
+ * published as a histogram with the 50th, 95th and 99th percentile and the maximum over the whole run), the payload it moved
+ * in the {@value #PAYLOAD} summary and a failure in the {@value #ERRORS} counter tagged by the exception.
+ * A stage is measured with a {@link Sample} closed in a {@code try}-with-resources block, like a permit
+ * of the {@link cz.vojtechsika.wiki_transformer.http.AdaptiveConcurrencyLimiter}.
+ * </p>
+ * <p>
+ * Every sample also emits a {@link MigrationStageEvent} spanning the operation, which Java Flight Recorder
+ * records when the event is enabled, e.g. by the {@code --jfr} option. The event names the wiki page the operation
+ * belongs to. Operations which do not know their page, e.g. a conversion or a disk write, take the page bound
+ * to their thread by {@link #bindPage(String)}.
+ * </p>
+ */
+@Component
+public class MigrationMetrics {
+
+    /**
+     * Name of the timer of the stage latencies
+     */
+    public static final String DURATION = "wiki.stage.duration";
+
+    /**
+     * Name of the summary of the bytes moved by the stages
+     */
+    public static final String PAYLOAD = "wiki.stage.payload";
+
+    /**
+     * Name of the counter of the failed operations
+     */
+    public static final String ERRORS = "wiki.stage.errors";
+
+    /**
+     * Time the percentiles and the maximum of a stage keep their samples. Micrometer forgets them after two minutes
+     * by default, the report at the end of a run of several hours would only describe its last minutes.
+     */
+    private static final Duration STATISTICS_EXPIRY = Duration.ofDays(365);
+
+    /**
+     * URL of the wiki page the current thread works on
+     */
+    private static final ThreadLocal<String> CURRENT_PAGE = new ThreadLocal<>();
+
+    /**
+     * Registry of the meters
+     */
+    private final MeterRegistry registry;
+
+
+    /**
+     * Creates the metrics recorded into the registry.
+     *
+     * @param theRegistry registry of the meters
+     */
+    @Autowired
+    public MigrationMetrics(MeterRegistry theRegistry) {
+        this.registry = theRegistry;
+    }
+
+
+    /**
+     * Creates metrics which record nothing, e.g. for services constructed in tests.
+     *
+     * @return metrics recorded into a registry without any backend
+     */
+    public static MigrationMetrics noop() {
+        return new MigrationMetrics(new CompositeMeterRegistry());
+    }
+
+    /**
+     * Binds the wiki page to the current thread until the returned binding is closed.
+     *
+     * @param pageUrl the URL of the wiki page the thread works on
+     * @return the binding, which restores the previous page when it is closed
+     */
+    public static PageBinding bindPage(String pageUrl) {
+        PageBinding binding = new PageBinding(CURRENT_PAGE.get());
+        CURRENT_PAGE.set(pageUrl);
+        return binding;
+    }
+
+    /**
+     * Returns the wiki page bound to the current thread.
+     *
+     * @return the URL of the page, or null when no page is bound
+     */
+    public static String currentPage() {
+        return CURRENT_PAGE.get();
+    }
+
+    /**
+     * Starts measuring one operation of the stage working on the resource.
+     *
+     * @param stage    the stage
+     * @param page     the URL of the wiki page the operation belongs to, recorded only in the Flight Recorder event
+     * @param resource the page URL, image URL or output file of the operation, recorded only in the Flight Recorder event
+     * @return the sample, which has to be closed when the operation is finished
+     */
+    public Sample start(MigrationStage stage, String page, String resource) {
+        return new Sample(stage, page, resource, System.nanoTime());
+    }
+
+    /**
+     * Records an operation of the stage measured by the caller.
+     *
+     * @param stage   the stage
+     * @param nanos   the duration of the operation in nanoseconds
+     * @param bytes   the bytes moved by the operation, negative when unknown
+     * @param failure the failure of the operation, or null when it succeeded
+     */
+    public void record(MigrationStage stage, long nanos, long bytes, Throwable failure) {
+        Timer.builder(DURATION)
+                .description("Latency of the operations of a migration stage")
+                .tag("stage", stage.getTag())
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .distributionStatisticExpiry(STATISTICS_EXPIRY)
+                .distributionStatisticBufferLength(1)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (bytes >= 0) {
+            DistributionSummary.builder(PAYLOAD)
+                    .description("Bytes moved by the operations of a migration stage")
+                    .baseUnit("bytes")
+                    .tag("stage", stage.getTag())
+                    .register(registry)
+                    .record(bytes);
+        }
+        if (failure != null) {
+            Counter.builder(ERRORS)
+                    .description("Failed operations of a migration stage")
+                    .tag("stage", stage.getTag())
+                    .tag("exception", failure.getClass().getSimpleName())
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    /**
+     * Returns the registry of the meters.
+     *
+     * @return the registry
+     */
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+
+    /**
+     * One measured operation of a stage, recorded when it is closed.
+     */
+    public final class Sample implements AutoCloseable {
+
+        /**
+         * The measured stage
+         */
+        private final MigrationStage stage;
+
+        /**
+         * Start of the operation in nanoseconds
+         */
+        private final long startNanos;
+
+        /**
+         * URL of the wiki page the operation belongs to, or null
+         */
+        private final String page;
+
+        /**
+         * The page URL, image URL or output file of the operation, or null
+         */
+        private final String resource;
+
+        /**
+         * Flight Recorder event spanning the operation
+         */
+        private final MigrationStageEvent event = new MigrationStageEvent();
+
+        /**
+         * Bytes moved by the operation, negative when unknown
+         */
+        private long bytes = -1;
+
+        /**
+         * The failure of the operation, or null
+         */
+        private Throwable failure;
+
+        /**
+         * Whether the sample was already recorded
+         */
+        private boolean closed;
+
+
+        /**
+         * Creates the sample.
+         *
+         * @param theStage      the measured stage
+         * @param thePage       URL of the wiki page the operation belongs to, or null
+         * @param theResource   the page URL, image URL or output file of the operation, or null
+         * @param theStartNanos start of the operation in nanoseconds
+         */
+        private Sample(MigrationStage theStage, String thePage, String theResource, long theStartNanos) {
+            this.stage = theStage;
+            this.page = thePage;
+            this.resource = theResource;
+            this.startNanos = theStartNanos;
+            event.begin();
+        }
+
+
+        /**
+         * Sets the bytes moved by the operation.
+         *
+         * @param theBytes the number of bytes
+         */
+        public void bytes(long theBytes) {
+            this.bytes = theBytes;
+        }
+
+        /**
+         * Marks the operation as failed.
+         *
+         * @param theFailure the failure
+         */
+        public void failed(Throwable theFailure) {
+            this.failure = theFailure;
+        }
+
+        /**
+         * Records the operation and commits its Flight Recorder event.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                record(stage, System.nanoTime() - startNanos, bytes, failure);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.stage = stage.getTag();
+                    event.page = page;
+                    event.resource = resource;
+                    event.bytes = bytes;
+                    event.outcome = failure == null ? "success" : "error";
+                    event.exception = failure != null ? failure.getClass().getSimpleName() : null;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Binding of a wiki page to the current thread, closed in a {@code try}-with-resources block.
+     */
+    public static final class PageBinding implements AutoCloseable {
+
+        /**
+         * The page bound before, restored when the binding is closed
+         */
+        private final String previous;
+
+
+        /**
+         * Creates the binding.
+         *
+         * @param thePrevious the page bound before, or null
+         */
+        private PageBinding(String thePrevious) {
+            this.previous = thePrevious;
+        }
+
+
+        /**
+         * Restores the page bound before.
+         */
+        @Override
+        public void close() {
+            if (previous != null) {
+                CURRENT_PAGE.set(previous);
+            } else {
+                CURRENT_PAGE.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package cz.vojtechsika.wiki_transformer.metrics;
+
+/**
+ * Stage of the migration of a wiki page, measured by {@link MigrationMetrics}.
+ * <ul>
+ *   <li><b>PAGE_FETCH</b> – the JSON request of a wiki page, the bytes are the received Textile.</li>
+ *   <li><b>HTML_FETCH</b> – the request of a rendered HTML page scraped for images.</li>
+ *   <li><b>IMAGE_EXTRACTION</b> – finding the image URLs of a page, including an HTML fetch when one is needed.</li>
+ *   <li><b>CONVERSION</b> – the Textile to MediaWiki conversion of a page (Pandoc or the native engine),
+ *       the bytes are the MediaWiki output.</li>
+ *   <li><b>IMAGE_DOWNLOAD</b> – the download of a single image.</li>
+ *   <li><b>DISK_WRITE</b> – writing an output file from the moment the writer takes it until it is durable.</li>
+ * </ul>
+ */
+public enum MigrationStage {
+    PAGE_FETCH("page_fetch"),
+    HTML_FETCH("html_fetch"),
+    IMAGE_EXTRACTION("image_extraction"),
+    CONVERSION("conversion"),
+    IMAGE_DOWNLOAD("image_download"),
+    DISK_WRITE("disk_write");
+
+    /**
+     * Value of the {@code stage} tag of the meters
+     */
+    private final String tag;
+
+    MigrationStage(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Returns the value of the {@code stage} tag of the meters.
+     *
+     * @return the tag value
+     */
+    public String getTag() {
+        return tag;
+    }
+}
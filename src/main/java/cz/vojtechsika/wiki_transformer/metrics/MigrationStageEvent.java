@@ -0,0 +1,68 @@
+package cz.vojtechsika.wiki_transformer.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of one operation of a {@link MigrationStage}, emitted for every {@link MigrationMetrics.Sample}.
+ * <p>
+ * The event spans the operation on the thread which measured it, so the samples, locks and I/O of a recording
+ * can be attributed to the wiki page the operation belongs to and to the page, image or output file it worked on.
+ * </p>
+ */
+@Name(MigrationStageEvent.NAME)
+@Label("Migration Stage")
+@Category({"Wiki Transformer"})
+@Description("One operation of a migration stage: page fetch, HTML fetch, image extraction, conversion, image download or disk write")
+@StackTrace(false)
+public class MigrationStageEvent extends Event {
+
+    /**
+     * Name of the event type in a recording
+     */
+    public static final String NAME = "cz.vojtechsika.wiki_transformer.MigrationStage";
+
+    /**
+     * The stage of the operation
+     */
+    @Label("Stage")
+    String stage;
+
+    /**
+     * URL of the wiki page the operation belongs to
+     */
+    @Label("Page")
+    @Description("URL of the wiki page the operation belongs to")
+    String page;
+
+    /**
+     * The page URL, image URL or output file the operation worked on
+     */
+    @Label("Resource")
+    @Description("Page URL, image URL or output file")
+    String resource;
+
+    /**
+     * Bytes moved by the operation, -1 when unknown
+     */
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * {@code success} or {@code error}
+     */
+    @Label("Outcome")
+    String outcome;
+
+    /**
+     * Simple name of the exception of a failed operation
+     */
+    @Label("Exception")
+    String exception;
+}
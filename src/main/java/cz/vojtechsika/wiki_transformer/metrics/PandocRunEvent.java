@@ -0,0 +1,61 @@
+package cz.vojtechsika.wiki_transformer.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of one Pandoc process, from its start until its output is read.
+ * <p>
+ * A Pandoc run may convert a batch of pages, it is nested in the {@link MigrationStageEvent} of the conversion
+ * of the page whose thread started the run and lists the URLs of all pages of the batch.
+ * </p>
+ */
+@Name(PandocRunEvent.NAME)
+@Label("Pandoc Run")
+@Category({"Wiki Transformer"})
+@Description("One Pandoc process converting Textile to MediaWiki")
+@StackTrace(false)
+public class PandocRunEvent extends Event {
+
+    /**
+     * Name of the event type in a recording
+     */
+    public static final String NAME = "cz.vojtechsika.wiki_transformer.PandocRun";
+
+    /**
+     * Number of pages converted by the run
+     */
+    @Label("Pages")
+    public int pages;
+
+    /**
+     * URLs of the wiki pages converted by the run, one per line
+     */
+    @Label("Page URLs")
+    public String pageUrls;
+
+    /**
+     * Bytes of Textile written to Pandoc
+     */
+    @Label("Input Bytes")
+    @DataAmount
+    public long inputBytes;
+
+    /**
+     * Bytes of MediaWiki read from Pandoc
+     */
+    @Label("Output Bytes")
+    @DataAmount
+    public long outputBytes;
+
+    /**
+     * {@code success} or {@code error}
+     */
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,96 @@
+package cz.vojtechsika.wiki_transformer.server;
+
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobDTO;
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobRequestDTO;
+import cz.vojtechsika.wiki_transformer.service.job.ConversionJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * REST endpoint of the {@code serve} mode accepting conversion jobs and reporting their state.
+ * <ul>
+ *   <li>{@code POST /jobs} – queues a job, answers {@code 202 Accepted} with the job and its {@code Location}.</li>
+ *   <li>{@code GET /jobs} – lists the retained jobs.</li>
+ *   <li>{@code GET /jobs/{id}} – returns the state and the result of a job.</li>
+ * </ul>
+ */
+@RestController
+@RequestMapping("/jobs")
+public class ConversionJobController {
+
+    /**
+     * Queue of conversion jobs
+     */
+    private final ConversionJobService conversionJobService;
+
+
+    /**
+     * Constructor-based dependency injection.
+     *
+     * @param theConversionJobService the queue of conversion jobs
+     */
+    @Autowired
+    public ConversionJobController(ConversionJobService theConversionJobService) {
+        this.conversionJobService = theConversionJobService;
+    }
+
+
+    /**
+     * Queues a conversion job.
+     *
+     * @param request the job: a page URL, a list of page URLs or a project
+     * @return the queued job, or {@code 503} with {@code Retry-After} when the queue is full
+     * @throws ResponseStatusException {@code 400} if the job is not valid, {@code 409} if another job
+     *                                 writes to the same output directory
+     */
+    @PostMapping
+    public ResponseEntity<ConversionJobDTO> submit(@RequestBody ConversionJobRequestDTO request) {
+        try {
+            ConversionJobDTO job = conversionJobService.submit(request);
+            return ResponseEntity.accepted().location(URI.create("/jobs/" + job.getId())).body(job);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        } catch (RejectedExecutionException e) {
+            // The orchestrator retries once some queued jobs are finished
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
+    }
+
+    /**
+     * Lists the retained jobs.
+     *
+     * @return queued, running and recently finished jobs, the oldest first
+     */
+    @GetMapping
+    public List<ConversionJobDTO> getJobs() {
+        return conversionJobService.getJobs();
+    }
+
+    /**
+     * Returns a single job.
+     *
+     * @param id identifier of the job
+     * @return the job
+     * @throws ResponseStatusException {@code 404} if the job does not exist
+     */
+    @GetMapping("/{id}")
+    public ConversionJobDTO getJob(@PathVariable long id) {
+        return conversionJobService.getJob(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Job " + id + " not found"));
+    }
+}
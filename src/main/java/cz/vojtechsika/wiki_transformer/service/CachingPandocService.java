@@ -0,0 +1,177 @@
+package cz.vojtechsika.wiki_transformer.service;
+
+import cz.vojtechsika.wiki_transformer.service.output.OutputSink;
+import cz.vojtechsika.wiki_transformer.service.pandoc.ConversionResultCache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * {@link PandocService} serving the conversions of unchanged pages from the {@link ConversionResultCache}.
+ * <p>
+ * A page whose Textile was already converted by the same converter (engine, version and options) is answered
+ * from the cache without starting Pandoc, all other pages are converted by the wrapped service and cached.
+ * A converter which cannot identify itself is never cached, neither is the output of a page converted together
+ * with other pages, which may depend on them. A failing cache never fails a conversion.
+ * </p>
+ */
+public class CachingPandocService implements PandocService {
+
+    /**
+     * The service converting the pages which are not cached
+     */
+    private final PandocService delegate;
+
+    /**
+     * The cache of converted pages
+     */
+    private final ConversionResultCache cache;
+
+    /**
+     * Destination of the converted files
+     */
+    private final OutputSink outputSink;
+
+
+    /**
+     * Constructs the caching service.
+     *
+     * @param theDelegate   the service converting the pages which are not cached
+     * @param theCache      the cache of converted pages
+     * @param theOutputSink destination of the converted files
+     */
+    public CachingPandocService(PandocService theDelegate, ConversionResultCache theCache, OutputSink theOutputSink) {
+        this.delegate = theDelegate;
+        this.cache = theCache;
+        this.outputSink = theOutputSink;
+    }
+
+
+    /**
+     * Converts content from Textile format to MediaWiki format, or takes the cached output, and saves it as a file.
+     *
+     * @param content          the Textile-formatted text to be converted
+     * @param fileName         the sanitized and unique name of the output file (without extension)
+     * @param filePath         the path to the output directory
+     * @param outputDirectory  the output directory as a string, used for final file generation
+     * @throws IOException if the conversion fails or the output file cannot be written
+     */
+    @Override
+    public void convertTextileToMediaWiki(String content, String fileName, Path filePath, String outputDirectory) throws IOException {
+        String key = keyOf(content);
+        if (key == null) {
+            delegate.convertTextileToMediaWiki(content, fileName, filePath, outputDirectory);
+            return;
+        }
+
+        Path outputFile = createOutputFile(outputDirectory, fileName);
+        byte[] cached = lookup(key);
+        if (cached != null) {
+            outputSink.write(outputFile, cached);
+            System.out.println("Conversion cache served MediaWiki: " + outputFile.toAbsolutePath() + "\n");
+            return;
+        }
+
+        Conversion conversion = delegate.convertForCache(content);
+        byte[] mediaWiki = conversion.mediaWiki().getBytes(StandardCharsets.UTF_8);
+        outputSink.write(outputFile, mediaWiki);
+        if (conversion.cacheable()) {
+            store(key, mediaWiki);
+        }
+        System.out.println("Converted Textile to MediaWiki: " + outputFile.toAbsolutePath() + "\n");
+    }
+
+    /**
+     * Converts content from Textile format to MediaWiki format, or takes the cached output, without writing any file.
+     *
+     * @param content the Textile-formatted text to be converted
+     * @return the MediaWiki markup
+     * @throws IOException if the conversion fails
+     */
+    @Override
+    public String convertToMediaWiki(String content) throws IOException {
+        String key = keyOf(content);
+        byte[] cached = key != null ? lookup(key) : null;
+        if (cached != null) {
+            return new String(cached, StandardCharsets.UTF_8);
+        }
+
+        if (key == null) {
+            return delegate.convertToMediaWiki(content);
+        }
+        Conversion conversion = delegate.convertForCache(content);
+        if (conversion.cacheable()) {
+            store(key, conversion.mediaWiki().getBytes(StandardCharsets.UTF_8));
+        }
+        return conversion.mediaWiki();
+    }
+
+    /**
+     * Returns the identity of the wrapped converter.
+     *
+     * @return the identity, or null when it is unknown
+     */
+    @Override
+    public String getConverterIdentity() {
+        return delegate.getConverterIdentity();
+    }
+
+    // Private helper methods
+
+    /**
+     * Returns the cache key of the page.
+     *
+     * @param content the Textile content
+     * @return the key, or null when the converter cannot identify itself
+     */
+    private String keyOf(String content) {
+        String identity = delegate.getConverterIdentity();
+        return identity != null ? cache.keyOf(identity, content != null ? content : "") : null;
+    }
+
+    /**
+     * Reads the cached output, an unreadable cache counts as a miss.
+     *
+     * @param key the cache key of the page
+     * @return the cached output, or null
+     */
+    private byte[] lookup(String key) {
+        try {
+            return cache.get(key);
+        } catch (IOException e) {
+            System.out.println("Conversion cache could not be read: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Caches the output, a failure only costs a conversion on the next run.
+     *
+     * @param key       the cache key of the page
+     * @param mediaWiki the MediaWiki output
+     */
+    private void store(String key, byte[] mediaWiki) {
+        try {
+            cache.put(key, mediaWiki);
+        } catch (IOException e) {
+            System.out.println("Conversion cache could not be written: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the final output file path by combining the target directory and file name.
+     *
+     * @param outputDirectory the output directory as a string
+     * @param fileName        the name of the output file (without extension)
+     * @return the full path to the output file
+     * @throws IOException if the path is invalid
+     */
+    private Path createOutputFile(String outputDirectory, String fileName) throws IOException {
+        try {
+            return Path.of(outputDirectory, fileName + ".mediawiki");
+        } catch (IllegalArgumentException e){
+            throw new IOException("Invalid file name or format when the conversion cache try write to output  directory ", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package cz.vojtechsika.wiki_transformer.service;
+
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationStage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * {@link PandocService} recording every conversion of the wrapped engine in the {@link MigrationStage#CONVERSION} stage.
+ * <p>
+ * The latency covers the whole conversion of a page as seen by the caller, including a wait for a Pandoc batch
+ * and a hit of the conversion cache. The bytes are the MediaWiki output, they are known only for
+ * {@link #convertToMediaWiki(String)}, because the other method hands the output straight to the output sink.
+ * The page of a conversion is the page bound to the calling thread by {@link MigrationMetrics#bindPage(String)}.
+ * </p>
+ */
+public class MeteredPandocService implements PandocService {
+
+    /**
+     * The service converting the pages
+     */
+    private final PandocService delegate;
+
+    /**
+     * Metrics of the conversions
+     */
+    private final MigrationMetrics metrics;
+
+
+    /**
+     * Constructs the metered service.
+     *
+     * @param theDelegate the service converting the pages
+     * @param theMetrics  metrics of the conversions
+     */
+    public MeteredPandocService(PandocService theDelegate, MigrationMetrics theMetrics) {
+        this.delegate = theDelegate;
+        this.metrics = theMetrics;
+    }
+
+
+    /**
+     * Converts content from Textile format to MediaWiki format with the wrapped engine and saves the result as a file.
+     *
+     * @param content          the Textile-formatted text to be converted
+     * @param fileName         the sanitized and unique name of the output file (without extension)
+     * @param filePath         the path to the output directory
+     * @param outputDirectory  the output directory as a string, used for final file generation
+     * @throws IOException if the conversion fails or the output file cannot be written
+     */
+    @Override
+    public void convertTextileToMediaWiki(String content, String fileName, Path filePath, String outputDirectory) throws IOException {
+        try (MigrationMetrics.Sample sample = metrics.start(MigrationStage.CONVERSION, MigrationMetrics.currentPage(),
+                filePath.resolve(fileName).toString())) {
+            try {
+                delegate.convertTextileToMediaWiki(content, fileName, filePath, outputDirectory);
+            } catch (IOException | RuntimeException e) {
+                sample.failed(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Converts content from Textile format to MediaWiki format with the wrapped engine, without writing any file.
+     *
+     * @param content the Textile-formatted text to be converted
+     * @return the MediaWiki markup
+     * @throws IOException if the conversion fails
+     */
+    @Override
+    public String convertToMediaWiki(String content) throws IOException {
+        try (MigrationMetrics.Sample sample = metrics.start(MigrationStage.CONVERSION, MigrationMetrics.currentPage(), null)) {
+            try {
+                String mediaWiki = delegate.convertToMediaWiki(content);
+                sample.bytes(mediaWiki.getBytes(StandardCharsets.UTF_8).length);
+                return mediaWiki;
+            } catch (IOException | RuntimeException e) {
+                sample.failed(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns the identity of the wrapped converter.
+     *
+     * @return the identity, or null when it is unknown
+     */
+    @Override
+    public String getConverterIdentity() {
+        return delegate.getConverterIdentity();
+    }
+}
@@ -0,0 +1,100 @@
+package cz.vojtechsika.wiki_transformer.service;
+
+import cz.vojtechsika.wiki_transformer.service.textile.MediaWikiWriter;
+import cz.vojtechsika.wiki_transformer.service.output.OutputSink;
+import cz.vojtechsika.wiki_transformer.service.textile.TextileParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Service implementation converting Textile to MediaWiki with the built-in Java engine.
+ * <p>
+ * The conversion runs in the calling thread without any external process, the document is parsed
+ * in a single pass and the MediaWiki markup is handed from one buffer to the {@link OutputSink}.
+ * Selected on the command line with {@code --engine=native}.
+ * </p>
+ */
+@Service
+public class NativeTextileServiceImpl implements PandocService {
+
+    /**
+     * Destination of the converted files
+     */
+    private final OutputSink outputSink;
+
+
+    /**
+     * Constructs the engine.
+     *
+     * @param theOutputSink destination of the converted files
+     */
+    @Autowired
+    public NativeTextileServiceImpl(OutputSink theOutputSink) {
+        this.outputSink = theOutputSink;
+    }
+
+    /**
+     * Converts content from Textile format to MediaWiki format and saves the result as a file.
+     *
+     * @param content          the Textile-formatted text to be converted
+     * @param fileName         the sanitized and unique name of the output file (without extension)
+     * @param filePath         the path to the output directory
+     * @param outputDirectory  the output directory as a string, used for final file generation
+     * @throws IOException if the output file cannot be written
+     */
+    @Override
+    public void convertTextileToMediaWiki(String content, String fileName, Path filePath, String outputDirectory) throws IOException {
+        StringBuilder mediaWiki = convert(content);
+
+        Path outputFile = createOutputFile(outputDirectory, fileName);
+        outputSink.write(outputFile, mediaWiki.toString().getBytes(StandardCharsets.UTF_8));
+
+        System.out.println("Native engine converted Textile to MediaWiki: " + outputFile.toAbsolutePath() + "\n");
+    }
+
+    /**
+     * Converts content from Textile format to MediaWiki format without writing any file.
+     *
+     * @param content the Textile-formatted text to be converted
+     * @return the MediaWiki markup
+     */
+    @Override
+    public String convertToMediaWiki(String content) {
+        return convert(content).toString();
+    }
+
+    /**
+     * Converts Textile content to MediaWiki markup in memory.
+     *
+     * @param content the Textile-formatted text to be converted
+     * @return buffer with the MediaWiki markup
+     */
+    public StringBuilder convert(String content) {
+        String textile = content != null ? content : "";
+        StringBuilder out = new StringBuilder(textile.length() + (textile.length() >> 3));
+        new TextileParser(textile, new MediaWikiWriter(out)).parse();
+        return out;
+    }
+
+    // Private helper methods
+
+    /**
+     * Creates the final output file path by combining the target directory and file name.
+     *
+     * @param outputDirectory the output directory as a string
+     * @param fileName        the name of the output file (without extension)
+     * @return the full path to the output file
+     * @throws IOException if the path is invalid
+     */
+    private Path createOutputFile(String outputDirectory, String fileName) throws IOException {
+        try {
+            return Path.of(outputDirectory, fileName + ".mediawiki");
+        } catch (IllegalArgumentException e){
+            throw new IOException("Invalid file name or format when native engine try write to output  directory ", e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package cz.vojtechsika.wiki_transformer.service;
+
+import cz.vojtechsika.wiki_transformer.service.pandoc.PandocServerPool;
+import cz.vojtechsika.wiki_transformer.service.pandoc.PandocVersion;
+import cz.vojtechsika.wiki_transformer.service.output.OutputSink;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Service implementation converting Textile to MediaWiki on a pool of resident {@code pandoc server} processes.
+ * <p>
+ * Enabled with {@code pandoc.backend=server}. The pool is started on the first conversion and stopped
+ * together with the application context, so the Pandoc startup is paid once per worker instead of once per page.
+ * </p>
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "pandoc.backend", havingValue = "server")
+public class PandocServerServiceImpl implements PandocService {
+
+    /**
+     * Name or path of the Pandoc executable
+     */
+    private final String executable;
+
+    /**
+     * Number of pandoc server processes
+     */
+    private final int poolSize;
+
+    /**
+     * Port of the first pandoc server, 0 for free ports
+     */
+    private final int basePort;
+
+    /**
+     * Timeout of a single conversion in seconds
+     */
+    private final int timeoutSeconds;
+
+    /**
+     * Interval between two health checks in seconds
+     */
+    private final int healthCheckIntervalSeconds;
+
+    /**
+     * Lazily started pool of pandoc servers
+     */
+    private volatile PandocServerPool pool;
+
+    /**
+     * Destination of the converted files
+     */
+    private final OutputSink outputSink;
+
+    /**
+     * Identity of the installed Pandoc resolved on first use, empty when Pandoc cannot report its version
+     */
+    private volatile Optional<String> converterIdentity;
+
+
+    /**
+     * Constructs the service from the {@code pandoc.server.*} properties.
+     *
+     * @param theExecutable                 name or path of the Pandoc executable, the process backend's one by default
+     * @param thePoolSize                   number of pandoc server processes
+     * @param theBasePort                   port of the first pandoc server, 0 for free ports
+     * @param theTimeoutSeconds             timeout of a single conversion in seconds
+     * @param theHealthCheckIntervalSeconds interval between two health checks in seconds
+     * @param theOutputSink                 destination of the converted files
+     */
+    @Autowired
+    public PandocServerServiceImpl(@Value("${pandoc.server.executable:${pandoc.process.executable:pandoc}}") String theExecutable,
+                                   @Value("${pandoc.server.pool-size:4}") int thePoolSize,
+                                   @Value("${pandoc.server.base-port:0}") int theBasePort,
+                                   @Value("${pandoc.server.timeout-seconds:30}") int theTimeoutSeconds,
+                                   @Value("${pandoc.server.health-check-interval-seconds:15}") int theHealthCheckIntervalSeconds,
+                                   OutputSink theOutputSink) {
+        this.executable = theExecutable;
+        this.poolSize = thePoolSize;
+        this.basePort = theBasePort;
+        this.timeoutSeconds = theTimeoutSeconds;
+        this.healthCheckIntervalSeconds = theHealthCheckIntervalSeconds;
+        this.outputSink = theOutputSink;
+    }
+
+
+    /**
+     * Converts content from Textile format to MediaWiki format on a pandoc server and saves the result as a file.
+     *
+     * @param content          the Textile-formatted text to be converted
+     * @param fileName         the sanitized and unique name of the output file (without extension)
+     * @param filePath         the path to the output directory
+     * @param outputDirectory  the output directory as a string, used for final file generation
+     * @throws IOException if the conversion fails or the output file cannot be written
+     */
+    @Override
+    public void convertTextileToMediaWiki(String content, String fileName, Path filePath, String outputDirectory) throws IOException {
+        String mediaWiki = getPool().convert(content);
+
+        Path outputFile = createOutputFile(outputDirectory, fileName);
+        outputSink.write(outputFile, mediaWiki.getBytes(StandardCharsets.UTF_8));
+
+        System.out.println("Pandoc server converted Textile to MediaWiki: " + outputFile.toAbsolutePath() + "\n");
+    }
+
+    /**
+     * Converts content from Textile format to MediaWiki format on a pandoc server, without writing any file.
+     *
+     * @param content the Textile-formatted text to be converted
+     * @return the MediaWiki markup
+     * @throws IOException if the conversion fails
+     */
+    @Override
+    public String convertToMediaWiki(String content) throws IOException {
+        return getPool().convert(content);
+    }
+
+    /**
+     * Identifies the installed Pandoc the servers run, by the first line of {@code pandoc --version}.
+     *
+     * @return the identity, or null when Pandoc cannot report its version
+     */
+    @Override
+    public String getConverterIdentity() {
+        Optional<String> identity = converterIdentity;
+        if (identity == null) {
+            // A failed version check is kept as well, so it does not cost a process before every page
+            identity = Optional.ofNullable(PandocVersion.of(executable)).map(version -> "pandoc-server " + version + " textile mediawiki");
+            converterIdentity = identity;
+        }
+        return identity.orElse(null);
+    }
+
+    /**
+     * Stops all pandoc server processes when the application context is closed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    // Private helper methods
+
+    /**
+     * Returns the pool of pandoc servers, starting it on the first call.
+     *
+     * @return the running pool
+     * @throws IOException if the pandoc servers cannot be started
+     */
+    private PandocServerPool getPool() throws IOException {
+        PandocServerPool current = pool;
+        if (current == null) {
+            synchronized (this) {
+                current = pool;
+                if (current == null) {
+                    current = new PandocServerPool(executable, poolSize, basePort, timeoutSeconds, healthCheckIntervalSeconds);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Creates the final output file path by combining the target directory and file name.
+     *
+     * @param outputDirectory the output directory as a string
+     * @param fileName        the name of the output file (without extension)
+     * @return the full path to the output file
+     * @throws IOException if the path is invalid
+     */
+    private Path createOutputFile(String outputDirectory, String fileName) throws IOException {
+        try {
+            return Path.of(outputDirectory, fileName + ".mediawiki");
+        } catch (IllegalArgumentException e){
+            throw new IOException("Invalid file name or format when pandoc try write to output  directory ", e);
+        }
+    }
+}
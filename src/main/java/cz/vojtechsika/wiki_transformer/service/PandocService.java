@@ -18,4 +18,46 @@ public interface PandocService {
      * @throws IOException if an I/O error occurs during the conversion process or file writing
      */
     void convertTextileToMediaWiki(String content, String fileName, Path filePath, String outputDirectory) throws IOException;
+
+    /**
+     * Converts content from Textile format to MediaWiki format without writing any file,
+     * used when the pages are collected into a MediaWiki XML dump.
+     *
+     * @param content the original wiki page content in Textile format
+     * @return the MediaWiki markup
+     * @throws IOException if the conversion fails
+     */
+    String convertToMediaWiki(String content) throws IOException;
+
+    /**
+     * Converts content from Textile format to MediaWiki format like {@link #convertToMediaWiki(String)}
+     * and tells whether the output depends on the content alone, so it may be cached under the content.
+     *
+     * @param content the original wiki page content in Textile format
+     * @return the MediaWiki markup and whether it may be cached
+     * @throws IOException if the conversion fails
+     */
+    default Conversion convertForCache(String content) throws IOException {
+        return new Conversion(convertToMediaWiki(content), true);
+    }
+
+    /**
+     * Identifies the converter, its version and options, so cached conversions are reused only
+     * when the same converter would produce the same output.
+     *
+     * @return the identity of the converter, or null when it is unknown and conversions must not be cached
+     */
+    default String getConverterIdentity() {
+        return null;
+    }
+
+
+    /**
+     * The output of a conversion for the conversion cache.
+     *
+     * @param mediaWiki the MediaWiki markup
+     * @param cacheable false when the output also depends on other pages, e.g. pages converted in the same Pandoc run
+     */
+    record Conversion(String mediaWiki, boolean cacheable) {
+    }
 }
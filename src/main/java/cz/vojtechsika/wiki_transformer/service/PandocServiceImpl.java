@@ -1,18 +1,112 @@
 package cz.vojtechsika.wiki_transformer.service;
 
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import cz.vojtechsika.wiki_transformer.metrics.PandocRunEvent;
+import cz.vojtechsika.wiki_transformer.service.output.OutputSink;
+import cz.vojtechsika.wiki_transformer.service.pandoc.PandocBatcher;
+import cz.vojtechsika.wiki_transformer.service.pandoc.PandocVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Service implementation for handling Pandoc-based conversions.
  * This service provides methods to convert Textile-formatted text into MediaWiki format.
+ * It starts a new Pandoc process for every page and is the default backend ({@code pandoc.backend=process}).
+ * <p>
+ * The Textile content is streamed to the standard input of Pandoc and the MediaWiki output is read
+ * from its standard output and handed to the {@link OutputSink}, which writes it atomically. A conversion
+ * which exceeds the timeout, exits with a non-zero code or cannot be started is reported as an {@link IOException}
+ * containing the standard error output of Pandoc.
+ * </p>
+ * <p>
+ * Pages converted concurrently are packed into a single Pandoc run by the {@link PandocBatcher}
+ * ({@code pandoc.batch.*}), which amortises the process startup over up to {@code max-pages} pages.
+ * </p>
  */
 @Service
+@Primary
+@ConditionalOnProperty(name = "pandoc.backend", havingValue = "process", matchIfMissing = true)
 public class PandocServiceImpl implements PandocService {
 
+    /**
+     * Maximum number of bytes kept from the standard error output of Pandoc
+     */
+    private static final int MAX_STDERR_BYTES = 16 * 1024;
+
+    /**
+     * Executor of the threads pumping the standard streams of the Pandoc processes
+     */
+    private static final ExecutorService STREAM_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Name or path of the Pandoc executable
+     */
+    private final String executable;
+
+    /**
+     * Timeout of a single Pandoc process in seconds
+     */
+    private final long timeoutSeconds;
+
+    /**
+     * Destination of the converted files
+     */
+    private final OutputSink outputSink;
+
+    /**
+     * Packs the pages of concurrent conversions into one Pandoc run
+     */
+    private final PandocBatcher batcher;
+
+    /**
+     * Identity of the installed Pandoc resolved on first use, empty when Pandoc cannot report its version
+     */
+    private volatile Optional<String> converterIdentity;
+
+
+    /**
+     * Constructs the service from the {@code pandoc.process.*} and {@code pandoc.batch.*} properties.
+     *
+     * @param theExecutable        name or path of the Pandoc executable
+     * @param theTimeoutSeconds    timeout of a single Pandoc process in seconds
+     * @param theOutputSink        destination of the converted files
+     * @param theBatchMaxPages     maximum number of pages converted in one Pandoc run, 1 disables batching
+     * @param theBatchMaxSize      maximum size of the Textile converted in one Pandoc run
+     * @param theBatchLingerMillis time the first page of a batch waits for other pages in milliseconds
+     */
+    @Autowired
+    public PandocServiceImpl(@Value("${pandoc.process.executable:pandoc}") String theExecutable,
+                             @Value("${pandoc.process.timeout-seconds:60}") long theTimeoutSeconds,
+                             OutputSink theOutputSink,
+                             @Value("${pandoc.batch.max-pages:32}") int theBatchMaxPages,
+                             @Value("${pandoc.batch.max-size:256KB}") DataSize theBatchMaxSize,
+                             @Value("${pandoc.batch.linger-millis:20}") long theBatchLingerMillis) {
+        this.executable = theExecutable;
+        this.timeoutSeconds = theTimeoutSeconds;
+        this.outputSink = theOutputSink;
+        this.batcher = new PandocBatcher(this::runPandoc, theBatchMaxPages,
+                (int) Math.min(theBatchMaxSize.toBytes(), Integer.MAX_VALUE), theBatchLingerMillis);
+    }
 
 
     /**
@@ -22,48 +116,62 @@ public class PandocServiceImpl implements PandocService {
      * @param fileName         the sanitized and unique name of the output file (without extension)
      * @param filePath         the path to the output directory
      * @param outputDirectory  the output directory as a string, used for final file generation
-     * @throws IOException if any I/O error occurs during the conversion process
+     * @throws IOException if any I/O error occurs during the conversion process or Pandoc fails
      */
     @Override
     public void convertTextileToMediaWiki(String content, String fileName, Path filePath, String outputDirectory) throws IOException {
-            // Create a temporary file for storing Textile data
-            Path tempInputFile = createTempFile(content);
-
             // Define the output file location
             Path outputFile = createOutputFile(outputDirectory, fileName);
 
-            // Run Pandoc process
-            runPandoc(tempInputFile, outputFile);
-
-            // Remove the temporary input file
-            deleteTempFile(tempInputFile);
+            // Run Pandoc process, alone or together with concurrent pages, Textile goes to stdin and MediaWiki is read from stdout
+            outputSink.write(outputFile, batcher.convert(content, MigrationMetrics.currentPage()));
 
             System.out.println("Pandoc converted Textile to MediaWiki: " + outputFile.toAbsolutePath().toString() + "\n");
     }
 
 
     /**
-     * Creates a temporary file in the system's temporary directory and writes the Textile content into it.
+     * Converts content from Textile format to MediaWiki format in memory.
      *
-     * @param content the content to write into the temporary file
-     * @return the path to the created temporary file
-     * @throws IOException if the file cannot be created or written
-     */
-    private Path createTempFile(String content) throws IOException {
-        try{
-            Path tempInputFile = Files.createTempFile("wikiTempInput",".textile");
-            Files.writeString(tempInputFile, content);
-            return tempInputFile;
-
-        }  catch (IllegalArgumentException e){
-            throw new IOException("Invalid file name or format when writing to system´s temporary directory ", e);
-        } catch (SecurityException e){
-            throw new IOException("Permission denied, you cannot write to system´s temporary directory ", e);
-        } catch (UnsupportedOperationException e){
-            throw new IOException("Unsupported operation while writing to system´s temporary directory ", e);
-        } catch (IOException e) {
-            throw new IOException("I/O error while writing to the system's temporary directory", e);
+     * @param content the Textile-formatted text to be converted
+     * @return the MediaWiki markup
+     * @throws IOException if Pandoc fails
+     */
+    @Override
+    public String convertToMediaWiki(String content) throws IOException {
+        return new String(batcher.convert(content, MigrationMetrics.currentPage()), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Converts content from Textile format to MediaWiki format in memory, the output of a page converted
+     * in a batch is not cacheable, its heading anchors and other document-wide state may depend on the other pages.
+     *
+     * @param content the Textile-formatted text to be converted
+     * @return the MediaWiki markup and whether it may be cached
+     * @throws IOException if Pandoc fails
+     */
+    @Override
+    public Conversion convertForCache(String content) throws IOException {
+        PandocBatcher.Output output = batcher.convertPage(content, MigrationMetrics.currentPage());
+        return new Conversion(new String(output.mediaWiki(), StandardCharsets.UTF_8), !output.batched());
+    }
+
+
+    /**
+     * Identifies the installed Pandoc by the first line of {@code pandoc --version} and the conversion options.
+     *
+     * @return the identity, or null when Pandoc cannot report its version
+     */
+    @Override
+    public String getConverterIdentity() {
+        Optional<String> identity = converterIdentity;
+        if (identity == null) {
+            // A failed version check is kept as well, so it does not cost a process before every page
+            identity = Optional.ofNullable(PandocVersion.of(executable)).map(version -> "pandoc-process " + version + " -f textile -t mediawiki");
+            converterIdentity = identity;
         }
+        return identity.orElse(null);
     }
 
 
@@ -86,23 +194,92 @@ public class PandocServiceImpl implements PandocService {
     }
 
 
+    /**
+     * Runs Pandoc and collects its standard output, the run is emitted as a {@link PandocRunEvent}.
+     *
+     * @param content  the Textile content written to the standard input of Pandoc
+     * @param pageUrls the URLs of the wiki pages converted by the run, recorded in the event
+     * @return the MediaWiki output of Pandoc
+     * @throws IOException if Pandoc cannot be executed, times out or exits with a non-zero code
+     */
+    private byte[] runPandoc(String content, List<String> pageUrls) throws IOException {
+        PandocRunEvent event = new PandocRunEvent();
+        event.begin();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(content.length() + (content.length() >> 3));
+        boolean succeeded = false;
+        try {
+            runPandoc(content, output);
+            succeeded = true;
+            return output.toByteArray();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.pages = pageUrls.size();
+                event.pageUrls = pageUrls.stream().filter(Objects::nonNull).collect(Collectors.joining("\n"));
+                event.inputBytes = content.getBytes(StandardCharsets.UTF_8).length;
+                event.outputBytes = output.size();
+                event.outcome = succeeded ? "success" : "error";
+                event.commit();
+            }
+        }
+    }
+
     /**
      * Executes the Pandoc command-line tool to convert the content from Textile to MediaWiki format.
+     * The standard input, output and error streams are pumped concurrently so Pandoc never blocks on a full pipe.
      *
-     * @param tempInputFile the path to the temporary input file
-     * @param outputFile    the path to the output file to be generated
-     * @throws IOException if Pandoc cannot be executed or fails during processing
+     * @param content the Textile content written to the standard input of Pandoc
+     * @param output  the sink receiving the standard output of Pandoc
+     * @throws IOException if Pandoc cannot be executed, times out or exits with a non-zero code
      */
-    private void runPandoc(Path tempInputFile, Path outputFile) throws IOException {
+    private void runPandoc(String content, OutputStream output) throws IOException {
+        Process process = startPandoc();
         try {
-            ProcessBuilder processBuilder = new ProcessBuilder("pandoc", "-f", "textile", "-t", "mediawiki", tempInputFile.toString(), "-o", outputFile.toString());
+            Future<?> stdin = STREAM_EXECUTOR.submit(() -> writeStdin(process, content));
+            Future<byte[]> stderr = STREAM_EXECUTOR.submit(() -> readStderr(process));
+            Future<Long> stdout = STREAM_EXECUTOR.submit(() -> {
+                try (InputStream input = process.getInputStream()) {
+                    return input.transferTo(output);
+                }
+            });
 
-            // Start the conversion process
-            Process process = processBuilder.start();
+            // Wait for the Pandoc process to complete, killing it closes the pipes and releases the pumps
+            if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("Pandoc did not finish within " + timeoutSeconds + " seconds and was terminated");
+            }
 
-            // Wait for the Pandoc process to complete
-            process.waitFor();
+            stdout.get();
+            String errorOutput = new String(stderr.get(), StandardCharsets.UTF_8).strip();
+            if (process.exitValue() != 0) {
+                throw new IOException("Pandoc failed with exit code " + process.exitValue()
+                        + (errorOutput.isEmpty() ? "" : ": " + errorOutput));
+            }
+            stdin.get();
+            if (!errorOutput.isEmpty()) {
+                System.out.println("Pandoc warning: " + errorOutput);
+            }
 
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Pandoc was interrupted", e);
+        } catch (ExecutionException e) {
+            process.destroyForcibly();
+            throw new IOException("I/O error while streaming data to or from Pandoc", e.getCause());
+        }
+    }
+
+    /**
+     * Starts the Pandoc process reading Textile from stdin and writing MediaWiki to stdout.
+     *
+     * @return the started process
+     * @throws IOException if Pandoc cannot be executed
+     */
+    private Process startPandoc() throws IOException {
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(executable, "-f", "textile", "-t", "mediawiki");
+            return processBuilder.start();
         } catch (NullPointerException e) {
             throw new IOException("Null argument found in Pandoc command list", e);
         } catch (IndexOutOfBoundsException e) {
@@ -113,28 +290,46 @@ public class PandocServiceImpl implements PandocService {
             throw new IOException("Your system does not allow running external tools such as Pandoc", e);
         } catch (IllegalArgumentException e) {
             throw new IOException("Illegal argument passed to Pandoc command", e);
-        } catch (InterruptedException e) {
-            throw new IOException("Pandoc was interrupted", e);
         } catch (IOException e) {
             throw new IOException("I/O error while executing Pandoc command", e);
         }
+    }
 
+    /**
+     * Writes the Textile content to the standard input of Pandoc and closes it.
+     *
+     * @param process the Pandoc process
+     * @param content the Textile content
+     * @return nothing, declared to be usable as a {@link java.util.concurrent.Callable}
+     * @throws IOException if the content cannot be written
+     */
+    private static Void writeStdin(Process process, String content) throws IOException {
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return null;
     }
 
     /**
-     * Deletes the temporary input file after conversion is complete.
+     * Reads the standard error output of Pandoc, only the first {@value #MAX_STDERR_BYTES} bytes are kept.
      *
-     * @param tempInputFile the path to the temporary file to be deleted
-     * @throws IOException if the file cannot be deleted
+     * @param process the Pandoc process
+     * @return the captured bytes
+     * @throws IOException if the stream cannot be read
      */
-    private void deleteTempFile(Path tempInputFile) throws IOException {
-        try {
-            Files.deleteIfExists(tempInputFile);
-        } catch (SecurityException e) {
-            throw new IOException("Permission denied, you cannot delete the temporary file after Pandoc conversion ", e);
-        } catch (IOException e) {
-            throw new IOException("I/O error while deleting the temporary file after Pandoc conversion", e);
+    private static byte[] readStderr(Process process) throws IOException {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        try (InputStream stderr = process.getErrorStream()) {
+            int read;
+            while ((read = stderr.read(buffer)) >= 0) {
+                int keep = Math.min(read, MAX_STDERR_BYTES - captured.size());
+                if (keep > 0) {
+                    captured.write(buffer, 0, keep);
+                }
+            }
         }
+        return captured.toByteArray();
     }
 
 }
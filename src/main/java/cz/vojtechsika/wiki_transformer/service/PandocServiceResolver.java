@@ -0,0 +1,58 @@
+package cz.vojtechsika.wiki_transformer.service;
+
+import cz.vojtechsika.wiki_transformer.dto.ConversionEngine;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import cz.vojtechsika.wiki_transformer.service.output.OutputSink;
+import cz.vojtechsika.wiki_transformer.service.pandoc.ConversionResultCache;
+import org.springframework.stereotype.Component;
+
+/**
+ * Selects the {@link PandocService} implementation for the conversion engine chosen on the command line.
+ * <p>
+ * When the conversion cache is enabled ({@code conversion.cache.enabled}), the Pandoc backend is wrapped
+ * in a {@link CachingPandocService}, so unchanged pages do not cost a Pandoc run. The native engine
+ * converts faster than an entry is read and is never cached. Both engines are measured by
+ * a {@link MeteredPandocService}.
+ * </p>
+ */
+@Component
+public class PandocServiceResolver {
+
+    /**
+     * The Pandoc backend configured by {@code pandoc.backend} (process or server pool)
+     */
+    private final PandocService pandocService;
+
+    /**
+     * The built-in Java engine
+     */
+    private final PandocService nativeTextileService;
+
+
+    /**
+     * Constructs the resolver with both engines.
+     *
+     * @param thePandocService        the Pandoc backend (the primary {@link PandocService} bean)
+     * @param theNativeTextileService the built-in Java engine
+     * @param theCache                the cache of converted pages
+     * @param theOutputSink           destination of the converted files
+     * @param theMetrics              metrics of the conversions
+     */
+    public PandocServiceResolver(PandocService thePandocService, NativeTextileServiceImpl theNativeTextileService,
+                                 ConversionResultCache theCache, OutputSink theOutputSink, MigrationMetrics theMetrics) {
+        PandocService cached = theCache.isEnabled() ? new CachingPandocService(thePandocService, theCache, theOutputSink) : thePandocService;
+        this.pandocService = new MeteredPandocService(cached, theMetrics);
+        this.nativeTextileService = new MeteredPandocService(theNativeTextileService, theMetrics);
+    }
+
+
+    /**
+     * Returns the service converting with the given engine.
+     *
+     * @param engine the conversion engine
+     * @return the service implementing the engine
+     */
+    public PandocService resolve(ConversionEngine engine) {
+        return engine == ConversionEngine.NATIVE ? nativeTextileService : pandocService;
+    }
+}
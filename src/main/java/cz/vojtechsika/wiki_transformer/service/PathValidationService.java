@@ -6,18 +6,44 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @NoArgsConstructor
 public class PathValidationService {
 
+    /**
+     * Directories which already passed the check, by their absolute path
+     */
+    private final Set<Path> writableDirectories = ConcurrentHashMap.newKeySet();
+
 
     /**
      * Checks whether the specified path is writable by attempting to create and delete a temporary file.
+     * Every directory is probed only once, later checks of the same directory return immediately.
      * @param filePath the directory to be validated for write permissions
      * @throws IOException if the directory is not writable or an error occurs during testing
      */
     public void checkWrite(Path filePath) throws IOException {
+        if (writableDirectories.contains(filePath.toAbsolutePath().normalize())) {
+            return;
+        }
+        probe(filePath);
+    }
+
+    // Private helper methods
+
+    /**
+     * Creates and deletes the probe file, one probe at a time, so parallel checks do not collide on its name.
+     * @param filePath the directory to be validated for write permissions
+     * @throws IOException if the directory is not writable or an error occurs during testing
+     */
+    private synchronized void probe(Path filePath) throws IOException {
+        Path directory = filePath.toAbsolutePath().normalize();
+        if (writableDirectories.contains(directory)) {
+            return;
+        }
         Path testPath = filePath.resolve("test.txt");
         try {
             Files.createFile(testPath);
@@ -27,6 +53,7 @@ public class PathValidationService {
         } catch (SecurityException e) {
             throw new IOException("Write access denied for the directory: " + filePath.toAbsolutePath(), e);
         }
+        writableDirectories.add(directory);
     }
 
 
@@ -1,5 +1,6 @@
 package cz.vojtechsika.wiki_transformer.service;
 
+import cz.vojtechsika.wiki_transformer.dto.RedmineWikiIndexResponseDTO;
 import cz.vojtechsika.wiki_transformer.dto.RedmineWikiResponseDTO;
 import cz.vojtechsika.wiki_transformer.exception.RedmineFetchException;
 
@@ -18,4 +19,14 @@ public interface RedmineService {
      * or unexpected content from the Redmine API
      */
     RedmineWikiResponseDTO getRedmine(String url) throws RedmineFetchException;
+
+    /**
+     * Fetches the index of all wiki pages of a Redmine project.
+     *
+     * @param url the full URL pointing to the {@code /projects/<id>/wiki/index.json} endpoint
+     * @return the deserialized {@link RedmineWikiIndexResponseDTO} listing all wiki pages
+     * @throws RedmineFetchException if the fetch operation fails due to a network error, an invalid response,
+     * or unexpected content from the Redmine API
+     */
+    RedmineWikiIndexResponseDTO getWikiIndex(String url) throws RedmineFetchException;
 }
@@ -1,7 +1,11 @@
 package cz.vojtechsika.wiki_transformer.service;
 
+import cz.vojtechsika.wiki_transformer.dto.RedmineWikiIndexResponseDTO;
 import cz.vojtechsika.wiki_transformer.dto.RedmineWikiResponseDTO;
 import cz.vojtechsika.wiki_transformer.exception.RedmineFetchException;
+import cz.vojtechsika.wiki_transformer.http.AdaptiveConcurrencyLimiter;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationStage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -9,6 +13,9 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientException;
 
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Service class responsible for handling communication with the Redmine API.
  */
@@ -21,15 +28,29 @@ public class RedmineServiceImpl implements RedmineService {
      */
     private RestClient restClient;
 
+    /**
+     * Adaptive limit of the Redmine requests in flight.
+     */
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * Metrics of the page fetches.
+     */
+    private final MigrationMetrics metrics;
+
 
     /**
      * Constructor-based dependency injection.
      *
-     * @param theRestClient The RestClient instance to be injected.
+     * @param theRestClient          The RestClient instance to be injected.
+     * @param theConcurrencyLimiter  The adaptive limit of the Redmine requests in flight.
+     * @param theMetrics             The metrics of the page fetches.
      */
     @Autowired
-    public RedmineServiceImpl(RestClient theRestClient) {
+    public RedmineServiceImpl(RestClient theRestClient, AdaptiveConcurrencyLimiter theConcurrencyLimiter, MigrationMetrics theMetrics) {
         this.restClient = theRestClient;
+        this.concurrencyLimiter = theConcurrencyLimiter;
+        this.metrics = theMetrics;
     }
 
 
@@ -45,17 +66,71 @@ public class RedmineServiceImpl implements RedmineService {
      */
     @Override
     public RedmineWikiResponseDTO getRedmine(String url) throws RedmineFetchException {
+        try (AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
+             MigrationMetrics.Sample sample = metrics.start(MigrationStage.PAGE_FETCH, pageUrlOf(url), url)) {
+            try {
+                ResponseEntity<RedmineWikiResponseDTO> response = restClient.get()
+                        .uri(url)
+                        .retrieve()
+                        .toEntity(RedmineWikiResponseDTO.class);
+
+                RedmineWikiResponseDTO page = response.getBody();
+                if (page != null && page.getWikiPage() != null && page.getWikiPage().getText() != null) {
+                    sample.bytes(page.getWikiPage().getText().getBytes(StandardCharsets.UTF_8).length);
+                }
+                return page;
+            } catch (HttpClientErrorException.NotFound e) {
+                sample.failed(e);
+                throw new RedmineFetchException("Wiki page not found", e);
+            } catch (RestClientException e) {
+                permit.failed(e);
+                sample.failed(e);
+                throw new RedmineFetchException("Communication error with the server", e);
+            }
+        } catch (InterruptedIOException e) {
+            throw new RedmineFetchException("Interrupted while waiting for a free Redmine connection", e);
+        }
+    }
+
+
+    /**
+     * Retrieves the index of all wiki pages of a Redmine project.
+     *
+     * @param url the full URL of the {@code /projects/<id>/wiki/index.json} endpoint
+     * @return the parsed {@link RedmineWikiIndexResponseDTO} listing all wiki pages
+     * @throws RedmineFetchException if the wiki index is not found (404), or if any communication or
+     * deserialization error occurs while calling the Redmine API
+     */
+    @Override
+    public RedmineWikiIndexResponseDTO getWikiIndex(String url) throws RedmineFetchException {
         try{
-            ResponseEntity<RedmineWikiResponseDTO> response = restClient.get()
+            ResponseEntity<RedmineWikiIndexResponseDTO> response = restClient.get()
                     .uri(url)
                     .retrieve()
-                    .toEntity(RedmineWikiResponseDTO.class);
+                    .toEntity(RedmineWikiIndexResponseDTO.class);
 
-            return response.getBody();
+            RedmineWikiIndexResponseDTO index = response.getBody();
+            if (index == null) {
+                throw new RedmineFetchException("Wiki index returned empty body");
+            }
+            return index;
         } catch (HttpClientErrorException.NotFound e) {
-            throw new RedmineFetchException("Wiki page not found", e);
+            throw new RedmineFetchException("Wiki index not found", e);
         } catch (RestClientException e) {
             throw new RedmineFetchException("Communication error with the server", e);
         }
     }
+
+    // Private helper methods
+
+    /**
+     * Returns the URL of the wiki page fetched from the JSON endpoint, attributing the fetch to its page.
+     *
+     * @param url the URL of the page with the {@code .json} suffix and an optional query
+     * @return the URL of the page without the suffix
+     */
+    private static String pageUrlOf(String url) {
+        int suffix = url.lastIndexOf(".json");
+        return suffix >= 0 ? url.substring(0, suffix) : url;
+    }
 }
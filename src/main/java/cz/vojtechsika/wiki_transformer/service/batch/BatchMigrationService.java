@@ -0,0 +1,38 @@
+package cz.vojtechsika.wiki_transformer.service.batch;
+
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationOptions;
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationSummary;
+import cz.vojtechsika.wiki_transformer.exception.RedmineFetchException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Service interface for migrating a whole Redmine project wiki in a single run.
+ */
+public interface BatchMigrationService {
+
+    /**
+     * Reads the wiki index of the project and converts every listed page, including its images.
+     * Failures of individual pages are collected in the returned summary and do not abort the run.
+     * In incremental mode only pages changed since the previous run are migrated.
+     *
+     * @param options the project, output location and concurrency of the run
+     * @return the summary of the run with converted and failed pages
+     * @throws RedmineFetchException if the wiki index itself cannot be fetched
+     * @throws IOException if the manifest of migrated pages cannot be read or written
+     */
+    BatchMigrationSummary migrateProject(BatchMigrationOptions options) throws IOException;
+
+    /**
+     * Converts the given wiki pages, including their images, with the concurrency of the options.
+     * Failures of individual pages are collected in the returned summary under the page URL.
+     * No manifest is read or written, the project and wiki root of the options are not used.
+     *
+     * @param wikiUrls the URLs of the wiki pages without the {@code .json} suffix
+     * @param options  the output location, concurrency and engine of the run
+     * @return the summary of the run with converted and failed pages
+     * @throws IOException if the MediaWiki XML dump of the run cannot be created or completed
+     */
+    BatchMigrationSummary migratePages(List<String> wikiUrls, BatchMigrationOptions options) throws IOException;
+}
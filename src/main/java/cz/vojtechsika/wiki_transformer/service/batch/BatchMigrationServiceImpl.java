@@ -0,0 +1,732 @@
+package cz.vojtechsika.wiki_transformer.service.batch;
+
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationOptions;
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationSummary;
+import cz.vojtechsika.wiki_transformer.dto.ConversionEngine;
+import cz.vojtechsika.wiki_transformer.dto.OutputFormat;
+import cz.vojtechsika.wiki_transformer.dto.RedmineWikiResponseDTO;
+import cz.vojtechsika.wiki_transformer.dto.SyncManifestDTO;
+import cz.vojtechsika.wiki_transformer.dto.SyncManifestEntryDTO;
+import cz.vojtechsika.wiki_transformer.dto.WikiConversionContext;
+import cz.vojtechsika.wiki_transformer.dto.WikiPageDTO;
+import cz.vojtechsika.wiki_transformer.exception.RedmineFetchException;
+import cz.vojtechsika.wiki_transformer.http.AdaptiveConcurrencyLimiter;
+import cz.vojtechsika.wiki_transformer.metrics.MetricsReportWriter;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import cz.vojtechsika.wiki_transformer.service.PandocService;
+import cz.vojtechsika.wiki_transformer.service.PandocServiceResolver;
+import cz.vojtechsika.wiki_transformer.service.RedmineService;
+import cz.vojtechsika.wiki_transformer.service.image.ImageService;
+import cz.vojtechsika.wiki_transformer.service.output.ArchiveOutputSink;
+import cz.vojtechsika.wiki_transformer.service.output.MediaWikiDumpWriter;
+import cz.vojtechsika.wiki_transformer.service.output.RoutingOutputSink;
+import cz.vojtechsika.wiki_transformer.service.pipeline.PipelineStage;
+import cz.vojtechsika.wiki_transformer.service.pipeline.StagedPipeline;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Service migrating all pages of a Redmine project wiki inside a single JVM.
+ * <p>
+ * The page list is read from the Redmine wiki index. The pages then flow through a {@link StagedPipeline}
+ * of five stages: fetch, convert, image discovery, image download and write. The fetch, discovery and download
+ * stages run {@code concurrency} workers on virtual threads, so the network, the CPU and the disk are busy
+ * with different pages at the same time. The native engine converts on a pool of platform threads sized to the cores
+ * ({@code batch.pipeline.convert-workers}). A Pandoc conversion only waits for the Pandoc process or server, which
+ * packs the pages converted at the same time into one run, so it runs on virtual threads with at least
+ * {@code pandoc.batch.max-pages} workers and a batch is never cut down to the number of cores. The stages are connected by queues of {@code batch.pipeline.queue-capacity}
+ * pages, a stage falling behind holds back the stages before it and the reading of the index. The output directory
+ * is validated once by the caller and all services (and their HTTP clients) are shared by the workers.
+ * </p>
+ * <p>
+ * Every run writes a manifest of the migrated pages to the output directory. An incremental run
+ * compares it with the version and update time listed by the wiki index, skips unchanged pages
+ * and removes the output of pages which were deleted from the wiki.
+ * </p>
+ * <p>
+ * The output names of the pages are assigned by the {@link OutputNameRegistry} of the output directory,
+ * so parallel workers never write the same file and a re-run writes every page under its previous name.
+ * </p>
+ * <p>
+ * With {@link OutputFormat#MEDIAWIKI_XML} the pages of a run are streamed into a single MediaWiki XML dump
+ * named after the project and the start of the run, an incremental run dumps only the new and changed pages.
+ * </p>
+ * <p>
+ * With {@link OutputFormat#ZIP} and {@link OutputFormat#TAR_GZ} the pages, images and the manifest of a run are
+ * streamed into a single archive named the same way, the output directory holds nothing else of the run.
+ * The performance report of a CLI run ({@link BatchMigrationOptions#getStartedAt()}) is added to the archive as well
+ * unless a report directory is configured.
+ * </p>
+ */
+@Service
+public class BatchMigrationServiceImpl implements BatchMigrationService {
+
+    /**
+     * Instance of {@link RedmineService}
+     */
+    private final RedmineService redmineService;
+
+    /**
+     * Format of the time in the names of the MediaWiki XML dumps and archives
+     */
+    private static final DateTimeFormatter RUN_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    /**
+     * Resolver of the conversion engine
+     */
+    private final PandocServiceResolver pandocServiceResolver;
+
+    /**
+     *  Service responsible for extracting and downloading image
+     */
+    private final ImageService imageService;
+
+    /**
+     * Store of the manifest of migrated pages
+     */
+    private final SyncManifestStore syncManifestStore;
+
+    /**
+     * Adaptive limit of the Redmine requests in flight, reported in the summary
+     */
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * Destination of the converted files, flushed before the manifest is written and opening the archives
+     */
+    private final RoutingOutputSink outputSink;
+
+    /**
+     * Writer of the performance report added to the archive of a run
+     */
+    private final MetricsReportWriter metricsReportWriter;
+
+    /**
+     * Number of pages which may wait for each stage of the pipeline
+     */
+    private final int queueCapacity;
+
+    /**
+     * Number of pages converted at once by the native engine
+     */
+    private final int convertWorkers;
+
+    /**
+     * Number of pages converted at once by Pandoc, enough to fill a batch of {@code pandoc.batch.max-pages}
+     */
+    private final int pandocWorkers;
+
+
+    /**
+     * Constructs the BatchMigrationServiceImpl with its dependencies.
+     *
+     * @param theRedmineService the service responsible for fetching Redmine Wiki page data
+     * @param thePandocServiceResolver the resolver of the service converting content from Textile to MediaWiki format
+     * @param theImageService   the service for downloading referenced images
+     * @param theSyncManifestStore the store of the manifest of migrated pages
+     * @param theConcurrencyLimiter the adaptive limit of the Redmine requests in flight
+     * @param theOutputSink     the destination of the converted files and images
+     * @param theMetricsReportWriter the writer of the performance report added to the archive of a run
+     * @param theQueueCapacity  the number of pages which may wait for each stage of the pipeline
+     * @param theConvertWorkers the number of pages converted at once, 0 for the number of cores
+     * @param theBatchMaxPages  the maximum number of pages converted in one Pandoc run
+     */
+    @Autowired
+    public BatchMigrationServiceImpl(RedmineService theRedmineService,
+                                     PandocServiceResolver thePandocServiceResolver,
+                                     ImageService theImageService,
+                                     SyncManifestStore theSyncManifestStore,
+                                     AdaptiveConcurrencyLimiter theConcurrencyLimiter,
+                                     RoutingOutputSink theOutputSink,
+                                     MetricsReportWriter theMetricsReportWriter,
+                                     @Value("${batch.pipeline.queue-capacity:16}") int theQueueCapacity,
+                                     @Value("${batch.pipeline.convert-workers:0}") int theConvertWorkers,
+                                     @Value("${pandoc.batch.max-pages:32}") int theBatchMaxPages) {
+        this.redmineService = theRedmineService;
+        this.pandocServiceResolver = thePandocServiceResolver;
+        this.imageService = theImageService;
+        this.syncManifestStore = theSyncManifestStore;
+        this.concurrencyLimiter = theConcurrencyLimiter;
+        this.outputSink = theOutputSink;
+        this.metricsReportWriter = theMetricsReportWriter;
+        this.queueCapacity = Math.max(1, theQueueCapacity);
+        this.convertWorkers = theConvertWorkers > 0 ? theConvertWorkers : Runtime.getRuntime().availableProcessors();
+        this.pandocWorkers = Math.max(convertWorkers, theBatchMaxPages);
+    }
+
+
+    /**
+     * Reads the wiki index of the project and converts all listed pages in the staged pipeline.
+     *
+     * @param options the project, output location and concurrency of the run
+     * @return the summary of the run
+     * @throws RedmineFetchException if the wiki index cannot be fetched
+     * @throws IOException if the manifest of the previous run cannot be read, the new one cannot be written
+     *                     or the converted files cannot be written, in which case the manifest is left unchanged
+     */
+    @Override
+    public BatchMigrationSummary migrateProject(BatchMigrationOptions options) throws IOException {
+        String projectWikiUrl = createProjectWikiUrl(options);
+
+        System.out.println("Fetching Redmine Wiki index from url: " + projectWikiUrl + "/index.json" + "\n");
+        List<WikiPageDTO> pages = redmineService.getWikiIndex(projectWikiUrl + "/index.json").getWikiPages();
+        System.out.println("The wiki index contains: " + pages.size() + " pages, starting batch migration...\n");
+
+        SyncManifestDTO previousManifest = options.isIncremental() ? syncManifestStore.load(options.getFilePath()) : new SyncManifestDTO();
+        SyncManifestDTO manifest = new SyncManifestDTO();
+
+        BatchMigrationSummary summary = new BatchMigrationSummary(pages.size());
+        long start = System.nanoTime();
+        OutputNameRegistry names = openNameRegistry(options);
+        ArchiveOutputSink archive = openArchive(options, options.getProjectId());
+        try {
+            MediaWikiDumpWriter dump = openDump(options, options.getProjectId());
+            // Entries of the previous run replaced by a migrated page, their stale images are deleted after the flush
+            Map<String, SyncManifestEntryDTO> replaced = new ConcurrentHashMap<>();
+            Consumer<PageJob> migrated = job -> {
+                manifest.getPages().put(job.key, job.entry);
+                if (job.previous != null) {
+                    replaced.put(job.key, job.previous);
+                }
+                summary.pageConverted();
+            };
+            BiConsumer<PageJob, Exception> failed = (job, e) -> {
+                if (job.previous != null) {
+                    // Keep the outdated entry, so the output can still be removed once the page is deleted
+                    manifest.getPages().put(job.key, job.previous);
+                }
+                summary.pageFailed(job.key, e);
+            };
+
+            // Closing the pipeline waits until all submitted pages are finished, the dump is completed after that
+            try (dump; StagedPipeline<PageJob> pipeline = createPipeline(options, names, dump, migrated, failed)) {
+                for (WikiPageDTO page : pages) {
+                    SyncManifestEntryDTO previous = previousManifest.getPages().get(page.getTitle());
+                    if (options.isIncremental() && isUnchanged(previous, page, options)) {
+                        manifest.getPages().put(page.getTitle(), previous);
+                        summary.pageUnchanged();
+                        continue;
+                    }
+
+                    String wikiUrl = projectWikiUrl + "/" + UriUtils.encodePathSegment(page.getTitle(), StandardCharsets.UTF_8);
+                    // Waits while the fetch stage is behind
+                    submit(pipeline, new PageJob(page.getTitle(), wikiUrl, previous));
+                }
+            }
+            reportDump(dump);
+
+            if (options.isIncremental()) {
+                deleteRemovedPages(previousManifest, pages, options.getFilePath(), summary);
+            }
+            // The manifest must not list a page whose file is not on the disk yet
+            names.flush();
+            outputSink.flush(options.getFilePath());
+            deleteStaleImages(replaced, manifest, options.getFilePath());
+            if (archive != null) {
+                finishArchive(archive, options, manifest);
+            } else {
+                syncManifestStore.save(options.getFilePath(), manifest);
+            }
+        } finally {
+            if (archive != null) {
+                outputSink.closeArchive(options.getFilePath(), archive);
+            }
+            releaseRun(options, names);
+        }
+
+        finishSummary(summary, start);
+        return summary;
+    }
+
+    /**
+     * Converts the given wiki pages in the staged pipeline.
+     *
+     * @param wikiUrls the URLs of the wiki pages without the {@code .json} suffix
+     * @param options  the output location, concurrency and engine of the run
+     * @return the summary of the run
+     * @throws IOException if the MediaWiki XML dump or the archive cannot be created or completed
+     */
+    @Override
+    public BatchMigrationSummary migratePages(List<String> wikiUrls, BatchMigrationOptions options) throws IOException {
+        BatchMigrationSummary summary = new BatchMigrationSummary(wikiUrls.size());
+        long start = System.nanoTime();
+        // Only written as the manifest entry of an archive, the pages are keyed by their URL
+        SyncManifestDTO manifest = new SyncManifestDTO();
+        OutputNameRegistry names = openNameRegistry(options);
+        ArchiveOutputSink archive = openArchive(options, "pages");
+        try {
+            MediaWikiDumpWriter dump = openDump(options, "pages");
+
+            Consumer<PageJob> migrated = job -> {
+                manifest.getPages().put(job.key, job.entry);
+                summary.pageConverted();
+            };
+            BiConsumer<PageJob, Exception> failed = (job, e) -> summary.pageFailed(job.key, e);
+
+            try (dump; StagedPipeline<PageJob> pipeline = createPipeline(options, names, dump, migrated, failed)) {
+                for (String wikiUrl : wikiUrls) {
+                    submit(pipeline, new PageJob(wikiUrl, wikiUrl, null));
+                }
+            }
+            reportDump(dump);
+
+            try {
+                names.flush();
+                outputSink.flush(options.getFilePath());
+            } catch (IOException e) {
+                summary.pageFailed(options.getOutputDir(), e);
+            }
+            if (archive != null) {
+                finishArchive(archive, options, manifest);
+            }
+        } finally {
+            if (archive != null) {
+                outputSink.closeArchive(options.getFilePath(), archive);
+            }
+            releaseRun(options, names);
+        }
+
+        finishSummary(summary, start);
+        return summary;
+    }
+
+    // Private helper methods
+
+    /**
+     * Opens the MediaWiki XML dump of the run when the pages are written in that format.
+     *
+     * @param options the options of the run
+     * @param name    the first part of the dump file name, e.g. the project identifier
+     * @return the dump, or null when the pages are written as separate files
+     * @throws IOException if the dump cannot be created
+     */
+    private MediaWikiDumpWriter openDump(BatchMigrationOptions options, String name) throws IOException {
+        if (options.getFormat() != OutputFormat.MEDIAWIKI_XML) {
+            return null;
+        }
+        String fileName = name + "-" + RUN_TIME_FORMAT.format(LocalDateTime.now()) + ".xml" + (options.isGzip() ? ".gz" : "");
+        return new MediaWikiDumpWriter(options.getFilePath().resolve(fileName), options.isGzip());
+    }
+
+    /**
+     * Opens the archive of the run and attaches it to the output directory when the run is written into an archive.
+     *
+     * @param options the options of the run
+     * @param name    the first part of the archive file name, e.g. the project identifier
+     * @return the archive, or null when the output is written to the file system
+     * @throws IOException if the archive cannot be created
+     * @throws IllegalArgumentException if the run is incremental, an archive always contains the whole run
+     */
+    private ArchiveOutputSink openArchive(BatchMigrationOptions options, String name) throws IOException {
+        if (!options.getFormat().isArchive()) {
+            return null;
+        }
+        if (options.isIncremental()) {
+            throw new IllegalArgumentException("The " + options.getFormat() + " format cannot be combined with an incremental run");
+        }
+        String fileName = name + "-" + RUN_TIME_FORMAT.format(LocalDateTime.now()) + ArchiveOutputSink.extensionOf(options.getFormat());
+        return outputSink.openArchive(options.getFilePath().resolve(fileName), options.getFilePath(), options.getFormat());
+    }
+
+    /**
+     * Adds the manifest and the performance report of the run to the archive, completes the archive and prints its location.
+     *
+     * @param archive  the archive of the run
+     * @param options  the options of the run
+     * @param manifest the manifest of the run
+     * @throws IOException if the manifest, the report or any queued entry cannot be written or the archive cannot be completed
+     */
+    private void finishArchive(ArchiveOutputSink archive, BatchMigrationOptions options, SyncManifestDTO manifest) throws IOException {
+        archive.write(options.getFilePath().resolve(SyncManifestStore.MANIFEST_FILE), syncManifestStore.toJson(manifest));
+        if (options.getStartedAt() != null && metricsReportWriter.isWrittenToArchive()) {
+            metricsReportWriter.write(archive, options.getFilePath(), options.getStartedAt());
+        }
+        archive.finish();
+        System.out.println("Archive with " + archive.getEntryCount() + " entries: " + archive.getTarget().toAbsolutePath());
+    }
+
+    /**
+     * Prints the location and the number of pages of the completed dump.
+     *
+     * @param dump the dump of the run, or null
+     */
+    private void reportDump(MediaWikiDumpWriter dump) {
+        if (dump != null) {
+            System.out.println("MediaWiki XML dump with " + dump.getPageCount() + " pages: " + dump.getTarget().toAbsolutePath());
+        }
+    }
+
+    /**
+     * Records the concurrency limit and the duration of the run.
+     *
+     * @param summary the summary of the run
+     * @param start   the start of the run in nanoseconds
+     */
+    private void finishSummary(BatchMigrationSummary summary, long start) {
+        if (concurrencyLimiter.isEnabled()) {
+            summary.recordConcurrencyLimit(concurrencyLimiter.getLimit(), concurrencyLimiter.getPeakLimit());
+        }
+        summary.finish(Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Creates the pipeline of the run: fetch, convert, image discovery, image download and write.
+     *
+     * @param options  the options of the run
+     * @param names    the output names of the run
+     * @param dump     the MediaWiki XML dump of the run, or null when the pages are written as files
+     * @param migrated receives every completely migrated page, called by the single worker of the write stage
+     * @param failed   receives every failed page with the reason of the failure
+     * @return the running pipeline
+     */
+    private StagedPipeline<PageJob> createPipeline(BatchMigrationOptions options, OutputNameRegistry names, MediaWikiDumpWriter dump,
+                                                   Consumer<PageJob> migrated, BiConsumer<PageJob, Exception> failed) {
+        PandocService converter = pandocServiceResolver.resolve(options.getEngine());
+        int ioWorkers = Math.max(1, options.getConcurrency());
+        // A worker waiting for its Pandoc batch holds no core, a core-sized pool would cap every batch at the cores
+        PipelineStage.Task<PageJob> convert = forPage(job -> convertPage(job, converter, dump));
+        PipelineStage<PageJob> convertStage = options.getEngine() == ConversionEngine.NATIVE
+                ? PipelineStage.cpu("convert", convertWorkers, convert)
+                : PipelineStage.io("convert", pandocWorkers, convert);
+        List<PipelineStage<PageJob>> stages = List.of(
+                PipelineStage.io("fetch", ioWorkers, forPage(job -> fetchPage(job, options, names))),
+                convertStage,
+                PipelineStage.io("discover", ioWorkers, forPage(job -> job.imageUrls = imageService.discoverImages(job.context))),
+                PipelineStage.io("download", ioWorkers, forPage(job -> job.images = imageService.downloadImages(job.context, job.imageUrls))),
+                PipelineStage.io("write", 1, forPage(job -> {
+                    writePage(job, dump);
+                    migrated.accept(job);
+                })));
+        return new StagedPipeline<>(stages, queueCapacity, failed);
+    }
+
+    /**
+     * Binds the page of the job to the worker while the task works on it, so the metrics of the conversion
+     * and of the written files name the page.
+     *
+     * @param task the task of a stage
+     * @return the task running with the page bound
+     */
+    private static PipelineStage.Task<PageJob> forPage(PipelineStage.Task<PageJob> task) {
+        return job -> {
+            try (MigrationMetrics.PageBinding page = MigrationMetrics.bindPage(job.wikiUrl)) {
+                task.process(job);
+            }
+        };
+    }
+
+    /**
+     * Hands the page to the pipeline, waiting while the fetch stage is behind.
+     *
+     * @param pipeline the pipeline of the run
+     * @param job      the page
+     * @throws InterruptedIOException if the run is interrupted while waiting
+     */
+    private static void submit(StagedPipeline<PageJob> pipeline, PageJob job) throws InterruptedIOException {
+        try {
+            pipeline.submit(job);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the pipeline of the run");
+        }
+    }
+
+    /**
+     * Fetch stage: fetches the page with its attachments under the output name of the previous run.
+     *
+     * @param job     the page
+     * @param options the options of the run
+     * @param names   the output names of the run
+     * @throws IOException if the output name cannot be assigned
+     * @throws RedmineFetchException if the page cannot be fetched
+     */
+    private void fetchPage(PageJob job, BatchMigrationOptions options, OutputNameRegistry names) throws IOException {
+        String preferredName = null;
+        if (job.previous != null && job.previous.getOutputFile() != null) {
+            preferredName = job.previous.getOutputFile().replaceFirst("\\.mediawiki$", "");
+        }
+
+        // Attachments are needed to resolve the image references without fetching the HTML page
+        RedmineWikiResponseDTO response = redmineService.getRedmine(job.wikiUrl + ".json?include=attachments");
+        if (response == null || response.getWikiPage() == null) {
+            throw new RedmineFetchException("Wiki page returned empty body: " + job.wikiUrl);
+        }
+
+        WikiConversionContext context = new WikiConversionContext();
+        context.setUniqueTitle(names.nameFor(job.wikiUrl, preferredName, response.getWikiPage().getTitle()));
+        context.setWikiText(response.getWikiPage().getText());
+        context.setWikiUrl(job.wikiUrl);
+        context.setFilePath(options.getFilePath());
+        context.setOutputDir(options.getOutputDir());
+        context.setAttachments(response.getWikiPage().getAttachments());
+        job.context = context;
+        job.page = response.getWikiPage();
+    }
+
+    /**
+     * Convert stage: converts the Textile of the page, into memory for the dump or handed to the output sink.
+     *
+     * @param job       the fetched page
+     * @param converter the service of the conversion engine of the run
+     * @param dump      the MediaWiki XML dump of the run, or null when the page is written as a file
+     * @throws IOException if the conversion fails
+     */
+    private void convertPage(PageJob job, PandocService converter, MediaWikiDumpWriter dump) throws IOException {
+        WikiConversionContext context = job.context;
+        if (dump != null) {
+            job.mediaWiki = converter.convertToMediaWiki(context.getWikiText());
+        } else {
+            converter.convertTextileToMediaWiki(context.getWikiText(), context.getUniqueTitle(), context.getFilePath(), context.getOutputDir());
+        }
+    }
+
+    /**
+     * Write stage: appends the page to the dump and creates its manifest entry. The page is written
+     * to the dump last, so the dump contains only pages which were migrated completely.
+     *
+     * @param job  the page with its downloaded images
+     * @param dump the MediaWiki XML dump of the run, or null when the page was written as a file
+     * @throws IOException if the page cannot be written to the dump
+     */
+    private void writePage(PageJob job, MediaWikiDumpWriter dump) throws IOException {
+        WikiPageDTO page = job.page;
+        String uniqueTitle = job.context.getUniqueTitle();
+        if (dump != null) {
+            dump.writePage(page.getTitle(), job.mediaWiki, page.getUpdatedOn(), page.getAuthor());
+            job.entry = new SyncManifestEntryDTO(page.getVersion(), page.getUpdatedOn(), null, uniqueTitle, job.images,
+                    dump.getTarget().getFileName().toString());
+        } else {
+            job.entry = new SyncManifestEntryDTO(page.getVersion(), page.getUpdatedOn(), uniqueTitle + ".mediawiki",
+                    uniqueTitle, job.images, null);
+        }
+    }
+
+    /**
+     * Reads the name registry of the output directory for one run. The registry is read from the disk at the start
+     * of every run and dropped with the run, a job service runs only one job per output directory at a time.
+     *
+     * @param options the options of the run
+     * @return the registry of the run
+     * @throws IOException if the registry file cannot be read
+     */
+    private OutputNameRegistry openNameRegistry(BatchMigrationOptions options) throws IOException {
+        return new OutputNameRegistry(options.getFilePath().toAbsolutePath().normalize());
+    }
+
+    /**
+     * Records the output names assigned by a run which failed before its flush and forgets the image store
+     * of the output directory, the next run reads both from the disk again.
+     *
+     * @param options the options of the finished run
+     * @param names   the output names of the run
+     */
+    private void releaseRun(BatchMigrationOptions options, OutputNameRegistry names) {
+        try {
+            names.flush();
+        } catch (IOException e) {
+            System.out.println("Output names of the run could not be recorded: " + e.getMessage());
+        }
+        imageService.releaseImageStore(options.getFilePath());
+    }
+
+    /**
+     * Returns whether the page was migrated by the previous run in the version listed by the index
+     * and its output still exists. A page of an earlier MediaWiki XML dump is not dumped again in a dump run,
+     * the earlier dump may have been imported and removed since.
+     *
+     * @param previous the manifest entry of the previous run, or null
+     * @param page     the page as listed by the wiki index
+     * @param options  the options of the run
+     * @return true when the page does not need to be migrated again
+     */
+    private boolean isUnchanged(SyncManifestEntryDTO previous, WikiPageDTO page, BatchMigrationOptions options) {
+        if (previous == null
+                || previous.getVersion() != page.getVersion()
+                || !Objects.equals(previous.getUpdatedOn(), page.getUpdatedOn())) {
+            return false;
+        }
+        if (options.getFormat() == OutputFormat.MEDIAWIKI_XML) {
+            return previous.getDumpFile() != null;
+        }
+        return previous.getOutputFile() != null && Files.exists(options.getFilePath().resolve(previous.getOutputFile()));
+    }
+
+    /**
+     * Removes the output of the pages which are in the previous manifest but no longer in the wiki index.
+     *
+     * @param previousManifest the manifest of the previous run
+     * @param pages            the pages listed by the wiki index
+     * @param filePath         the output directory
+     * @param summary          the summary counting the deleted pages
+     */
+    private void deleteRemovedPages(SyncManifestDTO previousManifest, List<WikiPageDTO> pages, Path filePath, BatchMigrationSummary summary) {
+        Set<String> titles = new HashSet<>();
+        pages.forEach(page -> titles.add(page.getTitle()));
+
+        for (Map.Entry<String, SyncManifestEntryDTO> entry : previousManifest.getPages().entrySet()) {
+            if (titles.contains(entry.getKey())) {
+                continue;
+            }
+            try {
+                deleteImages(entry.getValue().getImageDirectory(), entry.getValue().getImages(), filePath);
+                if (entry.getValue().getOutputFile() != null) {
+                    Files.deleteIfExists(filePath.resolve(entry.getValue().getOutputFile()));
+                }
+                System.out.println("Deleted page removed from the wiki: " + entry.getKey());
+                summary.pageDeleted();
+            } catch (IOException e) {
+                summary.pageFailed(entry.getKey(), new IOException("Could not delete the output of the removed page", e));
+            }
+        }
+    }
+
+    /**
+     * Removes the images of the previous run which the migrated pages no longer reference. Runs only once
+     * the new pages and images are on the disk, so a page failing in the middle of the run keeps its old images,
+     * and an image kept under the same name is never deleted.
+     *
+     * @param replaced the manifest entries of the previous run replaced by migrated pages
+     * @param manifest the manifest of the run
+     * @param filePath the output directory
+     */
+    private void deleteStaleImages(Map<String, SyncManifestEntryDTO> replaced, SyncManifestDTO manifest, Path filePath) {
+        for (Map.Entry<String, SyncManifestEntryDTO> entry : replaced.entrySet()) {
+            SyncManifestEntryDTO previous = entry.getValue();
+            SyncManifestEntryDTO current = manifest.getPages().get(entry.getKey());
+            List<String> stale = previous.getImages();
+            if (current != null && Objects.equals(previous.getImageDirectory(), current.getImageDirectory())) {
+                Set<String> kept = new HashSet<>(current.getImages());
+                stale = stale.stream().filter(image -> !kept.contains(image)).toList();
+            }
+            try {
+                deleteImages(previous.getImageDirectory(), stale, filePath);
+            } catch (IOException e) {
+                System.out.println("Could not delete the stale images of the page " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes the images of a page and its image directory when it is empty afterwards.
+     *
+     * @param imageDirectory the image directory of the page relative to the output directory, or null
+     * @param images         the file names of the images to delete
+     * @param filePath       the output directory
+     * @throws IOException if an image cannot be deleted
+     */
+    private void deleteImages(String imageDirectory, List<String> images, Path filePath) throws IOException {
+        if (imageDirectory == null) {
+            return;
+        }
+        Path imageDir = filePath.resolve(imageDirectory);
+        for (String image : images) {
+            Files.deleteIfExists(imageDir.resolve(image));
+        }
+        if (Files.isDirectory(imageDir)) {
+            try (var remaining = Files.list(imageDir)) {
+                if (remaining.findAny().isEmpty()) {
+                    Files.delete(imageDir);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the URL of the project wiki from the Redmine root URL and the project identifier.
+     *
+     * @param options the options containing the wiki root and project identifier
+     * @return the URL of the project wiki without trailing slash
+     */
+    private String createProjectWikiUrl(BatchMigrationOptions options) {
+        String wikiRoot = options.getWikiRoot();
+        while (wikiRoot.endsWith("/")) {
+            wikiRoot = wikiRoot.substring(0, wikiRoot.length() - 1);
+        }
+        return wikiRoot + "/projects/" + UriUtils.encodePathSegment(options.getProjectId(), StandardCharsets.UTF_8) + "/wiki";
+    }
+
+
+    /**
+     * A page flowing through the pipeline, every stage fills in its result for the following stages.
+     */
+    private static final class PageJob {
+
+        /**
+         * Key of the page in the manifest and the summary, the title or the URL
+         */
+        private final String key;
+
+        /**
+         * The URL of the wiki page without the {@code .json} suffix
+         */
+        private final String wikiUrl;
+
+        /**
+         * The manifest entry of the previous run, or null
+         */
+        private final SyncManifestEntryDTO previous;
+
+        /**
+         * The conversion context, set by the fetch stage
+         */
+        private WikiConversionContext context;
+
+        /**
+         * The fetched page, set by the fetch stage
+         */
+        private WikiPageDTO page;
+
+        /**
+         * The converted MediaWiki markup of a dump run, set by the convert stage
+         */
+        private String mediaWiki;
+
+        /**
+         * The image URLs of the page, set by the discovery stage
+         */
+        private List<String> imageUrls;
+
+        /**
+         * The file names of the saved images, set by the download stage
+         */
+        private List<String> images;
+
+        /**
+         * The manifest entry of the migrated page, set by the write stage
+         */
+        private SyncManifestEntryDTO entry;
+
+
+        /**
+         * Creates the job of one page.
+         *
+         * @param theKey      key of the page in the manifest and the summary
+         * @param theWikiUrl  the URL of the wiki page without the {@code .json} suffix
+         * @param thePrevious the manifest entry of the previous run, or null
+         */
+        private PageJob(String theKey, String theWikiUrl, SyncManifestEntryDTO thePrevious) {
+            this.key = theKey;
+            this.wikiUrl = theWikiUrl;
+            this.previous = thePrevious;
+        }
+    }
+}
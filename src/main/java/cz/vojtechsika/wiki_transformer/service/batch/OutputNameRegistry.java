@@ -0,0 +1,228 @@
+package cz.vojtechsika.wiki_transformer.service.batch;
+
+import cz.vojtechsika.wiki_transformer.util.FileNameUtil;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the output names of wiki pages, shared by all workers writing to one output directory.
+ * <p>
+ * A page gets the name {@code <sanitized title>_<64-bit digest of the URL>}. A name is owned by a single URL,
+ * compared case-insensitively so two pages never share a file on Windows or macOS either. When the name is
+ * already owned by another URL, the 128-bit digest is used and, should that be taken as well, a counter.
+ * The assigned names are appended to {@code .wiki-transformer-names.tsv} in the output directory in batches
+ * of {@value #APPEND_BATCH} and by {@link #flush()} at the end of a run, so a re-run maps every URL to the same name.
+ * Lookups and assignments take O(1).
+ * </p>
+ */
+public class OutputNameRegistry {
+
+    /**
+     * Name of the registry file inside the output directory
+     */
+    public static final String REGISTRY_FILE = ".wiki-transformer-names.tsv";
+
+    /**
+     * Number of new names appended to the registry file at once
+     */
+    private static final int APPEND_BATCH = 64;
+
+    /**
+     * The registry file
+     */
+    private final Path registryFile;
+
+    /**
+     * Assigned names by the page URL
+     */
+    private final Map<String, String> namesByUrl = new ConcurrentHashMap<>();
+
+    /**
+     * Owners of the assigned names, by the lower case name
+     */
+    private final Map<String, String> urlsByName = new ConcurrentHashMap<>();
+
+    /**
+     * Lines of the new names not yet appended to the registry file, guarded by the registry
+     */
+    private final List<String> pendingLines = new ArrayList<>();
+
+
+    /**
+     * Creates the registry of the output directory and reads the names assigned by previous runs.
+     *
+     * @param theOutputDir the output directory of the migration
+     * @throws IOException if the registry file exists but cannot be read
+     */
+    public OutputNameRegistry(Path theOutputDir) throws IOException {
+        this.registryFile = theOutputDir.resolve(REGISTRY_FILE);
+        if (Files.exists(registryFile)) {
+            List<String> lines = Files.readAllLines(registryFile, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                int tab = line.indexOf('\t');
+                if (tab > 0 && tab < line.length() - 1 && claim(line.substring(0, tab), line.substring(tab + 1))) {
+                    namesByUrl.putIfAbsent(line.substring(0, tab), line.substring(tab + 1));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns the output name of the page, assigning a new one on the first call for the URL.
+     *
+     * @param url   the URL of the wiki page
+     * @param title the title of the wiki page
+     * @return the unique output name without extension
+     * @throws IOException if a new name cannot be recorded in the registry file
+     */
+    public String nameFor(String url, String title) throws IOException {
+        return assign(url, null, title);
+    }
+
+    /**
+     * Returns the output name of the page and prefers the given name, so pages migrated before the registry
+     * existed keep the names they were written under.
+     *
+     * @param url           the URL of the wiki page
+     * @param preferredName the name used by a previous run, without extension
+     * @param title         the title of the wiki page, used when the preferred name is owned by another URL
+     * @return the unique output name without extension
+     * @throws IOException if a new name cannot be recorded in the registry file
+     */
+    public String nameFor(String url, String preferredName, String title) throws IOException {
+        return assign(url, preferredName, title);
+    }
+
+    /**
+     * Appends the new names which are not in the registry file yet.
+     *
+     * @throws IOException if the registry file cannot be written, the names are kept for the next attempt
+     */
+    public synchronized void flush() throws IOException {
+        if (pendingLines.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(registryFile.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(registryFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (String line : pendingLines) {
+                writer.write(line);
+            }
+        }
+        pendingLines.clear();
+    }
+
+    // Private helper methods
+
+    /**
+     * Returns the registered name of the URL or registers the first free candidate.
+     *
+     * @param url           the URL of the wiki page
+     * @param preferredName the first candidate, or null
+     * @param title         the title of the wiki page
+     * @return the name of the URL
+     * @throws IOException if the new name cannot be recorded, the name is released again
+     */
+    private String assign(String url, String preferredName, String title) throws IOException {
+        String assigned = namesByUrl.get(url);
+        if (assigned != null) {
+            return assigned;
+        }
+
+        String name = firstFreeName(url, preferredName, title);
+        assigned = namesByUrl.putIfAbsent(url, name);
+        if (assigned != null) {
+            // Another worker assigned the URL in the meantime, a different candidate it claimed must not stay taken
+            if (!assigned.equalsIgnoreCase(name)) {
+                release(url, name);
+            }
+            return assigned;
+        }
+        try {
+            record(url, name);
+        } catch (IOException e) {
+            namesByUrl.remove(url, name);
+            release(url, name);
+            throw e;
+        }
+        return name;
+    }
+
+    /**
+     * Claims the first candidate name which is free or already owned by the URL.
+     * The candidates depend only on the URL and the title, two URLs therefore never race for the same sequence.
+     *
+     * @param url           the URL of the wiki page
+     * @param preferredName the first candidate, or null
+     * @param title         the title of the wiki page
+     * @return the claimed name
+     */
+    private String firstFreeName(String url, String preferredName, String title) {
+        if (preferredName != null && claim(url, preferredName)) {
+            return preferredName;
+        }
+        String base = FileNameUtil.sanitizeFileName(title);
+        String name = base + "_" + FileNameUtil.createDigestSuffix(url, false);
+        if (claim(url, name)) {
+            return name;
+        }
+        name = base + "_" + FileNameUtil.createDigestSuffix(url, true);
+        for (int counter = 2; !claim(url, name); counter++) {
+            name = base + "_" + FileNameUtil.createDigestSuffix(url, true) + "_" + counter;
+        }
+        return name;
+    }
+
+    /**
+     * Records the owner of the name.
+     *
+     * @param url  the URL of the wiki page
+     * @param name the name
+     * @return true when the name was free or is already owned by the URL
+     */
+    private boolean claim(String url, String name) {
+        String owner = urlsByName.putIfAbsent(name.toLowerCase(Locale.ROOT), url);
+        return owner == null || owner.equals(url);
+    }
+
+    /**
+     * Gives up the claim of the name, so other URLs can take it.
+     *
+     * @param url  the URL of the wiki page
+     * @param name the claimed name
+     */
+    private void release(String url, String name) {
+        urlsByName.remove(name.toLowerCase(Locale.ROOT), url);
+    }
+
+    /**
+     * Queues a new assignment for the registry file and appends the queued ones once a batch is complete.
+     *
+     * @param url  the URL of the wiki page
+     * @param name the assigned name
+     * @throws IOException if the batch cannot be appended, the assignment is not kept
+     */
+    private synchronized void record(String url, String name) throws IOException {
+        String line = url + "\t" + name + "\n";
+        pendingLines.add(line);
+        if (pendingLines.size() >= APPEND_BATCH) {
+            try {
+                flush();
+            } catch (IOException e) {
+                pendingLines.remove(pendingLines.size() - 1);
+                throw e;
+            }
+        }
+    }
+}
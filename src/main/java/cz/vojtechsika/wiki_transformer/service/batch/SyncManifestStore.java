@@ -0,0 +1,99 @@
+package cz.vojtechsika.wiki_transformer.service.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import cz.vojtechsika.wiki_transformer.dto.SyncManifestDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Reads and writes the {@link SyncManifestDTO} of an output directory.
+ * <p>
+ * The manifest is stored as {@value #MANIFEST_FILE} in the output directory. It is written to a temporary
+ * file first and moved into place, so an interrupted run keeps the manifest of the previous run.
+ * </p>
+ */
+@Component
+public class SyncManifestStore {
+
+    /**
+     * Name of the manifest file in the output directory
+     */
+    public static final String MANIFEST_FILE = ".wiki-transformer-manifest.json";
+
+    /**
+     * Mapper used to read and write the manifest
+     */
+    private final ObjectMapper objectMapper;
+
+
+    /**
+     * Constructs the store with the application JSON mapper.
+     *
+     * @param theObjectMapper mapper used to read and write the manifest
+     */
+    @Autowired
+    public SyncManifestStore(ObjectMapper theObjectMapper) {
+        this.objectMapper = theObjectMapper;
+    }
+
+
+    /**
+     * Reads the manifest of the output directory.
+     *
+     * @param outputDir the output directory
+     * @return the manifest, or an empty manifest when the directory has none
+     * @throws IOException if the manifest exists but cannot be read
+     */
+    public SyncManifestDTO load(Path outputDir) throws IOException {
+        Path manifestFile = outputDir.resolve(MANIFEST_FILE);
+        if (!Files.exists(manifestFile)) {
+            return new SyncManifestDTO();
+        }
+        try {
+            return objectMapper.readValue(manifestFile.toFile(), SyncManifestDTO.class);
+        } catch (IOException e) {
+            throw new IOException("Could not read the manifest " + manifestFile.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Writes the manifest to the output directory.
+     *
+     * @param outputDir the output directory
+     * @param manifest  the manifest to write
+     * @throws IOException if the manifest cannot be written
+     */
+    public void save(Path outputDir, SyncManifestDTO manifest) throws IOException {
+        Path manifestFile = outputDir.resolve(MANIFEST_FILE);
+        Path tempFile = outputDir.resolve(MANIFEST_FILE + ".tmp");
+        try {
+            Files.write(tempFile, toJson(manifest));
+            try {
+                Files.move(tempFile, manifestFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw new IOException("Could not write the manifest " + manifestFile.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Serializes the manifest in the format of the manifest file, e.g. for the manifest entry of an archive.
+     *
+     * @param manifest the manifest to serialize
+     * @return the indented JSON of the manifest
+     * @throws IOException if the manifest cannot be serialized
+     */
+    public byte[] toJson(SyncManifestDTO manifest) throws IOException {
+        return objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValueAsBytes(manifest);
+    }
+}
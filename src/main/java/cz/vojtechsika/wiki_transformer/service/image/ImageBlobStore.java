@@ -0,0 +1,220 @@
+package cz.vojtechsika.wiki_transformer.service.image;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content-addressed store of downloaded images, shared by all pages written to one output directory.
+ * <p>
+ * Every image is stored once under {@code .blobs/<first two hex digits>/<SHA-256>} and the per-page image
+ * directories contain hard links to the stored blobs (a copy when the file system does not support hard links).
+ * The file {@code .blobs/index.tsv} maps the image URLs to the hashes of their content, so an image which was
+ * already fetched, in this run or in a previous one, is linked without touching the network. Redmine attachment
+ * URLs contain the attachment id, so the content behind a URL does not change.
+ * </p>
+ */
+public class ImageBlobStore {
+
+    /**
+     * Name of the store directory inside the output directory
+     */
+    public static final String STORE_DIRECTORY = ".blobs";
+
+    /**
+     * Name of the URL to hash index file
+     */
+    private static final String INDEX_FILE = "index.tsv";
+
+    /**
+     * The store directory
+     */
+    private final Path storeDir;
+
+    /**
+     * Hashes of the already stored images by their URL
+     */
+    private final Map<String, String> hashesByUrl = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the index file was already read
+     */
+    private boolean indexLoaded;
+
+
+    /**
+     * Creates a store inside the given output directory, nothing is written until the first image is added.
+     *
+     * @param theOutputDir the output directory of the migration
+     */
+    public ImageBlobStore(Path theOutputDir) {
+        this.storeDir = theOutputDir.resolve(STORE_DIRECTORY);
+    }
+
+
+    /**
+     * Links the already stored image of the given URL to the target file.
+     *
+     * @param imageUrl the absolute URL of the image
+     * @param target   the file in the page image directory
+     * @return true when the image was linked, false when it is not in the store and has to be downloaded
+     * @throws IOException if the index cannot be read or the link cannot be created
+     */
+    public boolean linkIfPresent(String imageUrl, Path target) throws IOException {
+        loadIndex();
+        String hash = hashesByUrl.get(imageUrl);
+        if (hash == null || !Files.exists(blobPath(hash))) {
+            return false;
+        }
+        link(blobPath(hash), target);
+        return true;
+    }
+
+    /**
+     * Returns a fresh path in the store directory which a new image is downloaded to before it is added.
+     *
+     * @return path of a file which does not exist yet
+     * @throws IOException if the store directory cannot be created
+     */
+    public Path newIncomingFile() throws IOException {
+        Files.createDirectories(storeDir);
+        return storeDir.resolve("incoming-" + UUID.randomUUID());
+    }
+
+    /**
+     * Moves a downloaded image into the store under the hash of its content, records its URL in the index
+     * and links it to the target file. When the same content is already stored, the downloaded file is dropped.
+     *
+     * @param imageUrl   the absolute URL of the image
+     * @param downloaded the downloaded file, created by {@link #newIncomingFile()}
+     * @param target     the file in the page image directory
+     * @throws IOException if the image cannot be hashed, moved, linked or recorded in the index
+     */
+    public void add(String imageUrl, Path downloaded, Path target) throws IOException {
+        loadIndex();
+        String hash = sha256(downloaded);
+        Path blob = blobPath(hash);
+
+        if (Files.exists(blob)) {
+            Files.delete(downloaded);
+        } else {
+            Files.createDirectories(blob.getParent());
+            try {
+                Files.move(downloaded, blob, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(downloaded, blob);
+            } catch (FileAlreadyExistsException e) {
+                // Stored by a concurrent download of the same content
+                Files.delete(downloaded);
+            }
+        }
+
+        if (!hash.equals(hashesByUrl.put(imageUrl, hash))) {
+            appendToIndex(imageUrl, hash);
+        }
+        link(blob, target);
+    }
+
+    // Private helper methods
+
+    /**
+     * Reads the index file once, lines which cannot be parsed are skipped.
+     *
+     * @throws IOException if the index file exists but cannot be read
+     */
+    private synchronized void loadIndex() throws IOException {
+        if (indexLoaded) {
+            return;
+        }
+        Path indexFile = storeDir.resolve(INDEX_FILE);
+        if (Files.exists(indexFile)) {
+            List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                int tab = line.indexOf('\t');
+                if (tab == 64) {
+                    hashesByUrl.put(line.substring(tab + 1), line.substring(0, tab));
+                }
+            }
+        }
+        indexLoaded = true;
+    }
+
+    /**
+     * Appends a single entry to the index file.
+     *
+     * @param imageUrl the absolute URL of the image
+     * @param hash     the hash of the image content
+     * @throws IOException if the index file cannot be written
+     */
+    private synchronized void appendToIndex(String imageUrl, String hash) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(storeDir.resolve(INDEX_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(hash + "\t" + imageUrl + "\n");
+        }
+    }
+
+    /**
+     * Returns the path of the blob with the given hash.
+     *
+     * @param hash the hex encoded SHA-256 of the content
+     * @return the blob path
+     */
+    private Path blobPath(String hash) {
+        return storeDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * Replaces the target file by a hard link to the blob, or by a copy when hard links are not supported.
+     *
+     * @param blob   the stored image
+     * @param target the file in the page image directory
+     * @throws IOException if neither the link nor the copy can be created
+     */
+    private static void link(Path blob, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, blob);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(blob, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Computes the hex encoded SHA-256 of the file content.
+     *
+     * @param file the file to hash
+     * @return the hash
+     * @throws IOException if the file cannot be read
+     */
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,207 @@
+package cz.vojtechsika.wiki_transformer.service.image;
+
+import cz.vojtechsika.wiki_transformer.dto.AttachmentDTO;
+import cz.vojtechsika.wiki_transformer.dto.ImageDiscoveryMode;
+import cz.vojtechsika.wiki_transformer.dto.WikiConversionContext;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationStage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Service finding the URLs of the images used on a wiki page.
+ * <p>
+ * By default ({@code image.discovery.mode=attachments}) the Textile of the page is scanned for
+ * {@code !image!} references and every reference is resolved to the download URL of the page attachment
+ * of the same name, which is part of the JSON response requested with {@code ?include=attachments}.
+ * No additional request is needed for that. The rendered HTML page is fetched only in the {@code html} mode,
+ * or as a fallback ({@code image.discovery.html-fallback}) when a reference cannot be resolved.
+ * </p>
+ */
+@Service
+public class ImageDiscoveryService {
+
+    /**
+     * Textile image: modifiers (alignment, class, style, language), the source, an optional alternative text
+     */
+    private static final Pattern IMAGE_PATTERN =
+            Pattern.compile("!(?:[<>=]|\\{[^}\\n]*}|\\([^)\\n]*\\)|\\[[^\\]\\n]*])*([^\\s!()]+)(?:\\([^)\\n]*\\))?!");
+
+    /**
+     * Code and notextile sections, where an exclamation mark is not an image
+     */
+    private static final Pattern CODE_PATTERN = Pattern.compile(
+            "<pre[^>]*>.*?</pre>|<code[^>]*>.*?</code>|<notextile>.*?</notextile>|==[^\\n]*?==|(?m:^bc\\.\\s.*?(?:\\n\\s*\\n|\\z))",
+            Pattern.DOTALL);
+
+    /**
+     * Extractor of images from the rendered HTML page
+     */
+    private final ImageExtractor imageExtractor;
+
+    /**
+     * The way the images are found
+     */
+    private final ImageDiscoveryMode mode;
+
+    /**
+     * Whether the HTML page is scraped when a reference cannot be resolved from the attachments
+     */
+    private final boolean htmlFallback;
+
+    /**
+     * Metrics of the image extraction
+     */
+    private final MigrationMetrics metrics;
+
+
+    /**
+     * Constructs the service from the {@code image.discovery.*} properties.
+     *
+     * @param theImageExtractor extractor of images from the rendered HTML page
+     * @param theMode           the way the images are found
+     * @param theHtmlFallback   whether the HTML page is scraped when a reference cannot be resolved
+     * @param theMetrics        metrics of the image extraction
+     */
+    @Autowired
+    public ImageDiscoveryService(ImageExtractor theImageExtractor,
+                                 @Value("${image.discovery.mode:attachments}") ImageDiscoveryMode theMode,
+                                 @Value("${image.discovery.html-fallback:false}") boolean theHtmlFallback,
+                                 MigrationMetrics theMetrics) {
+        this.imageExtractor = theImageExtractor;
+        this.mode = theMode;
+        this.htmlFallback = theHtmlFallback;
+        this.metrics = theMetrics;
+    }
+
+
+    /**
+     * Finds the absolute URLs of all images used on the wiki page.
+     *
+     * @param context the conversion context containing the Textile, wiki URL and page attachments
+     * @return distinct absolute image URLs in the order of their first use
+     * @throws IOException if the HTML page has to be fetched and cannot be retrieved
+     */
+    public List<String> discoverImageUrls(WikiConversionContext context) throws IOException {
+        try (MigrationMetrics.Sample sample = metrics.start(MigrationStage.IMAGE_EXTRACTION, context.getWikiUrl(), context.getWikiUrl())) {
+            try {
+                return findImageUrls(context);
+            } catch (IOException | RuntimeException e) {
+                sample.failed(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns the sources of all images referenced in the Textile, references in code sections are ignored.
+     *
+     * @param textile the Textile content of the page
+     * @return distinct image sources in the order of their first use
+     */
+    public static Set<String> findImageSources(String textile) {
+        Set<String> sources = new LinkedHashSet<>();
+        if (textile == null) {
+            return sources;
+        }
+        Matcher matcher = IMAGE_PATTERN.matcher(CODE_PATTERN.matcher(textile).replaceAll(" "));
+        while (matcher.find()) {
+            sources.add(matcher.group(1));
+        }
+        return sources;
+    }
+
+    // Private helper methods
+
+    /**
+     * Finds the image URLs from the attachments or the HTML page, depending on the mode.
+     *
+     * @param context the conversion context containing the Textile, wiki URL and page attachments
+     * @return distinct absolute image URLs in the order of their first use
+     * @throws IOException if the HTML page has to be fetched and cannot be retrieved
+     */
+    private List<String> findImageUrls(WikiConversionContext context) throws IOException {
+        if (mode == ImageDiscoveryMode.HTML) {
+            return scrapeHtml(context);
+        }
+
+        List<String> imageUrls = new ArrayList<>();
+        List<String> unresolved = new ArrayList<>();
+        for (String source : findImageSources(context.getWikiText())) {
+            String imageUrl = resolveSource(source, context);
+            if (imageUrl != null) {
+                imageUrls.add(imageUrl);
+            } else {
+                unresolved.add(source);
+            }
+        }
+
+        if (!unresolved.isEmpty()) {
+            if (htmlFallback) {
+                System.out.println("Image references not found in the attachments, scanning the HTML page: " + unresolved);
+                return scrapeHtml(context);
+            }
+            System.out.println("Image references not found in the page attachments: " + unresolved);
+        }
+        return imageUrls;
+    }
+
+    /**
+     * Resolves an image source to an absolute URL: absolute URLs are used as they are, server-relative paths
+     * are resolved against the wiki URL and file names are looked up in the page attachments.
+     *
+     * @param source  the image source from the Textile
+     * @param context the conversion context containing the wiki URL and page attachments
+     * @return the absolute image URL, or null when the source cannot be resolved
+     */
+    private String resolveSource(String source, WikiConversionContext context) {
+        if (source.startsWith("http://") || source.startsWith("https://")) {
+            return source;
+        }
+        if (source.startsWith("/")) {
+            try {
+                return URI.create(context.getWikiUrl()).resolve(source).toString();
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        AttachmentDTO caseInsensitiveMatch = null;
+        for (AttachmentDTO attachment : context.getAttachments()) {
+            if (source.equals(attachment.getFilename())) {
+                return attachment.getContentUrl();
+            }
+            if (caseInsensitiveMatch == null && source.equalsIgnoreCase(attachment.getFilename())) {
+                caseInsensitiveMatch = attachment;
+            }
+        }
+        return caseInsensitiveMatch != null ? caseInsensitiveMatch.getContentUrl() : null;
+    }
+
+    /**
+     * Extracts all image URLs from the rendered HTML page and removes thumbnails.
+     *
+     * @param context the conversion context containing the wiki URL
+     * @return a list of filtered, absolute image URLs
+     * @throws IOException if extraction fails
+     */
+    private List<String> scrapeHtml(WikiConversionContext context) throws IOException {
+        try {
+            List<String> imageUrls = imageExtractor.extractImageUrls(context.getWikiUrl());
+            return imageExtractor.filteredImageUrls(imageUrls);
+        } catch (RestClientException e) {
+            throw new IOException("Error extracting image urls from " + context.getWikiUrl(), e);
+        }
+    }
+}
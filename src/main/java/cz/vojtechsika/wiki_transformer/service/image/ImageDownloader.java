@@ -1,16 +1,42 @@
 package cz.vojtechsika.wiki_transformer.service.image;
 
 import cz.vojtechsika.wiki_transformer.exception.ImageFetchException;
+import cz.vojtechsika.wiki_transformer.http.AdaptiveConcurrencyLimiter;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationStage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
 
 /**
  * Service responsible for downloading raw image bytes from a given URL.
+ * <p>
+ * Besides {@link #getImage(String, String)}, which loads the whole image into memory, images can be streamed
+ * straight to disk with {@link #downloadToFile(String, String, Path)}. The streaming download never holds more
+ * than a transfer chunk in memory and refuses images larger than {@code image.download.max-size}. Images written
+ * into an archive are streamed to a staged file as well.
+ * </p>
  */
 
 @Service
@@ -21,15 +47,44 @@ public class ImageDownloader {
      */
     private final RestClient restClient;
 
+    /**
+     * Maximum number of bytes transferred from the response to the file in one call
+     */
+    private static final long TRANSFER_CHUNK_BYTES = 1024 * 1024;
+
+    /**
+     * Maximum size of a streamed image in bytes
+     */
+    private final long maxSizeBytes;
+
+    /**
+     * Adaptive limit of the Redmine requests in flight
+     */
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * Metrics of the image downloads
+     */
+    private final MigrationMetrics metrics;
+
 
     /**
      * Constructs an ImageDownloader with the provided RestClient.
      *
-     * @param theRestClient the RestClient used to perform HTTP GET requests
+     * @param theRestClient         the RestClient used to perform HTTP GET requests
+     * @param theMaxSize            maximum size of a streamed image, larger downloads are aborted
+     * @param theConcurrencyLimiter adaptive limit of the Redmine requests in flight
+     * @param theMetrics            metrics of the image downloads
      */
     @Autowired
-    public ImageDownloader(RestClient theRestClient) {
+    public ImageDownloader(RestClient theRestClient,
+                           @Value("${image.download.max-size:500MB}") DataSize theMaxSize,
+                           AdaptiveConcurrencyLimiter theConcurrencyLimiter,
+                           MigrationMetrics theMetrics) {
         this.restClient = theRestClient;
+        this.maxSizeBytes = theMaxSize.toBytes();
+        this.concurrencyLimiter = theConcurrencyLimiter;
+        this.metrics = theMetrics;
     }
 
 
@@ -40,24 +95,145 @@ public class ImageDownloader {
      * The caller can inspect the status code and headers before processing the body.
      * </p>
      *
+     * @param pageUrl  the URL of the wiki page referencing the image
      * @param imageUrl the absolute URL of the image to download
      * @return a ResponseEntity whose body is the raw image bytes
      */
-    public ResponseEntity<byte[]> getImage(String imageUrl) throws ImageFetchException{
-        try{
-            ResponseEntity<byte[]> response = restClient.get()
-                    .uri(imageUrl)
-                    .retrieve()
-                    .toEntity(byte[].class);
-            return response;
-        } catch (HttpClientErrorException.NotFound e){
+    public ResponseEntity<byte[]> getImage(String pageUrl, String imageUrl) throws ImageFetchException{
+        try (AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
+             MigrationMetrics.Sample sample = metrics.start(MigrationStage.IMAGE_DOWNLOAD, pageUrl, imageUrl)) {
+            try {
+                ResponseEntity<byte[]> response = restClient.get()
+                        .uri(imageUrl)
+                        .retrieve()
+                        .toEntity(byte[].class);
+                sample.bytes(response.getBody() != null ? response.getBody().length : 0);
+                return response;
+            } catch (HttpClientErrorException.NotFound e) {
+                sample.failed(e);
+                throw new ImageFetchException("Image url not found", e);
+            } catch (RestClientException e) {
+                permit.failed(e);
+                sample.failed(e);
+                throw new ImageFetchException("Communication error with the server while fetching image", e);
+            }
+        } catch (InterruptedIOException e) {
+            throw new ImageFetchException("Interrupted while waiting for a free Redmine connection", e);
+        }
+    }
+
+
+    /**
+     * Streams the image at the given URL to the target file.
+     * <p>
+     * The response body is copied with {@link FileChannel#transferFrom} into a temporary file next to the target,
+     * which is moved into place atomically once the download is complete, so the target never contains
+     * a partial image. The download is aborted as soon as the image exceeds the maximum size.
+     * </p>
+     *
+     * @param pageUrl  the URL of the wiki page referencing the image
+     * @param imageUrl the absolute URL of the image to download
+     * @param target   the file the image is saved to, replaced when it already exists
+     * @return the number of bytes written
+     * @throws ImageFetchException if the image is not found, the server fails or the image is too large
+     * @throws IOException if the image cannot be written to disk
+     */
+    public long downloadToFile(String pageUrl, String imageUrl, Path target) throws ImageFetchException, IOException {
+        Path tempFile = Files.createTempFile(target.toAbsolutePath().getParent(), "." + target.getFileName(), ".part");
+        try (AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
+             MigrationMetrics.Sample sample = metrics.start(MigrationStage.IMAGE_DOWNLOAD, pageUrl, imageUrl)) {
+            try {
+                long size = restClient.get()
+                        .uri(imageUrl)
+                        .exchange((request, response) -> {
+                            // The latency ends with the headers, the transfer time depends on the image size
+                            permit.responseReceived();
+                            checkStatus(response);
+                            return transferBody(response, tempFile);
+                        });
+                moveIntoPlace(tempFile, target);
+                sample.bytes(size);
+                return size;
+            } catch (RestClientException e) {
+                permit.failed(e);
+                sample.failed(e);
+                throw e;
+            } catch (IOException e) {
+                sample.failed(e);
+                throw e;
+            }
+        } catch (HttpClientErrorException.NotFound e) {
             throw new ImageFetchException("Image url not found", e);
         } catch (RestClientException e) {
-            throw new ImageFetchException("Communication error with the server while fetching image", e);
+            throw new ImageFetchException("Communication error with the server while fetching image: " + e.getMostSpecificCause().getMessage(), e);
+        } finally {
+            Files.deleteIfExists(tempFile);
         }
+    }
 
+    // Private helper methods
 
+    /**
+     * Fails the download when the server did not return a successful response.
+     *
+     * @param response the HTTP response
+     * @throws IOException if the status cannot be read
+     */
+    private static void checkStatus(ClientHttpResponse response) throws IOException {
+        HttpStatusCode status = response.getStatusCode();
+        if (status.is4xxClientError()) {
+            throw HttpClientErrorException.create(status, response.getStatusText(), response.getHeaders(), null, null);
+        }
+        if (!status.is2xxSuccessful()) {
+            throw HttpServerErrorException.create(status, response.getStatusText(), response.getHeaders(), null, null);
+        }
+    }
 
+    /**
+     * Copies the response body into the file, checking the maximum size both against
+     * the announced {@code Content-Length} and against the bytes actually received.
+     *
+     * @param response the HTTP response
+     * @param file     the file to write
+     * @return the number of bytes written
+     * @throws IOException if the body cannot be read or written, or the image exceeds the maximum size
+     */
+    private long transferBody(ClientHttpResponse response, Path file) throws IOException {
+        long contentLength = response.getHeaders().getContentLength();
+        if (contentLength > maxSizeBytes) {
+            throw new IOException("Image size " + contentLength + " bytes exceeds the maximum of " + maxSizeBytes + " bytes");
+        }
+
+        try (InputStream body = response.getBody();
+             ReadableByteChannel source = Channels.newChannel(body);
+             FileChannel destination = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long transferred;
+            // Ask for one byte over the limit, receiving it means the image is too large
+            while ((transferred = destination.transferFrom(source, position,
+                    Math.min(TRANSFER_CHUNK_BYTES, maxSizeBytes + 1 - position))) > 0) {
+                position += transferred;
+                if (position > maxSizeBytes) {
+                    throw new IOException("Image exceeds the maximum size of " + maxSizeBytes + " bytes, download aborted");
+                }
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Moves the downloaded file to the target, atomically when the file system supports it.
+     *
+     * @param source the downloaded temporary file
+     * @param target the final image file
+     * @throws IOException if the file cannot be moved
+     */
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
 
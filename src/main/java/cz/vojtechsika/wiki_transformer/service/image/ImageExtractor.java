@@ -1,11 +1,17 @@
 package cz.vojtechsika.wiki_transformer.service.image;
 
-import lombok.NoArgsConstructor;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationStage;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -14,14 +20,36 @@ import java.util.stream.Collectors;
 /**
  * Service for extracting image references from an HTML page.
  * <p>
- * Uses Jsoup to fetch and parse a document, then finds all &lt;img&gt; tags
- * and returns their absolute URLs or raw Elements.
+ * Fetches the page with the shared {@link RestClient}, so the request goes through the same
+ * conditional-request cache as the other Redmine requests, and uses Jsoup to parse the document.
+ * Then finds all &lt;img&gt; tags and returns their absolute URLs or raw Elements.
  * </p>
  */
 @Service
-@NoArgsConstructor
 public class ImageExtractor {
 
+    /**
+     * The RestClient used to fetch the HTML pages
+     */
+    private final RestClient restClient;
+
+    /**
+     * Metrics of the HTML fetches
+     */
+    private final MigrationMetrics metrics;
+
+
+    /**
+     * Constructs an ImageExtractor with the provided RestClient.
+     *
+     * @param theRestClient the RestClient used to fetch the HTML pages
+     * @param theMetrics    metrics of the HTML fetches
+     */
+    @Autowired
+    public ImageExtractor(RestClient theRestClient, MigrationMetrics theMetrics) {
+        this.restClient = theRestClient;
+        this.metrics = theMetrics;
+    }
 
 
     /**
@@ -32,7 +60,32 @@ public class ImageExtractor {
      * @throws IOException if the page cannot be retrieved or parsed
      */
     private Document fetchDocument(String url) throws IOException {
-        return Jsoup.connect(url).get();
+        ResponseEntity<byte[]> response;
+        byte[] html;
+        try (MigrationMetrics.Sample sample = metrics.start(MigrationStage.HTML_FETCH, url, url)) {
+            try {
+                response = restClient.get()
+                        .uri(url)
+                        .retrieve()
+                        .toEntity(byte[].class);
+            } catch (RuntimeException e) {
+                sample.failed(e);
+                throw e;
+            }
+
+            html = response.getBody();
+            if (html == null) {
+                IOException exception = new IOException("Empty HTML page returned from " + url);
+                sample.failed(exception);
+                throw exception;
+            }
+            sample.bytes(html.length);
+        }
+
+        // Without a charset in the Content-Type header, Jsoup detects it from the document
+        MediaType contentType = response.getHeaders().getContentType();
+        String charset = contentType != null && contentType.getCharset() != null ? contentType.getCharset().name() : null;
+        return Jsoup.parse(new ByteArrayInputStream(html), charset, url);
     }
 
     /**
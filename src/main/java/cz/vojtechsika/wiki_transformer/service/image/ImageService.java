@@ -3,6 +3,8 @@ package cz.vojtechsika.wiki_transformer.service.image;
 import cz.vojtechsika.wiki_transformer.dto.WikiConversionContext;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 
 /**
  * Service interface for downloading all images referenced in a wiki conversion context.
@@ -14,7 +16,36 @@ public interface ImageService {
      * and saves them into a folder named after the context’s unique title.
      *
      * @param context contains the wiki URL, output path, and unique folder name
+     * @return the sorted file names of the saved images, empty when the page has no images
      * @throws IOException if any error occurs during download or file writing
      */
-    void downloadAllImages(WikiConversionContext context) throws IOException;
+    List<String> downloadAllImages(WikiConversionContext context) throws IOException;
+
+    /**
+     * Finds the URLs of the images referenced by the page, the first half of {@link #downloadAllImages}.
+     *
+     * @param context contains the wiki URL, the Textile and the attachments of the page
+     * @return the absolute image URLs, empty when the page has no images
+     * @throws IOException if the page cannot be read to find the images
+     */
+    List<String> discoverImages(WikiConversionContext context) throws IOException;
+
+    /**
+     * Downloads the images found by {@link #discoverImages} and saves them into a folder named after
+     * the context's unique title, the second half of {@link #downloadAllImages}.
+     *
+     * @param context   contains the output path and unique folder name
+     * @param imageUrls the absolute image URLs of the page
+     * @return the sorted file names of the saved images, empty when the page has no images
+     * @throws IOException if any error occurs during download or file writing
+     */
+    List<String> downloadImages(WikiConversionContext context, List<String> imageUrls) throws IOException;
+
+    /**
+     * Forgets the image store of the output directory once its run has finished,
+     * the next run writing to the directory reads the store from the disk again.
+     *
+     * @param filePath the output directory of the finished run
+     */
+    void releaseImageStore(Path filePath);
 }
@@ -2,23 +2,52 @@ package cz.vojtechsika.wiki_transformer.service.image;
 
 import cz.vojtechsika.wiki_transformer.dto.WikiConversionContext;
 import cz.vojtechsika.wiki_transformer.exception.ImageFetchException;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
 import cz.vojtechsika.wiki_transformer.service.PathValidationService;
+import cz.vojtechsika.wiki_transformer.service.output.OutputSink;
 import cz.vojtechsika.wiki_transformer.util.FileNameUtil;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
 
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 /**
  * Service responsible for extracting image URLs from a wiki page context,
  * creating a download directory named after the output file, and saving
  * each image under its original filename.
+ * <p>
+ * Images are downloaded in parallel on virtual threads. The number of concurrent downloads is capped
+ * overall ({@code image.download.max-concurrency}, shared by all pages of a batch run) and per host
+ * ({@code image.download.max-per-host}), so the Redmine server is never hit by an unbounded burst.
+ * </p>
+ * <p>
+ * Unless {@code image.store.enabled} is false, images are kept in an {@link ImageBlobStore} of the output
+ * directory and the page image directories only link to them, so an image used on many pages is downloaded
+ * and stored once.
+ * </p>
+ * <p>
+ * When the {@link OutputSink} does not write the page directory to the file system (an archive run), no directory
+ * is created, the images are streamed into files of a local staging directory ({@code output.archive.staging-dir},
+ * the system temporary directory by default) and handed to the sink, which copies them into the archive.
+ * </p>
  */
 @Service
 public class ImageServiceImpl implements ImageService{
@@ -34,53 +63,148 @@ public class ImageServiceImpl implements ImageService{
     private final ImageDownloader imageDownloader;
 
     /**
-     * Extractor for finding image URLs
+     * Service for finding image URLs
      */
-    private final ImageExtractor imageExtractor;
+    private final ImageDiscoveryService imageDiscoveryService;
+
+    /**
+     * Permits of concurrent downloads over all hosts and pages
+     */
+    private final Semaphore downloadPermits;
+
+    /**
+     * Maximum number of concurrent downloads from a single host
+     */
+    private final int maxPerHost;
+
+    /**
+     * Permits of concurrent downloads per host
+     */
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * Whether images are deduplicated in a content-addressed store
+     */
+    private final boolean storeEnabled;
+
+    /**
+     * Image stores by the absolute output directory they belong to, kept until the run of the directory finishes
+     */
+    private final Map<Path, ImageBlobStore> blobStores = new ConcurrentHashMap<>();
+
+    /**
+     * Local directory the images of an archive run are downloaded into before the sink copies them
+     */
+    private final Path archiveStagingDir;
+
+    /**
+     * Destination of the images which are not saved as files
+     */
+    private final OutputSink outputSink;
 
 
     /**
      * Constructs the ImageServiceImpl with its dependencies.
      *
      * @param theImageDownloader         client for downloading images
-     * @param theImageExtractor          extractor for finding image URLs
+     * @param theImageDiscoveryService   service for finding image URLs
      * @param thePathValidationService   service to validate write permissions
+     * @param theMaxConcurrency          maximum number of concurrent downloads overall
+     * @param theMaxPerHost              maximum number of concurrent downloads from a single host
+     * @param theStoreEnabled            whether images are deduplicated in a content-addressed store
+     * @param theArchiveStagingDir       local directory the images of an archive run are downloaded into
+     * @param theOutputSink              destination of the images which are not saved as files
      */
     @Autowired
     public ImageServiceImpl(ImageDownloader theImageDownloader,
-                            ImageExtractor theImageExtractor,
-                            PathValidationService thePathValidationService) {
+                            ImageDiscoveryService theImageDiscoveryService,
+                            PathValidationService thePathValidationService,
+                            @Value("${image.download.max-concurrency:16}") int theMaxConcurrency,
+                            @Value("${image.download.max-per-host:6}") int theMaxPerHost,
+                            @Value("${image.store.enabled:true}") boolean theStoreEnabled,
+                            @Value("${output.archive.staging-dir:${java.io.tmpdir}}") String theArchiveStagingDir,
+                            OutputSink theOutputSink) {
         imageDownloader = theImageDownloader;
-        imageExtractor = theImageExtractor;
+        imageDiscoveryService = theImageDiscoveryService;
         pathValidationService = thePathValidationService;
-
+        downloadPermits = new Semaphore(theMaxConcurrency);
+        maxPerHost = theMaxPerHost;
+        storeEnabled = theStoreEnabled;
+        archiveStagingDir = Path.of(theArchiveStagingDir);
+        outputSink = theOutputSink;
     }
 
 
     /**
      * Orchestrates the entire image download process:
      * <ol>
-     *   <li>Extracts and filters image URLs from the provided context.</li>
-     *   <li>Creates a download directory named after the unique title.</li>
+     *   <li>Finds the image URLs of the page with the {@link ImageDiscoveryService}.</li>
+     *   <li>Creates a download directory named after the unique title, unless the images are archived.</li>
      *   <li>Downloads and saves each image.</li>
      * </ol>
      *
      * @param context  the conversion context containing wiki URL, output path and unique title
+     * @return the sorted file names of the saved images, empty when the page has no images
      * @throws IOException if any I/O error occurs during directory creation or file writing
      */
     @Override
-    public void downloadAllImages(WikiConversionContext context) throws IOException {
-        List<String> filteredImageUrls = extractAndFilterImageUrls(context);
-
-        if (!filteredImageUrls.isEmpty()) {
-            System.out.println("The wiki page contains: " + filteredImageUrls.size() + " images, starting downloading process...");
+    public List<String> downloadAllImages(WikiConversionContext context) throws IOException {
+        return downloadImages(context, discoverImages(context));
+    }
 
-            Path downloadDir = initializeImageDownloadDirectory(context);
+    /**
+     * Finds the image URLs of the page with the {@link ImageDiscoveryService}.
+     *
+     * @param context the conversion context containing the wiki URL, the Textile and the attachments
+     * @return the absolute image URLs, empty when the page has no images
+     * @throws IOException if the HTML page has to be fetched and cannot be
+     */
+    @Override
+    public List<String> discoverImages(WikiConversionContext context) throws IOException {
+        return imageDiscoveryService.discoverImageUrls(context);
+    }
 
-            saveAllImages(downloadDir, filteredImageUrls);
-        } else {
+    /**
+     * Downloads the images of the page into a directory named after the unique title,
+     * or hands them to the output sink when the output directory is archived.
+     *
+     * @param context           the conversion context containing output path and unique title
+     * @param filteredImageUrls the absolute image URLs of the page
+     * @return the sorted file names of the saved images, empty when the page has no images
+     * @throws IOException if any I/O error occurs during directory creation or file writing
+     */
+    @Override
+    public List<String> downloadImages(WikiConversionContext context, List<String> filteredImageUrls) throws IOException {
+        if (filteredImageUrls.isEmpty()) {
             System.out.println("No pictures found in the wiki page");
+            return List.of();
         }
+        System.out.println("The wiki page contains: " + filteredImageUrls.size() + " images, starting downloading process...");
+
+        Path downloadDir = context.getFilePath().resolve(context.getUniqueTitle());
+        if (!outputSink.writesFiles(downloadDir)) {
+            return saveAllImages(context.getWikiUrl(), downloadDir, filteredImageUrls, null, true);
+        }
+
+        initializeImageDownloadDirectory(context, downloadDir);
+
+        ImageBlobStore blobStore = storeEnabled
+                ? blobStores.computeIfAbsent(context.getFilePath().toAbsolutePath().normalize(), ImageBlobStore::new)
+                : null;
+
+        return saveAllImages(context.getWikiUrl(), downloadDir, filteredImageUrls, blobStore, false);
+    }
+
+    /**
+     * Forgets the image store of the output directory once its run has finished, so a long-running server
+     * does not keep the index of every directory it ever wrote to, and a directory deleted between two runs
+     * is not served from a stale index.
+     *
+     * @param filePath the output directory of the finished run
+     */
+    @Override
+    public void releaseImageStore(Path filePath) {
+        blobStores.remove(filePath.toAbsolutePath().normalize());
     }
 
     // Private helper methods
@@ -89,99 +213,245 @@ public class ImageServiceImpl implements ImageService{
      * Creates the download directory under the output path,
      * named after the unique title, and validates write permissions.
      *
-     * @param context  the conversion context containing base path and unique title
-     * @return the path to the newly created (or existing) download directory
+     * @param context      the conversion context containing base path and unique title
+     * @param downloadDir  the download directory of the page
      * @throws IOException if directory creation or write-check fails
      */
-    private Path initializeImageDownloadDirectory(WikiConversionContext context) throws IOException {
-        Path downloadDir = context.getFilePath().resolve(context.getUniqueTitle());
+    private void initializeImageDownloadDirectory(WikiConversionContext context, Path downloadDir) throws IOException {
         try {
             Files.createDirectories(downloadDir);
-            pathValidationService.checkWrite(downloadDir);
+            // The output directory is probed once, not every image directory of the run
+            pathValidationService.checkWrite(context.getFilePath());
             System.out.println("Download directory for images was successfully created: " + downloadDir.toAbsolutePath() + "\n");
         } catch (IOException e) {
             throw new IOException("Could not create directory at: " + downloadDir.toAbsolutePath(), e);
         }
-        return downloadDir;
     }
 
     /**
-     * Extracts all image URLs from the wiki page and applies filtering logic
-     * (e.g. removing thumbnails).
+     * Downloads all images in parallel, each one on its own virtual thread, and saves them
+     * to the given download directory. A failed image does not stop the other downloads,
+     * all failures are reported together once every download has finished.
+     * The file names are assigned before the downloads start, so two images with the same name never
+     * overwrite each other, the later one gets a suffix derived from its URL.
+     * The page is bound to the download threads, so the writes of the images are attributed to it as well.
      *
-     * @param context  the conversion context containing the wiki URL
-     * @return a list of filtered, absolute image URLs
-     * @throws IOException if extraction fails due to a REST client error
-     */
-    private List<String> extractAndFilterImageUrls(WikiConversionContext context) throws IOException {
-        try{
-            List<String> imageUrls = imageExtractor.extractImageUrls(context.getWikiUrl());
-            return imageExtractor.filteredImageUrls(imageUrls);
-        } catch (RestClientException e){
-            throw new IOException("Error extracting image urls from " + context.getWikiUrl(), e);
+     * @param pageUrl            the URL of the wiki page referencing the images
+     * @param downloadDir        the directory where images will be saved
+     * @param filteredImageUrls  list of image URLs to download
+     * @param blobStore          the image store of the output directory, or null when images are saved directly
+     * @param archived           whether the images are handed to the output sink instead of being saved as files
+     * @return the sorted file names of the images
+     * @throws IOException if any image could not be downloaded or saved, the individual failures are attached as suppressed exceptions
+     */
+    private List<String> saveAllImages(String pageUrl, Path downloadDir, List<String> filteredImageUrls, ImageBlobStore blobStore,
+                                       boolean archived) throws IOException {
+        // The same image referenced twice on the page is downloaded only once
+        LinkedHashSet<String> uniqueImageUrls = new LinkedHashSet<>(filteredImageUrls);
+        Map<String, String> fileNames = assignFileNames(uniqueImageUrls);
+        Queue<IOException> failures = new ConcurrentLinkedQueue<>();
+
+        // Closing the executor waits until all downloads are finished
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String imageUrl : uniqueImageUrls) {
+                Path targetFilepath = downloadDir.resolve(fileNames.get(imageUrl));
+                executor.submit(() -> {
+                    try (MigrationMetrics.PageBinding page = MigrationMetrics.bindPage(pageUrl)) {
+                        saveSingleImage(pageUrl, imageUrl, targetFilepath, blobStore, archived);
+                    } catch (IOException e) {
+                        failures.add(e);
+                    } catch (RuntimeException e) {
+                        failures.add(new IOException("Error downloading image " + imageUrl, e));
+                    }
+                });
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            IOException exception = new IOException(failures.size() + " of " + uniqueImageUrls.size() + " images could not be downloaded");
+            failures.forEach(exception::addSuppressed);
+            throw exception;
         }
+
+        List<String> savedNames = new ArrayList<>(fileNames.values());
+        savedNames.sort(null);
+        return savedNames;
     }
 
+
     /**
-     * Downloads the raw bytes of an image from its URL, ensuring
-     * successful HTTP response and non-null body.
+     * Assigns the file names of the images of one page. The name is taken from the URL, a name already
+     * used by a previous image of the page (ignoring case) gets a suffix derived from the URL.
      *
-     * @param imageUrl  the absolute URL of the image
-     * @return byte array of the image content
-     * @throws IOException if download fails or body is empty
+     * @param imageUrls distinct image URLs in the order of their first use
+     * @return the file names by the image URL
      */
-    private byte[] downloadImageData(String imageUrl) throws IOException {
-        try {
-            ResponseEntity<byte[]> response = imageDownloader.getImage(imageUrl);
-            if (!response.getStatusCode().is2xxSuccessful()){
-                throw new IOException("Image download failed: HTTP " + response.getStatusCode());
+    static Map<String, String> assignFileNames(Set<String> imageUrls) {
+        Map<String, String> fileNames = new LinkedHashMap<>();
+        Set<String> usedNames = new HashSet<>();
+        for (String imageUrl : imageUrls) {
+            String fileName = FileNameUtil.getNameWithExtension(imageUrl);
+            if (!usedNames.add(fileName.toLowerCase())) {
+                fileName = FileNameUtil.addDigestSuffix(fileName, imageUrl);
+                usedNames.add(fileName.toLowerCase());
             }
-            byte[] imageData= response.getBody();
+            fileNames.put(imageUrl, fileName);
+        }
+        return fileNames;
+    }
+
+
+    /**
+     * Saves a single image to the download directory. An image already kept in the store is only linked,
+     * otherwise it is downloaded while holding a permit of its host and an overall permit.
+     *
+     * @param pageUrl        the URL of the wiki page referencing the image
+     * @param imageUrl       the absolute URL of the image
+     * @param targetFilepath the file the image is saved to
+     * @param blobStore      the image store of the output directory, or null when images are saved directly
+     * @param archived       whether the image is handed to the output sink instead of being saved as a file
+     * @throws IOException if the image could not be downloaded or saved
+     */
+    private void saveSingleImage(String pageUrl, String imageUrl, Path targetFilepath, ImageBlobStore blobStore, boolean archived) throws IOException {
+        if (blobStore != null && linkStoredImage(blobStore, imageUrl, targetFilepath)) {
+            return;
+        }
 
-            if (imageData == null){
-                throw new IOException("Image download returned empty body for URL: " + imageUrl);
+        Semaphore hostPermit = hostPermits.computeIfAbsent(hostOf(imageUrl), host -> new Semaphore(maxPerHost));
+
+        // Host permit first, so a download waiting for a busy host does not block downloads from other hosts
+        hostPermit.acquireUninterruptibly();
+        downloadPermits.acquireUninterruptibly();
+        try {
+            if (archived) {
+                saveImageToSink(pageUrl, imageUrl, targetFilepath);
+            } else if (blobStore != null) {
+                saveImageToStore(blobStore, pageUrl, imageUrl, targetFilepath);
+            } else {
+                saveImage(pageUrl, imageUrl, targetFilepath);
             }
-            return imageData;
-        } catch (ImageFetchException e){
-            throw new IOException("Error fetching image from " + imageUrl, e);
+        } finally {
+            downloadPermits.release();
+            hostPermit.release();
         }
     }
 
 
     /**
-     * Iterates over a list of image URLs, downloads each one and saves it
-     * to the given download directory.
+     * Returns the host of the image URL, used as the key of the per-host limit.
      *
-     * @param downloadDir        the directory where images will be saved
-     * @param filteredImageUrls  list of image URLs to download
-     * @throws IOException if any I/O error occurs for any image
+     * @param imageUrl the absolute URL of the image
+     * @return the host, or an empty string when the URL has no host
      */
-    private void saveAllImages(Path downloadDir, List<String> filteredImageUrls) throws IOException {
-        for (String imageUrl : filteredImageUrls) {
+    private static String hostOf(String imageUrl) {
+        try {
+            String host = URI.create(imageUrl).getHost();
+            return host != null ? host : "";
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
 
-            Path targetFilepath = downloadDir.resolve(FileNameUtil.getNameWithExtension(imageUrl));
 
-            byte[] imageData = downloadImageData(imageUrl);
+    /**
+     * Streams a single image from its URL to disk, logging success,
+     * and wrapping any error in a descriptive exception.
+     *
+     * @param pageUrl         the URL of the wiki page referencing the image
+     * @param imageUrl        the absolute URL of the image
+     * @param targetFilepath  the full path (including filename) to write to
+     * @throws IOException if the download fails or writing to disk fails
+     */
+    private void saveImage(String pageUrl, String imageUrl, Path targetFilepath) throws IOException {
+        try {
+            imageDownloader.downloadToFile(pageUrl, imageUrl, targetFilepath);
+            System.out.println("Image: " + targetFilepath.getFileName() + " saved");
+        } catch (ImageFetchException e) {
+            throw new IOException("Error fetching image from " + imageUrl, e);
+        } catch ( IOException e ) {
+            throw new IOException("Error saving image: " + targetFilepath.getFileName() + " to " + targetFilepath, e);
+        }
+    }
+
 
-            saveImage(targetFilepath, imageData);
+    /**
+     * Streams a single image into a file of the local staging directory and hands the file to the output sink,
+     * which copies it into the archive and deletes it, so an image never has to fit into the heap.
+     * The output directory may be on network storage, the staged file would cross the network twice there.
+     *
+     * @param pageUrl         the URL of the wiki page referencing the image
+     * @param imageUrl        the absolute URL of the image
+     * @param targetFilepath  the full path (including filename) the image is archived under
+     * @throws IOException if the download fails or the sink does not accept the image
+     */
+    private void saveImageToSink(String pageUrl, String imageUrl, Path targetFilepath) throws IOException {
+        Path staged = null;
+        try {
+            Files.createDirectories(archiveStagingDir);
+            staged = Files.createTempFile(archiveStagingDir, "wiki-image-", "-" + targetFilepath.getFileName());
+            imageDownloader.downloadToFile(pageUrl, imageUrl, staged);
+            Path handedOver = staged;
+            staged = null;
+            outputSink.writeFile(targetFilepath, handedOver);
+            System.out.println("Image: " + targetFilepath.getFileName() + " saved");
+        } catch (ImageFetchException e) {
+            throw new IOException("Error fetching image from " + imageUrl, e);
+        } catch ( IOException e ) {
+            throw new IOException("Error saving image: " + targetFilepath.getFileName() + " to " + targetFilepath, e);
+        } finally {
+            if (staged != null) {
+                Files.deleteIfExists(staged);
+            }
         }
     }
 
 
     /**
-     * Saves a single image byte array to disk, logging success,
-     * and wrapping any I/O error in a descriptive exception.
+     * Streams a single image from its URL into the image store and links it to the page image directory.
      *
-     * @param targetFilepath  the full path (including filename) to write to
-     * @param imageData       raw image bytes
-     * @throws IOException if writing to disk fails
+     * @param blobStore       the image store of the output directory
+     * @param pageUrl         the URL of the wiki page referencing the image
+     * @param imageUrl        the absolute URL of the image
+     * @param targetFilepath  the full path (including filename) of the link
+     * @throws IOException if the download fails or the image cannot be stored
      */
-    private void saveImage(Path targetFilepath, byte[] imageData) throws IOException {
+    private void saveImageToStore(ImageBlobStore blobStore, String pageUrl, String imageUrl, Path targetFilepath) throws IOException {
+        Path incoming = null;
         try {
-            Files.write( targetFilepath, imageData);
+            incoming = blobStore.newIncomingFile();
+            imageDownloader.downloadToFile(pageUrl, imageUrl, incoming);
+            blobStore.add(imageUrl, incoming, targetFilepath);
             System.out.println("Image: " + targetFilepath.getFileName() + " saved");
+        } catch (ImageFetchException e) {
+            throw new IOException("Error fetching image from " + imageUrl, e);
         } catch ( IOException e ) {
             throw new IOException("Error saving image: " + targetFilepath.getFileName() + " to " + targetFilepath, e);
+        } finally {
+            if (incoming != null) {
+                Files.deleteIfExists(incoming);
+            }
+        }
+    }
+
+
+    /**
+     * Links an image which is already kept in the store, without downloading it again.
+     *
+     * @param blobStore       the image store of the output directory
+     * @param imageUrl        the absolute URL of the image
+     * @param targetFilepath  the full path (including filename) of the link
+     * @return true when the image was linked, false when it has to be downloaded
+     * @throws IOException if the link cannot be created
+     */
+    private boolean linkStoredImage(ImageBlobStore blobStore, String imageUrl, Path targetFilepath) throws IOException {
+        try {
+            if (blobStore.linkIfPresent(imageUrl, targetFilepath)) {
+                System.out.println("Image: " + targetFilepath.getFileName() + " reused from the image store");
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new IOException("Error linking stored image: " + targetFilepath.getFileName() + " to " + targetFilepath, e);
         }
     }
 
@@ -0,0 +1,40 @@
+package cz.vojtechsika.wiki_transformer.service.job;
+
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobDTO;
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobRequestDTO;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Service interface for the queue of conversion jobs of the {@code serve} mode.
+ */
+public interface ConversionJobService {
+
+    /**
+     * Validates the job and puts it into the queue.
+     *
+     * @param request the submitted job
+     * @return the queued job
+     * @throws IllegalArgumentException if the job is not valid
+     * @throws IllegalStateException if a queued or running job writes to the same output directory
+     * @throws RejectedExecutionException if the queue is full
+     */
+    ConversionJobDTO submit(ConversionJobRequestDTO request);
+
+    /**
+     * Returns the job with the given identifier.
+     *
+     * @param id identifier of the job
+     * @return the job, or empty when it does not exist or was already dropped
+     */
+    Optional<ConversionJobDTO> getJob(long id);
+
+    /**
+     * Returns all retained jobs, the oldest first.
+     *
+     * @return queued, running and recently finished jobs
+     */
+    List<ConversionJobDTO> getJobs();
+}
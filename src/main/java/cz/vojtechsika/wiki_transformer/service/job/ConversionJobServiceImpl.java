@@ -0,0 +1,273 @@
+package cz.vojtechsika.wiki_transformer.service.job;
+
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationOptions;
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationSummary;
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobDTO;
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobRequestDTO;
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobStatus;
+import cz.vojtechsika.wiki_transformer.service.PathValidationService;
+import cz.vojtechsika.wiki_transformer.service.batch.BatchMigrationService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of conversion jobs of the {@code serve} mode.
+ * <p>
+ * Jobs are run by a fixed number of workers ({@code serve.jobs.max-parallel}), further jobs wait in a bounded
+ * queue ({@code serve.jobs.queue-capacity}). Every job is converted by the {@link BatchMigrationService},
+ * so all jobs share the HTTP client, caches and Pandoc servers of the running JVM. Finished jobs are kept
+ * for status queries until more than {@code serve.jobs.retained} jobs exist. A job is refused while another
+ * queued or running job writes to the same output directory, the two runs would overwrite each other's pages,
+ * manifest and name registry.
+ * </p>
+ */
+@Service
+public class ConversionJobServiceImpl implements ConversionJobService {
+
+    /**
+     * Service converting the pages of a job
+     */
+    private final BatchMigrationService batchMigrationService;
+
+    /**
+     * Service to validate write permissions
+     */
+    private final PathValidationService pathValidationService;
+
+    /**
+     * Output directory of jobs which do not specify one
+     */
+    private final String defaultOutputDir;
+
+    /**
+     * Maximum number of retained jobs
+     */
+    private final int retainedJobs;
+
+    /**
+     * Workers running the jobs
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Retained jobs by their identifier
+     */
+    private final Map<Long, ConversionJobDTO> jobs = new ConcurrentSkipListMap<>();
+
+    /**
+     * Identifiers of the queued and running jobs by their absolute output directory
+     */
+    private final Map<Path, Long> activeOutputDirs = new ConcurrentHashMap<>();
+
+    /**
+     * Identifier of the last submitted job
+     */
+    private final AtomicLong lastId = new AtomicLong();
+
+
+    /**
+     * Constructs the service from the {@code serve.jobs.*} properties.
+     *
+     * @param theBatchMigrationService the service converting the pages of a job
+     * @param thePathValidationService the service for validating the output path
+     * @param theDefaultOutputDir      output directory of jobs which do not specify one
+     * @param theMaxParallel           number of jobs run at the same time
+     * @param theQueueCapacity         number of jobs waiting in the queue
+     * @param theRetainedJobs          maximum number of retained jobs
+     */
+    @Autowired
+    public ConversionJobServiceImpl(BatchMigrationService theBatchMigrationService,
+                                    PathValidationService thePathValidationService,
+                                    @Value("${file.storage.path:output}") String theDefaultOutputDir,
+                                    @Value("${serve.jobs.max-parallel:2}") int theMaxParallel,
+                                    @Value("${serve.jobs.queue-capacity:100}") int theQueueCapacity,
+                                    @Value("${serve.jobs.retained:500}") int theRetainedJobs) {
+        this.batchMigrationService = theBatchMigrationService;
+        this.pathValidationService = thePathValidationService;
+        this.defaultOutputDir = theDefaultOutputDir;
+        this.retainedJobs = Math.max(1, theRetainedJobs);
+        int workers = Math.max(1, theMaxParallel);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, theQueueCapacity)), Thread.ofPlatform().name("conversion-job-", 1).factory());
+    }
+
+
+    /**
+     * Validates the job and puts it into the queue.
+     *
+     * @param request the submitted job
+     * @return the queued job
+     */
+    @Override
+    public ConversionJobDTO submit(ConversionJobRequestDTO request) {
+        validate(request);
+        String outputDir = request.getOutputDir() != null ? request.getOutputDir() : defaultOutputDir;
+        Path directory = Path.of(outputDir).toAbsolutePath().normalize();
+
+        ConversionJobDTO job = new ConversionJobDTO(lastId.incrementAndGet(), request);
+        Long activeJob = activeOutputDirs.putIfAbsent(directory, job.getId());
+        if (activeJob != null) {
+            throw new IllegalStateException("Job " + activeJob + " is already writing to the output directory " + directory);
+        }
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, outputDir, directory));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            activeOutputDirs.remove(directory, job.getId());
+            throw new RejectedExecutionException("The job queue is full", e);
+        }
+        dropFinishedJobs();
+        return job;
+    }
+
+    /**
+     * Returns the job with the given identifier.
+     *
+     * @param id identifier of the job
+     * @return the job, or empty
+     */
+    @Override
+    public Optional<ConversionJobDTO> getJob(long id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Returns all retained jobs.
+     *
+     * @return the jobs, the oldest first
+     */
+    @Override
+    public List<ConversionJobDTO> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * Stops the workers when the application shuts down, running jobs are interrupted.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Private helper methods
+
+    /**
+     * Runs a job, records its result and releases its output directory.
+     *
+     * @param job       the job to run
+     * @param outputDir the output directory of the job
+     * @param directory the absolute output directory claimed by the job
+     */
+    private void run(ConversionJobDTO job, String outputDir, Path directory) {
+        job.setStartedAt(Instant.now());
+        job.setStatus(ConversionJobStatus.RUNNING);
+        ConversionJobRequestDTO request = job.getRequest();
+        try {
+            Path filePath = Path.of(outputDir);
+            Files.createDirectories(filePath);
+            pathValidationService.checkWrite(filePath);
+            job.setOutputDir(filePath.toAbsolutePath().toString());
+
+            BatchMigrationOptions options = new BatchMigrationOptions(request.getWikiRoot(), request.getProject(), filePath, outputDir,
+                    request.getConcurrency(), request.getEngine(), request.isIncremental(), request.getFormat(), request.isGzip(), null);
+            BatchMigrationSummary summary;
+            if (request.getProject() != null) {
+                summary = batchMigrationService.migrateProject(options);
+            } else {
+                summary = batchMigrationService.migratePages(pageUrls(request), options);
+            }
+            job.applySummary(summary);
+            job.setStatus(ConversionJobStatus.COMPLETED);
+        } catch (IOException | RuntimeException e) {
+            job.setError(e.getMessage() + (e.getCause() != null ? " (" + e.getCause().getMessage() + ")" : ""));
+            job.setStatus(ConversionJobStatus.FAILED);
+        } finally {
+            activeOutputDirs.remove(directory, job.getId());
+            job.setFinishedAt(Instant.now());
+        }
+    }
+
+    /**
+     * Checks that exactly one kind of job is given and the options are usable.
+     *
+     * @param request the submitted job
+     * @throws IllegalArgumentException if the job is not valid
+     */
+    private void validate(ConversionJobRequestDTO request) {
+        if (request == null) {
+            throw new IllegalArgumentException("The job is missing");
+        }
+        int kinds = (request.getUrl() != null ? 1 : 0)
+                + (request.getUrls() != null && !request.getUrls().isEmpty() ? 1 : 0)
+                + (request.getProject() != null ? 1 : 0);
+        if (kinds != 1) {
+            throw new IllegalArgumentException("Exactly one of url, urls or project must be specified");
+        }
+        if (request.getProject() != null && request.getWikiRoot() == null) {
+            throw new IllegalArgumentException("wiki_root is required together with project");
+        }
+        if (request.isIncremental() && request.getProject() == null) {
+            throw new IllegalArgumentException("incremental can only be used together with project");
+        }
+        if (request.isIncremental() && request.getFormat() != null && request.getFormat().isArchive()) {
+            throw new IllegalArgumentException("incremental can not be used together with the " + request.getFormat() + " format");
+        }
+        if (request.getConcurrency() < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        if (request.getEngine() == null) {
+            throw new IllegalArgumentException("engine must be native or pandoc");
+        }
+        if (request.getOutputDir() != null) {
+            try {
+                Path.of(request.getOutputDir());
+            } catch (InvalidPathException e) {
+                throw new IllegalArgumentException("output_dir is not a valid path: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the page URLs of a page job.
+     *
+     * @param request the submitted job
+     * @return the single URL or the list of URLs
+     */
+    private List<String> pageUrls(ConversionJobRequestDTO request) {
+        return request.getUrl() != null ? List.of(request.getUrl()) : request.getUrls();
+    }
+
+    /**
+     * Drops the oldest finished jobs while more than the retained number of jobs exist.
+     */
+    private void dropFinishedJobs() {
+        Iterator<ConversionJobDTO> iterator = jobs.values().iterator();
+        while (jobs.size() > retainedJobs && iterator.hasNext()) {
+            ConversionJobDTO job = iterator.next();
+            if (job.getFinishedAt() != null) {
+                iterator.remove();
+            }
+        }
+    }
+}
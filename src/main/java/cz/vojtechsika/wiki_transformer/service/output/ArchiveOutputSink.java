@@ -0,0 +1,345 @@
+package cz.vojtechsika.wiki_transformer.service.output;
+
+import cz.vojtechsika.wiki_transformer.dto.OutputFormat;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link OutputSink} packing the files of one output directory into a single {@code .zip} or {@code .tar.gz} archive.
+ * <p>
+ * A file handed over for a path under the output directory becomes an archive entry named by the path relative
+ * to the directory, so the archive has the same layout as a migration written to the file system. The entries
+ * are streamed into the archive by a single writer thread. The queue is bounded by the number of files and by
+ * their bytes. Images are handed over as files staged in a local directory ({@link #writeFile(Path, Path)}) and
+ * copied into their entries in chunks, so large images never fill the heap.
+ * </p>
+ * <p>
+ * The archive is written to a temporary file and moved into place by {@link #finish()}, {@link #close()}
+ * without a finish discards it, so an interrupted run never leaves a truncated archive behind.
+ * </p>
+ */
+public class ArchiveOutputSink extends QueuedOutputSink implements AutoCloseable {
+
+    /**
+     * Extensions of the files which are already compressed and stored in a ZIP archive as they are
+     */
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of("png", "jpg", "jpeg", "gif", "webp", "zip", "gz", "7z");
+
+    /**
+     * Maximum number of files taken from the queue at once
+     */
+    private static final int BATCH_SIZE = 32;
+
+    /**
+     * Size of the buffer between the archive stream and the file
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The final archive file
+     */
+    private final Path target;
+
+    /**
+     * The absolute output directory whose files are archived
+     */
+    private final Path root;
+
+    /**
+     * The temporary file the archive is written to
+     */
+    private final Path tempFile;
+
+    /**
+     * The archive stream of the temporary file
+     */
+    private final ArchiveOutputStream<?> output;
+
+    /**
+     * Names of the written entries, a name is written only once
+     */
+    private final Set<String> entryNames = new HashSet<>();
+
+    /**
+     * First failure of the archive stream, the archive is unusable afterwards
+     */
+    private IOException broken;
+
+    /**
+     * Whether the archive was completed or discarded
+     */
+    private boolean finished;
+
+
+    /**
+     * Opens the archive and starts its writer thread.
+     *
+     * @param theTarget           the final archive file
+     * @param theRoot             the output directory whose files are archived
+     * @param theFormat           {@link OutputFormat#ZIP} or {@link OutputFormat#TAR_GZ}
+     * @param theQueueCapacity    number of files which may wait for the writer thread, 0 to write on the calling thread
+     * @param theMaxBufferedBytes maximum number of content bytes waiting for the writer thread, 0 for no limit
+     * @param theMetrics          metrics of the archived files
+     * @throws IOException if the temporary file cannot be created
+     * @throws IllegalArgumentException if the format is not an archive format
+     */
+    public ArchiveOutputSink(Path theTarget, Path theRoot, OutputFormat theFormat, int theQueueCapacity,
+                             int theMaxBufferedBytes, MigrationMetrics theMetrics) throws IOException {
+        super("archive-writer", theQueueCapacity, BATCH_SIZE, theMaxBufferedBytes, theMetrics);
+        this.target = theTarget;
+        this.root = theRoot.toAbsolutePath().normalize();
+        this.tempFile = theTarget.resolveSibling("." + theTarget.getFileName() + ".tmp");
+        try {
+            this.output = openArchive(tempFile, theFormat);
+        } catch (IOException | RuntimeException e) {
+            // Stops the writer thread started for the archive
+            super.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Returns the file extension of the archive format.
+     *
+     * @param format {@link OutputFormat#ZIP} or {@link OutputFormat#TAR_GZ}
+     * @return the extension including the dot
+     */
+    public static String extensionOf(OutputFormat format) {
+        return format == OutputFormat.ZIP ? ".zip" : ".tar.gz";
+    }
+
+    /**
+     * The files of the output directory are archive entries, not files.
+     *
+     * @param target a path under the output directory
+     * @return always false
+     */
+    @Override
+    public boolean writesFiles(Path target) {
+        return false;
+    }
+
+    /**
+     * Returns the number of entries written so far.
+     *
+     * @return the number of entries
+     */
+    public synchronized int getEntryCount() {
+        return entryNames.size();
+    }
+
+    /**
+     * Returns the final archive file.
+     *
+     * @return the archive file
+     */
+    public Path getTarget() {
+        return target;
+    }
+
+    /**
+     * Writes the queued entries, completes the archive and moves it into place.
+     *
+     * @throws IOException if any entry could not be written or the archive cannot be completed or moved
+     */
+    public void finish() throws IOException {
+        flush(root);
+        super.close();
+        synchronized (this) {
+            if (finished) {
+                throw new IOException("The archive " + target + " is already closed");
+            }
+            finished = true;
+            try {
+                if (broken != null) {
+                    throw broken;
+                }
+                output.finish();
+                output.close();
+            } catch (IOException e) {
+                discard();
+                throw new IOException("Could not complete the archive " + target, e);
+            }
+        }
+
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Stops the writer thread and discards the archive unless it was completed by {@link #finish()}.
+     */
+    @Override
+    public void close() {
+        super.close();
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            discard();
+        }
+    }
+
+    /**
+     * Appends the files to the archive. A file outside of the output directory or with the name of an entry
+     * which was already written fails alone, a failure of the archive stream fails all following files.
+     *
+     * @param batch the files to write
+     */
+    @Override
+    protected synchronized void writeBatch(List<PendingWrite> batch) {
+        for (PendingWrite write : batch) {
+            if (finished) {
+                fail(write, new IOException("The archive " + target + " is already closed"));
+            } else if (broken != null) {
+                fail(write, broken);
+            } else if (!write.getTarget().startsWith(root)) {
+                fail(write, new IOException("The file is not under the archived directory " + root));
+            } else {
+                writeEntry(write);
+            }
+        }
+    }
+
+    // Private helper methods
+
+    /**
+     * Creates the temporary file and the archive stream writing to it.
+     *
+     * @param file   the temporary file
+     * @param format {@link OutputFormat#ZIP} or {@link OutputFormat#TAR_GZ}
+     * @return the archive stream
+     * @throws IOException if the file cannot be created
+     * @throws IllegalArgumentException if the format is not an archive format
+     */
+    private static ArchiveOutputStream<?> openArchive(Path file, OutputFormat format) throws IOException {
+        if (format != OutputFormat.ZIP && format != OutputFormat.TAR_GZ) {
+            throw new IllegalArgumentException("Not an archive format: " + format);
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        OutputStream stream = Files.newOutputStream(file);
+        if (format == OutputFormat.ZIP) {
+            return new ZipArchiveOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+        }
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(stream, BUFFER_SIZE), BUFFER_SIZE), StandardCharsets.UTF_8.name());
+        // Long and non-ASCII names and large images are stored in PAX headers
+        tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        tar.setAddPaxHeadersForNonAsciiNames(true);
+        return tar;
+    }
+
+    /**
+     * Writes the file as an archive entry named by its path relative to the output directory.
+     *
+     * @param write the file to write
+     */
+    private void writeEntry(PendingWrite write) {
+        String name = root.relativize(write.getTarget()).toString().replace('\\', '/');
+        if (!entryNames.add(name)) {
+            fail(write, new IOException("The archive already contains " + name));
+            return;
+        }
+
+        try {
+            if (output instanceof ZipArchiveOutputStream zip) {
+                ZipArchiveEntry entry = new ZipArchiveEntry(name);
+                entry.setSize(write.getSize());
+                if (COMPRESSED_EXTENSIONS.contains(fileExtension(name))) {
+                    // Deflating an image costs time and saves nothing, a stored entry needs its checksum up front
+                    entry.setMethod(ZipArchiveEntry.STORED);
+                    entry.setCrc(checksum(write));
+                }
+                zip.putArchiveEntry(entry);
+            } else {
+                TarArchiveEntry entry = new TarArchiveEntry(name);
+                entry.setSize(write.getSize());
+                ((TarArchiveOutputStream) output).putArchiveEntry(entry);
+            }
+            if (write.getStaged() != null) {
+                Files.copy(write.getStaged(), output);
+            } else {
+                output.write(write.getContent());
+            }
+            output.closeArchiveEntry();
+            complete(write);
+        } catch (IOException | RuntimeException e) {
+            broken = new IOException("The archive " + target + " is incomplete after a failed entry", e);
+            fail(write, e);
+        }
+    }
+
+    /**
+     * Computes the CRC-32 of the file content, reading a staged file in chunks.
+     *
+     * @param write the file
+     * @return the checksum
+     * @throws IOException if the staged file cannot be read
+     */
+    private static long checksum(PendingWrite write) throws IOException {
+        CRC32 crc = new CRC32();
+        if (write.getStaged() == null) {
+            crc.update(write.getContent());
+            return crc.getValue();
+        }
+        try (InputStream input = new CheckedInputStream(Files.newInputStream(write.getStaged()), crc)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Closes the archive stream and removes the temporary file.
+     */
+    private void discard() {
+        try {
+            output.close();
+        } catch (IOException e) {
+            // The archive is discarded anyway
+        }
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            // Only a hidden temporary file is left behind
+        }
+    }
+
+    /**
+     * Returns the lower-case extension of the entry name.
+     *
+     * @param name the entry name
+     * @return the extension without the dot, or an empty string
+     */
+    private static String fileExtension(String name) {
+        int slash = name.lastIndexOf('/');
+        int dot = name.lastIndexOf('.');
+        return dot > slash ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,190 @@
+package cz.vojtechsika.wiki_transformer.service.output;
+
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * {@link OutputSink} writing the files into directories of the local file system.
+ * <p>
+ * The files are queued in a bounded queue ({@code output.writer.queue-capacity}) and written by a single
+ * writer thread, so the workers fetching and converting pages never wait for the disk unless the queue is full.
+ * The writer takes up to {@code output.writer.batch-size} files at once, writes each of them to a temporary
+ * file next to its target, syncs the temporary files one after another, moves them into place and syncs every
+ * touched directory once per batch ({@code output.writer.fsync}). With a queue capacity of 0 the files are
+ * written on the calling thread.
+ * </p>
+ */
+@Component
+public class DirectoryOutputSink extends QueuedOutputSink {
+
+    /**
+     * Whether the written files and their directories are synced to the disk
+     */
+    private final boolean fsync;
+
+
+    /**
+     * Creates the sink from the {@code output.writer.*} properties and starts its writer thread.
+     *
+     * @param theQueueCapacity number of files which may wait for the writer thread, 0 to write on the calling thread
+     * @param theBatchSize     maximum number of files written and synced together
+     * @param theFsync         whether the written files and their directories are synced to the disk
+     * @param theMetrics       metrics of the written files
+     */
+    @Autowired
+    public DirectoryOutputSink(@Value("${output.writer.queue-capacity:256}") int theQueueCapacity,
+                               @Value("${output.writer.batch-size:32}") int theBatchSize,
+                               @Value("${output.writer.fsync:true}") boolean theFsync,
+                               MigrationMetrics theMetrics) {
+        super("output-writer", theQueueCapacity, theBatchSize, 0, theMetrics);
+        this.fsync = theFsync;
+    }
+
+
+    /**
+     * Creates a sink writing every file atomically on the calling thread, without syncing it to the disk.
+     *
+     * @return the synchronous sink
+     */
+    public static DirectoryOutputSink direct() {
+        return new DirectoryOutputSink(0, 1, false, MigrationMetrics.noop());
+    }
+
+    /**
+     * Writes the queued files and stops the writer thread, called when the application context is closed.
+     */
+    @PreDestroy
+    @Override
+    public void close() {
+        super.close();
+    }
+
+    /**
+     * Writes the files to temporary files (a staged file is moved there), syncs them, moves them into place
+     * and syncs their directories.
+     * A failure of one file completes only its own future, the other files of the batch are still written.
+     *
+     * @param batch the files to write
+     */
+    @Override
+    protected void writeBatch(List<PendingWrite> batch) {
+        Map<PendingWrite, Path> tempFiles = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            Path target = write.getTarget();
+            Path tempFile = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+            try {
+                Files.createDirectories(target.getParent());
+                if (write.getStaged() != null) {
+                    Files.move(write.getStaged(), tempFile);
+                } else {
+                    Files.write(tempFile, write.getContent());
+                }
+                tempFiles.put(write, tempFile);
+            } catch (IOException | RuntimeException e) {
+                discard(write, tempFile, e);
+            }
+        }
+
+        // Syncing the files back to back lets the file system commit them together
+        if (fsync) {
+            tempFiles.entrySet().removeIf(entry -> !sync(entry.getKey(), entry.getValue()));
+        }
+
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Map.Entry<PendingWrite, Path> entry : tempFiles.entrySet()) {
+            PendingWrite write = entry.getKey();
+            try {
+                move(entry.getValue(), write.getTarget());
+                directories.add(write.getTarget().getParent());
+            } catch (IOException e) {
+                discard(write, entry.getValue(), e);
+            }
+        }
+
+        if (fsync) {
+            directories.forEach(DirectoryOutputSink::syncDirectory);
+        }
+        tempFiles.keySet().forEach(this::complete);
+    }
+
+    // Private helper methods
+
+    /**
+     * Syncs the temporary file of the write to the disk.
+     *
+     * @param write    the written file
+     * @param tempFile the temporary file of the write
+     * @return true when the file is durable, false when the write failed
+     */
+    private boolean sync(PendingWrite write, Path tempFile) {
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+            return true;
+        } catch (IOException e) {
+            discard(write, tempFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Completes the write with the failure and removes its temporary file.
+     *
+     * @param write    the failed write
+     * @param tempFile the temporary file of the write
+     * @param cause    the reason of the failure
+     */
+    private void discard(PendingWrite write, Path tempFile, Exception cause) {
+        fail(write, cause);
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            // Only a hidden temporary file is left behind
+        }
+    }
+
+    /**
+     * Syncs the directory entries, so the renamed files survive a crash. File systems which cannot
+     * open a directory (Windows) keep the entries durable on their own.
+     *
+     * @param directory the directory to sync
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported for directories on this platform
+        }
+    }
+
+    /**
+     * Moves the file into place, atomically when the file system supports it.
+     *
+     * @param source the temporary file
+     * @param target the final file
+     * @throws IOException if the file cannot be moved
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
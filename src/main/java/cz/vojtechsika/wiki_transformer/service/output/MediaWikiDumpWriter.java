@@ -0,0 +1,249 @@
+package cz.vojtechsika.wiki_transformer.service.output;
+
+import cz.vojtechsika.wiki_transformer.dto.AuthorDTO;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writer of a MediaWiki XML import dump ({@code importDump.php}, {@code Special:Import}).
+ * <p>
+ * The pages are streamed with StAX into the dump one after another, so the memory use does not grow
+ * with the number of pages. Every page becomes a {@code <page>} with a single revision carrying the time
+ * of the last update and the author of the Redmine page. The dump is written to a temporary file, optionally
+ * gzip-compressed, and moved into place by {@link #close()}, so an interrupted run never leaves
+ * a truncated dump behind. The writer may be shared by several threads, pages are written one at a time.
+ * </p>
+ */
+public class MediaWikiDumpWriter implements Closeable {
+
+    /**
+     * Namespace and schema version of the export format
+     */
+    public static final String EXPORT_NAMESPACE = "http://www.mediawiki.org/xml/export-0.11/";
+
+    /**
+     * Format of the revision timestamps, always in UTC
+     */
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+
+    /**
+     * Contributor of revisions whose Redmine author is unknown
+     */
+    private static final String UNKNOWN_AUTHOR = "Redmine";
+
+    /**
+     * The final dump file
+     */
+    private final Path target;
+
+    /**
+     * The temporary file the dump is written to
+     */
+    private final Path tempFile;
+
+    /**
+     * The stream of the temporary file
+     */
+    private final OutputStream output;
+
+    /**
+     * The StAX writer of the dump
+     */
+    private final XMLStreamWriter writer;
+
+    /**
+     * Number of written pages
+     */
+    private int pageCount;
+
+    /**
+     * Whether the dump was already closed
+     */
+    private boolean closed;
+
+
+    /**
+     * Opens the dump and writes its root element.
+     *
+     * @param theTarget the final dump file
+     * @param theGzip   whether the dump is gzip-compressed
+     * @throws IOException if the temporary file cannot be created
+     */
+    public MediaWikiDumpWriter(Path theTarget, boolean theGzip) throws IOException {
+        this.target = theTarget;
+        this.tempFile = theTarget.resolveSibling("." + theTarget.getFileName() + ".tmp");
+        Files.createDirectories(theTarget.toAbsolutePath().getParent());
+
+        OutputStream file = Files.newOutputStream(tempFile);
+        this.output = theGzip ? new BufferedOutputStream(new GZIPOutputStream(file, 64 * 1024), 64 * 1024)
+                : new BufferedOutputStream(file, 64 * 1024);
+        try {
+            this.writer = XMLOutputFactory.newFactory().createXMLStreamWriter(output, StandardCharsets.UTF_8.name());
+            writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("mediawiki");
+            writer.writeDefaultNamespace(EXPORT_NAMESPACE);
+            writer.writeAttribute("version", "0.11");
+            writer.writeAttribute(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI, "lang", "en");
+            writer.writeCharacters("\n");
+        } catch (XMLStreamException e) {
+            output.close();
+            Files.deleteIfExists(tempFile);
+            throw new IOException("Could not start the MediaWiki dump " + theTarget, e);
+        }
+    }
+
+
+    /**
+     * Appends a page with a single revision to the dump.
+     *
+     * @param title     the title of the page
+     * @param text      the MediaWiki markup of the page
+     * @param updatedOn the time of the last update in UTC, the current time when unknown
+     * @param author    the author of the last update, or null
+     * @throws IOException if the page cannot be written
+     */
+    public synchronized void writePage(String title, String text, LocalDateTime updatedOn, AuthorDTO author) throws IOException {
+        if (closed) {
+            throw new IOException("The MediaWiki dump " + target + " is already closed");
+        }
+        LocalDateTime timestamp = updatedOn != null ? updatedOn : LocalDateTime.now(ZoneOffset.UTC);
+        String username = author != null && author.getName() != null && !author.getName().isBlank() ? author.getName() : UNKNOWN_AUTHOR;
+        try {
+            writer.writeCharacters("  ");
+            writer.writeStartElement("page");
+            writeElement("title", title);
+            writeElement("ns", "0");
+            writer.writeStartElement("revision");
+            writeElement("timestamp", TIMESTAMP_FORMAT.format(timestamp));
+            writer.writeStartElement("contributor");
+            writeElement("username", username);
+            writer.writeEndElement();
+            writeElement("model", "wikitext");
+            writeElement("format", "text/x-wiki");
+            writer.writeStartElement("text");
+            writer.writeAttribute(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI, "space", "preserve");
+            writer.writeCharacters(xmlSafe(text != null ? text : ""));
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeCharacters("\n");
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not write the page " + title + " to the MediaWiki dump " + target, e);
+        }
+        pageCount++;
+    }
+
+    /**
+     * Returns the number of pages written so far.
+     *
+     * @return the number of pages
+     */
+    public synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Returns the final dump file.
+     *
+     * @return the dump file
+     */
+    public Path getTarget() {
+        return target;
+    }
+
+    /**
+     * Closes the root element and moves the complete dump into place.
+     *
+     * @throws IOException if the dump cannot be completed or moved
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+            output.close();
+        } catch (XMLStreamException | IOException e) {
+            output.close();
+            Files.deleteIfExists(tempFile);
+            throw new IOException("Could not complete the MediaWiki dump " + target, e);
+        }
+
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Private helper methods
+
+    /**
+     * Writes an element with text content.
+     *
+     * @param name  the element name
+     * @param value the text content
+     * @throws XMLStreamException if the element cannot be written
+     */
+    private void writeElement(String name, String value) throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeCharacters(xmlSafe(value));
+        writer.writeEndElement();
+    }
+
+    /**
+     * Replaces the characters which XML 1.0 does not allow (control characters, unpaired surrogates)
+     * by U+FFFD, StAX writes them unescaped and the dump would not parse.
+     *
+     * @param text the text to write
+     * @return the text itself when it is valid, otherwise a cleaned copy
+     */
+    static String xmlSafe(String text) {
+        StringBuilder cleaned = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean valid;
+            if (Character.isHighSurrogate(c)) {
+                valid = i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1));
+                if (valid) {
+                    if (cleaned != null) {
+                        cleaned.append(c).append(text.charAt(i + 1));
+                    }
+                    i++;
+                    continue;
+                }
+            } else {
+                valid = c >= 0x20 ? !Character.isLowSurrogate(c) && c != 0xFFFE && c != 0xFFFF : c == '\t' || c == '\n' || c == '\r';
+            }
+
+            if (!valid && cleaned == null) {
+                cleaned = new StringBuilder(text.length()).append(text, 0, i);
+            }
+            if (cleaned != null) {
+                cleaned.append(valid ? c : '\uFFFD');
+            }
+        }
+        return cleaned != null ? cleaned.toString() : text;
+    }
+}
@@ -0,0 +1,55 @@
+package cz.vojtechsika.wiki_transformer.service.output;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Destination of the converted output files.
+ * <p>
+ * A file handed to {@link #write(Path, byte[])} or {@link #writeFile(Path, Path)} may be written later on another thread,
+ * it is visible under its final name only once it is complete. {@link #flush(Path)} waits
+ * until all files of an output directory are written and reports the files which failed.
+ * </p>
+ */
+public interface OutputSink {
+
+    /**
+     * Hands over a complete output file. The target is replaced atomically, a reader never sees a partial file.
+     *
+     * @param target  the final path of the file, missing parent directories are created
+     * @param content the content of the file
+     * @throws IOException if the file cannot be accepted, or cannot be written when the sink writes synchronously
+     */
+    void write(Path target, byte[] content) throws IOException;
+
+    /**
+     * Hands over a complete output file staged on the disk, e.g. a streamed image download, so large files
+     * never pass through the heap. The sink takes the staged file over and deletes it once the file is written
+     * or failed, the target is replaced atomically like by {@link #write(Path, byte[])}.
+     *
+     * @param target the final path of the file, missing parent directories are created
+     * @param staged the complete file, owned by the sink once the call returns
+     * @throws IOException if the file cannot be accepted, or cannot be written when the sink writes synchronously
+     */
+    void writeFile(Path target, Path staged) throws IOException;
+
+    /**
+     * Waits until every file handed over for the output directory so far is written and durable.
+     *
+     * @param root the output directory
+     * @throws IOException if any of the files could not be written, the failures are attached as suppressed exceptions
+     */
+    void flush(Path root) throws IOException;
+
+    /**
+     * Returns whether a file handed over for the target ends up as a regular file at that path, so that
+     * other files of the output (streamed image downloads, links of the image store) may be placed next to it
+     * directly. A sink packing the files into an archive returns false, everything must then be handed to it.
+     *
+     * @param target a path under the output directory
+     * @return true when the sink writes to the file system at the target path
+     */
+    default boolean writesFiles(Path target) {
+        return true;
+    }
+}
@@ -0,0 +1,492 @@
+package cz.vojtechsika.wiki_transformer.service.output;
+
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationStage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base of the {@link OutputSink}s whose files are written by a single writer thread.
+ * <p>
+ * The files are handed over through a queue bounded by the number of files and, optionally, by the bytes
+ * of their content, so the workers wait instead of filling the heap when the writer falls behind. A file staged
+ * on the disk ({@link #writeFile(Path, Path)}) counts against the same bound, so the staged files are limited too. The writer
+ * takes up to a batch of files at once and passes them to {@link #writeBatch(List)}. With a queue capacity
+ * of 0 the files are written on the calling thread.
+ * </p>
+ * <p>
+ * Every file is recorded in the {@link MigrationStage#DISK_WRITE} stage, from the moment the writer takes it
+ * until it is completed, so the latency includes the batched sync but not the wait in the queue.
+ * </p>
+ */
+public abstract class QueuedOutputSink implements OutputSink {
+
+    /**
+     * Marker stopping the writer thread
+     */
+    private static final PendingWrite STOP = new PendingWrite(0, null, null, null, 0, 0, null);
+
+    /**
+     * Queue of the files waiting for the writer thread, null when the files are written on the calling thread
+     */
+    private final BlockingQueue<PendingWrite> queue;
+
+    /**
+     * Maximum number of files passed to {@link #writeBatch(List)} at once
+     */
+    private final int batchSize;
+
+    /**
+     * Permits of the content bytes waiting in the queue, null when only the number of files is bounded
+     */
+    private final Semaphore bufferedBytes;
+
+    /**
+     * Maximum number of content bytes waiting in the queue
+     */
+    private final int maxBufferedBytes;
+
+    /**
+     * Files which are queued, being written or failed and not yet reported by {@link #flush(Path)}, by their sequence number
+     */
+    private final Map<Long, PendingWrite> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Sequence number of the last queued file
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * The writer thread, null when the files are written on the calling thread
+     */
+    private final Thread writerThread;
+
+    /**
+     * Metrics of the written files
+     */
+    private final MigrationMetrics metrics;
+
+    /**
+     * Whether the sink accepts no more files
+     */
+    private volatile boolean closed;
+
+
+    /**
+     * Creates the sink and starts its writer thread.
+     *
+     * @param theThreadName       name of the writer thread
+     * @param theQueueCapacity    number of files which may wait for the writer thread, 0 to write on the calling thread
+     * @param theBatchSize        maximum number of files written together
+     * @param theMaxBufferedBytes maximum number of content bytes waiting for the writer thread, 0 for no limit
+     * @param theMetrics          metrics of the written files
+     */
+    protected QueuedOutputSink(String theThreadName, int theQueueCapacity, int theBatchSize, int theMaxBufferedBytes,
+                               MigrationMetrics theMetrics) {
+        this.metrics = theMetrics;
+        this.batchSize = Math.max(1, theBatchSize);
+        this.maxBufferedBytes = theMaxBufferedBytes;
+        this.bufferedBytes = theMaxBufferedBytes > 0 ? new Semaphore(theMaxBufferedBytes) : null;
+        if (theQueueCapacity > 0) {
+            this.queue = new ArrayBlockingQueue<>(theQueueCapacity);
+            this.writerThread = Thread.ofPlatform().name(theThreadName).daemon().start(this::runWriter);
+        } else {
+            this.queue = null;
+            this.writerThread = null;
+        }
+    }
+
+
+    /**
+     * Queues the file for the writer thread, waiting only while the queue is full.
+     *
+     * @param target  the final path of the file
+     * @param content the content of the file
+     * @throws IOException if the sink is closed, the caller is interrupted or the synchronous write fails
+     */
+    @Override
+    public void write(Path target, byte[] content) throws IOException {
+        enqueue(target, content, null, content.length);
+    }
+
+    /**
+     * Queues the staged file for the writer thread, waiting only while the queue is full.
+     * The staged file is deleted once it is written or failed, also when it is refused.
+     *
+     * @param target the final path of the file
+     * @param staged the complete file, owned by the sink once the call returns
+     * @throws IOException if the sink is closed, the caller is interrupted or the synchronous write fails
+     */
+    @Override
+    public void writeFile(Path target, Path staged) throws IOException {
+        long size;
+        try {
+            size = Files.size(staged);
+        } catch (IOException e) {
+            Files.deleteIfExists(staged);
+            throw e;
+        }
+        enqueue(target, null, staged, size);
+    }
+
+    /**
+     * Waits for the files under the directory queued so far and reports the failed ones.
+     *
+     * @param root the output directory
+     * @throws IOException if any of the files could not be written
+     */
+    @Override
+    public void flush(Path root) throws IOException {
+        Path directory = root.toAbsolutePath().normalize();
+        List<IOException> failures = new ArrayList<>();
+        for (PendingWrite write : pending.values()) {
+            if (!write.target.startsWith(directory)) {
+                continue;
+            }
+            try {
+                await(write);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                failures.add(e);
+            }
+            pending.remove(write.id);
+        }
+
+        if (!failures.isEmpty()) {
+            IOException exception = new IOException(failures.size() + " output files could not be written to " + directory);
+            failures.forEach(exception::addSuppressed);
+            throw exception;
+        }
+    }
+
+    /**
+     * Writes the queued files and stops the writer thread. Files handed over afterwards are refused.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (writerThread == null) {
+            return;
+        }
+        try {
+            queue.put(STOP);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Files queued by a worker racing with the close are never written
+        List<PendingWrite> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.remove(STOP);
+        for (PendingWrite write : remaining) {
+            fail(write, new IOException("The output writer is closed"));
+            release(write);
+        }
+    }
+
+    /**
+     * Writes the batch of files. Every file must be completed with {@link #complete(PendingWrite)}
+     * or {@link #fail(PendingWrite, Exception)}, a failed file must not stop the other files of the batch.
+     * Called by the writer thread, or by the calling threads when the queue capacity is 0.
+     *
+     * @param batch the files to write
+     */
+    protected abstract void writeBatch(List<PendingWrite> batch);
+
+    /**
+     * Marks the file as written.
+     *
+     * @param write the written file
+     */
+    protected final void complete(PendingWrite write) {
+        deleteStaged(write.staged);
+        if (write.done.complete(null)) {
+            pending.remove(write.id);
+            record(write, null);
+        }
+    }
+
+    /**
+     * Marks the file as failed, the failure is reported by the next {@link #flush(Path)} of its directory.
+     *
+     * @param write the failed file
+     * @param cause the reason of the failure
+     */
+    protected final void fail(PendingWrite write, Exception cause) {
+        deleteStaged(write.staged);
+        if (write.done.completeExceptionally(new IOException("Could not write the output file " + write.target, cause))) {
+            record(write, cause);
+        }
+    }
+
+    // Private helper methods
+
+    /**
+     * Queues the file for the writer thread, or writes it on the calling thread when there is no queue.
+     *
+     * @param target  the final path of the file
+     * @param content the content of the file, or null for a staged file
+     * @param staged  the staged file, or null for a file given by its content
+     * @param size    the size of the file in bytes
+     * @throws IOException if the sink is closed, the caller is interrupted or the synchronous write fails
+     */
+    private void enqueue(Path target, byte[] content, Path staged, long size) throws IOException {
+        if (closed) {
+            deleteStaged(staged);
+            throw new IOException("The output writer is closed, " + target + " was not written");
+        }
+        // A file larger than the whole buffer takes all of it, so it is still written
+        int reserved = bufferedBytes != null ? (int) Math.min(size, maxBufferedBytes) : 0;
+        PendingWrite write = new PendingWrite(sequence.incrementAndGet(), target.toAbsolutePath().normalize(), content, staged,
+                size, reserved, MigrationMetrics.currentPage());
+        if (queue == null) {
+            start(write);
+            writeBatch(List.of(write));
+            await(write);
+            return;
+        }
+
+        pending.put(write.id, write);
+        try {
+            if (bufferedBytes != null) {
+                bufferedBytes.acquire(reserved);
+            }
+            try {
+                queue.put(write);
+            } catch (InterruptedException e) {
+                release(write);
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            pending.remove(write.id);
+            deleteStaged(staged);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the output writer");
+        }
+    }
+
+    /**
+     * Loop of the writer thread, takes the queued files in batches until the sink is closed.
+     */
+    private void runWriter() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            stopped = batch.remove(STOP);
+            batch.forEach(this::start);
+            try {
+                writeBatch(batch);
+            } catch (RuntimeException e) {
+                batch.forEach(write -> fail(write, e));
+            }
+            batch.forEach(this::release);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Starts measuring the file in the disk write stage, once the writer takes it.
+     *
+     * @param write the file
+     */
+    private void start(PendingWrite write) {
+        write.sample = metrics.start(MigrationStage.DISK_WRITE, write.page, write.target.toString());
+    }
+
+    /**
+     * Records the completed file in the disk write stage, a file failed before the writer took it is recorded
+     * with no duration.
+     *
+     * @param write   the completed file
+     * @param failure the reason of the failure, or null when the file was written
+     */
+    private void record(PendingWrite write, Exception failure) {
+        if (write.sample == null) {
+            start(write);
+        }
+        write.sample.bytes(write.size);
+        if (failure != null) {
+            write.sample.failed(failure);
+        }
+        write.sample.close();
+    }
+
+    /**
+     * Returns the buffered bytes of the file, once it left the queue.
+     *
+     * @param write the file
+     */
+    private void release(PendingWrite write) {
+        if (bufferedBytes != null) {
+            bufferedBytes.release(write.reserved);
+        }
+    }
+
+    /**
+     * Deletes the staged file of a written, failed or refused file.
+     *
+     * @param staged the staged file, or null
+     */
+    private static void deleteStaged(Path staged) {
+        if (staged == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(staged);
+        } catch (IOException e) {
+            // Only a hidden staged file is left behind
+        }
+    }
+
+    /**
+     * Waits until the file is written.
+     *
+     * @param write the queued file
+     * @throws IOException if the file could not be written or the caller is interrupted
+     */
+    private static void await(PendingWrite write) throws IOException {
+        try {
+            write.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the output writer");
+        } catch (ExecutionException e) {
+            throw (IOException) e.getCause();
+        }
+    }
+
+
+    /**
+     * A file handed over to the sink.
+     */
+    protected static final class PendingWrite {
+
+        /**
+         * Sequence number of the file
+         */
+        private final long id;
+
+        /**
+         * The absolute final path of the file
+         */
+        private final Path target;
+
+        /**
+         * The content of the file, null for a staged file
+         */
+        private final byte[] content;
+
+        /**
+         * The staged file with the content, null for a file given by its content
+         */
+        private final Path staged;
+
+        /**
+         * Size of the file in bytes
+         */
+        private final long size;
+
+        /**
+         * Number of buffered bytes reserved for the file
+         */
+        private final int reserved;
+
+        /**
+         * URL of the wiki page the file belongs to, bound to the thread which handed the file over
+         */
+        private final String page;
+
+        /**
+         * Completed once the file is written, or with the failure
+         */
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        /**
+         * Measurement of the disk write started when the writer took the file, null while it is queued
+         */
+        private MigrationMetrics.Sample sample;
+
+
+        /**
+         * Creates the write of one file.
+         *
+         * @param theId       sequence number of the file
+         * @param theTarget   the absolute final path of the file
+         * @param theContent  the content of the file, null for a staged file
+         * @param theStaged   the staged file with the content, null for a file given by its content
+         * @param theSize     size of the file in bytes
+         * @param theReserved number of buffered bytes reserved for the file
+         * @param thePage     URL of the wiki page the file belongs to, or null
+         */
+        private PendingWrite(long theId, Path theTarget, byte[] theContent, Path theStaged, long theSize, int theReserved,
+                             String thePage) {
+            this.id = theId;
+            this.target = theTarget;
+            this.content = theContent;
+            this.staged = theStaged;
+            this.size = theSize;
+            this.reserved = theReserved;
+            this.page = thePage;
+        }
+
+
+        /**
+         * Returns the absolute final path of the file.
+         *
+         * @return the target path
+         */
+        public Path getTarget() {
+            return target;
+        }
+
+        /**
+         * Returns the content of the file.
+         *
+         * @return the content, null for a staged file
+         */
+        public byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * Returns the staged file with the content, deleted by the sink once the file is completed.
+         *
+         * @return the staged file, null for a file given by its content
+         */
+        public Path getStaged() {
+            return staged;
+        }
+
+        /**
+         * Returns the size of the file.
+         *
+         * @return the size in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package cz.vojtechsika.wiki_transformer.service.output;
+
+import cz.vojtechsika.wiki_transformer.dto.OutputFormat;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link OutputSink} used by the conversion services, routing every file by its output directory.
+ * <p>
+ * A run writing its output into an archive opens an {@link ArchiveOutputSink} attached to its output directory
+ * for the duration of the run ({@code output.archive.*}). The services keep deciding the paths of the pages
+ * and images as before, the files under an attached directory go into its archive and all other files
+ * to the {@link DirectoryOutputSink}.
+ * </p>
+ */
+@Primary
+@Component
+public class RoutingOutputSink implements OutputSink {
+
+    /**
+     * Sink of the files which are not archived
+     */
+    private final DirectoryOutputSink directorySink;
+
+    /**
+     * Sinks attached to the absolute output directories
+     */
+    private final Map<Path, OutputSink> attachedSinks = new ConcurrentHashMap<>();
+
+    /**
+     * Number of files which may wait for the writer thread of an archive
+     */
+    private final int archiveQueueCapacity;
+
+    /**
+     * Maximum number of bytes waiting for the writer thread of an archive
+     */
+    private final int archiveMaxBufferedBytes;
+
+    /**
+     * Metrics of the archived files
+     */
+    private final MigrationMetrics metrics;
+
+
+    /**
+     * Constructs the RoutingOutputSink with the sink of the files which are not archived.
+     *
+     * @param theDirectorySink        sink writing the files to the file system
+     * @param theArchiveQueueCapacity number of files which may wait for the writer thread of an archive,
+     *                                0 to write on the calling thread
+     * @param theArchiveMaxBuffered   maximum size of the files waiting for the writer thread of an archive
+     * @param theMetrics              metrics of the archived files
+     */
+    @Autowired
+    public RoutingOutputSink(DirectoryOutputSink theDirectorySink,
+                             @Value("${output.archive.queue-capacity:256}") int theArchiveQueueCapacity,
+                             @Value("${output.archive.max-buffered:64MB}") DataSize theArchiveMaxBuffered,
+                             MigrationMetrics theMetrics) {
+        this.directorySink = theDirectorySink;
+        this.archiveQueueCapacity = theArchiveQueueCapacity;
+        this.archiveMaxBufferedBytes = (int) Math.min(theArchiveMaxBuffered.toBytes(), Integer.MAX_VALUE);
+        this.metrics = theMetrics;
+    }
+
+
+    /**
+     * Opens an archive of the output directory and routes the files under the directory into it.
+     *
+     * @param target the archive file
+     * @param root   the output directory
+     * @param format {@link OutputFormat#ZIP} or {@link OutputFormat#TAR_GZ}
+     * @return the attached archive, completed with {@link ArchiveOutputSink#finish()} and detached
+     *         with {@link #closeArchive(Path, ArchiveOutputSink)}
+     * @throws IOException if the archive cannot be created
+     * @throws IllegalStateException if another archive of the directory is open, e.g. by a concurrent job
+     */
+    public ArchiveOutputSink openArchive(Path target, Path root, OutputFormat format) throws IOException {
+        ArchiveOutputSink archive = new ArchiveOutputSink(target, root, format, archiveQueueCapacity, archiveMaxBufferedBytes, metrics);
+        try {
+            attach(root, archive);
+        } catch (IllegalStateException e) {
+            archive.close();
+            throw e;
+        }
+        return archive;
+    }
+
+    /**
+     * Detaches the archive from the output directory and closes it, an archive which was not finished is discarded.
+     *
+     * @param root    the output directory
+     * @param archive the archive opened by {@link #openArchive(Path, Path, OutputFormat)}
+     */
+    public void closeArchive(Path root, ArchiveOutputSink archive) {
+        detach(root, archive);
+        archive.close();
+    }
+
+    /**
+     * Hands the file over to the sink of its output directory.
+     *
+     * @param target  the final path of the file
+     * @param content the content of the file
+     * @throws IOException if the file cannot be accepted
+     */
+    @Override
+    public void write(Path target, byte[] content) throws IOException {
+        sinkFor(target).write(target, content);
+    }
+
+    /**
+     * Hands the staged file over to the sink of its output directory.
+     *
+     * @param target the final path of the file
+     * @param staged the complete file, owned by the sink once the call returns
+     * @throws IOException if the file cannot be accepted
+     */
+    @Override
+    public void writeFile(Path target, Path staged) throws IOException {
+        sinkFor(target).writeFile(target, staged);
+    }
+
+    /**
+     * Waits for the files of the output directory, both those on the file system and those in its archive.
+     *
+     * @param root the output directory
+     * @throws IOException if any of the files could not be written
+     */
+    @Override
+    public void flush(Path root) throws IOException {
+        directorySink.flush(root);
+        OutputSink attached = attachedSinks.get(root.toAbsolutePath().normalize());
+        if (attached != null) {
+            attached.flush(root);
+        }
+    }
+
+    /**
+     * Returns whether the file would be written to the file system.
+     *
+     * @param target a path under the output directory
+     * @return false when the path is under a directory with an attached archive
+     */
+    @Override
+    public boolean writesFiles(Path target) {
+        return sinkFor(target).writesFiles(target);
+    }
+
+    // Private helper methods
+
+    /**
+     * Routes the files under the output directory to the sink until it is detached.
+     *
+     * @param root the output directory
+     * @param sink the sink of its files
+     * @throws IllegalStateException if another sink is attached to the directory, e.g. by a concurrent job
+     */
+    private void attach(Path root, OutputSink sink) {
+        Path directory = root.toAbsolutePath().normalize();
+        if (attachedSinks.putIfAbsent(directory, sink) != null) {
+            throw new IllegalStateException("Another run is writing an archive of the output directory " + directory);
+        }
+    }
+
+    /**
+     * Routes the files under the output directory to the file system again.
+     *
+     * @param root the output directory
+     * @param sink the sink which was attached
+     */
+    private void detach(Path root, OutputSink sink) {
+        attachedSinks.remove(root.toAbsolutePath().normalize(), sink);
+    }
+
+    /**
+     * Finds the sink of the file, the sink attached to the nearest enclosing output directory.
+     *
+     * @param target the path of the file
+     * @return the attached sink, or the directory sink
+     */
+    private OutputSink sinkFor(Path target) {
+        if (!attachedSinks.isEmpty()) {
+            for (Path directory = target.toAbsolutePath().normalize().getParent(); directory != null; directory = directory.getParent()) {
+                OutputSink attached = attachedSinks.get(directory);
+                if (attached != null) {
+                    return attached;
+                }
+            }
+        }
+        return directorySink;
+    }
+}
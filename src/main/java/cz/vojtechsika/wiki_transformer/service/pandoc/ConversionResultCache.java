@@ -0,0 +1,310 @@
+package cz.vojtechsika.wiki_transformer.service.pandoc;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Persistent on-disk cache of converted pages, keyed by the Textile content and the identity of the converter.
+ * <p>
+ * Every entry is a file {@code <key>.entry} named by the SHA-256 of the converter identity (engine, version and
+ * options) and the Textile, so a page is served from the cache only when both are byte-identical to an earlier
+ * conversion. The file starts with the SHA-256 of the MediaWiki output, an entry whose output does not match
+ * its checksum is deleted and converted again. Entries are written to temporary files and moved into place,
+ * and when the total size exceeds {@code conversion.cache.max-size} the least recently used entries are deleted.
+ * </p>
+ */
+@Component
+public class ConversionResultCache {
+
+    /**
+     * Fraction of the maximum size the cache is trimmed to by an eviction
+     */
+    private static final double EVICTION_TARGET = 0.9;
+
+    /**
+     * Extension of the entry files
+     */
+    private static final String ENTRY_EXTENSION = ".entry";
+
+    /**
+     * Length of the checksum heading every entry
+     */
+    private static final int CHECKSUM_LENGTH = 32;
+
+    /**
+     * Whether conversions are cached
+     */
+    private final boolean enabled;
+
+    /**
+     * Directory of the entry files
+     */
+    private final Path directory;
+
+    /**
+     * Maximum total size of the entries in bytes
+     */
+    private final long maxSizeBytes;
+
+    /**
+     * Sizes of the entries by their key
+     */
+    private final Map<String, Long> sizesByKey = new ConcurrentHashMap<>();
+
+    /**
+     * Total size of the entries in bytes
+     */
+    private final AtomicLong totalSize = new AtomicLong();
+
+    /**
+     * Whether the cache directory was already scanned
+     */
+    private volatile boolean loaded;
+
+
+    /**
+     * Creates the cache from the {@code conversion.cache.*} properties.
+     *
+     * @param theEnabled   whether conversions are cached
+     * @param theDirectory directory of the entry files
+     * @param theMaxSize   maximum total size of the entries
+     */
+    @Autowired
+    public ConversionResultCache(@Value("${conversion.cache.enabled:true}") boolean theEnabled,
+                                 @Value("${conversion.cache.directory:${user.home}/.cache/wiki-transformer/conversions}") Path theDirectory,
+                                 @Value("${conversion.cache.max-size:512MB}") DataSize theMaxSize) {
+        this.enabled = theEnabled;
+        this.directory = theDirectory;
+        this.maxSizeBytes = theMaxSize.toBytes();
+    }
+
+
+    /**
+     * Returns whether conversions are cached.
+     *
+     * @return true when the cache is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the cache key of a conversion.
+     *
+     * @param converterIdentity the engine, version and options of the converter
+     * @param content           the Textile content
+     * @return the hex encoded SHA-256 of the identity and the content
+     */
+    public String keyOf(String converterIdentity, String content) {
+        MessageDigest digest = sha256();
+        digest.update(converterIdentity.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(content.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the cached output of the conversion and marks it as recently used.
+     *
+     * @param key the key of the conversion
+     * @return the MediaWiki output, or null when it is not cached or its entry is damaged
+     * @throws IOException if the cache directory cannot be read
+     */
+    public byte[] get(String key) throws IOException {
+        load();
+        if (!sizesByKey.containsKey(key)) {
+            return null;
+        }
+
+        Path entry = directory.resolve(key + ENTRY_EXTENSION);
+        byte[] stored;
+        try {
+            stored = Files.readAllBytes(entry);
+        } catch (IOException e) {
+            // Evicted by a concurrent run
+            forget(key);
+            return null;
+        }
+
+        byte[] output = stored.length >= CHECKSUM_LENGTH ? Arrays.copyOfRange(stored, CHECKSUM_LENGTH, stored.length) : null;
+        if (output == null || !MessageDigest.isEqual(sha256().digest(output), Arrays.copyOf(stored, CHECKSUM_LENGTH))) {
+            System.out.println("Conversion cache entry is damaged and is converted again: " + entry.toAbsolutePath());
+            Files.deleteIfExists(entry);
+            forget(key);
+            return null;
+        }
+
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Only the eviction order is affected
+        }
+        return output;
+    }
+
+    /**
+     * Stores the output of the conversion and evicts old entries when the cache is too large.
+     *
+     * @param key    the key of the conversion
+     * @param output the MediaWiki output
+     * @throws IOException if the entry cannot be written
+     */
+    public void put(String key, byte[] output) throws IOException {
+        load();
+        Files.createDirectories(directory);
+        Path tempFile = directory.resolve(key + "." + UUID.randomUUID() + ".tmp");
+        try {
+            byte[] stored = Arrays.copyOf(sha256().digest(output), CHECKSUM_LENGTH + output.length);
+            System.arraycopy(output, 0, stored, CHECKSUM_LENGTH, output.length);
+            Files.write(tempFile, stored);
+            move(tempFile, directory.resolve(key + ENTRY_EXTENSION));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        long size = CHECKSUM_LENGTH + output.length;
+        Long previous = sizesByKey.put(key, size);
+        totalSize.addAndGet(size - (previous != null ? previous : 0));
+        if (totalSize.get() > maxSizeBytes) {
+            evict(key);
+        }
+    }
+
+    // Private helper methods
+
+    /**
+     * Scans the cache directory once to find the sizes of the entries.
+     *
+     * @throws IOException if the directory cannot be listed
+     */
+    private synchronized void load() throws IOException {
+        if (loaded) {
+            return;
+        }
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".tmp")) {
+                        // Left behind by an interrupted run
+                        Files.deleteIfExists(file);
+                    } else if (name.endsWith(ENTRY_EXTENSION)) {
+                        long size = Files.size(file);
+                        sizesByKey.put(name.substring(0, name.length() - ENTRY_EXTENSION.length()), size);
+                        totalSize.addAndGet(size);
+                    }
+                }
+            }
+        }
+        loaded = true;
+    }
+
+    /**
+     * Removes the entry from the size index.
+     *
+     * @param key the key of the entry
+     */
+    private void forget(String key) {
+        Long size = sizesByKey.remove(key);
+        if (size != null) {
+            totalSize.addAndGet(-size);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is below the eviction target.
+     *
+     * @param storedKey the key of the entry which was just stored, it is never evicted
+     */
+    private synchronized void evict(String storedKey) {
+        long target = (long) (maxSizeBytes * EVICTION_TARGET);
+        if (totalSize.get() <= target) {
+            return;
+        }
+
+        List<Path> entries = new ArrayList<>();
+        for (String key : sizesByKey.keySet()) {
+            if (!key.equals(storedKey)) {
+                entries.add(directory.resolve(key + ENTRY_EXTENSION));
+            }
+        }
+        entries.sort(Comparator.comparing(ConversionResultCache::lastModified));
+
+        for (Path entry : entries) {
+            if (totalSize.get() <= target) {
+                break;
+            }
+            String name = entry.getFileName().toString();
+            try {
+                Files.deleteIfExists(entry);
+            } catch (IOException e) {
+                continue;
+            }
+            forget(name.substring(0, name.length() - ENTRY_EXTENSION.length()));
+        }
+    }
+
+    /**
+     * Returns the last modification time of the file, files which cannot be read are treated as the oldest.
+     *
+     * @param file the file
+     * @return the last modification time
+     */
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Moves the file into place, atomically when the file system supports it.
+     *
+     * @param source the temporary file
+     * @param target the final file
+     * @throws IOException if the file cannot be moved
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Creates a SHA-256 digest.
+     *
+     * @return the digest
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package cz.vojtechsika.wiki_transformer.service.pandoc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Coalesces the conversions of concurrent callers into a single Pandoc run.
+ * <p>
+ * The first caller opens a batch and waits a short time ({@code lingerMillis}) for other pages, the batch is
+ * closed earlier once it holds {@code maxPages} pages or no further page fits into {@code maxBytes}. The pages
+ * are joined into one Textile document separated by sentinel paragraphs, a random word Pandoc passes through
+ * unchanged, and the MediaWiki output is split at the sentinel lines back into the results of the pages.
+ * </p>
+ * <p>
+ * Textile constructs which are not local to a page (footnotes, link aliases, extended blocks) would leak into
+ * the following page, such pages and pages larger than {@code maxBytes} are converted alone. So are pages with
+ * headings: Pandoc makes heading identifiers unique across the whole document, a heading repeated from an earlier
+ * page of the batch would get a numbered anchor which it does not get when converted alone. When the output
+ * does not split into the expected number of pages or the batch run fails, every page of the batch is converted
+ * alone again, so a broken page never fails the other pages of its batch.
+ * </p>
+ */
+public class PandocBatcher {
+
+    /**
+     * Textile which is not local to a page: footnote definitions, link aliases and extended blocks
+     */
+    private static final Pattern GLOBAL_TEXTILE = Pattern.compile("(?m)^(?:fn\\d+\\^?\\.|\\[[^\\]\\s]+\\]\\S|(?:bc|bq|pre|notextile|p)\\.\\.)");
+
+    /**
+     * Textile and HTML headings, with optional attributes and alignment, whose identifiers Pandoc makes unique per document
+     */
+    private static final Pattern HEADING = Pattern.compile("(?m)^h[1-6](?:\\([^)\\n]*\\)|\\{[^}\\n]*\\}|\\[[^\\]\\n]*\\]|[<>=])*\\.(?:\\s|$)|(?i)<h[1-6][\\s>]");
+
+    /**
+     * Converter of a single Textile document
+     */
+    private final Converter converter;
+
+    /**
+     * Maximum number of pages converted in one run, 1 disables batching
+     */
+    private final int maxPages;
+
+    /**
+     * Maximum size of the joined Textile of a batch in bytes
+     */
+    private final int maxBytes;
+
+    /**
+     * Time the first page of a batch waits for other pages in milliseconds
+     */
+    private final long lingerMillis;
+
+    /**
+     * Paragraph separating two pages, unique for this batcher
+     */
+    private final String sentinel = "WikiTransformerPageBreak" + UUID.randomUUID().toString().replace("-", "");
+
+    /**
+     * The batch accepting pages, null when no batch is open
+     */
+    private Batch openBatch;
+
+
+    /**
+     * Creates the batcher.
+     *
+     * @param theConverter    converter of a single Textile document, e.g. one Pandoc run
+     * @param theMaxPages     maximum number of pages converted in one run, 1 disables batching
+     * @param theMaxBytes     maximum size of the joined Textile of a batch in bytes
+     * @param theLingerMillis time the first page of a batch waits for other pages in milliseconds
+     */
+    public PandocBatcher(Converter theConverter, int theMaxPages, int theMaxBytes, long theLingerMillis) {
+        this.converter = theConverter;
+        this.maxPages = Math.max(1, theMaxPages);
+        this.maxBytes = theMaxBytes;
+        this.lingerMillis = theLingerMillis;
+    }
+
+
+    /**
+     * Converts the page, together with the pages of concurrent callers when batching is enabled.
+     *
+     * @param content the Textile content of the page
+     * @param pageUrl the URL of the wiki page, handed to the converter with the run of the page, or null
+     * @return the MediaWiki output of the page
+     * @throws IOException if the page cannot be converted
+     */
+    public byte[] convert(String content, String pageUrl) throws IOException {
+        return convertPage(content, pageUrl).mediaWiki();
+    }
+
+    /**
+     * Converts the page like {@link #convert(String, String)} and tells whether it was converted together with other pages.
+     *
+     * @param content the Textile content of the page
+     * @param pageUrl the URL of the wiki page, handed to the converter with the run of the page, or null
+     * @return the MediaWiki output of the page and whether it was split from the output of a batch
+     * @throws IOException if the page cannot be converted
+     */
+    public Output convertPage(String content, String pageUrl) throws IOException {
+        int size = utf8Length(content) + sentinel.length() + 4;
+        if (maxPages == 1 || size > maxBytes || GLOBAL_TEXTILE.matcher(content).find() || HEADING.matcher(content).find()) {
+            return new Output(converter.convert(content, Collections.singletonList(pageUrl)), false);
+        }
+
+        Page page = new Page(content, pageUrl);
+        Batch batch;
+        boolean leader;
+        synchronized (this) {
+            if (openBatch == null || !openBatch.add(page, size)) {
+                openBatch = new Batch();
+                openBatch.add(page, size);
+                leader = true;
+            } else {
+                leader = false;
+            }
+            batch = openBatch;
+        }
+
+        if (leader) {
+            runBatch(batch);
+        }
+
+        byte[] result;
+        try {
+            result = page.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the Pandoc batch");
+        } catch (ExecutionException e) {
+            throw new IOException("Pandoc batch failed", e.getCause());
+        }
+        // No result means the batch could not be split, the page is converted alone
+        return result != null ? new Output(result, true) : new Output(converter.convert(content, Collections.singletonList(pageUrl)), false);
+    }
+
+    // Private helper methods
+
+    /**
+     * Waits for the batch to fill, closes it and converts its pages in one run.
+     *
+     * @param batch the batch opened by the caller
+     */
+    private void runBatch(Batch batch) {
+        try {
+            batch.filled.get(lingerMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Lingered long enough, the batch is converted as it is
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Never completed exceptionally
+        }
+
+        List<Page> pages;
+        synchronized (this) {
+            if (openBatch == batch) {
+                openBatch = null;
+            }
+            batch.filled.complete(null);
+            pages = List.copyOf(batch.pages);
+        }
+
+        List<byte[]> results = null;
+        try {
+            if (pages.size() > 1) {
+                results = split(converter.convert(join(pages), pages.stream().map(page -> page.pageUrl).toList()), pages.size());
+            }
+        } catch (IOException | RuntimeException e) {
+            // Every page is converted alone, so only the broken page fails
+        } finally {
+            for (int i = 0; i < pages.size(); i++) {
+                pages.get(i).result.complete(results != null ? results.get(i) : null);
+            }
+        }
+    }
+
+    /**
+     * Joins the Textile of the pages, separated by sentinel paragraphs.
+     *
+     * @param pages the pages of the batch
+     * @return the Textile document of the batch
+     */
+    private String join(List<Page> pages) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < pages.size(); i++) {
+            if (i > 0) {
+                joined.append("\n\n").append(sentinel).append("\n\n");
+            }
+            joined.append(pages.get(i).content);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Splits the MediaWiki output of a batch at the sentinel lines.
+     *
+     * @param output the MediaWiki output of the batch
+     * @param count  the number of pages of the batch
+     * @return the outputs of the pages, or null when the output does not contain exactly one sentinel between two pages
+     */
+    private List<byte[]> split(byte[] output, int count) {
+        String mediaWiki = new String(output, StandardCharsets.UTF_8);
+        List<byte[]> results = new ArrayList<>(count);
+        int start = 0;
+        for (int index = mediaWiki.indexOf(sentinel); index >= 0; index = mediaWiki.indexOf(sentinel, index + sentinel.length())) {
+            int end = index + sentinel.length();
+            boolean ownLine = (index == 0 || mediaWiki.charAt(index - 1) == '\n')
+                    && (end == mediaWiki.length() || mediaWiki.charAt(end) == '\n' || mediaWiki.charAt(end) == '\r');
+            if (!ownLine) {
+                return null;
+            }
+            results.add(trim(mediaWiki.substring(start, index)));
+            start = end;
+        }
+        results.add(trim(mediaWiki.substring(start)));
+        return results.size() == count ? results : null;
+    }
+
+    /**
+     * Returns the length of the text encoded in UTF-8.
+     *
+     * @param text the text
+     * @return the number of bytes
+     */
+    private static int utf8Length(String text) {
+        int length = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800) {
+                // Three bytes, a surrogate pair counts four bytes for its two chars
+                length += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Removes the blank lines around the output of one page and ends it with a single line break,
+     * like the output of a page converted alone. Leading spaces are kept, they mark preformatted text.
+     *
+     * @param output the output of the page between two sentinels
+     * @return the output of the page
+     */
+    private static byte[] trim(String output) {
+        int start = 0;
+        while (start < output.length() && (output.charAt(start) == '\n' || output.charAt(start) == '\r')) {
+            start++;
+        }
+        int end = output.length();
+        while (end > start && Character.isWhitespace(output.charAt(end - 1))) {
+            end--;
+        }
+        return start == end ? new byte[0] : (output.substring(start, end) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Converter of a single Textile document to MediaWiki.
+     */
+    @FunctionalInterface
+    public interface Converter {
+
+        /**
+         * Converts the Textile document.
+         *
+         * @param content  the Textile content
+         * @param pageUrls the URLs of the wiki pages joined into the document, null for an unknown page
+         * @return the MediaWiki output
+         * @throws IOException if the conversion fails
+         */
+        byte[] convert(String content, List<String> pageUrls) throws IOException;
+    }
+
+
+    /**
+     * The output of a page.
+     *
+     * @param mediaWiki the MediaWiki output of the page
+     * @param batched   true when the output was split from the output of a batch and may depend on its other pages
+     */
+    public record Output(byte[] mediaWiki, boolean batched) {
+    }
+
+
+    /**
+     * A page waiting for its batch.
+     */
+    private static final class Page {
+
+        /**
+         * The Textile content of the page
+         */
+        private final String content;
+
+        /**
+         * The URL of the wiki page, or null
+         */
+        private final String pageUrl;
+
+        /**
+         * Completed with the output of the page, or with null when the page has to be converted alone
+         */
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+
+        /**
+         * Creates the page.
+         *
+         * @param theContent the Textile content of the page
+         * @param thePageUrl the URL of the wiki page, or null
+         */
+        private Page(String theContent, String thePageUrl) {
+            this.content = theContent;
+            this.pageUrl = thePageUrl;
+        }
+    }
+
+
+    /**
+     * Pages converted in one run.
+     */
+    private final class Batch {
+
+        /**
+         * The pages of the batch in the order of their arrival
+         */
+        private final List<Page> pages = new ArrayList<>();
+
+        /**
+         * Completed once no further page can join the batch
+         */
+        private final CompletableFuture<Void> filled = new CompletableFuture<>();
+
+        /**
+         * Estimated size of the joined Textile in bytes
+         */
+        private int bytes;
+
+
+        /**
+         * Adds the page when it fits into the batch, called while holding the lock of the batcher.
+         *
+         * @param page the page
+         * @param size the estimated size of the page with its separator in bytes
+         * @return true when the page was added
+         */
+        private boolean add(Page page, int size) {
+            if (filled.isDone() || bytes + size > maxBytes) {
+                filled.complete(null);
+                return false;
+            }
+            pages.add(page);
+            bytes += size;
+            if (pages.size() >= maxPages) {
+                filled.complete(null);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package cz.vojtechsika.wiki_transformer.service.pandoc;
+
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Pool of long-lived {@code pandoc server} workers.
+ * <p>
+ * Every conversion borrows an idle worker, so the number of parallel conversions equals the pool size
+ * and the Pandoc process startup is paid only once per worker. A background task periodically checks
+ * the health of all workers, an unhealthy or crashed worker is restarted before it is handed out again.
+ * </p>
+ */
+public class PandocServerPool implements AutoCloseable {
+
+    /**
+     * All workers of the pool
+     */
+    private final List<PandocServerWorker> workers = new ArrayList<>();
+
+    /**
+     * Workers waiting for a conversion
+     */
+    private final BlockingQueue<PandocServerWorker> idleWorkers = new LinkedBlockingQueue<>();
+
+    /**
+     * Scheduler of the periodic health checks
+     */
+    private final ScheduledExecutorService healthChecker;
+
+
+    /**
+     * Starts all workers of the pool and schedules the health checks.
+     *
+     * @param executable                 name or path of the Pandoc executable
+     * @param poolSize                   number of pandoc server processes
+     * @param basePort                   port of the first worker (next workers use following ports), 0 for free ports
+     * @param timeoutSeconds             timeout of a single conversion in seconds
+     * @param healthCheckIntervalSeconds interval between two health checks of the workers
+     * @throws IOException if any worker cannot be started
+     */
+    public PandocServerPool(String executable, int poolSize, int basePort, int timeoutSeconds,
+                            int healthCheckIntervalSeconds) throws IOException {
+        this(poolSize, index -> new PandocServerWorker(executable, basePort == 0 ? 0 : basePort + index, timeoutSeconds),
+                healthCheckIntervalSeconds);
+    }
+
+    /**
+     * Starts the workers created by the given factory and schedules the health checks.
+     *
+     * @param poolSize                   number of workers
+     * @param workerFactory              creates the worker with the given index
+     * @param healthCheckIntervalSeconds interval between two health checks of the workers
+     * @throws IOException if any worker cannot be started
+     */
+    PandocServerPool(int poolSize, IntFunction<PandocServerWorker> workerFactory, int healthCheckIntervalSeconds) throws IOException {
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                PandocServerWorker worker = workerFactory.apply(i);
+                workers.add(worker);
+                worker.start();
+                idleWorkers.add(worker);
+            }
+        } catch (IOException e) {
+            workers.forEach(PandocServerWorker::stop);
+            throw e;
+        }
+
+        healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pandoc-server-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(() -> workers.forEach(PandocServerWorker::checkHealth),
+                healthCheckIntervalSeconds, healthCheckIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+
+    /**
+     * Converts Textile content to MediaWiki markup on an idle worker.
+     * When the worker turns out to be crashed, it is restarted and the conversion is retried once.
+     *
+     * @param content the Textile-formatted text to be converted
+     * @return the converted MediaWiki markup
+     * @throws IOException if the conversion fails, the server answers with an error or no worker can be (re)started
+     */
+    public String convert(String content) throws IOException {
+        PandocServerWorker worker = acquire();
+        try {
+            try {
+                return worker.convert(content);
+            } catch (ResourceAccessException e) {
+                // Connection refused or reset, the process most likely crashed during the conversion
+                worker.restart();
+                return worker.convert(content);
+            }
+        } catch (ResourceAccessException e) {
+            throw new IOException("Pandoc server is not reachable", e);
+        } finally {
+            idleWorkers.add(worker);
+        }
+    }
+
+    /**
+     * Stops the health checks and all pandoc server processes.
+     */
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        workers.forEach(PandocServerWorker::stop);
+    }
+
+    // Private helper methods
+
+    /**
+     * Takes an idle worker, restarting it first when the last health check failed.
+     *
+     * @return a healthy worker reserved for the caller
+     * @throws IOException if the worker cannot be restarted or the waiting thread is interrupted
+     */
+    private PandocServerWorker acquire() throws IOException {
+        PandocServerWorker worker;
+        try {
+            worker = idleWorkers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an idle Pandoc server", e);
+        }
+
+        if (!worker.isHealthy()) {
+            try {
+                worker.restart();
+            } catch (IOException e) {
+                // Return the worker, the next caller will try to restart it again
+                idleWorkers.add(worker);
+                throw new IOException("Pandoc server could not be restarted", e);
+            }
+        }
+        return worker;
+    }
+}
@@ -0,0 +1,259 @@
+package cz.vojtechsika.wiki_transformer.service.pandoc;
+
+import cz.vojtechsika.wiki_transformer.dto.PandocServerResponseDTO;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single long-lived {@code pandoc server} process listening on a localhost port.
+ * <p>
+ * The worker owns the process, knows how to check its health and restarts it when it crashed.
+ * A worker is used by one conversion at a time, the exclusive access is guaranteed by {@link PandocServerPool}.
+ * </p>
+ */
+public class PandocServerWorker {
+
+    /**
+     * How long to wait for a freshly started server to answer the health check.
+     */
+    private static final long STARTUP_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Name or path of the Pandoc executable
+     */
+    private final String executable;
+
+    /**
+     * Configured port of the server, 0 means that a free port is chosen on every start
+     */
+    private final int configuredPort;
+
+    /**
+     * Timeout of a single conversion in seconds, passed to {@code pandoc server --timeout}
+     */
+    private final int timeoutSeconds;
+
+    /**
+     * Running pandoc server process
+     */
+    private Process process;
+
+    /**
+     * Client bound to the port of the running process
+     */
+    private RestClient restClient;
+
+    /**
+     * Result of the last health check
+     */
+    private volatile boolean healthy;
+
+
+    /**
+     * Creates a worker, the process is not started until {@link #start()} is called.
+     *
+     * @param theExecutable     name or path of the Pandoc executable
+     * @param thePort           port of the server, 0 for a free port
+     * @param theTimeoutSeconds timeout of a single conversion in seconds
+     */
+    public PandocServerWorker(String theExecutable, int thePort, int theTimeoutSeconds) {
+        this.executable = theExecutable;
+        this.configuredPort = thePort;
+        this.timeoutSeconds = theTimeoutSeconds;
+    }
+
+
+    /**
+     * Starts the pandoc server process and waits until it answers the health check.
+     *
+     * @throws IOException if the process cannot be started or does not become healthy in time
+     */
+    public synchronized void start() throws IOException {
+        int port = configuredPort != 0 ? configuredPort : findFreePort();
+        try {
+            process = startProcess(port);
+        } catch (SecurityException e) {
+            throw new IOException("Pandoc server could not be started due to insufficient permissions", e);
+        } catch (IOException e) {
+            throw new IOException("I/O error while starting Pandoc server on port " + port, e);
+        }
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(1_000);
+        requestFactory.setReadTimeout((timeoutSeconds + 5) * 1_000);
+        restClient = RestClient.builder()
+                .baseUrl("http://127.0.0.1:" + port)
+                .requestFactory(requestFactory)
+                .build();
+
+        waitUntilHealthy(port);
+    }
+
+    /**
+     * Stops the running process and starts a new one.
+     *
+     * @throws IOException if the new process cannot be started
+     */
+    public synchronized void restart() throws IOException {
+        stop();
+        start();
+    }
+
+    /**
+     * Stops the pandoc server process, forcibly when it does not terminate in time.
+     */
+    public synchronized void stop() {
+        healthy = false;
+        if (process == null) {
+            return;
+        }
+        process.destroy();
+        try {
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+        process = null;
+    }
+
+    /**
+     * Checks that the process is alive and answers the {@code /version} endpoint.
+     * The result is remembered and available through {@link #isHealthy()}.
+     *
+     * @return true when the server is able to accept conversions
+     */
+    public boolean checkHealth() {
+        RestClient client;
+        synchronized (this) {
+            if (process == null || !process.isAlive()) {
+                healthy = false;
+                return false;
+            }
+            client = restClient;
+        }
+        try {
+            client.get().uri("/version").retrieve().toBodilessEntity();
+            healthy = true;
+        } catch (RestClientException e) {
+            healthy = false;
+        }
+        return healthy;
+    }
+
+    /**
+     * Returns the result of the last health check.
+     *
+     * @return true when the last health check succeeded and the process is still alive
+     */
+    public boolean isHealthy() {
+        Process current = process;
+        return healthy && current != null && current.isAlive();
+    }
+
+    /**
+     * Sends the Textile content to the server and returns the MediaWiki markup.
+     *
+     * @param content the Textile-formatted text to be converted
+     * @return the converted MediaWiki markup
+     * @throws IOException if the server reports a conversion error or answers with an error status
+     * @throws ResourceAccessException if the server cannot be reached
+     */
+    public String convert(String content) throws IOException {
+        PandocServerResponseDTO response;
+        try {
+            response = restClient.post()
+                    .uri("/")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .body(Map.of("text", content, "from", "textile", "to", "mediawiki"))
+                    .retrieve()
+                    .body(PandocServerResponseDTO.class);
+        } catch (ResourceAccessException e) {
+            // Left to the pool, which restarts the worker
+            throw e;
+        } catch (RestClientResponseException e) {
+            // pandoc server reports a failed conversion as HTTP 500 with a plain text message
+            throw new IOException("Pandoc server failed to convert the content (HTTP " + e.getStatusCode().value() + "): "
+                    + e.getResponseBodyAsString().strip(), e);
+        } catch (RestClientException e) {
+            throw new IOException("Pandoc server returned an unreadable response: " + e.getMessage(), e);
+        }
+
+        if (response == null) {
+            throw new IOException("Pandoc server returned empty body");
+        }
+        if (response.getError() != null) {
+            throw new IOException("Pandoc server failed to convert the content: " + response.getError());
+        }
+        return response.getOutput() != null ? response.getOutput() : "";
+    }
+
+    /**
+     * Starts the {@code pandoc server} process listening on the given port.
+     *
+     * @param port the port the server listens on
+     * @return the started process
+     * @throws IOException if the process cannot be started
+     */
+    Process startProcess(int port) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(executable, "server",
+                "--port", String.valueOf(port), "--timeout", String.valueOf(timeoutSeconds));
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        return processBuilder.start();
+    }
+
+    // Private helper methods
+
+    /**
+     * Polls the health check until the server answers or the startup timeout expires.
+     *
+     * @param port the port of the started server, used in the error message
+     * @throws IOException if the server does not become healthy in time
+     */
+    private void waitUntilHealthy(int port) throws IOException {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (checkHealth()) {
+                return;
+            }
+            if (!process.isAlive()) {
+                throw new IOException("Pandoc server on port " + port + " terminated with exit code " + process.exitValue());
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for Pandoc server on port " + port, e);
+            }
+        }
+        stop();
+        throw new IOException("Pandoc server on port " + port + " did not start within " + STARTUP_TIMEOUT_MILLIS + " ms");
+    }
+
+    /**
+     * Finds a free localhost port by binding an ephemeral server socket.
+     *
+     * @return a port which was free at the time of the call
+     * @throws IOException if no ephemeral port can be bound
+     */
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IOException("No free port available for Pandoc server", e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package cz.vojtechsika.wiki_transformer.service.pandoc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the version of an installed Pandoc, used to tell apart the outputs of different Pandoc releases.
+ */
+public final class PandocVersion {
+
+    /**
+     * Time Pandoc is given to print its version in seconds
+     */
+    private static final long TIMEOUT_SECONDS = 10;
+
+
+    /**
+     * Utility class, not instantiated.
+     */
+    private PandocVersion() {
+    }
+
+
+    /**
+     * Runs {@code pandoc --version} and returns the first line of its output, e.g. {@code pandoc 3.1.11}.
+     *
+     * @param executable name or path of the Pandoc executable
+     * @return the version line, or null when Pandoc cannot be run or does not answer in time
+     */
+    public static String of(String executable) {
+        try {
+            Process process = new ProcessBuilder(executable, "--version")
+                    .redirectErrorStream(true)
+                    .start();
+            byte[] output;
+            try (InputStream input = process.getInputStream()) {
+                output = input.readNBytes(4096);
+            }
+            if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return null;
+            }
+            String version = new String(output, StandardCharsets.UTF_8).lines().findFirst().orElse("").strip();
+            return process.exitValue() == 0 && !version.isEmpty() ? version : null;
+        } catch (IOException | SecurityException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
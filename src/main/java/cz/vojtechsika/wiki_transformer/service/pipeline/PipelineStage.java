@@ -0,0 +1,136 @@
+package cz.vojtechsika.wiki_transformer.service.pipeline;
+
+/**
+ * One stage of a {@link StagedPipeline}: a task applied to every item by a fixed number of workers.
+ * <p>
+ * Stages waiting on the network or the disk run their workers on virtual threads ({@link #io}), stages keeping
+ * a core busy run them on platform threads ({@link #cpu}), so the number of CPU workers bounds the parallelism
+ * of the conversion regardless of the workers of the other stages.
+ * </p>
+ *
+ * @param <T> type of the items flowing through the pipeline
+ */
+public final class PipelineStage<T> {
+
+    /**
+     * Name of the stage, used for the names of its threads
+     */
+    private final String name;
+
+    /**
+     * Number of items processed by the stage at once
+     */
+    private final int workers;
+
+    /**
+     * Whether the workers run on virtual threads
+     */
+    private final boolean virtualThreads;
+
+    /**
+     * The task applied to every item
+     */
+    private final Task<T> task;
+
+
+    /**
+     * Creates the stage.
+     *
+     * @param theName           name of the stage
+     * @param theWorkers        number of items processed by the stage at once
+     * @param theVirtualThreads whether the workers run on virtual threads
+     * @param theTask           the task applied to every item
+     */
+    private PipelineStage(String theName, int theWorkers, boolean theVirtualThreads, Task<T> theTask) {
+        if (theWorkers < 1) {
+            throw new IllegalArgumentException("The stage " + theName + " needs at least one worker");
+        }
+        this.name = theName;
+        this.workers = theWorkers;
+        this.virtualThreads = theVirtualThreads;
+        this.task = theTask;
+    }
+
+
+    /**
+     * Creates a stage waiting on the network or the disk, its workers run on virtual threads.
+     *
+     * @param name    name of the stage
+     * @param workers number of items processed by the stage at once
+     * @param task    the task applied to every item
+     * @param <T>     type of the items
+     * @return the stage
+     * @throws IllegalArgumentException if the number of workers is less than 1
+     */
+    public static <T> PipelineStage<T> io(String name, int workers, Task<T> task) {
+        return new PipelineStage<>(name, workers, true, task);
+    }
+
+    /**
+     * Creates a stage keeping a core busy, its workers run on platform threads.
+     *
+     * @param name    name of the stage
+     * @param workers number of items processed by the stage at once, usually the number of cores
+     * @param task    the task applied to every item
+     * @param <T>     type of the items
+     * @return the stage
+     * @throws IllegalArgumentException if the number of workers is less than 1
+     */
+    public static <T> PipelineStage<T> cpu(String name, int workers, Task<T> task) {
+        return new PipelineStage<>(name, workers, false, task);
+    }
+
+    /**
+     * Returns the name of the stage.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of items processed by the stage at once.
+     *
+     * @return the number of workers
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Returns whether the workers run on virtual threads.
+     *
+     * @return true for a stage created by {@link #io}
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Returns the task applied to every item.
+     *
+     * @return the task
+     */
+    public Task<T> getTask() {
+        return task;
+    }
+
+
+    /**
+     * Work of a stage on one item.
+     *
+     * @param <T> type of the items
+     */
+    @FunctionalInterface
+    public interface Task<T> {
+
+        /**
+         * Processes the item, a thrown exception fails the item and it skips the following stages.
+         *
+         * @param item the item
+         * @throws Exception if the item cannot be processed
+         */
+        void process(T item) throws Exception;
+    }
+}
@@ -0,0 +1,204 @@
+package cz.vojtechsika.wiki_transformer.service.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs items through a chain of {@link PipelineStage}s, every stage with its own workers.
+ * <p>
+ * The stages are connected by queues bounded by the same capacity. A worker hands a processed item to the queue
+ * of the next stage and waits while that queue is full, so a slow stage holds back the stages before it and
+ * {@link #submit(Object)} instead of letting the items pile up in the heap. While one stage waits on the network,
+ * the workers of the other stages keep the CPU and the disk busy with other items.
+ * </p>
+ * <p>
+ * An item failed by a stage skips the following stages and is passed to the failure handler, the other items
+ * are not affected. {@link #close()} waits until every submitted item passed the last stage or failed.
+ * </p>
+ *
+ * @param <T> type of the items flowing through the pipeline
+ */
+public class StagedPipeline<T> implements AutoCloseable {
+
+    /**
+     * The stages in the order the items pass them
+     */
+    private final List<PipelineStage<T>> stages;
+
+    /**
+     * Input queues of the stages, by the index of the stage
+     */
+    private final List<BlockingQueue<T>> queues = new ArrayList<>();
+
+    /**
+     * Executors of the workers, by the index of the stage
+     */
+    private final List<ExecutorService> executors = new ArrayList<>();
+
+    /**
+     * Receives every failed item with the reason of its failure
+     */
+    private final BiConsumer<T, Exception> failureHandler;
+
+    /**
+     * Lock guarding the number of items in flight
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Number of submitted items which neither passed the last stage nor failed
+     */
+    private long inFlight;
+
+    /**
+     * Whether the pipeline accepts no more items
+     */
+    private boolean closed;
+
+
+    /**
+     * Creates the pipeline and starts the workers of all stages.
+     *
+     * @param theStages         the stages in the order the items pass them
+     * @param theQueueCapacity  number of items which may wait for each stage
+     * @param theFailureHandler receives every failed item with the reason of its failure, must not throw
+     * @throws IllegalArgumentException if there is no stage or the queue capacity is less than 1
+     */
+    public StagedPipeline(List<PipelineStage<T>> theStages, int theQueueCapacity, BiConsumer<T, Exception> theFailureHandler) {
+        if (theStages.isEmpty()) {
+            throw new IllegalArgumentException("The pipeline needs at least one stage");
+        }
+        if (theQueueCapacity < 1) {
+            throw new IllegalArgumentException("The queue capacity of the pipeline must be at least 1");
+        }
+        this.stages = List.copyOf(theStages);
+        this.failureHandler = theFailureHandler;
+
+        for (PipelineStage<T> stage : stages) {
+            queues.add(new ArrayBlockingQueue<>(theQueueCapacity));
+        }
+        for (int index = 0; index < stages.size(); index++) {
+            PipelineStage<T> stage = stages.get(index);
+            ThreadFactory threadFactory = stage.isVirtualThreads()
+                    ? Thread.ofVirtual().name("pipeline-" + stage.getName() + "-", 1).factory()
+                    : Thread.ofPlatform().name("pipeline-" + stage.getName() + "-", 1).daemon().factory();
+            ExecutorService executor = Executors.newThreadPerTaskExecutor(threadFactory);
+            executors.add(executor);
+            int stageIndex = index;
+            for (int worker = 0; worker < stage.getWorkers(); worker++) {
+                executor.execute(() -> runWorker(stageIndex));
+            }
+        }
+    }
+
+
+    /**
+     * Hands the item to the first stage, waiting while its queue is full.
+     *
+     * @param item the item
+     * @throws InterruptedException if the caller is interrupted while waiting, the item is not submitted then
+     * @throws IllegalStateException if the pipeline is closed
+     */
+    public void submit(T item) throws InterruptedException {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("The pipeline is closed");
+            }
+            inFlight++;
+        }
+        try {
+            queues.get(0).put(item);
+        } catch (InterruptedException e) {
+            finished();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until every submitted item passed the last stage or failed and stops the workers.
+     * An interrupted caller stops the workers without waiting, the items still in the pipeline are abandoned.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        synchronized (lock) {
+            closed = true;
+            while (inFlight > 0 && !interrupted) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        // The idle workers wait for their queues and are released by the interrupt
+        executors.forEach(ExecutorService::shutdownNow);
+        executors.forEach(ExecutorService::close);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Private helper methods
+
+    /**
+     * Loop of a worker, processes the items of its stage until it is interrupted.
+     *
+     * @param index the index of the stage
+     */
+    private void runWorker(int index) {
+        PipelineStage<T> stage = stages.get(index);
+        BlockingQueue<T> input = queues.get(index);
+        BlockingQueue<T> output = index + 1 < queues.size() ? queues.get(index + 1) : null;
+        while (true) {
+            T item;
+            try {
+                item = input.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            boolean forwarded = false;
+            try {
+                stage.getTask().process(item);
+                if (output != null) {
+                    // Waits while the next stage is behind, which holds back this stage
+                    output.put(item);
+                    forwarded = true;
+                }
+            } catch (InterruptedException e) {
+                failureHandler.accept(item, e);
+                return;
+            } catch (Exception e) {
+                failureHandler.accept(item, e);
+            } catch (Error e) {
+                // The worker must survive, a stage without workers would stall the whole pipeline
+                failureHandler.accept(item, new ExecutionException("The stage " + stage.getName() + " failed", e));
+            } finally {
+                if (!forwarded) {
+                    finished();
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the item as finished and wakes {@link #close()} once no item is left.
+     */
+    private void finished() {
+        synchronized (lock) {
+            inFlight--;
+            if (inFlight == 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package cz.vojtechsika.wiki_transformer.service.textile;
+
+import lombok.Getter;
+
+/**
+ * Inline formatting supported by the native Textile engine, together with its MediaWiki markup.
+ */
+@Getter
+public enum InlineStyle {
+
+    STRONG("'''", "'''"),
+    EMPHASIS("''", "''"),
+    STRIKEOUT("<s>", "</s>"),
+    UNDERLINE("<u>", "</u>"),
+    SUPERSCRIPT("<sup>", "</sup>"),
+    SUBSCRIPT("<sub>", "</sub>"),
+    SPAN("", "");
+
+    /**
+     * MediaWiki markup opening the style
+     */
+    private final String open;
+
+    /**
+     * MediaWiki markup closing the style
+     */
+    private final String close;
+
+    InlineStyle(String open, String close) {
+        this.open = open;
+        this.close = close;
+    }
+}
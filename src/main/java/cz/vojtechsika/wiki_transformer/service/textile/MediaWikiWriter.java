@@ -0,0 +1,371 @@
+package cz.vojtechsika.wiki_transformer.service.textile;
+
+import java.util.Set;
+
+/**
+ * Emitter of MediaWiki markup used by the native Textile engine.
+ * <p>
+ * The parsers call the block and inline methods of the writer in document order and the writer appends
+ * the markup to a single {@link StringBuilder}. Text is passed as ranges of the source, so no intermediate
+ * strings are created. The output follows the conventions of Pandoc's MediaWiki writer (blocks separated
+ * by a blank line, headings with Pandoc identifiers, {@code wikitable} tables).
+ * </p>
+ * <p>
+ * In plain text mode all markup is omitted and text is not escaped, which is used to compute
+ * heading identifiers from the heading content (the equivalent of Pandoc's {@code stringify}).
+ * </p>
+ */
+public class MediaWikiWriter {
+
+    /**
+     * Code block classes which are emitted as {@code <syntaxhighlight>} instead of {@code <pre>}
+     */
+    private static final Set<String> HIGHLIGHT_LANGUAGES = Set.of(
+            "bash", "c", "clojure", "cpp", "csharp", "css", "diff", "go", "groovy", "haskell", "html", "ini",
+            "java", "javascript", "json", "kotlin", "lua", "makefile", "perl", "php", "python", "ruby", "rust",
+            "scala", "sh", "sql", "swift", "typescript", "xml", "yaml");
+
+    /**
+     * Output buffer
+     */
+    private final StringBuilder out;
+
+    /**
+     * Whether only the plain text without markup is written
+     */
+    private final boolean plainText;
+
+    /**
+     * Whether a line break has to stay on the same line (list items, table cells, headings)
+     */
+    private boolean singleLine;
+
+
+    /**
+     * Creates a writer appending MediaWiki markup to the given buffer.
+     *
+     * @param theOut the output buffer
+     */
+    public MediaWikiWriter(StringBuilder theOut) {
+        this(theOut, false);
+    }
+
+    /**
+     * Creates a writer appending to the given buffer.
+     *
+     * @param theOut       the output buffer
+     * @param thePlainText true to write only the plain text without markup
+     */
+    public MediaWikiWriter(StringBuilder theOut, boolean thePlainText) {
+        this.out = theOut;
+        this.plainText = thePlainText;
+    }
+
+    // Block level
+
+    /**
+     * Separates a new block from the previous one by a blank line.
+     */
+    public void startBlock() {
+        if (out.length() > 0) {
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Starts a heading, the anchor is written only when it differs from the MediaWiki generated one.
+     *
+     * @param level    heading level (1-6)
+     * @param anchorId the identifier of the heading, or null when no anchor is needed
+     */
+    public void startHeading(int level, String anchorId) {
+        singleLine = true;
+        out.repeat('=', level).append(' ');
+        if (anchorId != null) {
+            out.append("<span id=\"").append(anchorId).append("\"></span>");
+        }
+    }
+
+    /**
+     * Ends a heading.
+     *
+     * @param level heading level (1-6)
+     */
+    public void endHeading(int level) {
+        singleLine = false;
+        out.append(' ').repeat('=', level).append('\n');
+    }
+
+    /**
+     * Ends a paragraph.
+     */
+    public void endParagraph() {
+        out.append('\n');
+    }
+
+    /**
+     * Starts a list item with the given Textile markers ({@code *} bullet, {@code #} numbered),
+     * which have the same meaning in MediaWiki.
+     *
+     * @param source the source text containing the markers
+     * @param start  start index of the markers
+     * @param end    end index (exclusive) of the markers
+     */
+    public void startListItem(CharSequence source, int start, int end) {
+        singleLine = true;
+        out.append(source, start, end).append(' ');
+    }
+
+    /**
+     * Ends a list item.
+     */
+    public void endListItem() {
+        singleLine = false;
+        out.append('\n');
+    }
+
+    /**
+     * Writes a code block, highlighted when the language is known.
+     *
+     * @param language the language of the code, or null
+     * @param source   the source text containing the code
+     * @param start    start index of the code
+     * @param end      end index (exclusive) of the code
+     */
+    public void codeBlock(String language, CharSequence source, int start, int end) {
+        if (language != null && HIGHLIGHT_LANGUAGES.contains(language)) {
+            out.append("<syntaxhighlight lang=\"").append(language).append("\">")
+                    .append(source, start, end)
+                    .append("</syntaxhighlight>\n");
+        } else {
+            out.append(language != null ? "<pre class=\"" + language + "\">" : "<pre>");
+            escape(source, start, end);
+            out.append("</pre>\n");
+        }
+    }
+
+    /**
+     * Starts a block quotation.
+     */
+    public void startBlockquote() {
+        out.append("<blockquote>");
+    }
+
+    /**
+     * Ends a block quotation.
+     */
+    public void endBlockquote() {
+        out.append("</blockquote>\n");
+    }
+
+    /**
+     * Starts a table.
+     */
+    public void startTable() {
+        out.append("{| class=\"wikitable\"\n");
+    }
+
+    /**
+     * Starts a table row.
+     */
+    public void startRow() {
+        out.append("|-\n");
+    }
+
+    /**
+     * Starts a table cell.
+     *
+     * @param header true for a header cell
+     */
+    public void startCell(boolean header) {
+        singleLine = true;
+        out.append(header ? '!' : '|').append(' ');
+    }
+
+    /**
+     * Ends a table cell.
+     */
+    public void endCell() {
+        singleLine = false;
+        // An empty cell is written without the trailing space
+        if (out.charAt(out.length() - 1) == ' ') {
+            out.setLength(out.length() - 1);
+        }
+        out.append('\n');
+    }
+
+    /**
+     * Ends a table.
+     */
+    public void endTable() {
+        out.append("|}\n");
+    }
+
+    // Inline level
+
+    /**
+     * Writes escaped text.
+     *
+     * @param source the source text
+     * @param start  start index of the text
+     * @param end    end index (exclusive) of the text
+     */
+    public void text(CharSequence source, int start, int end) {
+        if (plainText) {
+            out.append(source, start, end);
+        } else {
+            escape(source, start, end);
+        }
+    }
+
+    /**
+     * Writes a single character which needs no escaping (typographic symbols, space).
+     *
+     * @param c the character
+     */
+    public void symbol(char c) {
+        out.append(c);
+    }
+
+    /**
+     * Writes raw markup, which is left out in plain text mode.
+     *
+     * @param source the source text
+     * @param start  start index of the markup
+     * @param end    end index (exclusive) of the markup
+     */
+    public void raw(CharSequence source, int start, int end) {
+        if (!plainText) {
+            out.append(source, start, end);
+        }
+    }
+
+    /**
+     * Writes a hard line break.
+     */
+    public void lineBreak() {
+        if (plainText) {
+            out.append(' ');
+        } else {
+            out.append(singleLine ? "<br />" : "<br />\n");
+        }
+    }
+
+    /**
+     * Opens an inline style.
+     *
+     * @param style the style
+     */
+    public void open(InlineStyle style) {
+        if (!plainText) {
+            out.append(style.getOpen());
+        }
+    }
+
+    /**
+     * Closes an inline style.
+     *
+     * @param style the style
+     */
+    public void close(InlineStyle style) {
+        if (!plainText) {
+            out.append(style.getClose());
+        }
+    }
+
+    /**
+     * Writes inline code.
+     *
+     * @param source the source text
+     * @param start  start index of the code
+     * @param end    end index (exclusive) of the code
+     */
+    public void code(CharSequence source, int start, int end) {
+        if (plainText) {
+            out.append(source, start, end);
+            return;
+        }
+        out.append("<code>");
+        escape(source, start, end);
+        out.append("</code>");
+    }
+
+    /**
+     * Starts a link, the label is written by the caller and the link is finished by {@link #endLink(boolean)}.
+     *
+     * @param url      the target of the link
+     * @param external true for an absolute URL, false for a page link
+     */
+    public void startLink(String url, boolean external) {
+        if (plainText) {
+            return;
+        }
+        if (external) {
+            out.append('[').append(url).append(' ');
+        } else {
+            out.append("[[").append(url.startsWith("/") ? url.substring(1) : url).append('|');
+        }
+    }
+
+    /**
+     * Ends a link started by {@link #startLink(String, boolean)}.
+     *
+     * @param external true for an absolute URL, false for a page link
+     */
+    public void endLink(boolean external) {
+        if (!plainText) {
+            out.append(external ? "]" : "]]");
+        }
+    }
+
+    /**
+     * Writes an image.
+     *
+     * @param source   the source text
+     * @param srcStart start index of the image source
+     * @param srcEnd   end index (exclusive) of the image source
+     * @param altStart start index of the alternative text, or -1 when there is none
+     * @param altEnd   end index (exclusive) of the alternative text
+     */
+    public void image(CharSequence source, int srcStart, int srcEnd, int altStart, int altEnd) {
+        if (plainText) {
+            if (altStart >= 0) {
+                out.append(source, altStart, altEnd);
+            }
+            return;
+        }
+        out.append("[[File:").append(source, srcStart, srcEnd);
+        if (altStart >= 0 && altEnd > altStart) {
+            out.append('|');
+            escape(source, altStart, altEnd);
+        }
+        out.append("]]");
+    }
+
+    // Private helper methods
+
+    /**
+     * Appends the text with XML special characters replaced by entities.
+     *
+     * @param source the source text
+     * @param start  start index of the text
+     * @param end    end index (exclusive) of the text
+     */
+    private void escape(CharSequence source, int start, int end) {
+        int runStart = start;
+        for (int i = start; i < end; i++) {
+            String entity = switch (source.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                default -> null;
+            };
+            if (entity != null) {
+                out.append(source, runStart, i).append(entity);
+                runStart = i + 1;
+            }
+        }
+        out.append(source, runStart, end);
+    }
+}
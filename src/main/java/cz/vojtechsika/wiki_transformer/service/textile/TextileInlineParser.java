@@ -0,0 +1,496 @@
+package cz.vojtechsika.wiki_transformer.service.textile;
+
+/**
+ * Parser of the inline Textile markup (phrase modifiers, links, images, code and typographic symbols).
+ * <p>
+ * The parser scans a range of the source once and reports the recognized constructs to a
+ * {@link MediaWikiWriter}. Plain text between constructs is written as a range of the source,
+ * nested markup is parsed recursively on the inner range.
+ * </p>
+ */
+public class TextileInlineParser {
+
+    /**
+     * Characters which end a link URL when they are followed by whitespace or the end of the text
+     */
+    private static final String URL_TRAILING_PUNCTUATION = "!.,;:*";
+
+
+    /**
+     * Parses the inline markup of the given range and writes it to the writer.
+     * Whitespace runs are collapsed to a single space and newlines become hard line breaks.
+     *
+     * @param s      the source text
+     * @param start  start index of the range
+     * @param end    end index (exclusive) of the range
+     * @param writer the writer receiving the output
+     */
+    public void parse(String s, int start, int end, MediaWikiWriter writer) {
+        int i = start;
+        int textStart = start;
+        while (i < end) {
+            char c = s.charAt(i);
+            int next = switch (c) {
+                case ' ', '\t', '\r', '\n' -> whitespace(s, i, end, writer, textStart);
+                case '"' -> link(s, i, end, writer, textStart);
+                case '!' -> image(s, i, end, writer, textStart);
+                case '@' -> code(s, i, end, writer, textStart);
+                case '<' -> htmlTag(s, i, end, writer, textStart);
+                case '&' -> entity(s, i, end, writer, textStart);
+                case '(' -> mark(s, i, end, writer, textStart);
+                case '.' -> ellipsis(s, i, end, writer, textStart);
+                case '=' -> notextile(s, i, end, writer, textStart);
+                case '-' -> dash(s, i, start, end, writer, textStart);
+                case '\'' -> singleQuote(s, i, start, end, writer, textStart);
+                case '*' -> styled(s, i, start, end, writer, textStart, '*', InlineStyle.STRONG);
+                case '_' -> styled(s, i, start, end, writer, textStart, '_', InlineStyle.EMPHASIS);
+                case '+' -> styled(s, i, start, end, writer, textStart, '+', InlineStyle.UNDERLINE);
+                case '^' -> styled(s, i, start, end, writer, textStart, '^', InlineStyle.SUPERSCRIPT);
+                case '~' -> styled(s, i, start, end, writer, textStart, '~', InlineStyle.SUBSCRIPT);
+                case '%' -> styled(s, i, start, end, writer, textStart, '%', InlineStyle.SPAN);
+                case '?' -> styled(s, i, start, end, writer, textStart, '?', InlineStyle.SPAN);
+                default -> -1;
+            };
+
+            // The double quote is the only construct with a fallback (smart quotes) when it is not a link
+            if (next < 0 && c == '"') {
+                next = doubleQuote(s, i, start, end, writer, textStart);
+            }
+
+            if (next < 0) {
+                i++;
+            } else {
+                i = next;
+                textStart = next;
+            }
+        }
+        writer.text(s, textStart, end);
+    }
+
+    // Constructs, every method returns the index after the construct or -1 when it does not match.
+    // Before writing its own output a matching construct flushes the pending text [textStart, i).
+
+    /**
+     * Collapses a whitespace run into a single space, a newline inside the run becomes a line break.
+     */
+    private int whitespace(String s, int i, int end, MediaWikiWriter writer, int textStart) {
+        writer.text(s, textStart, i);
+        boolean newline = false;
+        int j = i;
+        while (j < end && isWhitespace(s.charAt(j))) {
+            newline |= s.charAt(j) == '\n';
+            j++;
+        }
+        if (newline) {
+            writer.lineBreak();
+        } else if (j < end) {
+            writer.symbol(' ');
+        }
+        return j;
+    }
+
+    /**
+     * Parses a link {@code "label(title)":url}.
+     */
+    private int link(String s, int i, int end, MediaWikiWriter writer, int textStart) {
+        int close = s.indexOf('"', i + 1);
+        if (close < 0 || close + 2 >= end || close == i + 1 || s.charAt(close + 1) != ':'
+                || isWhitespace(s.charAt(close + 2))) {
+            return -1;
+        }
+
+        int urlEnd = close + 2;
+        while (urlEnd < end && !isWhitespace(s.charAt(urlEnd))) {
+            urlEnd++;
+        }
+        while (urlEnd > close + 2 && URL_TRAILING_PUNCTUATION.indexOf(s.charAt(urlEnd - 1)) >= 0) {
+            urlEnd--;
+        }
+        if (urlEnd == close + 2) {
+            return -1;
+        }
+
+        // Drop the optional title in parentheses at the end of the label
+        int labelEnd = close;
+        if (s.charAt(labelEnd - 1) == ')') {
+            int open = s.lastIndexOf('(', labelEnd - 1);
+            if (open > i + 1) {
+                labelEnd = open;
+                while (labelEnd > i + 1 && s.charAt(labelEnd - 1) == ' ') {
+                    labelEnd--;
+                }
+            }
+        }
+
+        writer.text(s, textStart, i);
+        String url = s.substring(close + 2, urlEnd);
+        boolean external = url.indexOf(':') > 0 && Character.isLetter(url.charAt(0));
+        if (external && url.regionMatches(0, s, i + 1, labelEnd - i - 1) && url.length() == labelEnd - i - 1) {
+            // A link labelled by its own URL is written as a bare URL
+            writer.raw(url, 0, url.length());
+        } else {
+            writer.startLink(url, external);
+            parse(s, i + 1, labelEnd, writer);
+            writer.endLink(external);
+        }
+        return urlEnd;
+    }
+
+    /**
+     * Parses an image {@code !{style}src(alt)!}.
+     */
+    private int image(String s, int i, int end, MediaWikiWriter writer, int textStart) {
+        int j = i + 1;
+        // Skip the alignment and style attributes
+        while (j < end && (s.charAt(j) == '<' || s.charAt(j) == '>' || s.charAt(j) == '=')) {
+            j++;
+        }
+        if (j < end && s.charAt(j) == '{') {
+            int styleEnd = s.indexOf('}', j);
+            if (styleEnd < 0 || styleEnd >= end) {
+                return -1;
+            }
+            j = styleEnd + 1;
+        }
+
+        int srcStart = j;
+        while (j < end && s.charAt(j) != '!' && s.charAt(j) != '(' && !isWhitespace(s.charAt(j))) {
+            j++;
+        }
+        if (j == srcStart || j >= end) {
+            return -1;
+        }
+        int srcEnd = j;
+
+        int altStart = -1;
+        int altEnd = -1;
+        if (s.charAt(j) == '(') {
+            int altClose = s.indexOf(')', j);
+            if (altClose < 0 || altClose + 1 >= end || s.indexOf('\n', j) >= 0 && s.indexOf('\n', j) < altClose) {
+                return -1;
+            }
+            altStart = j + 1;
+            altEnd = altClose;
+            j = altClose + 1;
+        }
+        if (j >= end || s.charAt(j) != '!') {
+            return -1;
+        }
+
+        writer.text(s, textStart, i);
+        writer.image(s, srcStart, srcEnd, altStart, altEnd);
+        return j + 1;
+    }
+
+    /**
+     * Parses inline code {@code @code@}.
+     */
+    private int code(String s, int i, int end, MediaWikiWriter writer, int textStart) {
+        int close = indexOfOnLine(s, '@', i + 1, end);
+        if (close <= i + 1) {
+            return -1;
+        }
+        writer.text(s, textStart, i);
+        writer.code(s, i + 1, close);
+        return close + 1;
+    }
+
+    /**
+     * Passes inline HTML tags through, {@code <code>} is converted to inline code.
+     */
+    private int htmlTag(String s, int i, int end, MediaWikiWriter writer, int textStart) {
+        int j = i + 1;
+        if (j < end && s.charAt(j) == '/') {
+            j++;
+        }
+        if (j >= end || !isAsciiLetter(s.charAt(j))) {
+            return -1;
+        }
+        int close = j;
+        while (close < end && s.charAt(close) != '>' && s.charAt(close) != '<' && s.charAt(close) != '\n') {
+            close++;
+        }
+        if (close >= end || s.charAt(close) != '>') {
+            return -1;
+        }
+
+        writer.text(s, textStart, i);
+        if (s.startsWith("<code>", i)) {
+            int codeEnd = s.indexOf("</code>", close);
+            if (codeEnd >= 0 && codeEnd < end) {
+                writer.code(s, close + 1, codeEnd);
+                return codeEnd + "</code>".length();
+            }
+        }
+        writer.raw(s, i, close + 1);
+        return close + 1;
+    }
+
+    /**
+     * Decodes a character reference, unknown named entities are passed through.
+     */
+    private int entity(String s, int i, int end, MediaWikiWriter writer, int textStart) {
+        int semicolon = i + 1;
+        while (semicolon < end && semicolon - i <= 10 && (Character.isLetterOrDigit(s.charAt(semicolon)) || s.charAt(semicolon) == '#')) {
+            semicolon++;
+        }
+        if (semicolon >= end || s.charAt(semicolon) != ';' || semicolon == i + 1) {
+            return -1;
+        }
+
+        int decoded = decodeEntity(s, i + 1, semicolon);
+        writer.text(s, textStart, i);
+        if (decoded < 0) {
+            writer.raw(s, i, semicolon + 1);
+        } else if (decoded == '&' || decoded == '<' || decoded == '>' || decoded == '"') {
+            writer.text(String.valueOf((char) decoded), 0, 1);
+        } else {
+            writer.symbol((char) decoded);
+        }
+        return semicolon + 1;
+    }
+
+    /**
+     * Converts the marks {@code (c)}, {@code (r)} and {@code (tm)}.
+     */
+    private int mark(String s, int i, int end, MediaWikiWriter writer, int textStart) {
+        char symbol;
+        int length;
+        if (s.regionMatches(true, i, "(c)", 0, 3) && i + 3 <= end) {
+            symbol = '©';
+            length = 3;
+        } else if (s.regionMatches(true, i, "(r)", 0, 3) && i + 3 <= end) {
+            symbol = '®';
+            length = 3;
+        } else if (s.regionMatches(true, i, "(tm)", 0, 4) && i + 4 <= end) {
+            symbol = '™';
+            length = 4;
+        } else {
+            return -1;
+        }
+        writer.text(s, textStart, i);
+        writer.symbol(symbol);
+        return i + length;
+    }
+
+    /**
+     * Converts three dots to an ellipsis.
+     */
+    private int ellipsis(String s, int i, int end, MediaWikiWriter writer, int textStart) {
+        if (i + 3 > end || !s.startsWith("...", i)) {
+            return -1;
+        }
+        writer.text(s, textStart, i);
+        writer.symbol('…');
+        return i + 3;
+    }
+
+    /**
+     * Passes the text between {@code ==} markers through without any conversion.
+     */
+    private int notextile(String s, int i, int end, MediaWikiWriter writer, int textStart) {
+        if (i + 1 >= end || s.charAt(i + 1) != '=') {
+            return -1;
+        }
+        int close = s.indexOf("==", i + 2);
+        if (close < 0 || close + 2 > end) {
+            return -1;
+        }
+        writer.text(s, textStart, i);
+        writer.raw(s, i + 2, close);
+        return close + 2;
+    }
+
+    /**
+     * Handles a hyphen: {@code --} is an em dash, a hyphen before a digit an en dash,
+     * otherwise it may start a deleted text {@code -text-}. Hyphens inside words are kept.
+     */
+    private int dash(String s, int i, int start, int end, MediaWikiWriter writer, int textStart) {
+        boolean afterWord = i > start && Character.isLetterOrDigit(s.charAt(i - 1));
+        boolean beforeWord = i + 1 < end && Character.isLetterOrDigit(s.charAt(i + 1));
+        if (afterWord && beforeWord) {
+            return -1;
+        }
+        if (i + 1 < end && s.charAt(i + 1) == '-') {
+            writer.text(s, textStart, i);
+            writer.symbol('—');
+            return i + 2;
+        }
+        int styled = styled(s, i, start, end, writer, textStart, '-', InlineStyle.STRIKEOUT);
+        if (styled >= 0) {
+            return styled;
+        }
+        if (i + 1 < end && Character.isDigit(s.charAt(i + 1))) {
+            writer.text(s, textStart, i);
+            writer.symbol('–');
+            return i + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Converts single quotes to typographic quotes or apostrophes.
+     */
+    private int singleQuote(String s, int i, int start, int end, MediaWikiWriter writer, int textStart) {
+        writer.text(s, textStart, i);
+        boolean afterWord = i > start && Character.isLetterOrDigit(s.charAt(i - 1));
+        if (!afterWord) {
+            int close = closingQuote(s, '\'', i, end);
+            if (close > 0) {
+                writer.symbol('‘');
+                parse(s, i + 1, close, writer);
+                writer.symbol('’');
+                return close + 1;
+            }
+        }
+        writer.symbol('’');
+        return i + 1;
+    }
+
+    /**
+     * Converts double quotes to typographic quotes.
+     */
+    private int doubleQuote(String s, int i, int start, int end, MediaWikiWriter writer, int textStart) {
+        boolean afterWord = i > start && Character.isLetterOrDigit(s.charAt(i - 1));
+        int close = afterWord ? -1 : closingQuote(s, '"', i, end);
+        if (close < 0) {
+            return -1;
+        }
+        writer.text(s, textStart, i);
+        writer.symbol('“');
+        parse(s, i + 1, close, writer);
+        writer.symbol('”');
+        return close + 1;
+    }
+
+    /**
+     * Parses a phrase modifier delimited by a single or doubled marker character.
+     * The opening marker must not follow a word character and must be followed by a non-space,
+     * the closing marker must follow a non-space and must not be followed by a word character.
+     */
+    private int styled(String s, int i, int start, int end, MediaWikiWriter writer, int textStart,
+                       char marker, InlineStyle style) {
+        int markerLength = i + 1 < end && s.charAt(i + 1) == marker ? 2 : 1;
+        if (marker == '?' && markerLength != 2) {
+            return -1;
+        }
+        if (i > start && Character.isLetterOrDigit(s.charAt(i - 1))) {
+            return -1;
+        }
+        int contentStart = i + markerLength;
+        if (marker == '%' && contentStart < end && s.charAt(contentStart) == '{') {
+            int styleEnd = s.indexOf('}', contentStart);
+            contentStart = styleEnd > 0 && styleEnd < end ? styleEnd + 1 : contentStart;
+        }
+        if (contentStart >= end || isWhitespace(s.charAt(contentStart)) || s.charAt(contentStart) == marker) {
+            return -1;
+        }
+
+        int close = contentStart + 1;
+        while (close < end) {
+            close = s.indexOf(marker, close);
+            if (close < 0 || close + markerLength > end) {
+                return -1;
+            }
+            boolean fullMarker = markerLength == 1 || (close + 1 < end && s.charAt(close + 1) == marker);
+            int after = close + markerLength;
+            if (fullMarker && !isWhitespace(s.charAt(close - 1))
+                    && (after >= end || !Character.isLetterOrDigit(s.charAt(after)) && s.charAt(after) != marker)) {
+                break;
+            }
+            close++;
+        }
+        if (close >= end) {
+            return -1;
+        }
+
+        writer.text(s, textStart, i);
+        writer.open(style);
+        parse(s, contentStart, close, writer);
+        writer.close(style);
+        return close + markerLength;
+    }
+
+    // Private helper methods
+
+    /**
+     * Finds the quote closing a quotation opened at the given index.
+     *
+     * @return the index of the closing quote, or -1 when the quotation is not closed
+     */
+    private int closingQuote(String s, char quote, int open, int end) {
+        if (open + 1 >= end || isWhitespace(s.charAt(open + 1))) {
+            return -1;
+        }
+        int close = open + 2;
+        while (close < end) {
+            close = s.indexOf(quote, close);
+            if (close < 0 || close >= end) {
+                return -1;
+            }
+            if (!isWhitespace(s.charAt(close - 1)) && (close + 1 >= end || !Character.isLetterOrDigit(s.charAt(close + 1)))) {
+                return close;
+            }
+            close++;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds a character on the same line.
+     *
+     * @return the index of the character, or -1 when it is not found before the end of the line
+     */
+    private int indexOfOnLine(String s, char c, int from, int end) {
+        for (int j = from; j < end; j++) {
+            char current = s.charAt(j);
+            if (current == c) {
+                return j;
+            }
+            if (current == '\n') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the name of a character reference (without {@code &} and {@code ;}).
+     *
+     * @return the decoded character, or -1 for an unknown reference
+     */
+    private int decodeEntity(String s, int start, int end) {
+        if (s.charAt(start) == '#') {
+            try {
+                boolean hex = end > start + 1 && (s.charAt(start + 1) == 'x' || s.charAt(start + 1) == 'X');
+                int codePoint = hex ? Integer.parseInt(s, start + 2, end, 16) : Integer.parseInt(s, start + 1, end, 10);
+                return codePoint <= Character.MAX_VALUE ? codePoint : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return switch (s.substring(start, end)) {
+            case "amp" -> '&';
+            case "lt" -> '<';
+            case "gt" -> '>';
+            case "quot" -> '"';
+            case "apos" -> '\'';
+            case "nbsp" -> '\u00A0';
+            case "copy" -> '©';
+            case "reg" -> '®';
+            case "trade" -> '™';
+            case "hellip" -> '…';
+            case "mdash" -> '—';
+            case "ndash" -> '–';
+            default -> -1;
+        };
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
@@ -0,0 +1,572 @@
+package cz.vojtechsika.wiki_transformer.service.textile;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Single-pass parser of the block structure of Redmine Textile.
+ * <p>
+ * Supported blocks: headings ({@code h1.}-{@code h6.}), paragraphs ({@code p.} or plain text),
+ * code blocks ({@code bc.}, {@code bc..} and HTML {@code <pre>}), block quotations ({@code bq.}),
+ * bullet and numbered lists and tables. The inline content of the blocks is parsed by
+ * {@link TextileInlineParser}, the output is written by {@link MediaWikiWriter}.
+ * </p>
+ * <p>
+ * The parser works on line indexes of the source string and does not split it into lines.
+ * An instance converts a single document and is not thread-safe.
+ * </p>
+ */
+public class TextileParser {
+
+    /**
+     * Source text with normalized line endings
+     */
+    private final String s;
+
+    /**
+     * Length of the source text
+     */
+    private final int length;
+
+    /**
+     * Writer receiving the output
+     */
+    private final MediaWikiWriter writer;
+
+    /**
+     * Parser of the inline content
+     */
+    private final TextileInlineParser inlineParser = new TextileInlineParser();
+
+    /**
+     * Heading identifiers already used in the document
+     */
+    private final Set<String> usedIdentifiers = new HashSet<>();
+
+    // Result of the last parsed block signature
+
+    /**
+     * Name of the block signature (e.g. {@code h2}, {@code bc})
+     */
+    private String signature;
+
+    /**
+     * Identifier from the {@code (#id)} attribute
+     */
+    private String signatureId;
+
+    /**
+     * Class from the {@code (class)} attribute
+     */
+    private String signatureClass;
+
+    /**
+     * Whether the signature ends with two dots (extended block)
+     */
+    private boolean signatureExtended;
+
+
+    /**
+     * Creates a parser of the given Textile document.
+     *
+     * @param theText   the Textile source
+     * @param theWriter the writer receiving the output
+     */
+    public TextileParser(String theText, MediaWikiWriter theWriter) {
+        this.s = theText.indexOf('\r') >= 0 ? theText.replace("\r\n", "\n").replace('\r', '\n') : theText;
+        this.length = s.length();
+        this.writer = theWriter;
+    }
+
+    /**
+     * Parses the whole document.
+     */
+    public void parse() {
+        int pos = skipBlankLines(0);
+        while (pos < length) {
+            pos = skipBlankLines(parseBlock(pos));
+        }
+    }
+
+    // Blocks, every method returns the index of the first line after the block
+
+    /**
+     * Recognizes the block starting at the given line and parses it.
+     */
+    private int parseBlock(int pos) {
+        writer.startBlock();
+
+        if (s.startsWith("<pre", pos)) {
+            int next = parsePre(pos);
+            if (next >= 0) {
+                return next;
+            }
+        }
+
+        int contentStart = parseSignature(pos);
+        if (contentStart >= 0) {
+            switch (signature) {
+                case "h1", "h2", "h3", "h4", "h5", "h6" -> {
+                    return parseHeading(signature.charAt(1) - '0', contentStart);
+                }
+                case "bc" -> {
+                    return parseCodeBlock(contentStart);
+                }
+                case "bq" -> {
+                    return parseBlockquote(contentStart);
+                }
+                case "table" -> {
+                    int next = lineEnd(pos) + 1;
+                    return next < length && s.charAt(next) == '|' ? parseTable(next) : next;
+                }
+                default -> {
+                    return parseParagraph(contentStart);
+                }
+            }
+        }
+
+        if (listMarkerEnd(pos) > 0) {
+            return parseList(pos);
+        }
+        if (s.charAt(pos) == '|') {
+            return parseTable(pos);
+        }
+        return parseParagraph(pos);
+    }
+
+    /**
+     * Parses a heading, only the first line belongs to the heading.
+     */
+    private int parseHeading(int level, int contentStart) {
+        int end = lineEnd(contentStart);
+        int[] range = trim(contentStart, end);
+
+        // Pandoc writes the identifier as an anchor when it differs from the MediaWiki generated one
+        StringBuilder plain = new StringBuilder(range[1] - range[0]);
+        inlineParser.parse(s, range[0], range[1], new MediaWikiWriter(plain, true));
+        String identifier = signatureId != null ? signatureId : uniqueIdentifier(plain);
+        String mediaWikiId = plain.toString().replace(' ', '_');
+
+        writer.startHeading(level, identifier.equals(mediaWikiId) ? null : identifier);
+        inlineParser.parse(s, range[0], range[1], writer);
+        writer.endHeading(level);
+        return end + 1;
+    }
+
+    /**
+     * Parses a paragraph, it ends with a blank line or before a list.
+     */
+    private int parseParagraph(int contentStart) {
+        int end = lineEnd(contentStart);
+        int next = end + 1;
+        while (next < length && !isBlankLine(next) && listMarkerEnd(next) < 0) {
+            end = lineEnd(next);
+            next = end + 1;
+        }
+        int[] range = trim(contentStart, end);
+        inlineParser.parse(s, range[0], range[1], writer);
+        writer.endParagraph();
+        return next;
+    }
+
+    /**
+     * Parses a {@code bc.} code block ending with a blank line, or a {@code bc..} block
+     * ending before the next block signature.
+     */
+    private int parseCodeBlock(int contentStart) {
+        String language = signatureClass;
+        int end = blockEnd(contentStart, signatureExtended);
+
+        // The extended block keeps its inner blank lines, trailing ones are dropped
+        int codeEnd = end;
+        while (codeEnd > contentStart && s.charAt(codeEnd - 1) == '\n') {
+            codeEnd--;
+        }
+        writer.codeBlock(language, s, contentStart, Math.min(codeEnd, length));
+        return end;
+    }
+
+    /**
+     * Parses a {@code bq.} block quotation.
+     */
+    private int parseBlockquote(int contentStart) {
+        int end = blockEnd(contentStart, signatureExtended);
+        int[] range = trim(contentStart, Math.min(end, length));
+        writer.startBlockquote();
+        inlineParser.parse(s, range[0], range[1], writer);
+        writer.endBlockquote();
+        return end;
+    }
+
+    /**
+     * Parses a HTML {@code <pre>} block, optionally with a {@code <code class="language">} element inside.
+     *
+     * @return the index after the block, or -1 when the block is not closed
+     */
+    private int parsePre(int pos) {
+        int openEnd = s.indexOf('>', pos);
+        int close = s.indexOf("</pre>", pos);
+        if (openEnd < 0 || close < 0 || openEnd > close) {
+            return -1;
+        }
+
+        int contentStart = openEnd + 1;
+        int contentEnd = close;
+        String language = null;
+        if (s.startsWith("<code", contentStart)) {
+            int codeOpenEnd = s.indexOf('>', contentStart);
+            int codeClose = s.lastIndexOf("</code>", close);
+            if (codeOpenEnd > 0 && codeClose > codeOpenEnd) {
+                language = attributeValue(contentStart, codeOpenEnd, "class");
+                contentStart = codeOpenEnd + 1;
+                contentEnd = codeClose;
+            }
+        }
+        if (language == null) {
+            language = attributeValue(pos, openEnd, "class");
+        }
+
+        // Drop the newline after the opening and before the closing tag
+        if (contentStart < contentEnd && s.charAt(contentStart) == '\n') {
+            contentStart++;
+        }
+        if (contentEnd > contentStart && s.charAt(contentEnd - 1) == '\n') {
+            contentEnd--;
+        }
+        writer.codeBlock(language, s, contentStart, contentEnd);
+        return lineEnd(close) + 1;
+    }
+
+    /**
+     * Parses consecutive list items, lines without a marker continue the previous item.
+     */
+    private int parseList(int pos) {
+        int next = pos;
+        while (next < length && !isBlankLine(next)) {
+            int markerEnd = listMarkerEnd(next);
+            int end = lineEnd(next);
+            int following = end + 1;
+            while (following < length && !isBlankLine(following) && listMarkerEnd(following) < 0) {
+                end = lineEnd(following);
+                following = end + 1;
+            }
+
+            writer.startListItem(s, next, markerEnd);
+            int[] range = trim(markerEnd, end);
+            inlineParser.parse(s, range[0], range[1], writer);
+            writer.endListItem();
+            next = following;
+        }
+        return next;
+    }
+
+    /**
+     * Parses consecutive table rows.
+     */
+    private int parseTable(int pos) {
+        writer.startTable();
+        int next = pos;
+        while (next < length && s.charAt(next) == '|') {
+            int end = lineEnd(next);
+            int[] row = trim(next, end);
+            writer.startRow();
+            parseCells(row[0], row[1]);
+            next = end + 1;
+        }
+        writer.endTable();
+        return next;
+    }
+
+    /**
+     * Parses the cells of a single table row {@code |cell|_. header|}.
+     */
+    private void parseCells(int start, int end) {
+        int rowEnd = s.charAt(end - 1) == '|' && end - 1 > start ? end - 1 : end;
+        int cellStart = start + 1;
+        while (cellStart <= rowEnd) {
+            int cellEnd = cellSeparator(cellStart, rowEnd);
+
+            // Cell attributes end with a dot followed by a space, e.g. "_. ", "/2. ", "<. "
+            boolean header = false;
+            int contentStart = cellStart;
+            int attributesEnd = cellAttributesEnd(cellStart, cellEnd);
+            if (attributesEnd > 0) {
+                header = s.charAt(cellStart) == '_';
+                contentStart = attributesEnd;
+            }
+
+            writer.startCell(header);
+            int[] range = trim(contentStart, cellEnd);
+            inlineParser.parse(s, range[0], range[1], writer);
+            writer.endCell();
+            cellStart = cellEnd + 1;
+        }
+    }
+
+    // Block signatures
+
+    /**
+     * Parses a block signature such as {@code h2(#id).} or {@code bc(ruby)..} and remembers its parts.
+     *
+     * @return the index of the block content, or -1 when the line does not start with a signature
+     */
+    private int parseSignature(int pos) {
+        int j = pos;
+        while (j < length && isAsciiLowerOrDigit(s.charAt(j)) && j - pos < 6) {
+            j++;
+        }
+        String name = s.substring(pos, j);
+        if (!isSignatureName(name)) {
+            return -1;
+        }
+
+        signatureId = null;
+        signatureClass = null;
+        j = parseAttributes(j);
+        if (j < 0 || j >= length || s.charAt(j) != '.') {
+            return -1;
+        }
+        j++;
+        signatureExtended = j < length && s.charAt(j) == '.';
+        if (signatureExtended) {
+            j++;
+        }
+        if (j < length && s.charAt(j) != ' ' && s.charAt(j) != '\n') {
+            return -1;
+        }
+
+        signature = name;
+        while (j < length && s.charAt(j) == ' ') {
+            j++;
+        }
+        return j;
+    }
+
+    /**
+     * Skips block attributes: {@code (class#id)}, {@code {style}}, {@code [lang]}, alignment and padding.
+     *
+     * @return the index after the attributes, or -1 when an attribute is not closed
+     */
+    private int parseAttributes(int pos) {
+        int j = pos;
+        while (j < length) {
+            char c = s.charAt(j);
+            if (c == '(' || c == '{' || c == '[') {
+                char closing = c == '(' ? ')' : c == '{' ? '}' : ']';
+                int close = s.indexOf(closing, j);
+                int lineEnd = lineEnd(j);
+                if (close < 0 || close > lineEnd) {
+                    return -1;
+                }
+                if (c == '(') {
+                    parseClassAndId(j + 1, close);
+                }
+                j = close + 1;
+            } else if (c == '<' || c == '>' || c == '=' || c == ')') {
+                j++;
+            } else {
+                return j;
+            }
+        }
+        return j;
+    }
+
+    /**
+     * Splits the {@code class#id} attribute.
+     */
+    private void parseClassAndId(int start, int end) {
+        int hash = s.indexOf('#', start);
+        if (hash >= 0 && hash < end) {
+            signatureId = hash + 1 < end ? s.substring(hash + 1, end) : null;
+            signatureClass = hash > start ? s.substring(start, hash) : null;
+        } else if (end > start) {
+            signatureClass = s.substring(start, end);
+        }
+    }
+
+    private static boolean isSignatureName(String name) {
+        return switch (name) {
+            case "h1", "h2", "h3", "h4", "h5", "h6", "p", "bc", "bq", "table" -> true;
+            default -> false;
+        };
+    }
+
+    // Private helper methods
+
+    /**
+     * Returns the end of a block: the next blank line, or for an extended block
+     * the next line after a blank line which starts a block signature.
+     */
+    private int blockEnd(int contentStart, boolean extended) {
+        int end = lineEnd(contentStart);
+        int next = end + 1;
+        while (next < length) {
+            if (isBlankLine(next)) {
+                if (!extended) {
+                    return next;
+                }
+                int following = skipBlankLines(next);
+                if (following >= length || parseSignatureQuietly(following)) {
+                    return next;
+                }
+            }
+            end = lineEnd(next);
+            next = end + 1;
+        }
+        return Math.min(next, length);
+    }
+
+    /**
+     * Checks for a block signature without changing the remembered signature of the current block.
+     */
+    private boolean parseSignatureQuietly(int pos) {
+        String name = signature;
+        String id = signatureId;
+        String cssClass = signatureClass;
+        boolean extended = signatureExtended;
+        boolean found = parseSignature(pos) >= 0;
+        signature = name;
+        signatureId = id;
+        signatureClass = cssClass;
+        signatureExtended = extended;
+        return found;
+    }
+
+    /**
+     * Returns the end of the list markers ({@code *}, {@code #}) followed by a space, or -1.
+     */
+    private int listMarkerEnd(int pos) {
+        int j = pos;
+        while (j < length && (s.charAt(j) == '*' || s.charAt(j) == '#')) {
+            j++;
+        }
+        return j > pos && j < length && s.charAt(j) == ' ' ? j : -1;
+    }
+
+    /**
+     * Finds the next cell separator, separators inside {@code [[...]]} links are skipped.
+     */
+    private int cellSeparator(int from, int rowEnd) {
+        int j = from;
+        while (j < rowEnd) {
+            if (s.startsWith("[[", j)) {
+                int close = s.indexOf("]]", j);
+                if (close > 0 && close < rowEnd) {
+                    j = close + 2;
+                    continue;
+                }
+            }
+            if (s.charAt(j) == '|') {
+                return j;
+            }
+            j++;
+        }
+        return rowEnd;
+    }
+
+    /**
+     * Returns the content start of a cell with attributes ({@code _}, span, alignment) ended by {@code ". "}, or -1.
+     */
+    private int cellAttributesEnd(int start, int end) {
+        int j = start;
+        while (j < end && "_/\\<>=^~0123456789{}".indexOf(s.charAt(j)) >= 0) {
+            j++;
+        }
+        if (j > start && j + 1 < end && s.charAt(j) == '.' && s.charAt(j + 1) == ' ') {
+            return j + 2;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the value of an attribute from a HTML tag.
+     */
+    private String attributeValue(int tagStart, int tagEnd, String attribute) {
+        int name = s.indexOf(attribute + "=\"", tagStart);
+        if (name < 0 || name > tagEnd) {
+            return null;
+        }
+        int valueStart = name + attribute.length() + 2;
+        int valueEnd = s.indexOf('"', valueStart);
+        return valueEnd > valueStart && valueEnd < tagEnd ? s.substring(valueStart, valueEnd) : null;
+    }
+
+    /**
+     * Creates a heading identifier the way Pandoc does: lower case, only alphanumerics and {@code _-.},
+     * words joined by hyphens, leading non-letters dropped, duplicates numbered.
+     */
+    private String uniqueIdentifier(CharSequence plainText) {
+        StringBuilder id = new StringBuilder(plainText.length());
+        boolean pendingHyphen = false;
+        for (int i = 0; i < plainText.length(); i++) {
+            char c = plainText.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingHyphen = id.length() > 0;
+            } else if (Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.') {
+                if (id.isEmpty() && !Character.isLetter(c)) {
+                    continue;
+                }
+                if (pendingHyphen) {
+                    id.append('-');
+                    pendingHyphen = false;
+                }
+                id.append(c);
+            }
+        }
+
+        String base = id.isEmpty() ? "section" : id.toString().toLowerCase(Locale.ROOT);
+        String identifier = base;
+        for (int n = 1; !usedIdentifiers.add(identifier); n++) {
+            identifier = base + "-" + n;
+        }
+        return identifier;
+    }
+
+    private int lineEnd(int pos) {
+        int end = s.indexOf('\n', pos);
+        return end < 0 ? length : end;
+    }
+
+    private boolean isBlankLine(int pos) {
+        for (int j = pos; j < length; j++) {
+            char c = s.charAt(j);
+            if (c == '\n') {
+                return true;
+            }
+            if (c != ' ' && c != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int skipBlankLines(int pos) {
+        int j = pos;
+        while (j < length && isBlankLine(j)) {
+            j = lineEnd(j) + 1;
+        }
+        return Math.min(j, length);
+    }
+
+    /**
+     * Trims whitespace from both sides of a range.
+     *
+     * @return the trimmed range as {start, end}
+     */
+    private int[] trim(int start, int end) {
+        int a = start;
+        int b = Math.min(end, length);
+        while (a < b && Character.isWhitespace(s.charAt(a))) {
+            a++;
+        }
+        while (b > a && Character.isWhitespace(s.charAt(b - 1))) {
+            b--;
+        }
+        return new int[]{a, b};
+    }
+
+    private static boolean isAsciiLowerOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+}
@@ -1,7 +1,11 @@
 package cz.vojtechsika.wiki_transformer.util;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.Normalizer;
 import java.util.UUID;
 
@@ -11,6 +15,8 @@ import java.util.UUID;
  *   <li>Sanitizes file names by normalizing Unicode, removing diacritics and special marks,
  *       replacing invalid file system characters, and cleaning up redundant underscores or whitespace.</li>
  *   <li>Generates a deterministic suffix from a URL’s hash code to ensure stable, unique file names.</li>
+ *   <li>Generates a 64-bit digest suffix of a URL for batch runs, where the 31-bit hash code collides.</li>
+ *   <li>Combines both into a unique file name of a wiki page.</li>
  *   <li>Extracts the file name (including extension) from a given image URL.</li>
  * </ul>
  */
@@ -18,28 +24,69 @@ import java.util.UUID;
 public class FileNameUtil {
 
     /**
-     * Converts a given file name string into a safe format for file system usage
+     * First code point of the Unicode block "Combining Diacritical Marks"
+     */
+    private static final int COMBINING_MARKS_START = 0x0300;
+
+    /**
+     * Last code point of the Unicode block "Combining Diacritical Marks"
+     */
+    private static final int COMBINING_MARKS_END = 0x036F;
+
+    /**
+     * ASCII characters which are kept in a file name: a-z, A-Z, 0-9, hyphen, underscore, dot
+     */
+    private static final boolean[] ALLOWED_ASCII = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            ALLOWED_ASCII[c] = true;
+            ALLOWED_ASCII[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            ALLOWED_ASCII[c] = true;
+        }
+        ALLOWED_ASCII['-'] = true;
+        ALLOWED_ASCII['_'] = true;
+        ALLOWED_ASCII['.'] = true;
+    }
+
+
+    /**
+     * Converts a given file name string into a safe format for file system usage.
+     * <p>
+     * The name is decomposed (NFD, {@code á → a + ́}) and scanned once: combining diacritical marks are dropped,
+     * every other character outside a-z, A-Z, 0-9, hyphen, underscore and dot becomes an underscore,
+     * consecutive underscores are collapsed and leading and trailing underscores are removed.
+     * Pure ASCII names skip the normalization.
+     * </p>
+     *
      * @param fileName  the original file name to be sanitized
      * @return a sanitized version of the file name
      */
     public static String sanitizeFileName(String fileName) {
-        // Text trim white spaces on the start and the end
-        fileName = fileName.trim();
-
-        // Normalize the string to decompose characters with diacritics ( á → a + ́)
-        String normalizedFileName = Normalizer.normalize(fileName, Normalizer.Form.NFD);
-
-        // Remove all combining diacritical marks using Unicode character class (a + ́ →  a), used regex
-        String withoutDiacritics = normalizedFileName.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
+        String normalizedFileName = isAscii(fileName) ? fileName : Normalizer.normalize(fileName, Normalizer.Form.NFD);
 
-        // Replace all forbidden characters (everything except a-z, A-Z, 0-9, hyphen, underscore, dot) with underscore
-        String replacedFileName = withoutDiacritics.replaceAll("[^a-zA-Z0-9-_\\.]", "_");
+        char[] result = new char[normalizedFileName.length()];
+        int length = 0;
+        for (int i = 0; i < normalizedFileName.length(); ) {
+            int codePoint = normalizedFileName.codePointAt(i);
+            i += Character.charCount(codePoint);
 
-        // Clean up the result
-        String clearFileName = replacedFileName
-                .replaceAll("_+", "_")   // Collapse multiple consecutive underscores into one
-                .replaceAll("^_+|_+$", "");  // Remove leading and trailing underscores
-        return clearFileName;
+            if (codePoint >= COMBINING_MARKS_START && codePoint <= COMBINING_MARKS_END) {
+                continue;
+            }
+            if (codePoint < 128 && ALLOWED_ASCII[codePoint] && codePoint != '_') {
+                result[length++] = (char) codePoint;
+            } else if (length > 0 && result[length - 1] != '_') {
+                // Forbidden characters become one underscore, never at the start and never doubled
+                result[length++] = '_';
+            }
+        }
+        if (length > 0 && result[length - 1] == '_') {
+            length--;
+        }
+        return new String(result, 0, length);
     }
 
     /**
@@ -55,8 +102,60 @@ public class FileNameUtil {
      * @return a string representation of the absolute hash code of {@code wikiUrl}
      */
     public static String createUniqueSuffix(String wikiUrl){
+        // Math.abs(Integer.MIN_VALUE) stays negative, the unsigned form is its absolute value
         int code = Math.abs(wikiUrl.hashCode());
-        return String.valueOf(code);
+        return Integer.toUnsignedString(code);
+    }
+
+
+    /**
+     * Creates a deterministic suffix from the first 64 bits of the SHA-256 digest of the URL.
+     * <p>
+     * Unlike {@link #createUniqueSuffix(String)} the suffix does not collide in practice even for millions of URLs.
+     * With {@code extended} the first 128 bits are used, which separates two URLs whose 64-bit suffixes are equal.
+     * </p>
+     *
+     * @param url      the URL to digest
+     * @param extended whether 128 instead of 64 bits of the digest are used
+     * @return the digest bits as an unsigned base-36 number (13 or 26 characters at most)
+     */
+    public static String createDigestSuffix(String url, boolean extended) {
+        ByteBuffer digest;
+        try {
+            digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+        String suffix = Long.toUnsignedString(digest.getLong(), 36);
+        return extended ? suffix + Long.toUnsignedString(digest.getLong(), 36) : suffix;
+    }
+
+
+    /**
+     * Inserts the digest suffix of the URL before the extension of the file name
+     * ({@code image.png → image_<suffix>.png}), used when two images of a page share their file name.
+     *
+     * @param fileName the file name with its extension
+     * @param url      the URL the file was downloaded from
+     * @return the distinguished file name
+     */
+    public static String addDigestSuffix(String fileName, String url) {
+        int dot = fileName.lastIndexOf('.');
+        String suffix = "_" + createDigestSuffix(url, false);
+        return dot > 0 ? fileName.substring(0, dot) + suffix + fileName.substring(dot) : fileName + suffix;
+    }
+
+
+    /**
+     * Creates a unique, filesystem-safe file name by sanitizing the title and appending
+     * the deterministic suffix of the wiki page URL.
+     *
+     * @param title   the original title of the wiki page
+     * @param wikiUrl the full URL of the wiki page
+     * @return a unique and safe file name (without extension)
+     */
+    public static String createUniqueFileName(String title, String wikiUrl) {
+        return sanitizeFileName(title) + "_" + createUniqueSuffix(wikiUrl);
     }
 
 
@@ -80,4 +179,21 @@ public class FileNameUtil {
 
 
     }
+
+    // Private helper methods
+
+    /**
+     * Returns whether the text contains only ASCII characters, which NFD leaves unchanged.
+     *
+     * @param text the text to check
+     * @return true when every character is below 128
+     */
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -3,7 +3,7 @@ package cz.vojtechsika.wiki_transformer;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "wiki-transformer.cli.enabled=false")
 class WikiTransformerApplicationTests {
 
 	@Test
@@ -0,0 +1,106 @@
+package cz.vojtechsika.wiki_transformer.http;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    @DisplayName("Raise the limit while the used slots answer with flat latency")
+    void release_flatLatency_increasesLimit() throws IOException {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 2, 1, 8, 2.0, 0.1);
+
+        // Act
+        for (int window = 0; window < 3; window++) {
+            runWindow(limiter, null);
+        }
+
+        // Assert
+        assertEquals(5, limiter.getLimit(), "Should add one slot per window");
+        assertEquals(5, limiter.getPeakLimit(), "Should report the peak limit");
+    }
+
+    @Test
+    @DisplayName("Cut the limit when the server answers with errors")
+    void release_serverErrors_decreasesLimit() throws IOException {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 8, 1, 8, 2.0, 0.1);
+        Exception serverError = HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Unavailable", new HttpHeaders(), null, null);
+
+        // Act
+        runWindow(limiter, serverError);
+
+        // Assert
+        assertEquals(6, limiter.getLimit(), "Should cut the limit by a quarter");
+    }
+
+    @Test
+    @DisplayName("Ignore client errors other than 429")
+    void release_notFound_keepsLimit() throws IOException {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 8, 1, 16, 2.0, 0.1);
+        Exception notFound = HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", new HttpHeaders(), null, null);
+
+        // Act
+        runWindow(limiter, notFound);
+
+        // Assert
+        assertTrue(limiter.getLimit() >= 8, "Should not treat a missing page as overload");
+    }
+
+    @Test
+    @DisplayName("Block requests over the limit until a permit is returned")
+    void acquire_limitReached_waitsForRelease() throws Exception {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 1, 1, 1, 2.0, 0.1);
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire();
+
+        // Act
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.acquire();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // Assert
+        assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS), "Should wait for a free slot");
+        first.close();
+        assertNotNull(waiting.get(5, TimeUnit.SECONDS), "Should continue once the permit is returned");
+    }
+
+    private void runWindow(AdaptiveConcurrencyLimiter limiter, Exception failure) throws IOException {
+        int window = Math.max(10, limiter.getLimit());
+        int remaining = window;
+        while (remaining > 0) {
+            // Fill all slots, so the limit is actually used
+            List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = Math.min(limiter.getLimit(), remaining); i > 0; i--) {
+                permits.add(limiter.acquire());
+            }
+            for (AdaptiveConcurrencyLimiter.Permit permit : permits) {
+                permit.responseReceived();
+                if (failure != null) {
+                    permit.failed(failure);
+                }
+                permit.close();
+            }
+            remaining -= permits.size();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package cz.vojtechsika.wiki_transformer.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionalRequestInterceptorTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    private Path cacheDir;
+
+    private HttpServer server;
+
+    private final AtomicInteger fullResponses = new AtomicInteger();
+
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedResponses.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            fullResponses.incrementAndGet();
+            byte[] body = ("{\"page\":\"" + exchange.getRequestURI().getPath() + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("Repeated request is answered from the cache after 304")
+    void intercept_repeatedRequest_reusesCachedBodyOnNotModified() {
+        // Arrange
+        RestClient restClient = createClient(DataSize.ofMegabytes(1));
+
+        // Act
+        String first = restClient.get().uri(url("/wiki/Page.json")).retrieve().body(String.class);
+        ResponseEntity<String> second = restClient.get().uri(url("/wiki/Page.json")).retrieve().toEntity(String.class);
+
+        // Assert
+        assertEquals(1, fullResponses.get(), "Should download the page only once");
+        assertEquals(1, notModifiedResponses.get(), "Should send a conditional request");
+        assertEquals(200, second.getStatusCode().value(), "Should hide the 304 from the caller");
+        assertEquals(first, second.getBody(), "Should return the cached body");
+    }
+
+    @Test
+    @DisplayName("Cache evicts entries over the maximum size")
+    void intercept_cacheFull_evictsOldEntries() {
+        // Arrange
+        RestClient restClient = createClient(DataSize.ofBytes(40));
+
+        // Act
+        restClient.get().uri(url("/wiki/A.json")).retrieve().body(String.class);
+        restClient.get().uri(url("/wiki/B.json")).retrieve().body(String.class);
+        restClient.get().uri(url("/wiki/A.json")).retrieve().body(String.class);
+
+        // Assert
+        assertEquals(3, fullResponses.get(), "Should download the evicted page again");
+        assertEquals(0, notModifiedResponses.get(), "Should not send a conditional request for an evicted page");
+    }
+
+    private RestClient createClient(DataSize maxSize) {
+        HttpValidatorCache cache = new HttpValidatorCache(cacheDir, maxSize);
+        return RestClient.builder()
+                .requestInterceptor(new ConditionalRequestInterceptor(cache))
+                .build();
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
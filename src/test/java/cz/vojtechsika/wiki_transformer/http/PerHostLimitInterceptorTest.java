@@ -0,0 +1,48 @@
+package cz.vojtechsika.wiki_transformer.http;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerHostLimitInterceptorTest {
+
+    private final ClientHttpRequestExecution execution = (request, body) -> new MockClientHttpResponse(new byte[0], 200);
+
+    @Test
+    @DisplayName("Hold the permit of a host until the response is closed")
+    void intercept_limitReached_waitsUntilResponseClosed() throws Exception {
+        // Arrange
+        PerHostLimitInterceptor interceptor = new PerHostLimitInterceptor(1);
+        MockClientHttpRequest first = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://redmine.example.com/a"));
+        MockClientHttpRequest second = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://redmine.example.com/b"));
+        MockClientHttpRequest otherHost = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://cdn.example.com/c"));
+
+        // Act
+        ClientHttpResponse firstResponse = interceptor.intercept(first, new byte[0], execution);
+        CompletableFuture<ClientHttpResponse> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return interceptor.intercept(second, new byte[0], execution);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        ClientHttpResponse otherResponse = interceptor.intercept(otherHost, new byte[0], execution);
+
+        // Assert
+        assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS), "Should wait for the busy host");
+        assertNotNull(otherResponse, "Should not block requests to another host");
+        firstResponse.close();
+        assertNotNull(waiting.get(5, TimeUnit.SECONDS), "Should continue once the first response is closed");
+    }
+}
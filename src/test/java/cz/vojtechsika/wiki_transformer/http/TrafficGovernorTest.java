@@ -0,0 +1,128 @@
+package cz.vojtechsika.wiki_transformer.http;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrafficGovernorTest {
+
+    private final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://redmine.example.com/wiki/Page.json"));
+
+    @Test
+    @DisplayName("Retry connection errors and 503 until the server answers")
+    void intercept_transientFailures_retriesUntilSuccess() throws IOException {
+        // Arrange
+        TrafficGovernor governor = new TrafficGovernor(0, DataSize.ofBytes(0), 4, Duration.ofMillis(1), Duration.ofMillis(5));
+        AtomicInteger attempts = new AtomicInteger();
+        ClientHttpRequestExecution execution = (req, body) -> switch (attempts.incrementAndGet()) {
+            case 1 -> throw new ConnectException("Connection refused");
+            case 2 -> new MockClientHttpResponse(new byte[0], 503);
+            default -> new MockClientHttpResponse(new byte[0], 200);
+        };
+
+        // Act
+        ClientHttpResponse response = governor.intercept(request, new byte[0], execution);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value(), "Should return the successful response");
+        assertEquals(3, attempts.get(), "Should retry both transient failures");
+    }
+
+    @Test
+    @DisplayName("Wait for Retry-After and give up after the maximum number of attempts")
+    void intercept_tooManyRequests_honoursRetryAfterAndStops() throws IOException {
+        // Arrange
+        TrafficGovernor governor = new TrafficGovernor(0, DataSize.ofBytes(0), 2, Duration.ofMillis(1), Duration.ofSeconds(2));
+        AtomicInteger attempts = new AtomicInteger();
+        ClientHttpRequestExecution execution = (req, body) -> {
+            attempts.incrementAndGet();
+            MockClientHttpResponse response = new MockClientHttpResponse(new byte[0], 429);
+            response.getHeaders().set("Retry-After", "1");
+            return response;
+        };
+
+        // Act
+        long start = System.nanoTime();
+        ClientHttpResponse response = governor.intercept(request, new byte[0], execution);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // Assert
+        assertEquals(429, response.getStatusCode().value(), "Should return the last response");
+        assertEquals(2, attempts.get(), "Should stop after the maximum number of attempts");
+        assertTrue(elapsed.toMillis() >= 900, "Should wait for the Retry-After delay, waited " + elapsed.toMillis() + " ms");
+    }
+
+    @Test
+    @DisplayName("Return the response without waiting when Retry-After exceeds the maximum backoff")
+    void intercept_retryAfterBeyondMaxBackoff_returnsWithoutRetry() throws IOException {
+        // Arrange
+        TrafficGovernor governor = new TrafficGovernor(0, DataSize.ofBytes(0), 4, Duration.ofMillis(1), Duration.ofSeconds(30));
+        AtomicInteger attempts = new AtomicInteger();
+        ClientHttpRequestExecution execution = (req, body) -> {
+            attempts.incrementAndGet();
+            MockClientHttpResponse response = new MockClientHttpResponse(new byte[0], 429);
+            response.getHeaders().set("Retry-After", "3600");
+            return response;
+        };
+
+        // Act
+        long start = System.nanoTime();
+        ClientHttpResponse response = governor.intercept(request, new byte[0], execution);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // Assert
+        assertEquals(429, response.getStatusCode().value(), "Should return the throttled response");
+        assertEquals(1, attempts.get(), "Should not retry a request asked to wait longer than the maximum backoff");
+        assertTrue(elapsed.toMillis() < 1000, "Should not wait for the Retry-After delay, waited " + elapsed.toMillis() + " ms");
+    }
+
+    @Test
+    @DisplayName("Do not retry a client error")
+    void intercept_notFound_returnsWithoutRetry() throws IOException {
+        // Arrange
+        TrafficGovernor governor = new TrafficGovernor(0, DataSize.ofBytes(0), 4, Duration.ofMillis(1), Duration.ofMillis(5));
+        AtomicInteger attempts = new AtomicInteger();
+        ClientHttpRequestExecution execution = (req, body) -> {
+            attempts.incrementAndGet();
+            return new MockClientHttpResponse(new byte[0], 404);
+        };
+
+        // Act
+        ClientHttpResponse response = governor.intercept(request, new byte[0], execution);
+
+        // Assert
+        assertEquals(404, response.getStatusCode().value(), "Should return the client error");
+        assertEquals(1, attempts.get(), "Should send the request only once");
+    }
+
+    @Test
+    @DisplayName("Limit the request rate by the token bucket")
+    void intercept_rateLimited_spacesRequests() throws IOException {
+        // Arrange
+        TrafficGovernor governor = new TrafficGovernor(10, DataSize.ofBytes(0), 1, Duration.ofMillis(1), Duration.ofMillis(5));
+        ClientHttpRequestExecution execution = (req, body) -> new MockClientHttpResponse(new byte[0], 200);
+
+        // Act
+        long start = System.nanoTime();
+        for (int i = 0; i < 15; i++) {
+            governor.intercept(request, new byte[0], execution).close();
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // Assert
+        assertTrue(elapsed.toMillis() >= 400, "Should space the requests beyond the burst, took " + elapsed.toMillis() + " ms");
+    }
+}
@@ -0,0 +1,58 @@
+package cz.vojtechsika.wiki_transformer.metrics;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecordingTest {
+
+    @TempDir
+    private Path outputDir;
+
+    @Test
+    @DisplayName("Recording contains a stage event with the page, resource, bytes and outcome of every sample")
+    void close_samplesRecorded_writesStageEvents() throws IOException {
+        // Arrange
+        MigrationMetrics metrics = MigrationMetrics.noop();
+        Path file = outputDir.resolve("jfr").resolve("run.jfr");
+
+        // Act
+        try (FlightRecording recording = FlightRecording.start(file)) {
+            try (MigrationMetrics.Sample sample = metrics.start(MigrationStage.PAGE_FETCH, "https://www.redmine.org/projects/demo/wiki/Home",
+                    "https://www.redmine.org/projects/demo/wiki/Home.json")) {
+                sample.bytes(1_024);
+            }
+            try (MigrationMetrics.PageBinding page = MigrationMetrics.bindPage("https://www.redmine.org/projects/demo/wiki/Home");
+                 MigrationMetrics.Sample sample = metrics.start(MigrationStage.IMAGE_DOWNLOAD, MigrationMetrics.currentPage(),
+                         "https://www.redmine.org/logo.png")) {
+                sample.failed(new IOException("Connection reset"));
+            }
+        }
+
+        // Assert
+        assertTrue(Files.size(file) > 0, "Should write the recording into the file");
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(MigrationStageEvent.NAME))
+                .toList();
+        assertEquals(2, events.size(), "Should record one event per sample");
+        RecordedEvent pageFetch = events.stream().filter(event -> event.getString("stage").equals("page_fetch")).findFirst().orElseThrow();
+        assertEquals("https://www.redmine.org/projects/demo/wiki/Home", pageFetch.getString("page"), "Should attribute the event to the page");
+        assertEquals("https://www.redmine.org/projects/demo/wiki/Home.json", pageFetch.getString("resource"), "Should name the fetched resource");
+        assertEquals(1_024, pageFetch.getLong("bytes"), "Should record the fetched bytes");
+        assertEquals("success", pageFetch.getString("outcome"), "Should record the outcome");
+        RecordedEvent download = events.stream().filter(event -> event.getString("stage").equals("image_download")).findFirst().orElseThrow();
+        assertEquals("https://www.redmine.org/projects/demo/wiki/Home", download.getString("page"), "Should take the page bound to the thread");
+        assertEquals("error", download.getString("outcome"), "Should record the failed download");
+        assertEquals("IOException", download.getString("exception"), "Should name the exception");
+        assertNull(MigrationMetrics.currentPage(), "Should unbind the page once the binding is closed");
+    }
+}
@@ -0,0 +1,123 @@
+package cz.vojtechsika.wiki_transformer.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.vojtechsika.wiki_transformer.dto.RunMetricsReportDTO;
+import cz.vojtechsika.wiki_transformer.dto.StageMetricsDTO;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsReportWriterTest {
+
+    @TempDir
+    private Path outputDir;
+
+    private MigrationMetrics metrics;
+
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MigrationMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+    }
+
+    @Test
+    @DisplayName("Report contains the latency percentiles, bytes and errors of every measured stage")
+    void createReport_recordedStages_summarizesEveryStage() {
+        // Arrange
+        for (int i = 1; i <= 100; i++) {
+            metrics.record(MigrationStage.PAGE_FETCH, i * 1_000_000L, 1_000, null);
+        }
+        try (MigrationMetrics.Sample sample = metrics.start(MigrationStage.IMAGE_DOWNLOAD, "https://example.com/wiki/Home", "https://example.com/logo.png")) {
+            sample.failed(new IOException("Connection reset"));
+        }
+        MetricsReportWriter writer = new MetricsReportWriter(metrics, objectMapper, true, "");
+
+        // Act
+        RunMetricsReportDTO report = writer.createReport(Instant.parse("2025-01-01T10:00:00Z"), Instant.parse("2025-01-01T10:00:05Z"));
+
+        // Assert
+        StageMetricsDTO pageFetch = report.getStages().get("page_fetch");
+        assertEquals(100, pageFetch.getCount(), "Should count every page fetch");
+        assertEquals(100_000, pageFetch.getBytes(), "Should sum the fetched bytes");
+        assertEquals(100.0, pageFetch.getMaxMillis(), 0.001, "Should keep the slowest fetch");
+        assertTrue(pageFetch.getP95Millis() >= 90 && pageFetch.getP95Millis() <= 100, "Should estimate the 95th percentile");
+        assertEquals(1, report.getStages().get("image_download").getErrors(), "Should count the failed download");
+        assertEquals(1L, report.getStages().get("image_download").getErrorsByException().get("IOException"), "Should name the exception");
+        assertFalse(report.getStages().containsKey("conversion"), "Should leave out stages without operations");
+        assertEquals(5.0, report.getElapsedSeconds(), 0.001, "Should measure the wall-clock time of the run");
+    }
+
+    @Test
+    @DisplayName("Percentiles and maximum of the report cover the whole run, not only its last minutes")
+    void createReport_samplesOlderThanTwoMinutes_keepsPercentiles() {
+        // Arrange
+        MockClock clock = new MockClock();
+        MigrationMetrics runMetrics = new MigrationMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT, new PrometheusRegistry(), clock));
+        for (int i = 1; i <= 100; i++) {
+            runMetrics.record(MigrationStage.PAGE_FETCH, i * 1_000_000L, 1_000, null);
+        }
+        clock.add(Duration.ofHours(3));
+        runMetrics.record(MigrationStage.IMAGE_DOWNLOAD, 5_000_000L, 1_000, null);
+        MetricsReportWriter writer = new MetricsReportWriter(runMetrics, objectMapper, true, "");
+
+        // Act
+        RunMetricsReportDTO report = writer.createReport(Instant.parse("2025-01-01T10:00:00Z"), Instant.parse("2025-01-01T13:00:00Z"));
+
+        // Assert
+        StageMetricsDTO pageFetch = report.getStages().get("page_fetch");
+        assertEquals(100.0, pageFetch.getMaxMillis(), 0.001, "Should keep the slowest fetch of the start of the run");
+        assertTrue(pageFetch.getP50Millis() >= 45 && pageFetch.getP50Millis() <= 55, "Should keep the median, was " + pageFetch.getP50Millis());
+        assertTrue(pageFetch.getP99Millis() >= 95 && pageFetch.getP99Millis() <= 101, "Should keep the 99th percentile, was " + pageFetch.getP99Millis());
+    }
+
+    @Test
+    @DisplayName("JSON report and Prometheus text file are written into the output directory")
+    void write_enabled_writesJsonAndPrometheusFiles() throws IOException {
+        // Arrange
+        metrics.record(MigrationStage.CONVERSION, 5_000_000L, 2_048, null);
+        MetricsReportWriter writer = new MetricsReportWriter(metrics, objectMapper, true, "");
+
+        // Act
+        Path jsonFile = writer.write(outputDir, Instant.parse("2025-01-01T10:00:00Z"));
+
+        // Assert
+        assertEquals(outputDir.resolve("wiki-transformer-metrics-20250101-100000.json"), jsonFile, "Should name the report by the run start");
+        JsonNode json = objectMapper.readTree(jsonFile.toFile());
+        assertEquals(1, json.path("stages").path("conversion").path("count").asInt(), "Should write the stage into the JSON report");
+        String prometheus = Files.readString(outputDir.resolve("wiki-transformer-metrics-20250101-100000.prom"));
+        assertTrue(prometheus.contains("wiki_stage_duration_seconds_bucket{stage=\"conversion\""), "Should publish the latency histogram");
+        assertTrue(prometheus.contains("wiki_stage_payload_bytes_sum{stage=\"conversion\"} 2048"), "Should publish the bytes of the stage");
+    }
+
+    @Test
+    @DisplayName("Disabled report writes nothing")
+    void write_disabled_writesNothing() throws IOException {
+        // Arrange
+        MetricsReportWriter writer = new MetricsReportWriter(metrics, objectMapper, false, "");
+
+        // Act
+        Path jsonFile = writer.write(outputDir, Instant.now());
+
+        // Assert
+        assertNull(jsonFile, "Should not write a report");
+        try (var files = Files.list(outputDir)) {
+            assertEquals(0, files.count(), "Should leave the output directory empty");
+        }
+    }
+}
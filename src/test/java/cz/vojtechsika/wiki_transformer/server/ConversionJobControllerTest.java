@@ -0,0 +1,92 @@
+package cz.vojtechsika.wiki_transformer.server;
+
+import cz.vojtechsika.wiki_transformer.dto.ConversionEngine;
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobDTO;
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobRequestDTO;
+import cz.vojtechsika.wiki_transformer.service.job.ConversionJobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class ConversionJobControllerTest {
+
+    @Mock
+    private ConversionJobService conversionJobService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new ConversionJobController(conversionJobService)).build();
+    }
+
+    @Test
+    @DisplayName("Accept a job and point to its status")
+    void submit_validJob_returnsAcceptedWithLocation() throws Exception {
+        // Arrange
+        when(conversionJobService.submit(any())).thenAnswer(invocation -> new ConversionJobDTO(7, invocation.getArgument(0)));
+
+        // Act & Assert
+        mockMvc.perform(post("/jobs").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"project\":\"demo\",\"wiki_root\":\"https://example.com\",\"engine\":\"native\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/jobs/7"))
+                .andExpect(jsonPath("$.id").value(7))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+
+        ArgumentCaptor<ConversionJobRequestDTO> request = ArgumentCaptor.forClass(ConversionJobRequestDTO.class);
+        verify(conversionJobService).submit(request.capture());
+        assertEquals("https://example.com", request.getValue().getWikiRoot(), "Should read the snake case properties");
+        assertEquals(ConversionEngine.NATIVE, request.getValue().getEngine(), "Should read the engine in any case");
+    }
+
+    @Test
+    @DisplayName("Answer 400 for an invalid job, 409 for a busy output directory and 503 for a full queue")
+    void submit_invalidJobOrFullQueue_returnsErrorStatus() throws Exception {
+        // Arrange
+        when(conversionJobService.submit(any()))
+                .thenThrow(new IllegalArgumentException("Exactly one of url, urls or project must be specified"))
+                .thenThrow(new IllegalStateException("Job 1 is already writing to the output directory /data/wiki"))
+                .thenThrow(new RejectedExecutionException("The job queue is full"));
+
+        // Act & Assert
+        mockMvc.perform(post("/jobs").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/jobs").contentType(MediaType.APPLICATION_JSON).content("{\"url\":\"https://example.com/projects/demo/wiki/A\"}"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/jobs").contentType(MediaType.APPLICATION_JSON).content("{\"url\":\"https://example.com/projects/demo/wiki/A\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    @DisplayName("Answer 404 for an unknown job")
+    void getJob_unknownId_returnsNotFound() throws Exception {
+        // Arrange
+        when(conversionJobService.getJob(42)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        mockMvc.perform(get("/jobs/42")).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,94 @@
+package cz.vojtechsika.wiki_transformer.service;
+
+import cz.vojtechsika.wiki_transformer.service.output.DirectoryOutputSink;
+import cz.vojtechsika.wiki_transformer.service.pandoc.ConversionResultCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingPandocServiceTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Mock
+    private PandocService pandocService;
+
+    private CachingPandocService cachingService;
+
+    private Path outputDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        outputDir = Files.createDirectory(tempDir.resolve("out"));
+        ConversionResultCache cache = new ConversionResultCache(true, tempDir.resolve("cache"), DataSize.ofMegabytes(1));
+        cachingService = new CachingPandocService(pandocService, cache, DirectoryOutputSink.direct());
+    }
+
+    @Test
+    @DisplayName("Unchanged page is written from the cache without converting it again")
+    void convertTextileToMediaWiki_unchangedPage_convertsOnce() throws IOException {
+        // Arrange
+        when(pandocService.getConverterIdentity()).thenReturn("pandoc 3.1");
+        when(pandocService.convertForCache("h1. Title")).thenReturn(new PandocService.Conversion("= Title =\n", true));
+
+        // Act
+        cachingService.convertTextileToMediaWiki("h1. Title", "first", outputDir, outputDir.toString());
+        cachingService.convertTextileToMediaWiki("h1. Title", "second", outputDir, outputDir.toString());
+
+        // Assert
+        verify(pandocService, times(1)).convertForCache("h1. Title");
+        assertEquals("= Title =\n", Files.readString(outputDir.resolve("first.mediawiki")), "Should write the converted page");
+        assertEquals("= Title =\n", Files.readString(outputDir.resolve("second.mediawiki")), "Should write the cached page");
+    }
+
+    @Test
+    @DisplayName("Output of a page converted in a batch is not cached")
+    void convertToMediaWiki_batchedOutput_convertsAgain() throws IOException {
+        // Arrange
+        when(pandocService.getConverterIdentity()).thenReturn("pandoc 3.1");
+        when(pandocService.convertForCache("Text")).thenReturn(new PandocService.Conversion("Text\n", false));
+
+        // Act
+        String first = cachingService.convertToMediaWiki("Text");
+        cachingService.convertTextileToMediaWiki("Text", "page", outputDir, outputDir.toString());
+
+        // Assert
+        assertEquals("Text\n", first, "Should return the batched output");
+        assertEquals("Text\n", Files.readString(outputDir.resolve("page.mediawiki")), "Should write the batched output");
+        verify(pandocService, times(2)).convertForCache("Text");
+        assertFalse(Files.exists(tempDir.resolve("cache")), "Should not cache output which depends on the other pages of a batch");
+    }
+
+    @Test
+    @DisplayName("Converter without an identity is never cached")
+    void convertToMediaWiki_unknownConverter_alwaysConverts() throws IOException {
+        // Arrange
+        when(pandocService.getConverterIdentity()).thenReturn(null);
+        when(pandocService.convertToMediaWiki(anyString())).thenReturn("= Title =\n");
+
+        // Act
+        cachingService.convertToMediaWiki("h1. Title");
+        cachingService.convertToMediaWiki("h1. Title");
+
+        // Assert
+        verify(pandocService, times(2)).convertToMediaWiki("h1. Title");
+        verify(pandocService, never()).convertTextileToMediaWiki(anyString(), anyString(), any(), anyString());
+        assertFalse(Files.exists(tempDir.resolve("cache")), "Should not write any cache entry");
+    }
+}
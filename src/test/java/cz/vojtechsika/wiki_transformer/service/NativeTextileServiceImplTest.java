@@ -0,0 +1,170 @@
+package cz.vojtechsika.wiki_transformer.service;
+
+import cz.vojtechsika.wiki_transformer.service.output.DirectoryOutputSink;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests of the native engine against the Textile corpus in {@code src/test/resources/textile}.
+ * Every {@code .textile} file has the expected MediaWiki output in the {@code .mediawiki} file of the same name.
+ * <p>
+ * The expected files are written by hand, they are not generated by Pandoc. They follow the conventions
+ * of Pandoc's MediaWiki writer, except for the Redmine specific markup listed in {@link #KNOWN_PANDOC_DIFFERENCES},
+ * where the native engine renders what Redmine renders. When Pandoc is installed, the native output of the other
+ * pages is compared with the output of {@code pandoc -f textile -t mediawiki} (parity test); a page failing it
+ * needs its expected file fixed or its difference added to the list.
+ * </p>
+ * <p>
+ * The MediaWiki writer changes between Pandoc releases, so the parity test runs only with {@link #PANDOC_VERSION},
+ * which the CI build installs. Another Pandoc can be chosen with {@code -Dpandoc.test.executable=<path>}.
+ * </p>
+ */
+class NativeTextileServiceImplTest {
+
+    /**
+     * Pandoc release the expected files follow, the first line of its {@code pandoc --version}
+     */
+    private static final String PANDOC_VERSION = "pandoc 3.1.11";
+
+    /**
+     * Pandoc executable the parity test runs
+     */
+    private static final String PANDOC = System.getProperty("pandoc.test.executable", "pandoc");
+
+    /**
+     * Corpus pages on which the native engine knowingly differs from Pandoc, with the reason.
+     * The parity test skips them, the expected files still pin the native output.
+     */
+    private static final Map<String, String> KNOWN_PANDOC_DIFFERENCES = Map.of(
+            "code", "<pre><code class=\"java\"> is highlighted the way Redmine does, Pandoc does not read the class of the inner <code>",
+            "inline", "%{color:red}red% is written without its style and mc^2^ inside a word is not a superscript",
+            "links-images", "[[Wiki]] links are Redmine syntax unknown to Pandoc and the image width style is dropped",
+            "redmine-page", "<pre><code class=\"bash\"> is highlighted the way Redmine does");
+
+    private final NativeTextileServiceImpl nativeTextileService = new NativeTextileServiceImpl(DirectoryOutputSink.direct());
+
+    static Stream<String> corpus() throws IOException, URISyntaxException {
+        Path corpusDir = Path.of(NativeTextileServiceImplTest.class.getResource("/textile").toURI());
+        try (Stream<Path> files = Files.list(corpusDir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".textile"))
+                    .map(name -> name.substring(0, name.length() - ".textile".length()))
+                    .sorted()
+                    .toList()
+                    .stream();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("corpus")
+    @DisplayName("Convert corpus page to the expected MediaWiki")
+    void convert_corpusPage_returnsExpectedMediaWiki(String name) throws Exception {
+        // Arrange
+        String textile = readCorpusFile(name + ".textile");
+        String expected = readCorpusFile(name + ".mediawiki");
+
+        // Act
+        String actual = nativeTextileService.convert(textile).toString();
+
+        // Assert
+        assertEquals(expected, actual, "Native output differs from the expected output of " + name);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("corpus")
+    @DisplayName("Native output matches Pandoc output")
+    void convert_corpusPage_matchesPandoc(String name) throws Exception {
+        // Arrange
+        String version = installedPandocVersion();
+        assumeTrue(version != null, "Pandoc is not installed, parity test skipped");
+        assumeTrue(PANDOC_VERSION.equals(version), () -> "Parity test needs " + PANDOC_VERSION + ", found " + version);
+        assumeFalse(KNOWN_PANDOC_DIFFERENCES.containsKey(name), () -> "Known difference from Pandoc: " + KNOWN_PANDOC_DIFFERENCES.get(name));
+        String textile = readCorpusFile(name + ".textile");
+
+        // Act
+        String pandoc = runPandoc(textile);
+        String actual = nativeTextileService.convert(textile).toString();
+
+        // Assert
+        assertEquals(pandoc.stripTrailing(), actual.stripTrailing(), "Native output differs from " + version + " for " + name);
+    }
+
+    @Test
+    @DisplayName("Every known difference from Pandoc names a corpus page")
+    void knownPandocDifferences_everyName_isCorpusPage() throws Exception {
+        // Arrange
+        List<String> corpus = corpus().toList();
+
+        // Act & Assert
+        for (String name : KNOWN_PANDOC_DIFFERENCES.keySet()) {
+            assertTrue(corpus.contains(name), "Known difference names a missing corpus page: " + name);
+        }
+    }
+
+    @Test
+    @DisplayName("Write converted page to the output directory")
+    void convertTextileToMediaWiki_validContent_writesMediaWikiFile(@TempDir Path outputDir) throws IOException {
+        // Act
+        nativeTextileService.convertTextileToMediaWiki("h2. Title", "page_1", outputDir, outputDir.toString());
+
+        // Assert
+        assertEquals("== <span id=\"title\"></span>Title ==\n", Files.readString(outputDir.resolve("page_1.mediawiki")),
+                "Should write the converted page");
+    }
+
+    private String readCorpusFile(String fileName) throws IOException, URISyntaxException {
+        return Files.readString(Path.of(getClass().getResource("/textile/" + fileName).toURI()));
+    }
+
+    private static String installedPandocVersion() {
+        try {
+            Process process = new ProcessBuilder(PANDOC, "--version").redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return null;
+            }
+            return process.exitValue() == 0 ? output.lines().findFirst().orElse(null) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static String runPandoc(String textile) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(PANDOC, "-f", "textile", "-t", "mediawiki")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(textile.getBytes(StandardCharsets.UTF_8));
+        }
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        boolean finished = process.waitFor(30, TimeUnit.SECONDS);
+        if (!finished) {
+            process.destroyForcibly();
+        }
+        assertTrue(finished, "Pandoc did not finish within 30 seconds");
+        assertEquals(0, process.exitValue(), "Pandoc failed to convert the page");
+        return output;
+    }
+}
@@ -0,0 +1,74 @@
+package cz.vojtechsika.wiki_transformer.service;
+
+import cz.vojtechsika.wiki_transformer.service.output.DirectoryOutputSink;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the configured executable of {@link PandocServerServiceImpl}, Pandoc is replaced by small shell scripts.
+ */
+@DisabledOnOs(OS.WINDOWS)
+class PandocServerServiceImplTest {
+
+    @TempDir
+    Path tempDir;
+
+    private PandocServerServiceImpl pandocService;
+
+    @AfterEach
+    void tearDown() {
+        if (pandocService != null) {
+            pandocService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Converter identity is read from the configured executable")
+    void getConverterIdentity_configuredExecutable_reportsItsVersion() throws IOException {
+        // Arrange
+        pandocService = pandocService(script("echo 'pandoc 3.1.11'"));
+
+        // Act
+        String identity = pandocService.getConverterIdentity();
+
+        // Assert
+        assertEquals("pandoc-server pandoc 3.1.11 textile mediawiki", identity, "Should identify the configured Pandoc");
+    }
+
+    @Test
+    @DisplayName("Servers are started with the configured executable, a server which exits fails the conversion")
+    void convertToMediaWiki_serverExits_throwsIOException() throws IOException {
+        // Arrange
+        Path arguments = tempDir.resolve("arguments.log");
+        pandocService = pandocService(script("echo \"$@\" >> " + arguments + "; exit 2"));
+
+        // Act
+        IOException exception = assertThrows(IOException.class, () -> pandocService.convertToMediaWiki("h1. Title"));
+
+        // Assert
+        assertTrue(exception.getMessage().contains("exit code 2"), "Should report the exit code, was: " + exception.getMessage());
+        assertTrue(Files.readString(arguments).startsWith("server --port"), "Should start pandoc server with the configured executable");
+    }
+
+    private PandocServerServiceImpl pandocService(Path executable) {
+        return new PandocServerServiceImpl(executable.toString(), 1, 0, 5, 60, DirectoryOutputSink.direct());
+    }
+
+    private Path script(String body) throws IOException {
+        Path script = Files.createTempFile(tempDir, "pandoc", ".sh");
+        Files.writeString(script, "#!/bin/sh\n" + body + "\n");
+        Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwx------"));
+        return script;
+    }
+}
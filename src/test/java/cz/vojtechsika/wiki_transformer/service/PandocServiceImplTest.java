@@ -0,0 +1,168 @@
+package cz.vojtechsika.wiki_transformer.service;
+
+import cz.vojtechsika.wiki_transformer.service.output.DirectoryOutputSink;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the stream handling of {@link PandocServiceImpl}, Pandoc is replaced by small shell scripts.
+ */
+@DisabledOnOs(OS.WINDOWS)
+class PandocServiceImplTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path outputDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        outputDir = Files.createDirectory(tempDir.resolve("out"));
+    }
+
+    @Test
+    @DisplayName("Stream stdin to stdout of Pandoc into the output file")
+    void convertTextileToMediaWiki_successfulProcess_writesStdoutToOutputFile() throws IOException {
+        // Arrange
+        PandocService pandocService = pandocService(script("cat"), 10);
+
+        // Act
+        pandocService.convertTextileToMediaWiki("h1. Title", "page_1", outputDir, outputDir.toString());
+
+        // Assert
+        assertEquals("h1. Title", Files.readString(outputDir.resolve("page_1.mediawiki")), "Should write the Pandoc output");
+    }
+
+    @Test
+    @DisplayName("Throw IOException with stderr on non-zero exit code")
+    void convertTextileToMediaWiki_failingProcess_throwsIOExceptionWithStderr() throws IOException {
+        // Arrange
+        PandocService pandocService = pandocService(script("cat > /dev/null; echo 'unknown reader' >&2; exit 3"), 10);
+
+        // Act
+        IOException exception = assertThrows(IOException.class, () ->
+                pandocService.convertTextileToMediaWiki("h1. Title", "page_1", outputDir, outputDir.toString()));
+
+        // Assert
+        assertTrue(exception.getMessage().contains("exit code 3"), "Should contain the exit code");
+        assertTrue(exception.getMessage().contains("unknown reader"), "Should contain the standard error output");
+        assertFalse(Files.exists(outputDir.resolve("page_1.mediawiki")), "Should not leave a partial output file");
+    }
+
+    @Test
+    @DisplayName("Throw IOException when Pandoc exceeds the timeout")
+    void convertTextileToMediaWiki_hangingProcess_throwsIOException() throws IOException {
+        // Arrange
+        PandocService pandocService = pandocService(script("sleep 30"), 1);
+
+        // Act and Assert
+        assertThrows(IOException.class, () ->
+                pandocService.convertTextileToMediaWiki("h1. Title", "page_1", outputDir, outputDir.toString()),
+                "Should terminate Pandoc after the timeout");
+    }
+
+    @Test
+    @DisplayName("Pages converted concurrently share one Pandoc process")
+    void convertTextileToMediaWiki_concurrentPages_startsPandocOnce() throws Exception {
+        // Arrange
+        Path runs = tempDir.resolve("runs.log");
+        PandocService pandocService = new PandocServiceImpl(script("echo run >> " + runs + "; cat").toString(), 10,
+                DirectoryOutputSink.direct(), 6, DataSize.ofKilobytes(64), 2_000);
+
+        // Act
+        try (ExecutorService executor = Executors.newFixedThreadPool(6)) {
+            List<Future<?>> conversions = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                String name = "page_" + i;
+                String content = "Title " + i;
+                conversions.add(executor.submit(() -> {
+                    pandocService.convertTextileToMediaWiki(content, name, outputDir, outputDir.toString());
+                    return null;
+                }));
+            }
+            for (Future<?> conversion : conversions) {
+                conversion.get();
+            }
+        }
+
+        // Assert
+        assertEquals(1, Files.readAllLines(runs).size(), "Should start Pandoc once for the whole batch");
+        for (int i = 0; i < 6; i++) {
+            assertEquals("Title " + i + "\n", Files.readString(outputDir.resolve("page_" + i + ".mediawiki")),
+                    "Should write the output of every page into its own file");
+        }
+    }
+
+    @Test
+    @DisplayName("Failed version check is not repeated for every page")
+    void getConverterIdentity_versionFails_checksOnce() throws IOException {
+        // Arrange
+        Path calls = tempDir.resolve("calls.log");
+        PandocService pandocService = pandocService(script("echo call >> " + calls + "; exit 1"), 10);
+
+        // Act
+        String first = pandocService.getConverterIdentity();
+        String second = pandocService.getConverterIdentity();
+
+        // Assert
+        assertNull(first, "Should not identify a Pandoc which cannot report its version");
+        assertNull(second, "Should keep the failed version check");
+        assertEquals(1, Files.readAllLines(calls).size(), "Should run pandoc --version only once");
+    }
+
+    @Test
+    @DisplayName("Output of a batched page is not cacheable, a page converted alone is")
+    void convertForCache_batchedAndSinglePage_reportsCacheable() throws Exception {
+        // Arrange
+        PandocService pandocService = new PandocServiceImpl(script("cat").toString(), 10, DirectoryOutputSink.direct(), 2,
+                DataSize.ofKilobytes(64), 2_000);
+
+        // Act
+        List<PandocService.Conversion> batched = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            List<Future<PandocService.Conversion>> conversions = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                String content = "Text " + i;
+                conversions.add(executor.submit(() -> pandocService.convertForCache(content)));
+            }
+            for (Future<PandocService.Conversion> conversion : conversions) {
+                batched.add(conversion.get());
+            }
+        }
+        PandocService.Conversion alone = pandocService.convertForCache("h1. Title");
+
+        // Assert
+        assertEquals("Text 0\n", batched.get(0).mediaWiki(), "Should return the output of the page");
+        assertFalse(batched.get(0).cacheable() || batched.get(1).cacheable(), "Should not cache the output of a batch");
+        assertTrue(alone.cacheable(), "Should cache the output of a page converted alone");
+    }
+
+    private PandocService pandocService(Path executable, long timeoutSeconds) {
+        // A batch of one page starts Pandoc for every page
+        return new PandocServiceImpl(executable.toString(), timeoutSeconds, DirectoryOutputSink.direct(), 1, DataSize.ofKilobytes(256), 0);
+    }
+
+    private Path script(String body) throws IOException {
+        Path script = Files.createTempFile(tempDir, "pandoc", ".sh");
+        Files.writeString(script, "#!/bin/sh\n" + body + "\n");
+        Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwx------"));
+        return script;
+    }
+}
@@ -47,6 +47,27 @@ class PathValidationServiceTest {
         }
     }
 
+    @Test
+    @DisplayName("Probes a directory only once")
+    void checkWrite_sameDirectoryTwice_probesOnce() throws IOException {
+        // Arrange
+        Path pathFolder = Path.of("some/path");
+        Path testPath = pathFolder.resolve("test.txt");
+
+        try (MockedStatic<Files> mockedFiles = Mockito.mockStatic(Files.class)) {
+
+            mockedFiles.when(() -> Files.createFile(testPath)).thenReturn(testPath);
+            mockedFiles.when(() -> Files.deleteIfExists(testPath)).thenReturn(true);
+
+            // Act
+            pathValidationService.checkWrite(pathFolder);
+            pathValidationService.checkWrite(Path.of("some/./path"));
+
+            // Assert
+            mockedFiles.verify(() -> Files.createFile(testPath), Mockito.times(1));
+        }
+    }
+
     @Test
     @DisplayName("Throw IOException on IOException")
     void checkWrite_onIOException_throwsIOException() throws IOException {
@@ -1,8 +1,11 @@
 package cz.vojtechsika.wiki_transformer.service;
 
+import cz.vojtechsika.wiki_transformer.dto.RedmineWikiIndexResponseDTO;
 import cz.vojtechsika.wiki_transformer.dto.RedmineWikiResponseDTO;
 import cz.vojtechsika.wiki_transformer.exception.ImageFetchException;
 import cz.vojtechsika.wiki_transformer.exception.RedmineFetchException;
+import cz.vojtechsika.wiki_transformer.http.AdaptiveConcurrencyLimiter;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -35,7 +38,7 @@ class RedmineServiceImplTest {
 
     @BeforeEach
     void setUp() {
-        redmineService = new RedmineServiceImpl(restClient);
+        redmineService = new RedmineServiceImpl(restClient, AdaptiveConcurrencyLimiter.disabled(), MigrationMetrics.noop());
     }
 
     @Test
@@ -82,4 +85,34 @@ class RedmineServiceImplTest {
                 redmineService.getRedmine("https://example.com/page"), "Should throw RestClientException");
 
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Download wiki index")
+    void getWikiIndex_validIndexUrl_returnsRedmineWikiIndexResponseDTO() throws RedmineFetchException {
+        // Arrange
+        RedmineWikiIndexResponseDTO indexResponseDTO = new RedmineWikiIndexResponseDTO();
+        ResponseEntity<RedmineWikiIndexResponseDTO> responseEntity = ResponseEntity.ok(indexResponseDTO);
+
+        when(restClient.get()).thenReturn(requestHeadersUriSpec);
+        when(requestHeadersUriSpec.uri(anyString())).thenReturn(requestHeadersUriSpec);
+        when(requestHeadersUriSpec.retrieve()).thenReturn(responseSpec);
+        when(responseSpec.toEntity(RedmineWikiIndexResponseDTO.class)).thenReturn(responseEntity);
+
+        // Act
+        RedmineWikiIndexResponseDTO actual = redmineService.getWikiIndex("https://example.com/projects/p/wiki/index.json");
+
+        // Assert
+        assertEquals(indexResponseDTO, actual, "Should be the same object");
+    }
+
+    @Test
+    @DisplayName("Throw RedmineFetchException when wiki index is not found")
+    void getWikiIndex_onHttpClientError_shouldThrowRedmineFetchException() {
+        // Arrange
+        when(restClient.get()).thenThrow(HttpClientErrorException.NotFound.class);
+
+        // Act and Assert
+        assertThrows(RedmineFetchException.class, () ->
+                redmineService.getWikiIndex("https://example.com/projects/p/wiki/index.json"), "Should throw HttpClientErrorException.NotFound");
+    }
+}
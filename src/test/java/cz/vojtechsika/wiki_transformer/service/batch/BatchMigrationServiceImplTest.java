@@ -0,0 +1,460 @@
+package cz.vojtechsika.wiki_transformer.service.batch;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationOptions;
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationSummary;
+import cz.vojtechsika.wiki_transformer.dto.ConversionEngine;
+import cz.vojtechsika.wiki_transformer.dto.OutputFormat;
+import cz.vojtechsika.wiki_transformer.dto.RedmineWikiIndexResponseDTO;
+import cz.vojtechsika.wiki_transformer.dto.RedmineWikiResponseDTO;
+import cz.vojtechsika.wiki_transformer.dto.WikiConversionContext;
+import cz.vojtechsika.wiki_transformer.dto.WikiPageDTO;
+import cz.vojtechsika.wiki_transformer.exception.RedmineFetchException;
+import cz.vojtechsika.wiki_transformer.http.AdaptiveConcurrencyLimiter;
+import cz.vojtechsika.wiki_transformer.metrics.MetricsReportWriter;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import cz.vojtechsika.wiki_transformer.service.PandocService;
+import cz.vojtechsika.wiki_transformer.service.PandocServiceResolver;
+import cz.vojtechsika.wiki_transformer.service.RedmineService;
+import cz.vojtechsika.wiki_transformer.service.image.ImageService;
+import cz.vojtechsika.wiki_transformer.service.output.DirectoryOutputSink;
+import cz.vojtechsika.wiki_transformer.service.output.RoutingOutputSink;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BatchMigrationServiceImplTest {
+
+    @Mock
+    private RedmineService redmineService;
+
+    @Mock
+    private PandocService pandocService;
+
+    @Mock
+    private PandocServiceResolver pandocServiceResolver;
+
+    @Mock
+    private ImageService imageService;
+
+    @TempDir
+    private Path outputDir;
+
+    private RoutingOutputSink outputSink;
+
+    private MetricsReportWriter metricsReportWriter;
+
+    private BatchMigrationService batchMigrationService;
+
+    private BatchMigrationOptions options;
+
+    @BeforeEach
+    void setUp() {
+        SyncManifestStore syncManifestStore = new SyncManifestStore(JsonMapper.builder().findAndAddModules().build());
+        outputSink = new RoutingOutputSink(DirectoryOutputSink.direct(), 256, DataSize.ofMegabytes(64), MigrationMetrics.noop());
+        metricsReportWriter = new MetricsReportWriter(MigrationMetrics.noop(), JsonMapper.builder().findAndAddModules().build(), true, "");
+        batchMigrationService = new BatchMigrationServiceImpl(redmineService, pandocServiceResolver, imageService, syncManifestStore,
+                AdaptiveConcurrencyLimiter.disabled(), outputSink, metricsReportWriter, 16, 0, 32);
+        options = new BatchMigrationOptions("https://example.com/", "demo", outputDir, outputDir.toString(), 4, ConversionEngine.PANDOC, false,
+                OutputFormat.FILES, false, null);
+        lenient().when(pandocServiceResolver.resolve(ConversionEngine.PANDOC)).thenReturn(pandocService);
+    }
+
+    @Test
+    @DisplayName("Convert every page listed by the wiki index")
+    void migrateProject_indexWithPages_convertsAllPages() throws Exception {
+        // Arrange
+        when(redmineService.getWikiIndex("https://example.com/projects/demo/wiki/index.json"))
+                .thenReturn(index("Wiki", "Install_Guide", "FAQ"));
+        when(redmineService.getRedmine(anyString())).thenAnswer(invocation -> page("Page"));
+
+        // Act
+        BatchMigrationSummary summary = batchMigrationService.migrateProject(options);
+
+        // Assert
+        assertEquals(3, summary.getTotalPages(), "Should list all pages of the index");
+        assertEquals(3, summary.getConvertedPages(), "Should convert all pages");
+        assertTrue(summary.getFailedPages().isEmpty(), "Should not fail any page");
+        verify(redmineService).getRedmine("https://example.com/projects/demo/wiki/Install_Guide.json?include=attachments");
+        verify(pandocService, times(3)).convertTextileToMediaWiki(anyString(), anyString(), eq(outputDir), eq(outputDir.toString()));
+        verify(imageService, times(3)).discoverImages(any());
+        verify(imageService, times(3)).downloadImages(any(), any());
+    }
+
+    @Test
+    @DisplayName("Pages are fetched on virtual threads and converted on the platform threads of the conversion stage")
+    void migrateProject_pipeline_convertsOnCpuWorkers() throws Exception {
+        // Arrange
+        List<Boolean> fetchedOnVirtual = new CopyOnWriteArrayList<>();
+        List<String> convertThreads = new CopyOnWriteArrayList<>();
+        when(redmineService.getWikiIndex(anyString())).thenReturn(index("Wiki", "FAQ", "Install_Guide", "News"));
+        when(redmineService.getRedmine(anyString())).thenAnswer(invocation -> {
+            fetchedOnVirtual.add(Thread.currentThread().isVirtual());
+            return page("Page");
+        });
+        doAnswer(invocation -> {
+            assertFalse(Thread.currentThread().isVirtual(), "Should convert on a platform thread");
+            convertThreads.add(Thread.currentThread().getName());
+            return null;
+        }).when(pandocService).convertTextileToMediaWiki(anyString(), anyString(), any(), anyString());
+        batchMigrationService = new BatchMigrationServiceImpl(redmineService, pandocServiceResolver, imageService,
+                new SyncManifestStore(JsonMapper.builder().findAndAddModules().build()), AdaptiveConcurrencyLimiter.disabled(), outputSink,
+                metricsReportWriter, 1, 2, 32);
+        when(pandocServiceResolver.resolve(ConversionEngine.NATIVE)).thenReturn(pandocService);
+        options.setEngine(ConversionEngine.NATIVE);
+
+        // Act
+        BatchMigrationSummary summary = batchMigrationService.migrateProject(options);
+
+        // Assert
+        assertEquals(4, summary.getConvertedPages(), "Should convert all pages through the pipeline");
+        assertEquals(List.of(true, true, true, true), fetchedOnVirtual, "Should fetch the pages on virtual threads");
+        assertTrue(convertThreads.stream().allMatch(name -> name.startsWith("pipeline-convert-")), "Should convert on the conversion workers");
+    }
+
+    @Test
+    @DisplayName("Pandoc conversions wait for their batch on virtual threads, a batch is not limited by the conversion workers")
+    void migrateProject_pandocEngine_convertsBatchBeyondConvertWorkers() throws Exception {
+        // Arrange
+        CountDownLatch batch = new CountDownLatch(4);
+        List<Boolean> convertedOnVirtual = new CopyOnWriteArrayList<>();
+        when(redmineService.getWikiIndex(anyString())).thenReturn(index("Wiki", "FAQ", "Install_Guide", "News"));
+        when(redmineService.getRedmine(anyString())).thenAnswer(invocation -> page("Page"));
+        doAnswer(invocation -> {
+            convertedOnVirtual.add(Thread.currentThread().isVirtual());
+            // Like the Pandoc batcher, every page waits until the batch of four pages is complete
+            batch.countDown();
+            assertTrue(batch.await(5, TimeUnit.SECONDS), "Should convert the four pages at the same time");
+            return null;
+        }).when(pandocService).convertTextileToMediaWiki(anyString(), anyString(), any(), anyString());
+        batchMigrationService = new BatchMigrationServiceImpl(redmineService, pandocServiceResolver, imageService,
+                new SyncManifestStore(JsonMapper.builder().findAndAddModules().build()), AdaptiveConcurrencyLimiter.disabled(), outputSink,
+                metricsReportWriter, 16, 1, 4);
+
+        // Act
+        BatchMigrationSummary summary = batchMigrationService.migrateProject(options);
+
+        // Assert
+        assertEquals(4, summary.getConvertedPages(), "Should convert all pages in one batch");
+        assertEquals(List.of(true, true, true, true), convertedOnVirtual, "Should wait for the batch on virtual threads");
+    }
+
+    @Test
+    @DisplayName("Collect failure of a single page without aborting the run")
+    void migrateProject_onPageFetchError_collectsFailure() throws Exception {
+        // Arrange
+        when(redmineService.getWikiIndex(anyString())).thenReturn(index("Wiki", "Broken"));
+        when(redmineService.getRedmine("https://example.com/projects/demo/wiki/Wiki.json?include=attachments")).thenReturn(page("Wiki"));
+        when(redmineService.getRedmine("https://example.com/projects/demo/wiki/Broken.json?include=attachments"))
+                .thenThrow(new RedmineFetchException("Wiki page not found"));
+
+        // Act
+        BatchMigrationSummary summary = batchMigrationService.migrateProject(options);
+
+        // Assert
+        assertEquals(1, summary.getConvertedPages(), "Should convert the healthy page");
+        assertEquals(List.of("Broken"), List.copyOf(summary.getFailedPages().keySet()), "Should record the broken page");
+    }
+
+    @Test
+    @DisplayName("Convert a list of page URLs and collect failures by URL")
+    void migratePages_listOfUrls_convertsPagesWithoutManifest() throws Exception {
+        // Arrange
+        when(redmineService.getRedmine("https://example.com/projects/demo/wiki/Wiki.json?include=attachments")).thenReturn(page("Wiki"));
+        when(redmineService.getRedmine("https://example.com/projects/demo/wiki/Broken.json?include=attachments"))
+                .thenThrow(new RedmineFetchException("Wiki page not found"));
+
+        // Act
+        BatchMigrationSummary summary = batchMigrationService.migratePages(
+                List.of("https://example.com/projects/demo/wiki/Wiki", "https://example.com/projects/demo/wiki/Broken"), options);
+
+        // Assert
+        assertEquals(2, summary.getTotalPages(), "Should count all listed pages");
+        assertEquals(1, summary.getConvertedPages(), "Should convert the healthy page");
+        assertEquals(List.of("https://example.com/projects/demo/wiki/Broken"), List.copyOf(summary.getFailedPages().keySet()),
+                "Should record the broken page by its URL");
+        assertFalse(Files.exists(outputDir.resolve(SyncManifestStore.MANIFEST_FILE)), "Should not write a manifest");
+    }
+
+    @Test
+    @DisplayName("Every run reads the output names from the disk and releases the image store of its directory")
+    void migratePages_registryDeletedBetweenRuns_recordsNameAgain() throws Exception {
+        // Arrange
+        String wikiUrl = "https://example.com/projects/demo/wiki/First";
+        when(redmineService.getRedmine(anyString())).thenAnswer(invocation -> page("Page"));
+        List<String> fileNames = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            fileNames.add(invocation.getArgument(1, String.class));
+            return null;
+        }).when(pandocService).convertTextileToMediaWiki(anyString(), anyString(), any(), anyString());
+        Path registryFile = outputDir.resolve(OutputNameRegistry.REGISTRY_FILE);
+        batchMigrationService.migratePages(List.of(wikiUrl), options);
+        Files.delete(registryFile);
+
+        // Act
+        batchMigrationService.migratePages(List.of(wikiUrl), options);
+
+        // Assert
+        assertEquals(2, fileNames.size(), "Should convert the page in both runs");
+        assertEquals(fileNames.get(0), fileNames.get(1), "Should assign the same name again");
+        assertEquals(List.of(wikiUrl + "\t" + fileNames.get(1)), Files.readAllLines(registryFile),
+                "Should record the name in the new registry file");
+        verify(imageService, times(2)).releaseImageStore(outputDir);
+    }
+
+    @Test
+    @DisplayName("Incremental run converts only changed pages and removes deleted ones")
+    void migrateProject_incrementalRun_skipsUnchangedAndDeletesRemovedPages() throws Exception {
+        // Arrange
+        doAnswer(invocation -> Files.writeString(outputDir.resolve(invocation.getArgument(1) + ".mediawiki"), "page"))
+                .when(pandocService).convertTextileToMediaWiki(anyString(), anyString(), any(), anyString());
+        AtomicInteger faqVersion = new AtomicInteger();
+        when(redmineService.getRedmine(anyString())).thenAnswer(invocation -> {
+            String url = invocation.getArgument(0);
+            String title = url.substring(url.lastIndexOf('/') + 1, url.indexOf(".json"));
+            return page(title, title.equals("FAQ") ? faqVersion.incrementAndGet() : 1);
+        });
+        when(redmineService.getWikiIndex(anyString()))
+                .thenReturn(index(entry("Wiki", 1), entry("FAQ", 1), entry("Old", 1)))
+                .thenReturn(index(entry("Wiki", 1), entry("FAQ", 2)));
+        batchMigrationService.migrateProject(options);
+        options.setIncremental(true);
+
+        // Act
+        BatchMigrationSummary summary = batchMigrationService.migrateProject(options);
+
+        // Assert
+        assertEquals(1, summary.getConvertedPages(), "Should convert only the changed page");
+        assertEquals(1, summary.getUnchangedPages(), "Should skip the unchanged page");
+        assertEquals(1, summary.getDeletedPages(), "Should remove the deleted page");
+        verify(redmineService, times(2)).getRedmine("https://example.com/projects/demo/wiki/FAQ.json?include=attachments");
+        verify(redmineService, times(1)).getRedmine("https://example.com/projects/demo/wiki/Wiki.json?include=attachments");
+        try (var files = Files.list(outputDir)) {
+            assertEquals(0, files.filter(file -> file.getFileName().toString().startsWith("Old")).count(),
+                    "Should delete the output of the removed page");
+        }
+        assertTrue(Files.exists(outputDir.resolve(SyncManifestStore.MANIFEST_FILE)), "Should write the manifest");
+    }
+
+    @Test
+    @DisplayName("Incremental run deletes only the images a migrated page no longer references, once the page is written")
+    void migrateProject_incrementalRunWithRemovedImage_deletesOnlyStaleImagesOfMigratedPages() throws Exception {
+        // Arrange
+        AtomicInteger run = new AtomicInteger(1);
+        when(redmineService.getRedmine(anyString())).thenAnswer(invocation -> {
+            String url = invocation.getArgument(0);
+            return page(url.substring(url.lastIndexOf('/') + 1, url.indexOf(".json")), run.get());
+        });
+        when(redmineService.getWikiIndex(anyString()))
+                .thenReturn(index(entry("FAQ", 1), entry("Guide", 1)))
+                .thenReturn(index(entry("FAQ", 2), entry("Guide", 2)));
+        when(imageService.downloadImages(any(), any())).thenAnswer(invocation -> {
+            WikiConversionContext context = invocation.getArgument(0);
+            if (run.get() == 2 && context.getWikiUrl().endsWith("/Guide")) {
+                throw new IOException("Image server unavailable");
+            }
+            List<String> images = run.get() == 1 ? List.of("kept.png", "removed.png") : List.of("kept.png");
+            Path imageDir = Files.createDirectories(outputDir.resolve(context.getUniqueTitle()));
+            for (String image : images) {
+                Files.writeString(imageDir.resolve(image), "run " + run.get());
+            }
+            return images;
+        });
+        batchMigrationService.migrateProject(options);
+        options.setIncremental(true);
+        run.set(2);
+
+        // Act
+        BatchMigrationSummary summary = batchMigrationService.migrateProject(options);
+
+        // Assert
+        assertEquals(1, summary.getConvertedPages(), "Should migrate the page whose images were downloaded");
+        assertEquals(1, summary.getFailedPages().size(), "Should record the page whose download failed");
+        Path faqImages;
+        Path guideImages;
+        try (var dirs = Files.list(outputDir)) {
+            List<Path> imageDirs = dirs.filter(Files::isDirectory).toList();
+            faqImages = imageDirs.stream().filter(dir -> dir.getFileName().toString().startsWith("FAQ")).findFirst().orElseThrow();
+            guideImages = imageDirs.stream().filter(dir -> dir.getFileName().toString().startsWith("Guide")).findFirst().orElseThrow();
+        }
+        assertEquals("run 2", Files.readString(faqImages.resolve("kept.png")), "Should keep the image the page still references");
+        assertFalse(Files.exists(faqImages.resolve("removed.png")), "Should delete the image the page no longer references");
+        assertTrue(Files.exists(guideImages.resolve("kept.png")), "Should keep the images of a page that failed");
+        assertTrue(Files.exists(guideImages.resolve("removed.png")), "Should keep the images of a page that failed");
+    }
+
+    @Test
+    @DisplayName("Dump run writes all pages into one MediaWiki XML dump and no page files")
+    void migrateProject_mediaWikiXmlFormat_writesSingleDump() throws Exception {
+        // Arrange
+        when(redmineService.getWikiIndex(anyString())).thenReturn(index("Wiki", "FAQ"));
+        when(redmineService.getRedmine(anyString())).thenAnswer(invocation -> page("Page"));
+        when(pandocService.convertToMediaWiki(anyString())).thenReturn("= Page =");
+        options.setFormat(OutputFormat.MEDIAWIKI_XML);
+
+        // Act
+        BatchMigrationSummary summary = batchMigrationService.migrateProject(options);
+
+        // Assert
+        assertEquals(2, summary.getConvertedPages(), "Should convert all pages");
+        verify(pandocService, never()).convertTextileToMediaWiki(anyString(), anyString(), any(), anyString());
+        try (var files = Files.list(outputDir)) {
+            List<Path> dumps = files.filter(file -> file.getFileName().toString().matches("demo-\\d{8}-\\d{6}\\.xml")).toList();
+            assertEquals(1, dumps.size(), "Should write a single dump named after the project");
+            String dump = Files.readString(dumps.get(0));
+            assertEquals(2, dump.split("<page>", -1).length - 1, "Should write both pages into the dump");
+        }
+    }
+
+    @Test
+    @DisplayName("Archive run streams the pages and the manifest into one ZIP archive and no page files")
+    void migrateProject_zipFormat_writesSingleArchiveWithManifest() throws Exception {
+        // Arrange
+        when(redmineService.getWikiIndex(anyString())).thenReturn(index("Wiki", "FAQ"));
+        when(redmineService.getRedmine(anyString())).thenAnswer(invocation -> page("Page"));
+        doAnswer(invocation -> {
+            outputSink.write(outputDir.resolve(invocation.getArgument(1) + ".mediawiki"), "page".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(pandocService).convertTextileToMediaWiki(anyString(), anyString(), any(), anyString());
+        options.setFormat(OutputFormat.ZIP);
+
+        // Act
+        BatchMigrationSummary summary = batchMigrationService.migrateProject(options);
+
+        // Assert
+        assertEquals(2, summary.getConvertedPages(), "Should convert all pages");
+        List<Path> archives;
+        try (var files = Files.list(outputDir)) {
+            archives = files.filter(file -> file.getFileName().toString().matches("demo-\\d{8}-\\d{6}\\.zip")).toList();
+        }
+        assertEquals(1, archives.size(), "Should write a single archive named after the project");
+        try (var files = Files.list(outputDir)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".mediawiki")), "Should not write page files to the disk");
+        }
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archives.get(0)))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.add(entry.getName());
+            }
+        }
+        assertEquals(3, entries.size(), "Should archive both pages and the manifest");
+        assertEquals(2, entries.stream().filter(name -> name.endsWith(".mediawiki")).count(), "Should archive both pages");
+        assertEquals(SyncManifestStore.MANIFEST_FILE, entries.get(2), "Should add the manifest as the last entry");
+        assertTrue(outputSink.writesFiles(outputDir.resolve("page.mediawiki")), "Should detach the archive after the run");
+    }
+
+    @Test
+    @DisplayName("Archive of a CLI run contains its performance report instead of the output directory")
+    void migrateProject_zipFormatWithStart_addsMetricsReportToArchive() throws Exception {
+        // Arrange
+        when(redmineService.getWikiIndex(anyString())).thenReturn(index("Wiki"));
+        when(redmineService.getRedmine(anyString())).thenAnswer(invocation -> page("Page"));
+        options.setFormat(OutputFormat.ZIP);
+        options.setStartedAt(Instant.parse("2025-01-01T10:00:00Z"));
+
+        // Act
+        batchMigrationService.migrateProject(options);
+
+        // Assert
+        List<Path> archives;
+        try (var files = Files.list(outputDir)) {
+            archives = files.filter(file -> file.getFileName().toString().endsWith(".zip")).toList();
+        }
+        try (var files = Files.list(outputDir)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().startsWith("wiki-transformer-metrics-")),
+                    "Should not write the report into the output directory");
+        }
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archives.get(0)))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.add(entry.getName());
+            }
+        }
+        assertTrue(entries.contains("wiki-transformer-metrics-20250101-100000.json"), "Should add the report to the archive");
+    }
+
+    @Test
+    @DisplayName("Archive format is refused for an incremental run")
+    void migrateProject_archiveFormatIncremental_throwsIllegalArgument() {
+        // Arrange
+        when(redmineService.getWikiIndex(anyString())).thenReturn(index("Wiki"));
+        options.setFormat(OutputFormat.TAR_GZ);
+        options.setIncremental(true);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> batchMigrationService.migrateProject(options),
+                "Should not combine an archive with an incremental run");
+    }
+
+    private RedmineWikiIndexResponseDTO index(WikiPageDTO... pages) {
+        RedmineWikiIndexResponseDTO index = new RedmineWikiIndexResponseDTO();
+        index.getWikiPages().addAll(List.of(pages));
+        return index;
+    }
+
+    private WikiPageDTO entry(String title, int version) {
+        WikiPageDTO page = new WikiPageDTO();
+        page.setTitle(title);
+        page.setVersion(version);
+        page.setUpdatedOn(LocalDateTime.of(2025, 1, version, 12, 0));
+        return page;
+    }
+
+    private RedmineWikiResponseDTO page(String title, int version) {
+        RedmineWikiResponseDTO response = page(title);
+        response.getWikiPage().setVersion(version);
+        response.getWikiPage().setUpdatedOn(LocalDateTime.of(2025, 1, version, 12, 0));
+        return response;
+    }
+
+    private RedmineWikiIndexResponseDTO index(String... titles) {
+        RedmineWikiIndexResponseDTO index = new RedmineWikiIndexResponseDTO();
+        for (String title : titles) {
+            WikiPageDTO page = new WikiPageDTO();
+            page.setTitle(title);
+            index.getWikiPages().add(page);
+        }
+        return index;
+    }
+
+    private RedmineWikiResponseDTO page(String title) {
+        WikiPageDTO page = new WikiPageDTO();
+        page.setTitle(title);
+        page.setText("h1. " + title);
+        RedmineWikiResponseDTO response = new RedmineWikiResponseDTO();
+        response.setWikiPage(page);
+        return response;
+    }
+}
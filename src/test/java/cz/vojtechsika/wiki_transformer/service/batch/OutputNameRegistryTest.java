@@ -0,0 +1,146 @@
+package cz.vojtechsika.wiki_transformer.service.batch;
+
+import cz.vojtechsika.wiki_transformer.util.FileNameUtil;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputNameRegistryTest {
+
+    private static final String URL = "https://redmine.example.com/projects/demo/wiki/Page";
+
+    @TempDir
+    private Path outputDir;
+
+    @Test
+    @DisplayName("Name is derived from the title and the 64-bit digest of the URL")
+    void nameFor_newUrl_returnsTitleWithDigestSuffix() throws Exception {
+        // Arrange
+        OutputNameRegistry registry = new OutputNameRegistry(outputDir);
+
+        // Act
+        String name = registry.nameFor(URL, "Page");
+
+        // Assert
+        assertEquals("Page_" + FileNameUtil.createDigestSuffix(URL, false), name, "Should use the short digest");
+        assertEquals(name, registry.nameFor(URL, "Renamed page"), "Should keep the name of a known URL");
+    }
+
+    @Test
+    @DisplayName("Names assigned by a previous run are reused")
+    void nameFor_registryReopened_returnsPersistedNames() throws Exception {
+        // Arrange
+        OutputNameRegistry registry = new OutputNameRegistry(outputDir);
+        String name = registry.nameFor(URL, "Old_name", "Page");
+        registry.flush();
+
+        // Act
+        String reopened = new OutputNameRegistry(outputDir).nameFor(URL, "Page");
+
+        // Assert
+        assertEquals("Old_name", name, "Should accept the free preferred name");
+        assertEquals(name, reopened, "Should map the URL to the persisted name");
+    }
+
+    @Test
+    @DisplayName("New names are appended to the registry file in batches")
+    void nameFor_fewNewNames_appendsOnFlush() throws Exception {
+        // Arrange
+        OutputNameRegistry registry = new OutputNameRegistry(outputDir);
+        for (int i = 0; i < 3; i++) {
+            registry.nameFor(URL + i, "Page");
+        }
+        Path registryFile = outputDir.resolve(OutputNameRegistry.REGISTRY_FILE);
+        assertFalse(Files.exists(registryFile), "Should not open the registry file for every name");
+
+        // Act
+        registry.flush();
+
+        // Assert
+        assertEquals(3, Files.readAllLines(registryFile).size(), "Should append all new names at once");
+    }
+
+    @Test
+    @DisplayName("Name which cannot be recorded is released for other URLs")
+    void nameFor_registryNotWritable_releasesName() throws Exception {
+        // Arrange
+        OutputNameRegistry registry = new OutputNameRegistry(outputDir);
+        Files.createDirectories(outputDir.resolve(OutputNameRegistry.REGISTRY_FILE));
+        String failedUrl = null;
+        for (int i = 0; i < 1000 && failedUrl == null; i++) {
+            try {
+                registry.nameFor(URL + i, "Page_" + i, "Page");
+            } catch (IOException e) {
+                failedUrl = URL + i;
+            }
+        }
+        assertNotNull(failedUrl, "Should fail once a batch of names is appended");
+        String failedName = "Page_" + failedUrl.substring(URL.length());
+        Files.delete(outputDir.resolve(OutputNameRegistry.REGISTRY_FILE));
+
+        // Act
+        String name = registry.nameFor(URL + "_other", failedName, "Page");
+
+        // Assert
+        assertEquals(failedName, name, "Should not keep the name of the failed assignment claimed");
+        assertFalse(Files.readString(outputDir.resolve(OutputNameRegistry.REGISTRY_FILE)).contains(failedUrl + "\t"),
+                "Should not record the failed assignment");
+    }
+
+    @Test
+    @DisplayName("Name owned by another URL falls back to the 128-bit digest")
+    void nameFor_preferredNameTaken_returnsExtendedDigestName() throws Exception {
+        // Arrange
+        OutputNameRegistry registry = new OutputNameRegistry(outputDir);
+        String other = URL + "_other";
+        String taken = "page_" + FileNameUtil.createDigestSuffix(other, false);
+        registry.nameFor(URL, taken.toUpperCase(), "Page");
+
+        // Act
+        String name = registry.nameFor(other, taken, "Page");
+
+        // Assert
+        assertEquals("Page_" + FileNameUtil.createDigestSuffix(other, true), name,
+                "Should not share a name which differs only in case");
+    }
+
+    @Test
+    @DisplayName("Parallel workers get distinct names for pages with the same title")
+    void nameFor_concurrentAssignments_returnsDistinctNames() throws Exception {
+        // Arrange
+        OutputNameRegistry registry = new OutputNameRegistry(outputDir);
+        List<Future<String>> names = new ArrayList<>();
+
+        // Act
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 500; i++) {
+                String url = URL + i;
+                names.add(executor.submit(() -> registry.nameFor(url, "Same title")));
+            }
+        }
+
+        registry.flush();
+
+        // Assert
+        Set<String> distinct = new HashSet<>();
+        for (Future<String> name : names) {
+            distinct.add(name.get().toLowerCase());
+        }
+        assertEquals(500, distinct.size(), "Should assign every URL its own name");
+        OutputNameRegistry reopened = new OutputNameRegistry(outputDir);
+        assertEquals(names.get(42).get(), reopened.nameFor(URL + 42, "Same title"), "Should persist every assignment");
+    }
+}
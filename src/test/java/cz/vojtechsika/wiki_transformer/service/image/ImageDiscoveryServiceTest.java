@@ -0,0 +1,84 @@
+package cz.vojtechsika.wiki_transformer.service.image;
+
+import cz.vojtechsika.wiki_transformer.dto.AttachmentDTO;
+import cz.vojtechsika.wiki_transformer.dto.ImageDiscoveryMode;
+import cz.vojtechsika.wiki_transformer.dto.WikiConversionContext;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ImageDiscoveryServiceTest {
+
+    private static final String WIKI_URL = "https://redmine.example.com/projects/demo/wiki/Page";
+
+    @Mock
+    private ImageExtractor imageExtractor;
+
+    @Test
+    @DisplayName("Resolve Textile image references from the page attachments")
+    void discoverImageUrls_attachmentsMode_resolvesReferencesWithoutHtmlFetch() throws Exception {
+        // Arrange
+        String textile = """
+                h1. Page
+
+                !>diagram.png(Architecture)! and !{width:50%}https://cdn.example.com/logo.svg!
+                Server path !/images/icon.gif! and again !diagram.png!
+
+                bc. !not-an-image.png!
+
+                Hello! World!
+                """;
+        ImageDiscoveryService service = new ImageDiscoveryService(imageExtractor, ImageDiscoveryMode.ATTACHMENTS, false, MigrationMetrics.noop());
+
+        // Act
+        List<String> urls = service.discoverImageUrls(context(textile, attachment("diagram.png", 12)));
+
+        // Assert
+        assertEquals(List.of(
+                "https://redmine.example.com/attachments/download/12/diagram.png",
+                "https://cdn.example.com/logo.svg",
+                "https://redmine.example.com/images/icon.gif"), urls, "Should resolve every distinct reference");
+        verifyNoInteractions(imageExtractor);
+    }
+
+    @Test
+    @DisplayName("Scrape the HTML page when a reference is missing and the fallback is enabled")
+    void discoverImageUrls_unresolvedReferenceWithFallback_scrapesHtml() throws Exception {
+        // Arrange
+        List<String> scraped = List.of("https://redmine.example.com/attachments/download/3/missing.png");
+        when(imageExtractor.extractImageUrls(anyString())).thenReturn(scraped);
+        when(imageExtractor.filteredImageUrls(anyList())).thenReturn(scraped);
+        ImageDiscoveryService service = new ImageDiscoveryService(imageExtractor, ImageDiscoveryMode.ATTACHMENTS, true, MigrationMetrics.noop());
+
+        // Act
+        List<String> urls = service.discoverImageUrls(context("!missing.png!"));
+
+        // Assert
+        assertEquals(scraped, urls, "Should use the images of the HTML page");
+    }
+
+    private WikiConversionContext context(String textile, AttachmentDTO... attachments) {
+        return new WikiConversionContext("Page_1", textile, Path.of("out"), WIKI_URL, "out", List.of(attachments));
+    }
+
+    private AttachmentDTO attachment(String filename, int id) {
+        AttachmentDTO attachment = new AttachmentDTO();
+        attachment.setId(id);
+        attachment.setFilename(filename);
+        attachment.setContentUrl("https://redmine.example.com/attachments/download/" + id + "/" + filename);
+        return attachment;
+    }
+}
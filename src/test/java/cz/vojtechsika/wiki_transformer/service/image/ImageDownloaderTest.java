@@ -1,17 +1,29 @@
 package cz.vojtechsika.wiki_transformer.service.image;
 
+import com.sun.net.httpserver.HttpServer;
 import cz.vojtechsika.wiki_transformer.exception.ImageFetchException;
+import cz.vojtechsika.wiki_transformer.http.AdaptiveConcurrencyLimiter;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientException;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 import static org.junit.jupiter.api.Assertions.*;
@@ -19,6 +31,8 @@ import static org.junit.jupiter.api.Assertions.*;
 @ExtendWith(MockitoExtension.class)
 class ImageDownloaderTest {
 
+    private static final String PAGE_URL = "https://example.com/projects/demo/wiki/Home";
+
     @Mock
     private RestClient restClient;
 
@@ -34,7 +48,7 @@ class ImageDownloaderTest {
 
     @BeforeEach
     void setUp() {
-        imageDownloader = new ImageDownloader(restClient);
+        imageDownloader = new ImageDownloader(restClient, DataSize.ofMegabytes(500), AdaptiveConcurrencyLimiter.disabled(), MigrationMetrics.noop());
     }
 
     @Test
@@ -50,7 +64,7 @@ class ImageDownloaderTest {
         when(responseSpec.toEntity(byte[].class)).thenReturn(responseEntity);
 
         // Act
-        ResponseEntity<byte[]> actual = imageDownloader.getImage("https://example.com/page/image.jpg");
+        ResponseEntity<byte[]> actual = imageDownloader.getImage(PAGE_URL, "https://example.com/page/image.jpg");
 
         // Assert
         assertEquals(expectedBytes, actual.getBody(), "Should return the expected bytes");
@@ -65,7 +79,7 @@ class ImageDownloaderTest {
 
         // Act and Assert
         assertThrows(ImageFetchException.class, () ->
-                imageDownloader.getImage("https://example.com/page/image.jpg"), "Should throw HttpClientErrorException.NotFound");
+                imageDownloader.getImage(PAGE_URL, "https://example.com/page/image.jpg"), "Should throw HttpClientErrorException.NotFound");
 
     }
 
@@ -77,10 +91,74 @@ class ImageDownloaderTest {
 
         // Act and Assert
         assertThrows(ImageFetchException.class, () ->
-                imageDownloader.getImage("https://example.com/page/image.jpg"), "Should throw RestClientException");
+                imageDownloader.getImage(PAGE_URL, "https://example.com/page/image.jpg"), "Should throw RestClientException");
 
     }
 
-}
+    @Test
+    @DisplayName("Stream image to file")
+    void downloadToFile_validUrl_writesFileWithoutTempFiles(@TempDir Path dir) throws Exception {
+        // Arrange
+        byte[] image = new byte[3 * 1024 * 1024];
+        Arrays.fill(image, (byte) 7);
+        HttpServer server = startServer(image, true);
+        Path target = dir.resolve("image.png");
+
+        try {
+            ImageDownloader downloader = new ImageDownloader(RestClient.create(), DataSize.ofMegabytes(10), AdaptiveConcurrencyLimiter.disabled(), MigrationMetrics.noop());
+
+            // Act
+            long size = downloader.downloadToFile(PAGE_URL, imageUrl(server), target);
+
+            // Assert
+            assertEquals(image.length, size, "Should report the number of written bytes");
+            assertArrayEquals(image, Files.readAllBytes(target), "Should write the whole image");
+            try (var files = Files.list(dir)) {
+                assertEquals(1, files.count(), "Should not leave temporary files behind");
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("Abort streamed download exceeding the maximum size")
+    void downloadToFile_imageTooLarge_throwsAndLeavesNoFile(@TempDir Path dir) throws Exception {
+        // Arrange
+        HttpServer server = startServer(new byte[64 * 1024], false);
+        Path target = dir.resolve("image.png");
+
+        try {
+            ImageDownloader downloader = new ImageDownloader(RestClient.create(), DataSize.ofKilobytes(16), AdaptiveConcurrencyLimiter.disabled(), MigrationMetrics.noop());
+
+            // Act and Assert
+            assertThrows(ImageFetchException.class, () -> downloader.downloadToFile(PAGE_URL, imageUrl(server), target),
+                    "Should abort the download");
+            try (var files = Files.list(dir)) {
+                assertEquals(0, files.count(), "Should not leave the target or temporary files behind");
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
 
+    private static HttpServer startServer(byte[] image, boolean withContentLength) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/image.png", exchange -> {
+            // Length 0 means chunked transfer encoding, the size is then known only while streaming
+            exchange.sendResponseHeaders(200, withContentLength ? image.length : 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(image);
+            } catch (IOException e) {
+                // The client aborted the download
+            }
+        });
+        server.start();
+        return server;
+    }
 
+    private static String imageUrl(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/image.png";
+    }
+
+}
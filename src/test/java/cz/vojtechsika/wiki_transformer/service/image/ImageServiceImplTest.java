@@ -0,0 +1,204 @@
+package cz.vojtechsika.wiki_transformer.service.image;
+
+import cz.vojtechsika.wiki_transformer.dto.WikiConversionContext;
+import cz.vojtechsika.wiki_transformer.exception.ImageFetchException;
+import cz.vojtechsika.wiki_transformer.service.PathValidationService;
+import cz.vojtechsika.wiki_transformer.service.output.DirectoryOutputSink;
+import cz.vojtechsika.wiki_transformer.service.output.OutputSink;
+import cz.vojtechsika.wiki_transformer.util.FileNameUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ImageServiceImplTest {
+
+    @Mock
+    private ImageDownloader imageDownloader;
+
+    @Mock
+    private ImageDiscoveryService imageDiscoveryService;
+
+    @Mock
+    private PathValidationService pathValidationService;
+
+    @Mock
+    private OutputSink outputSink;
+
+    @TempDir
+    private Path outputDir;
+
+    @TempDir
+    private Path stagingDir;
+
+    private WikiConversionContext context;
+
+    @BeforeEach
+    void setUp() {
+        context = new WikiConversionContext("Page_1", "", outputDir, "https://redmine.example.com/wiki/Page", outputDir.toString(), List.of());
+    }
+
+    @Test
+    @DisplayName("Failed image does not stop the other downloads")
+    void downloadAllImages_oneImageFails_savesOthersAndReportsFailure() throws Exception {
+        // Arrange
+        List<String> urls = List.of(
+                "https://redmine.example.com/attachments/download/1/a.png",
+                "https://redmine.example.com/attachments/download/2/b.png",
+                "https://redmine.example.com/attachments/download/3/c.png");
+        when(imageDiscoveryService.discoverImageUrls(any())).thenReturn(urls);
+        when(imageDownloader.downloadToFile(any(), anyString(), any(Path.class))).thenAnswer(invocation -> {
+            if (invocation.getArgument(1, String.class).endsWith("b.png")) {
+                throw new ImageFetchException("Not found");
+            }
+            Files.write(invocation.getArgument(2, Path.class), new byte[]{1, 2, 3});
+            return 3L;
+        });
+        ImageServiceImpl imageService = new ImageServiceImpl(imageDownloader, imageDiscoveryService, pathValidationService, 4, 2, true, stagingDir.toString(), DirectoryOutputSink.direct());
+
+        // Act
+        IOException exception = assertThrows(IOException.class, () -> imageService.downloadAllImages(context));
+
+        // Assert
+        assertEquals(1, exception.getSuppressed().length, "Should collect the single failure");
+        assertTrue(Files.exists(outputDir.resolve("Page_1").resolve("a.png")), "Should save the first image");
+        assertTrue(Files.exists(outputDir.resolve("Page_1").resolve("c.png")), "Should save the last image");
+    }
+
+    @Test
+    @DisplayName("Archived images are streamed into staged files which are handed to the output sink")
+    void downloadAllImages_archivedOutput_writesStagedImagesToSink() throws Exception {
+        // Arrange
+        List<String> urls = List.of(
+                "https://redmine.example.com/attachments/download/2/b.png",
+                "https://redmine.example.com/attachments/download/1/a.png");
+        when(imageDiscoveryService.discoverImageUrls(any())).thenReturn(urls);
+        when(outputSink.writesFiles(any())).thenReturn(false);
+        when(imageDownloader.downloadToFile(any(), anyString(), any(Path.class))).thenAnswer(invocation -> {
+            Files.write(invocation.getArgument(2, Path.class), new byte[]{1, 2, 3});
+            return 3L;
+        });
+        List<Path> staged = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            Path file = invocation.getArgument(1, Path.class);
+            assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(file), "Should hand over the downloaded image");
+            staged.add(file);
+            return null;
+        }).when(outputSink).writeFile(any(Path.class), any(Path.class));
+        ImageServiceImpl imageService = new ImageServiceImpl(imageDownloader, imageDiscoveryService, pathValidationService, 4, 2, true, stagingDir.toString(),
+                outputSink);
+
+        // Act
+        List<String> images = imageService.downloadAllImages(context);
+
+        // Assert
+        assertEquals(List.of("a.png", "b.png"), images, "Should return the sorted image names");
+        verify(outputSink).writeFile(eq(outputDir.resolve("Page_1").resolve("a.png")), any(Path.class));
+        verify(outputSink).writeFile(eq(outputDir.resolve("Page_1").resolve("b.png")), any(Path.class));
+        verify(outputSink, never()).write(any(Path.class), any(byte[].class));
+        assertEquals(2, staged.size(), "Should stage every image");
+        assertTrue(staged.stream().allMatch(file -> file.getParent().equals(stagingDir)), "Should stage the images in the staging directory");
+        assertFalse(Files.exists(outputDir.resolve("Page_1")), "Should not create the image directory");
+    }
+
+    @Test
+    @DisplayName("Two images with the same file name are saved under different names")
+    void downloadAllImages_sameFileName_savesBothImages() throws Exception {
+        // Arrange
+        String first = "https://redmine.example.com/attachments/download/1/image.png";
+        String second = "https://redmine.example.com/attachments/download/2/Image.png";
+        when(imageDiscoveryService.discoverImageUrls(any())).thenReturn(List.of(first, second));
+        when(imageDownloader.downloadToFile(any(), anyString(), any(Path.class))).thenAnswer(invocation -> {
+            Files.writeString(invocation.getArgument(2, Path.class), invocation.getArgument(1, String.class));
+            return 1L;
+        });
+        ImageServiceImpl imageService = new ImageServiceImpl(imageDownloader, imageDiscoveryService, pathValidationService, 4, 2, false, stagingDir.toString(), DirectoryOutputSink.direct());
+
+        // Act
+        imageService.downloadAllImages(context);
+
+        // Assert
+        Path imageDir = outputDir.resolve("Page_1");
+        assertEquals(first, Files.readString(imageDir.resolve("image.png")), "Should keep the name of the first image");
+        assertEquals(second, Files.readString(imageDir.resolve(FileNameUtil.addDigestSuffix("Image.png", second))),
+                "Should save the second image under a suffixed name");
+    }
+
+    @Test
+    @DisplayName("Concurrent downloads from one host respect the per-host limit")
+    void downloadAllImages_manyImages_respectsPerHostLimit() throws Exception {
+        // Arrange
+        List<String> urls = IntStream.range(0, 20)
+                .mapToObj(i -> "https://redmine.example.com/attachments/download/" + i + "/image" + i + ".png")
+                .toList();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(imageDiscoveryService.discoverImageUrls(any())).thenReturn(urls);
+        when(imageDownloader.downloadToFile(any(), anyString(), any(Path.class))).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            Files.write(invocation.getArgument(2, Path.class), new byte[]{1});
+            return 1L;
+        });
+        ImageServiceImpl imageService = new ImageServiceImpl(imageDownloader, imageDiscoveryService, pathValidationService, 10, 3, false, stagingDir.toString(), DirectoryOutputSink.direct());
+
+        // Act
+        imageService.downloadAllImages(context);
+
+        // Assert
+        assertTrue(maxRunning.get() <= 3, "Should never exceed the per-host limit, was " + maxRunning.get());
+        assertTrue(maxRunning.get() > 1, "Should download images in parallel");
+        try (var files = Files.list(outputDir.resolve("Page_1"))) {
+            assertEquals(20, files.count(), "Should save all images");
+        }
+    }
+
+    @Test
+    @DisplayName("Image shared by pages and runs is downloaded once")
+    void downloadAllImages_sameImageOnTwoPagesAndRuns_downloadsOnceAndLinks() throws Exception {
+        // Arrange
+        List<String> urls = List.of("https://redmine.example.com/attachments/download/7/logo.png");
+        when(imageDiscoveryService.discoverImageUrls(any())).thenReturn(urls);
+        when(imageDownloader.downloadToFile(any(), anyString(), any(Path.class))).thenAnswer(invocation -> {
+            Files.write(invocation.getArgument(2, Path.class), new byte[]{4, 2});
+            return 2L;
+        });
+        WikiConversionContext secondPage = new WikiConversionContext("Page_2", "", outputDir, "https://redmine.example.com/wiki/Other", outputDir.toString(), List.of());
+        WikiConversionContext thirdPage = new WikiConversionContext("Page_3", "", outputDir, "https://redmine.example.com/wiki/Third", outputDir.toString(), List.of());
+
+        // Act
+        new ImageServiceImpl(imageDownloader, imageDiscoveryService, pathValidationService, 4, 2, true, stagingDir.toString(), DirectoryOutputSink.direct()).downloadAllImages(context);
+        new ImageServiceImpl(imageDownloader, imageDiscoveryService, pathValidationService, 4, 2, true, stagingDir.toString(), DirectoryOutputSink.direct()).downloadAllImages(secondPage);
+        new ImageServiceImpl(imageDownloader, imageDiscoveryService, pathValidationService, 4, 2, true, stagingDir.toString(), DirectoryOutputSink.direct()).downloadAllImages(thirdPage);
+
+        // Assert
+        verify(imageDownloader, times(1)).downloadToFile(any(), anyString(), any(Path.class));
+        for (String page : List.of("Page_1", "Page_2", "Page_3")) {
+            assertArrayEquals(new byte[]{4, 2}, Files.readAllBytes(outputDir.resolve(page).resolve("logo.png")),
+                    "Should provide the image to " + page);
+        }
+    }
+}
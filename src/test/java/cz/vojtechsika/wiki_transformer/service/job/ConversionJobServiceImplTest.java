@@ -0,0 +1,163 @@
+package cz.vojtechsika.wiki_transformer.service.job;
+
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationOptions;
+import cz.vojtechsika.wiki_transformer.dto.BatchMigrationSummary;
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobDTO;
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobRequestDTO;
+import cz.vojtechsika.wiki_transformer.dto.ConversionJobStatus;
+import cz.vojtechsika.wiki_transformer.exception.RedmineFetchException;
+import cz.vojtechsika.wiki_transformer.service.PathValidationService;
+import cz.vojtechsika.wiki_transformer.service.batch.BatchMigrationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConversionJobServiceImplTest {
+
+    @Mock
+    private BatchMigrationService batchMigrationService;
+
+    @Mock
+    private PathValidationService pathValidationService;
+
+    @TempDir
+    private Path outputDir;
+
+    private ConversionJobServiceImpl conversionJobService;
+
+    @AfterEach
+    void tearDown() {
+        if (conversionJobService != null) {
+            conversionJobService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Run a queued page job and record its result")
+    void submit_pageJob_completesWithSummary() throws Exception {
+        // Arrange
+        conversionJobService = createService(1, 10);
+        BatchMigrationSummary summary = new BatchMigrationSummary(2);
+        summary.pageConverted();
+        summary.pageFailed("https://example.com/projects/demo/wiki/Broken", new RedmineFetchException("Wiki page not found"));
+        when(batchMigrationService.migratePages(eq(List.of("https://example.com/projects/demo/wiki/Wiki",
+                "https://example.com/projects/demo/wiki/Broken")), any(BatchMigrationOptions.class))).thenReturn(summary);
+
+        // Act
+        ConversionJobDTO job = conversionJobService.submit(request(List.of("https://example.com/projects/demo/wiki/Wiki",
+                "https://example.com/projects/demo/wiki/Broken")));
+        waitUntilFinished(job);
+
+        // Assert
+        assertEquals(ConversionJobStatus.COMPLETED, job.getStatus(), "Should complete the job");
+        assertEquals(1, job.getConvertedPages(), "Should record the converted page");
+        assertEquals(1, job.getFailedPages().size(), "Should record the failed page");
+        assertEquals(outputDir.toAbsolutePath().toString(), job.getOutputDir(), "Should report the output directory");
+        assertSame(job, conversionJobService.getJob(job.getId()).orElseThrow(), "Should find the job by its identifier");
+    }
+
+    @Test
+    @DisplayName("Reject a job which mixes a page and a project")
+    void submit_pageAndProject_throwsIllegalArgument() {
+        // Arrange
+        conversionJobService = createService(1, 10);
+        ConversionJobRequestDTO request = request(List.of("https://example.com/projects/demo/wiki/Wiki"));
+        request.setProject("demo");
+        request.setWikiRoot("https://example.com");
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> conversionJobService.submit(request), "Should refuse an ambiguous job");
+        assertTrue(conversionJobService.getJobs().isEmpty(), "Should not keep a refused job");
+    }
+
+    @Test
+    @DisplayName("Reject a job when the queue is full")
+    void submit_queueFull_throwsRejectedExecution() throws Exception {
+        // Arrange
+        conversionJobService = createService(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(batchMigrationService.migratePages(anyList(), any(BatchMigrationOptions.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new BatchMigrationSummary(1);
+        });
+        conversionJobService.submit(request(List.of("https://example.com/projects/demo/wiki/A"), outputDir.resolve("a")));
+        assertTrue(started.await(5, TimeUnit.SECONDS), "Should start the first job");
+        conversionJobService.submit(request(List.of("https://example.com/projects/demo/wiki/B"), outputDir.resolve("b")));
+
+        // Act & Assert
+        assertThrows(RejectedExecutionException.class,
+                () -> conversionJobService.submit(request(List.of("https://example.com/projects/demo/wiki/C"), outputDir.resolve("c"))),
+                "Should refuse a job over the queue capacity");
+        assertEquals(ConversionJobStatus.QUEUED, conversionJobService.getJob(2).orElseThrow().getStatus(), "Should queue the second job");
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("Reject a job writing to the output directory of a running job until that job finishes")
+    void submit_outputDirOfRunningJob_throwsIllegalState() throws Exception {
+        // Arrange
+        conversionJobService = createService(2, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(batchMigrationService.migratePages(anyList(), any(BatchMigrationOptions.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new BatchMigrationSummary(1);
+        });
+        ConversionJobDTO running = conversionJobService.submit(request(List.of("https://example.com/projects/demo/wiki/A")));
+        assertTrue(started.await(5, TimeUnit.SECONDS), "Should start the first job");
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class,
+                () -> conversionJobService.submit(request(List.of("https://example.com/projects/demo/wiki/B"), outputDir.resolve("sub/..").resolve("."))),
+                "Should refuse a second job writing to the same normalized output directory");
+        assertEquals(1, conversionJobService.getJobs().size(), "Should not keep the refused job");
+        release.countDown();
+        waitUntilFinished(running);
+        assertEquals(ConversionJobStatus.COMPLETED, running.getStatus(), "Should complete the running job");
+        assertNotNull(conversionJobService.submit(request(List.of("https://example.com/projects/demo/wiki/B"))),
+                "Should accept a job once the output directory is free");
+    }
+
+    private ConversionJobServiceImpl createService(int maxParallel, int queueCapacity) {
+        return new ConversionJobServiceImpl(batchMigrationService, pathValidationService, outputDir.toString(), maxParallel, queueCapacity, 100);
+    }
+
+    private ConversionJobRequestDTO request(List<String> urls) {
+        return request(urls, outputDir);
+    }
+
+    private ConversionJobRequestDTO request(List<String> urls, Path jobOutputDir) {
+        ConversionJobRequestDTO request = new ConversionJobRequestDTO();
+        request.setUrls(urls);
+        request.setOutputDir(jobOutputDir.toString());
+        return request;
+    }
+
+    private void waitUntilFinished(ConversionJobDTO job) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (job.getFinishedAt() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
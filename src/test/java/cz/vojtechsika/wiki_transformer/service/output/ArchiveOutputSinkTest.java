@@ -0,0 +1,108 @@
+package cz.vojtechsika.wiki_transformer.service.output;
+
+import cz.vojtechsika.wiki_transformer.dto.OutputFormat;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveOutputSinkTest {
+
+    @TempDir
+    private Path outputDir;
+
+    @Test
+    @DisplayName("ZIP archive contains every file under its relative path and staged images are stored uncompressed")
+    void finish_zipArchive_writesEntriesRelativeToRoot() throws Exception {
+        // Arrange
+        Path target = outputDir.resolve("demo.zip");
+        ArchiveOutputSink archive = new ArchiveOutputSink(target, outputDir, OutputFormat.ZIP, 2, 8, MigrationMetrics.noop());
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            archive.write(outputDir.resolve("Page_" + i + ".mediawiki"), bytes("page " + i));
+        }
+        Path staged = Files.write(outputDir.resolve(".image.png.part"), new byte[]{1, 2, 3});
+        archive.writeFile(outputDir.resolve("Page_1").resolve("image.png"), staged);
+        archive.finish();
+        archive.close();
+
+        // Assert
+        assertEquals(11, archive.getEntryCount(), "Should count every entry");
+        try (ZipFile zip = new ZipFile(target.toFile())) {
+            assertEquals("page 7", new String(zip.getInputStream(zip.getEntry("Page_7.mediawiki")).readAllBytes(), StandardCharsets.UTF_8),
+                    "Should write the content of every page");
+            ZipEntry image = zip.getEntry("Page_1/image.png");
+            assertNotNull(image, "Should name the entry by the path relative to the output directory");
+            assertEquals(ZipEntry.STORED, image.getMethod(), "Should not deflate an image again");
+            assertArrayEquals(new byte[]{1, 2, 3}, zip.getInputStream(image).readAllBytes(), "Should copy the staged image");
+        }
+        try (var files = Files.list(outputDir)) {
+            assertEquals(1, files.count(), "Should write nothing but the archive to the disk and delete the staged image");
+        }
+    }
+
+    @Test
+    @DisplayName("TAR archive keeps entry names longer than the 100 characters of a plain header")
+    void finish_tarGzArchive_keepsLongNames() throws Exception {
+        // Arrange
+        Path target = outputDir.resolve("demo.tar.gz");
+        String longName = "Very_long_page_title_".repeat(8) + ".mediawiki";
+
+        // Act
+        try (ArchiveOutputSink archive = new ArchiveOutputSink(target, outputDir, OutputFormat.TAR_GZ, 0, 0, MigrationMetrics.noop())) {
+            archive.write(outputDir.resolve(longName), bytes("long"));
+            archive.write(outputDir.resolve("Page").resolve("a.png"), new byte[]{9});
+            archive.finish();
+        }
+
+        // Assert
+        Map<String, Long> entries = new LinkedHashMap<>();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new GZIPInputStream(Files.newInputStream(target)))) {
+            for (TarArchiveEntry entry = tar.getNextEntry(); entry != null; entry = tar.getNextEntry()) {
+                entries.put(entry.getName(), entry.getSize());
+            }
+        }
+        assertEquals(Map.of(longName, 4L, "Page/a.png", 1L), entries, "Should keep the full names and sizes");
+    }
+
+    @Test
+    @DisplayName("Archive closed without finishing is discarded and a duplicate entry fails alone")
+    void close_withoutFinish_discardsArchive() throws Exception {
+        // Arrange
+        Path target = outputDir.resolve("demo.zip");
+        ArchiveOutputSink archive = new ArchiveOutputSink(target, outputDir, OutputFormat.ZIP, 4, 0, MigrationMetrics.noop());
+
+        // Act
+        archive.write(outputDir.resolve("page.mediawiki"), bytes("first"));
+        archive.write(outputDir.resolve("page.mediawiki"), bytes("second"));
+        IOException exception = assertThrows(IOException.class, () -> archive.flush(outputDir));
+        archive.close();
+
+        // Assert
+        assertEquals(1, exception.getSuppressed().length, "Should fail only the duplicate entry");
+        assertThrows(IOException.class, () -> archive.write(outputDir.resolve("late.mediawiki"), bytes("late")),
+                "Should refuse files after the close");
+        try (var files = Files.list(outputDir)) {
+            assertEquals(0, files.count(), "Should leave neither the archive nor its temporary file");
+        }
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+package cz.vojtechsika.wiki_transformer.service.output;
+
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryOutputSinkTest {
+
+    @TempDir
+    private Path outputDir;
+
+    private DirectoryOutputSink outputSink;
+
+    @AfterEach
+    void tearDown() {
+        if (outputSink != null) {
+            outputSink.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Queued files are in place after a flush and no temporary files are left")
+    void flush_queuedFiles_writesAllFilesAtomically() throws Exception {
+        // Arrange
+        outputSink = new DirectoryOutputSink(4, 3, true, MigrationMetrics.noop());
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            outputSink.write(outputDir.resolve("Page_" + i).resolve("Page_" + i + ".mediawiki"), bytes("page " + i));
+        }
+        outputSink.flush(outputDir);
+
+        // Assert
+        for (int i = 0; i < 20; i++) {
+            assertEquals("page " + i, Files.readString(outputDir.resolve("Page_" + i).resolve("Page_" + i + ".mediawiki")),
+                    "Should write the content of every file");
+        }
+        try (Stream<Path> files = Files.walk(outputDir)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")), "Should not leave temporary files behind");
+        }
+    }
+
+    @Test
+    @DisplayName("Failed file is reported by the flush and does not stop the other files")
+    void flush_oneFileFails_reportsFailureAndWritesOthers() throws Exception {
+        // Arrange
+        outputSink = new DirectoryOutputSink(8, 8, false, MigrationMetrics.noop());
+        Files.writeString(outputDir.resolve("blocked"), "not a directory");
+
+        // Act
+        outputSink.write(outputDir.resolve("a.mediawiki"), bytes("a"));
+        outputSink.write(outputDir.resolve("blocked").resolve("b.mediawiki"), bytes("b"));
+        outputSink.write(outputDir.resolve("c.mediawiki"), bytes("c"));
+        IOException exception = assertThrows(IOException.class, () -> outputSink.flush(outputDir));
+
+        // Assert
+        assertEquals(1, exception.getSuppressed().length, "Should report the single failed file");
+        assertEquals("a", Files.readString(outputDir.resolve("a.mediawiki")), "Should write the file before the failure");
+        assertEquals("c", Files.readString(outputDir.resolve("c.mediawiki")), "Should write the file after the failure");
+        assertDoesNotThrow(() -> outputSink.flush(outputDir), "Should report a failure only once");
+    }
+
+    @Test
+    @DisplayName("Direct sink writes on the calling thread and throws at once")
+    void write_directSink_writesSynchronously() throws Exception {
+        // Arrange
+        outputSink = DirectoryOutputSink.direct();
+        Files.writeString(outputDir.resolve("blocked"), "not a directory");
+
+        // Act
+        outputSink.write(outputDir.resolve("page.mediawiki"), bytes("page"));
+
+        // Assert
+        assertEquals("page", Files.readString(outputDir.resolve("page.mediawiki")), "Should write before returning");
+        assertThrows(IOException.class, () -> outputSink.write(outputDir.resolve("blocked").resolve("page.mediawiki"), bytes("page")),
+                "Should fail the write itself");
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package cz.vojtechsika.wiki_transformer.service.output;
+
+import cz.vojtechsika.wiki_transformer.dto.AuthorDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaWikiDumpWriterTest {
+
+    @TempDir
+    private Path outputDir;
+
+    @Test
+    @DisplayName("Gzipped dump contains every page with its revision metadata")
+    void writePage_gzippedDump_writesImportablePages() throws Exception {
+        // Arrange
+        Path target = outputDir.resolve("demo.xml.gz");
+        AuthorDTO author = new AuthorDTO();
+        author.setName("Jan Novák");
+
+        // Act
+        try (MediaWikiDumpWriter dump = new MediaWikiDumpWriter(target, true)) {
+            dump.writePage("Install_Guide", "== Install ==\n<b>bold</b> & more", LocalDateTime.of(2025, 3, 1, 8, 30, 5), author);
+            dump.writePage("FAQ", "text", null, null);
+        }
+
+        // Assert
+        Document document;
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(target))) {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            document = factory.newDocumentBuilder().parse(input);
+        }
+        Element root = document.getDocumentElement();
+        assertEquals(MediaWikiDumpWriter.EXPORT_NAMESPACE, root.getNamespaceURI(), "Should use the export namespace");
+        assertEquals(2, root.getElementsByTagName("page").getLength(), "Should write both pages");
+        assertEquals("Install_Guide", text(root, "title", 0), "Should write the title");
+        assertEquals("2025-03-01T08:30:05Z", text(root, "timestamp", 0), "Should write the update time in UTC");
+        assertEquals("Jan Novák", text(root, "username", 0), "Should write the author");
+        assertEquals("== Install ==\n<b>bold</b> & more", text(root, "text", 0), "Should escape the markup");
+        assertEquals("Redmine", text(root, "username", 1), "Should fall back to a contributor for an unknown author");
+        assertFalse(Files.exists(outputDir.resolve(".demo.xml.gz.tmp")), "Should move the temporary file into place");
+    }
+
+    @Test
+    @DisplayName("Characters not allowed in XML are replaced")
+    void xmlSafe_controlCharacters_replacesThem() {
+        // Arrange
+        String valid = "Tab\tnew line\n emoji 😀";
+
+        // Act & Assert
+        assertSame(valid, MediaWikiDumpWriter.xmlSafe(valid), "Should not copy a valid text");
+        assertEquals("a\uFFFDb\uFFFD", MediaWikiDumpWriter.xmlSafe("a\u0001b\uD83D"), "Should replace invalid characters");
+    }
+
+    private static String text(Element root, String tagName, int index) {
+        return root.getElementsByTagName(tagName).item(index).getTextContent();
+    }
+}
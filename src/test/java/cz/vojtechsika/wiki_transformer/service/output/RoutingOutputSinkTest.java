@@ -0,0 +1,70 @@
+package cz.vojtechsika.wiki_transformer.service.output;
+
+import cz.vojtechsika.wiki_transformer.dto.OutputFormat;
+import cz.vojtechsika.wiki_transformer.metrics.MigrationMetrics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingOutputSinkTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    @DisplayName("Files under a directory with an open archive go into the archive, other files to the disk")
+    void write_archiveOpen_routesByOutputDirectory() throws Exception {
+        // Arrange
+        Path archived = tempDir.resolve("archived");
+        Path plain = tempDir.resolve("plain");
+        RoutingOutputSink outputSink = new RoutingOutputSink(DirectoryOutputSink.direct(), 256, DataSize.ofMegabytes(64), MigrationMetrics.noop());
+        ArchiveOutputSink archive = outputSink.openArchive(tempDir.resolve("run.zip"), archived, OutputFormat.ZIP);
+
+        // Act
+        try {
+            outputSink.write(archived.resolve("Page").resolve("image.png"), bytes("image"));
+            outputSink.write(plain.resolve("page.mediawiki"), bytes("page"));
+            outputSink.flush(archived);
+            archive.finish();
+        } finally {
+            outputSink.closeArchive(archived, archive);
+        }
+
+        // Assert
+        assertFalse(Files.exists(archived), "Should not write the archived files to the disk");
+        assertEquals("page", Files.readString(plain.resolve("page.mediawiki")), "Should write other files to the disk");
+        try (ZipFile zip = new ZipFile(tempDir.resolve("run.zip").toFile())) {
+            assertNotNull(zip.getEntry("Page/image.png"), "Should archive the file under the output directory");
+        }
+        assertTrue(outputSink.writesFiles(archived.resolve("page.mediawiki")), "Should write to the disk once the archive is closed");
+    }
+
+    @Test
+    @DisplayName("Second archive of the same output directory is refused")
+    void openArchive_directoryAlreadyArchived_throwsIllegalState() throws Exception {
+        // Arrange
+        RoutingOutputSink outputSink = new RoutingOutputSink(DirectoryOutputSink.direct(), 256, DataSize.ofMegabytes(64), MigrationMetrics.noop());
+        ArchiveOutputSink archive = outputSink.openArchive(tempDir.resolve("first.zip"), tempDir, OutputFormat.ZIP);
+
+        // Act & Assert
+        try {
+            assertThrows(IllegalStateException.class, () -> outputSink.openArchive(tempDir.resolve("second.tar.gz"), tempDir, OutputFormat.TAR_GZ),
+                    "Should not interleave two runs in one output directory");
+            assertFalse(Files.exists(tempDir.resolve(".second.tar.gz.tmp")), "Should discard the refused archive");
+        } finally {
+            outputSink.closeArchive(tempDir, archive);
+        }
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
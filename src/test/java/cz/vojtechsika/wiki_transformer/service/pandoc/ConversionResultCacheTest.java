@@ -0,0 +1,82 @@
+package cz.vojtechsika.wiki_transformer.service.pandoc;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversionResultCacheTest {
+
+    @TempDir
+    private Path cacheDir;
+
+    @Test
+    @DisplayName("Stored output is found again by a new cache instance only for the same converter")
+    void get_storedByEarlierRun_returnsOutputForSameIdentity() throws IOException {
+        // Arrange
+        ConversionResultCache firstRun = new ConversionResultCache(true, cacheDir, DataSize.ofMegabytes(1));
+        firstRun.put(firstRun.keyOf("pandoc 3.1", "h1. Title"), bytes("= Title =\n"));
+        ConversionResultCache secondRun = new ConversionResultCache(true, cacheDir, DataSize.ofMegabytes(1));
+
+        // Act
+        byte[] sameConverter = secondRun.get(secondRun.keyOf("pandoc 3.1", "h1. Title"));
+        byte[] otherVersion = secondRun.get(secondRun.keyOf("pandoc 3.2", "h1. Title"));
+
+        // Assert
+        assertEquals("= Title =\n", new String(sameConverter, StandardCharsets.UTF_8), "Should serve the output of the earlier run");
+        assertNull(otherVersion, "Should not serve the output of another Pandoc version");
+    }
+
+    @Test
+    @DisplayName("Damaged entry is deleted and reported as a miss")
+    void get_damagedEntry_returnsNullAndDeletesEntry() throws IOException {
+        // Arrange
+        ConversionResultCache cache = new ConversionResultCache(true, cacheDir, DataSize.ofMegabytes(1));
+        String key = cache.keyOf("pandoc 3.1", "h1. Title");
+        cache.put(key, bytes("= Title =\n"));
+        Path entry = cacheDir.resolve(key + ".entry");
+        byte[] stored = Files.readAllBytes(entry);
+        stored[stored.length - 2] = 'X';
+        Files.write(entry, stored);
+
+        // Act
+        byte[] output = cache.get(key);
+
+        // Assert
+        assertNull(output, "Should not serve an output which does not match its checksum");
+        assertFalse(Files.exists(entry), "Should delete the damaged entry");
+    }
+
+    @Test
+    @DisplayName("Least recently used entries are evicted when the cache exceeds its size")
+    void put_cacheFull_evictsLeastRecentlyUsed() throws IOException {
+        // Arrange
+        ConversionResultCache cache = new ConversionResultCache(true, cacheDir, DataSize.ofBytes(300));
+        String oldKey = cache.keyOf("pandoc", "old");
+        String usedKey = cache.keyOf("pandoc", "used");
+        cache.put(oldKey, new byte[100]);
+        cache.put(usedKey, new byte[100]);
+        Files.setLastModifiedTime(cacheDir.resolve(oldKey + ".entry"), FileTime.fromMillis(1_000));
+        Files.setLastModifiedTime(cacheDir.resolve(usedKey + ".entry"), FileTime.fromMillis(2_000));
+        cache.get(usedKey);
+
+        // Act
+        cache.put(cache.keyOf("pandoc", "new"), new byte[100]);
+
+        // Assert
+        assertNull(cache.get(oldKey), "Should evict the least recently used entry");
+        assertNotNull(cache.get(usedKey), "Should keep the recently used entry");
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
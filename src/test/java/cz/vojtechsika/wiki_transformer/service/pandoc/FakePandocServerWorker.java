@@ -0,0 +1,189 @@
+package cz.vojtechsika.wiki_transformer.service.pandoc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker whose {@code pandoc server} is replaced by an in-process HTTP stub and a fake {@link Process}.
+ * <p>
+ * The stub answers {@code /version} and converts by upper-casing the text, the tests can make it
+ * crash, drop connections or fail conversions with an HTTP error like the real server does.
+ * </p>
+ */
+class FakePandocServerWorker extends PandocServerWorker {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Number of started processes, restarts included
+     */
+    final AtomicInteger starts = new AtomicInteger();
+
+    /**
+     * Conversions running on this worker right now
+     */
+    final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Highest number of conversions which ran on this worker at the same time
+     */
+    final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * Status of the {@code /version} answers
+     */
+    volatile int versionStatus = 200;
+
+    /**
+     * Status of the conversion answers, the body is a plain text message when not 200
+     */
+    volatile int convertStatus = 200;
+
+    /**
+     * How long a conversion takes
+     */
+    volatile long convertMillis;
+
+    private HttpServer server;
+
+    private FakeProcess process;
+
+
+    FakePandocServerWorker() {
+        super("pandoc", 0, 5);
+    }
+
+
+    @Override
+    Process startProcess(int port) throws IOException {
+        starts.incrementAndGet();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/version", exchange -> respond(exchange, versionStatus, "text/plain", "3.1.11"));
+        server.createContext("/", this::handleConvert);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        process = new FakeProcess(server);
+        return process;
+    }
+
+    /**
+     * Stops the stub and marks the process as terminated, as if pandoc server crashed.
+     */
+    void crash() {
+        process.terminate();
+    }
+
+    /**
+     * Stops the stub while the process still looks alive, so the next request is refused.
+     */
+    void dropConnections() {
+        server.stop(0);
+    }
+
+    private void handleConvert(HttpExchange exchange) throws IOException {
+        int running = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(running, Math::max);
+        try {
+            JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+            if (convertMillis > 0) {
+                Thread.sleep(convertMillis);
+            }
+            if (convertStatus != 200) {
+                respond(exchange, convertStatus, "text/plain", "Unknown reader: " + request.path("from").asText() + "\n");
+                return;
+            }
+            String output = request.path("text").asText().toUpperCase();
+            respond(exchange, 200, "application/json", MAPPER.writeValueAsString(Map.of("output", output)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "text/plain", "interrupted");
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Process standing in for pandoc server, alive until destroyed or crashed.
+     */
+    private static final class FakeProcess extends Process {
+
+        private final HttpServer server;
+
+        private volatile boolean alive = true;
+
+        private FakeProcess(HttpServer theServer) {
+            this.server = theServer;
+        }
+
+        private void terminate() {
+            alive = false;
+            server.stop(0);
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() {
+            return exitValue();
+        }
+
+        @Override
+        public boolean waitFor(long timeout, TimeUnit unit) {
+            return !alive;
+        }
+
+        @Override
+        public int exitValue() {
+            if (alive) {
+                throw new IllegalThreadStateException("Process is running");
+            }
+            return 1;
+        }
+
+        @Override
+        public void destroy() {
+            terminate();
+        }
+
+        @Override
+        public boolean isAlive() {
+            return alive;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package cz.vojtechsika.wiki_transformer.service.pandoc;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PandocBatcherTest {
+
+    @Test
+    @DisplayName("Concurrent pages are converted in one run and each page gets its own output")
+    void convert_concurrentPages_convertsInOneRun() throws Exception {
+        // Arrange
+        AtomicInteger runs = new AtomicInteger();
+        List<String> runPageUrls = new ArrayList<>();
+        PandocBatcher batcher = new PandocBatcher((content, pageUrls) -> {
+            runs.incrementAndGet();
+            runPageUrls.addAll(pageUrls);
+            return (content + "\n").getBytes(StandardCharsets.UTF_8);
+        }, 8, 64 * 1024, 2_000);
+
+        // Act
+        List<String> outputs = convertConcurrently(batcher, 8, i -> "*Page " + i + "*\n\nText of page " + i);
+
+        // Assert
+        assertEquals(1, runs.get(), "Should convert the full batch in a single run");
+        for (int i = 0; i < 8; i++) {
+            assertEquals("*Page " + i + "*\n\nText of page " + i + "\n", outputs.get(i), "Should split the output back into the pages");
+        }
+        assertEquals(8, runPageUrls.size(), "Should hand the URLs of all pages of the batch to the run");
+        assertTrue(runPageUrls.contains("https://example.com/wiki/Page_3"), "Should name the pages of the batch");
+    }
+
+    @Test
+    @DisplayName("Output which does not split into the pages falls back to one run per page")
+    void convert_sentinelLost_convertsPagesAlone() throws Exception {
+        // Arrange
+        AtomicInteger runs = new AtomicInteger();
+        PandocBatcher batcher = new PandocBatcher((content, pageUrls) -> {
+            runs.incrementAndGet();
+            // A converter swallowing the sentinel paragraphs
+            return content.replaceAll("(?m)^WikiTransformerPageBreak\\w+$", "").getBytes(StandardCharsets.UTF_8);
+        }, 4, 64 * 1024, 2_000);
+
+        // Act
+        List<String> outputs = convertConcurrently(batcher, 4, i -> "page " + i);
+
+        // Assert
+        assertEquals(5, runs.get(), "Should run the batch once and every page alone afterwards");
+        assertEquals(List.of("page 0", "page 1", "page 2", "page 3"), outputs, "Should return the output of each page");
+    }
+
+    @Test
+    @DisplayName("A page failing the batch run fails alone")
+    void convert_brokenPageInBatch_failsOnlyThatPage() throws Exception {
+        // Arrange
+        PandocBatcher batcher = new PandocBatcher((content, pageUrls) -> {
+            if (content.contains("broken")) {
+                throw new IOException("Pandoc failed with exit code 64");
+            }
+            return content.getBytes(StandardCharsets.UTF_8);
+        }, 3, 64 * 1024, 2_000);
+
+        // Act
+        List<String> outputs = convertConcurrently(batcher, 3, i -> i == 1 ? "broken" : "page " + i);
+
+        // Assert
+        assertEquals(List.of("page 0", "failed", "page 2"), outputs, "Should convert the other pages of the batch");
+    }
+
+    @Test
+    @DisplayName("Pages with footnotes or larger than the batch size are converted alone")
+    void convert_nonLocalOrLargePage_convertsAlone() throws IOException {
+        // Arrange
+        List<String> inputs = new ArrayList<>();
+        PandocBatcher batcher = new PandocBatcher((content, pageUrls) -> {
+            inputs.add(content);
+            return content.getBytes(StandardCharsets.UTF_8);
+        }, 8, 100, 2_000);
+
+        // Act
+        String footnote = new String(batcher.convert("Text[1]\n\nfn1. Note", null), StandardCharsets.UTF_8);
+        String large = new String(batcher.convert("x".repeat(200), null), StandardCharsets.UTF_8);
+
+        // Assert
+        assertEquals("Text[1]\n\nfn1. Note", footnote, "Should convert the page with a footnote as it is");
+        assertEquals("x".repeat(200), large, "Should convert the large page as it is");
+        assertEquals(List.of("Text[1]\n\nfn1. Note", "x".repeat(200)), inputs, "Should not wait for other pages");
+    }
+
+    @Test
+    @DisplayName("Pages with headings are converted alone, their anchors do not depend on the other pages of a batch")
+    void convert_pagesWithHeadings_convertsAlone() throws Exception {
+        // Arrange
+        List<String> inputs = new CopyOnWriteArrayList<>();
+        PandocBatcher batcher = new PandocBatcher((content, pageUrls) -> {
+            inputs.add(content);
+            return content.getBytes(StandardCharsets.UTF_8);
+        }, 4, 64 * 1024, 2_000);
+
+        // Act
+        List<String> outputs = convertConcurrently(batcher, 4, i -> switch (i) {
+            case 0 -> "h2. Installation Guide\n\nText";
+            case 1 -> "h2(#setup){color:red}. Setup";
+            case 2 -> "<h3>Raw heading</h3>";
+            default -> "h2not a heading";
+        });
+
+        // Assert
+        assertEquals(4, inputs.size(), "Should convert every page alone");
+        assertEquals("h2. Installation Guide\n\nText", outputs.get(0), "Should return the output of the page converted alone");
+        assertEquals("h2not a heading", outputs.get(3), "Should convert the page without a heading alone after the linger time");
+    }
+
+    @Test
+    @DisplayName("Batched pages repeating a heading convert exactly like pages converted alone by Pandoc")
+    void convert_repeatedHeadingWithPandoc_matchesSinglePageOutput() throws Exception {
+        // Arrange
+        assumeTrue(isPandocAvailable(), "Pandoc is not installed, Pandoc batch test skipped");
+        PandocBatcher batcher = new PandocBatcher((content, pageUrls) -> runPandoc(content), 2, 64 * 1024, 2_000);
+        List<String> pages = List.of("h2. Installation Guide\n\nFirst page.", "h2. Installation Guide\n\nSecond page.");
+
+        // Act
+        List<String> batched = convertConcurrently(batcher, 2, pages::get);
+
+        // Assert
+        for (int i = 0; i < pages.size(); i++) {
+            assertEquals(new String(runPandoc(pages.get(i)), StandardCharsets.UTF_8), batched.get(i),
+                    "Should not depend on the other pages of the batch");
+        }
+    }
+
+    private static boolean isPandocAvailable() {
+        try {
+            Process process = new ProcessBuilder("pandoc", "--version").redirectErrorStream(true).start();
+            process.getInputStream().readAllBytes();
+            return process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static byte[] runPandoc(String textile) throws IOException {
+        Process process = new ProcessBuilder("pandoc", "-f", "textile", "-t", "mediawiki").redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(textile.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] output = process.getInputStream().readAllBytes();
+        try {
+            if (!process.waitFor(30, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                process.destroyForcibly();
+                throw new IOException("Pandoc failed to convert the page");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for Pandoc", e);
+        }
+        return output;
+    }
+
+    private static List<String> convertConcurrently(PandocBatcher batcher, int pages, IntFunction<String> content)
+            throws Exception {
+        try (ExecutorService executor = Executors.newFixedThreadPool(pages)) {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < pages; i++) {
+                String page = content.apply(i);
+                String pageUrl = "https://example.com/wiki/Page_" + i;
+                futures.add(executor.submit(() -> {
+                    try {
+                        return new String(batcher.convert(page, pageUrl), StandardCharsets.UTF_8);
+                    } catch (IOException e) {
+                        return "failed";
+                    }
+                }));
+            }
+            List<String> outputs = new ArrayList<>();
+            for (Future<String> future : futures) {
+                outputs.add(future.get());
+            }
+            return outputs;
+        }
+    }
+}
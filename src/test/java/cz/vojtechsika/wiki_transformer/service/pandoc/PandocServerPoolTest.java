@@ -0,0 +1,120 @@
+package cz.vojtechsika.wiki_transformer.service.pandoc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of {@link PandocServerPool}, pandoc server is replaced by {@link FakePandocServerWorker}.
+ */
+class PandocServerPoolTest {
+
+    private final List<FakePandocServerWorker> workers = new ArrayList<>();
+
+    private PandocServerPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent conversions never share a worker and all workers return to the pool")
+    void convert_concurrentConversions_usesEachWorkerExclusively() throws Exception {
+        // Arrange
+        pool = pool(2);
+        workers.forEach(worker -> worker.convertMillis = 20);
+
+        // Act
+        List<String> outputs = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<String>> conversions = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                String content = "page " + i;
+                conversions.add(executor.submit(() -> pool.convert(content)));
+            }
+            for (Future<String> conversion : conversions) {
+                outputs.add(conversion.get());
+            }
+        }
+
+        // Assert
+        for (int i = 0; i < 16; i++) {
+            assertEquals("PAGE " + i, outputs.get(i), "Should return the output of its own page");
+        }
+        for (FakePandocServerWorker worker : workers) {
+            assertEquals(1, worker.maxInFlight.get(), "Should run one conversion on a worker at a time");
+        }
+        assertTrue(workers.stream().allMatch(worker -> worker.maxInFlight.get() > 0), "Should use every worker");
+        assertEquals("LAST", pool.convert("last"), "Should return the workers to the pool");
+    }
+
+    @Test
+    @DisplayName("Worker crashed since the last conversion is restarted before it is used")
+    void convert_crashedWorker_restartsBeforeConversion() throws IOException {
+        // Arrange
+        pool = pool(1);
+        FakePandocServerWorker worker = workers.getFirst();
+        worker.crash();
+
+        // Act
+        String output = pool.convert("text");
+
+        // Assert
+        assertEquals("TEXT", output, "Should convert on the restarted worker");
+        assertEquals(2, worker.starts.get(), "Should restart the crashed worker");
+    }
+
+    @Test
+    @DisplayName("Worker refusing the connection during a conversion is restarted and the conversion retried")
+    void convert_connectionRefused_restartsAndRetries() throws IOException {
+        // Arrange
+        pool = pool(1);
+        FakePandocServerWorker worker = workers.getFirst();
+        worker.dropConnections();
+
+        // Act
+        String output = pool.convert("text");
+
+        // Assert
+        assertEquals("TEXT", output, "Should convert after the restart");
+        assertEquals(2, worker.starts.get(), "Should restart the worker once");
+    }
+
+    @Test
+    @DisplayName("HTTP error of the server is thrown as IOException and the worker is returned to the pool")
+    void convert_serverAnswersError_throwsIOException() throws IOException {
+        // Arrange
+        pool = pool(1);
+        FakePandocServerWorker worker = workers.getFirst();
+        worker.convertStatus = 500;
+
+        // Act
+        IOException exception = assertThrows(IOException.class, () -> pool.convert("text"));
+        worker.convertStatus = 200;
+
+        // Assert
+        assertTrue(exception.getMessage().contains("Unknown reader: textile"), "Should contain the body, was: " + exception.getMessage());
+        assertEquals("TEXT", pool.convert("text"), "Should return the worker to the pool");
+        assertEquals(1, worker.starts.get(), "Should not restart a worker which answered");
+    }
+
+    private PandocServerPool pool(int size) throws IOException {
+        return new PandocServerPool(size, index -> {
+            FakePandocServerWorker worker = new FakePandocServerWorker();
+            workers.add(worker);
+            return worker;
+        }, 60);
+    }
+}
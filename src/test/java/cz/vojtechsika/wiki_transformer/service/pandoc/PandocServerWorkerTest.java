@@ -0,0 +1,102 @@
+package cz.vojtechsika.wiki_transformer.service.pandoc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of {@link PandocServerWorker}, pandoc server is replaced by {@link FakePandocServerWorker}.
+ */
+class PandocServerWorkerTest {
+
+    private final FakePandocServerWorker worker = new FakePandocServerWorker();
+
+    @AfterEach
+    void tearDown() {
+        worker.stop();
+    }
+
+    @Test
+    @DisplayName("Started worker is healthy and converts on the server")
+    void convert_startedWorker_returnsServerOutput() throws IOException {
+        // Arrange
+        worker.start();
+
+        // Act
+        String output = worker.convert("h1. Title");
+
+        // Assert
+        assertTrue(worker.isHealthy(), "Should be healthy after the start");
+        assertEquals("H1. TITLE", output, "Should return the output of the server");
+    }
+
+    @Test
+    @DisplayName("Health check marks a failing or crashed server as unhealthy")
+    void checkHealth_failingAndCrashedServer_marksUnhealthy() throws IOException {
+        // Arrange
+        worker.start();
+
+        // Act
+        worker.versionStatus = 503;
+        boolean failing = worker.checkHealth();
+        boolean failingMarked = worker.isHealthy();
+        worker.versionStatus = 200;
+        boolean recovered = worker.checkHealth();
+        worker.crash();
+        boolean crashed = worker.checkHealth();
+
+        // Assert
+        assertFalse(failing, "Should fail the check when /version answers with an error");
+        assertFalse(failingMarked, "Should remember the failed check");
+        assertTrue(recovered, "Should pass the check when /version answers again");
+        assertFalse(crashed, "Should fail the check when the process terminated");
+        assertFalse(worker.isHealthy(), "Should remember the crash");
+    }
+
+    @Test
+    @DisplayName("HTTP error with a text body is reported as IOException with the body")
+    void convert_serverAnswersError_throwsIOExceptionWithBody() throws IOException {
+        // Arrange
+        worker.start();
+        worker.convertStatus = 500;
+
+        // Act
+        IOException exception = assertThrows(IOException.class, () -> worker.convert("h1. Title"));
+
+        // Assert
+        assertTrue(exception.getMessage().contains("HTTP 500"), "Should name the status, was: " + exception.getMessage());
+        assertTrue(exception.getMessage().contains("Unknown reader: textile"), "Should contain the body, was: " + exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Refused connection is left to the pool as ResourceAccessException")
+    void convert_connectionRefused_throwsResourceAccessException() throws IOException {
+        // Arrange
+        worker.start();
+        worker.dropConnections();
+
+        // Act + Assert
+        assertThrows(ResourceAccessException.class, () -> worker.convert("h1. Title"));
+    }
+
+    @Test
+    @DisplayName("Restart replaces a crashed process by a healthy one")
+    void restart_crashedProcess_startsNewHealthyProcess() throws IOException {
+        // Arrange
+        worker.start();
+        worker.crash();
+
+        // Act
+        worker.restart();
+
+        // Assert
+        assertEquals(2, worker.starts.get(), "Should start a second process");
+        assertTrue(worker.isHealthy(), "Should be healthy after the restart");
+        assertEquals("TEXT", worker.convert("text"), "Should convert on the new process");
+    }
+}
@@ -0,0 +1,98 @@
+package cz.vojtechsika.wiki_transformer.service.pipeline;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StagedPipelineTest {
+
+    @Test
+    @DisplayName("Every item passes all stages, a failed item skips the following stages alone")
+    void close_failingItem_failsOnlyThatItem() {
+        // Arrange
+        Queue<Integer> written = new ConcurrentLinkedQueue<>();
+        Map<Integer, Exception> failures = new ConcurrentHashMap<>();
+        List<PipelineStage<Integer>> stages = List.of(
+                PipelineStage.io("fetch", 4, item -> {
+                    if (item == 3) {
+                        throw new IOException("Page " + item + " not found");
+                    }
+                }),
+                PipelineStage.cpu("convert", 2, item -> assertFalse(Thread.currentThread().isVirtual(), "Should convert on a platform thread")),
+                PipelineStage.io("write", 1, written::add));
+
+        // Act
+        try (StagedPipeline<Integer> pipeline = new StagedPipeline<>(stages, 2, failures::put)) {
+            for (int item = 1; item <= 20; item++) {
+                pipeline.submit(item);
+            }
+        } catch (InterruptedException e) {
+            fail("Should not be interrupted");
+        }
+
+        // Assert
+        assertEquals(19, written.size(), "Should pass every healthy item through all stages");
+        assertFalse(written.contains(3), "Should not write the failed item");
+        assertInstanceOf(IOException.class, failures.get(3), "Should report the failure of the item");
+        assertEquals(1, failures.size(), "Should fail no other item");
+    }
+
+    @Test
+    @DisplayName("A slow stage holds back the submitter once the queues in front of it are full")
+    void submit_slowStage_blocksSubmitter() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger submitted = new AtomicInteger();
+        List<PipelineStage<Integer>> stages = List.of(
+                PipelineStage.io("fetch", 1, item -> { }),
+                PipelineStage.io("download", 1, item -> release.await()));
+
+        try (StagedPipeline<Integer> pipeline = new StagedPipeline<>(stages, 1, (item, e) -> { })) {
+            Thread submitter = Thread.ofVirtual().start(() -> {
+                try {
+                    for (int item = 1; item <= 10; item++) {
+                        pipeline.submit(item);
+                        submitted.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            // Act
+            Thread.sleep(200);
+            int submittedWhileBlocked = submitted.get();
+            release.countDown();
+            submitter.join(TimeUnit.SECONDS.toMillis(5));
+
+            // Assert
+            // One item in each stage, one in each queue and one held by the fetch worker waiting for the full queue
+            assertTrue(submittedWhileBlocked <= 5, "Should stop accepting items, accepted " + submittedWhileBlocked);
+            assertEquals(10, submitted.get(), "Should accept the remaining items once the stage catches up");
+        }
+    }
+
+    @Test
+    @DisplayName("Closed pipeline refuses new items")
+    void submit_afterClose_throwsIllegalState() {
+        // Arrange
+        StagedPipeline<Integer> pipeline = new StagedPipeline<>(List.of(PipelineStage.io("fetch", 1, item -> { })), 1, (item, e) -> { });
+
+        // Act
+        pipeline.close();
+
+        // Assert
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(1), "Should refuse items after the close");
+    }
+}
@@ -3,6 +3,11 @@ package cz.vojtechsika.wiki_transformer.util;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class FileNameUtilTest {
@@ -22,6 +27,29 @@ class FileNameUtilTest {
 
     }
 
+    @Test
+    @DisplayName("Single-pass sanitizer matches the regex implementation")
+    void sanitizeFileName_variousInputs_matchesRegexImplementation() {
+        // Arrange
+        List<String> inputs = new ArrayList<>(List.of("", "   ", "___", "Wiki", "_a__b_", "a - b . c", "Ärger über Öl",
+                "Crème brûlée", "日本語のページ", "emoji \uD83D\uDE00 page", "tab\there", "ﬁle ½ ™", "a\u0301\u0301_\u0301b",
+                "\u0301leading mark", "x\u0000y", "Ǆemal", "ﬀ_ligature", "..", "über-_-grün"));
+        Random random = new Random(42);
+        char[] alphabet = "aZ9-_. \t/\\:*?\"<>|áčřžÅøßæ\u0301\u0308\uD83D\uDE00€日".toCharArray();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int j = random.nextInt(20); j > 0; j--) {
+                input.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            inputs.add(input.toString());
+        }
+
+        // Act & Assert
+        for (String input : inputs) {
+            assertEquals(regexSanitizeFileName(input), FileNameUtil.sanitizeFileName(input), "Sanitize differs for: " + input);
+        }
+    }
+
     @Test
     @DisplayName("Create unique suffix")
     void createUniqueSuffix_validUrl_returnsHashCodeAsString() {
@@ -38,6 +66,52 @@ class FileNameUtilTest {
 
     }
 
+    @Test
+    @DisplayName("Unique suffix of a URL hashing to Integer.MIN_VALUE is not negative")
+    void createUniqueSuffix_minValueHash_returnsPositiveNumber() {
+        // Arrange
+        String input = "polygenelubricants";
+
+        // Act
+        String actual = FileNameUtil.createUniqueSuffix(input);
+
+        // Assert
+        assertEquals(Integer.MIN_VALUE, input.hashCode(), "Test input should hash to Integer.MIN_VALUE");
+        assertEquals("2147483648", actual, "Should not contain a minus sign");
+    }
+
+    @Test
+    @DisplayName("Digest suffix is deterministic and the extended one starts with the short one")
+    void createDigestSuffix_sameUrl_returnsStableBase36Suffix() {
+        // Arrange
+        String input = "https://redmine.example.com/projects/demo/wiki/Page";
+
+        // Act
+        String suffix = FileNameUtil.createDigestSuffix(input, false);
+        String extended = FileNameUtil.createDigestSuffix(input, true);
+
+        // Assert
+        assertEquals(suffix, FileNameUtil.createDigestSuffix(input, false), "Should be deterministic");
+        assertTrue(suffix.matches("[0-9a-z]{1,13}"), "Should be a base-36 number of 64 bits: " + suffix);
+        assertTrue(extended.startsWith(suffix) && extended.length() > suffix.length(), "Should extend the short suffix");
+        assertNotEquals(suffix, FileNameUtil.createDigestSuffix(input + "2", false), "Should differ for another URL");
+    }
+
+    @Test
+    @DisplayName("Digest suffix is inserted before the extension")
+    void addDigestSuffix_fileWithExtension_keepsExtension() {
+        // Arrange
+        String url = "https://redmine.example.com/attachments/download/2/image.png";
+        String suffix = FileNameUtil.createDigestSuffix(url, false);
+
+        // Act
+        String actual = FileNameUtil.addDigestSuffix("image.png", url);
+
+        // Assert
+        assertEquals("image_" + suffix + ".png", actual, "Should keep the extension last");
+        assertEquals("README_" + suffix, FileNameUtil.addDigestSuffix("README", url), "Should append to a name without extension");
+    }
+
     @Test
     @DisplayName("Extracts the file name from image url")
     void getNameWithExtension_validImageUrl_returnsFileNameWithExtension() {
@@ -51,4 +125,13 @@ class FileNameUtilTest {
         // Assert
         assertEquals(expected, actual, "Should be same name");
     }
-}
\ No newline at end of file
+
+    // The original regex based implementation, the reference of the single-pass sanitizer
+    private static String regexSanitizeFileName(String fileName) {
+        String normalizedFileName = Normalizer.normalize(fileName.trim(), Normalizer.Form.NFD);
+        return normalizedFileName.replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
+                .replaceAll("[^a-zA-Z0-9-_\\.]", "_")
+                .replaceAll("_+", "_")
+                .replaceAll("^_+|_+$", "");
+    }
+}